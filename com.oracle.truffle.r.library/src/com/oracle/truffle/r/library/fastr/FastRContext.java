@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -33,7 +33,6 @@ import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.RCmdOptions.Client;
 import com.oracle.truffle.r.runtime.conn.*;
 import com.oracle.truffle.r.runtime.context.*;
-import com.oracle.truffle.r.runtime.context.Engine.ParseException;
 import com.oracle.truffle.r.runtime.data.*;
 import com.oracle.truffle.r.runtime.data.model.*;
 import com.oracle.truffle.r.runtime.nodes.*;
@@ -151,19 +150,7 @@ public class FastRContext {
                     PolyglotEngine vm = info.apply(PolyglotEngine.newBuilder()).build();
                     try {
                         Source source = Source.fromText(exprs.getDataAt(i % exprs.getLength()), "<eval>").withMimeType(RRuntime.R_APP_MIME);
-                        PolyglotEngine.Value resultValue = vm.eval(source);
-                        results[i] = RContext.EvalThread.createEvalResult(resultValue);
-                    } catch (ParseException e) {
-                        e.report(info.getConsoleHandler());
-                        results[i] = RContext.EvalThread.createErrorResult(e.getMessage());
-                    } catch (IOException e) {
-                        // This is an unhandled exception, e.g. RInternalError
-                        Throwable cause = e.getCause();
-                        if (cause instanceof RInternalError) {
-                            info.getConsoleHandler().println("internal error: " + e.getMessage() + " (see fastr_errors.log)");
-                            RInternalError.reportError(e);
-                        }
-                        results[i] = RContext.EvalThread.createErrorResult(e.getCause().getMessage());
+                        results[i] = RContext.EvalThread.eval(vm, info, source);
                     } finally {
                         vm.dispose();
                     }
@@ -173,6 +160,76 @@ public class FastRContext {
         }
     }
 
+    public abstract static class PoolCreate extends RExternalBuiltinNode.Arg3 {
+        @Specialization
+        @TruffleBoundary
+        protected int create(RAbstractIntVector size, RAbstractStringVector args, RAbstractIntVector kindVec) {
+            if (size.getLength() != 1 || size.getDataAt(0) <= 0) {
+                throw RError.error(this, RError.Message.INVALID_ARGUMENT, "size");
+            }
+            RContext.ContextKind kind = RContext.ContextKind.VALUES[kindVec.getDataAt(0) - 1];
+            if (kind == RContext.ContextKind.SHARE_PARENT_RW) {
+                // only one such child is allowed, and clearing its global environment would clear ours
+                throw RError.error(this, RError.Message.INVALID_ARGUMENT, "kind");
+            }
+            RCmdOptions options = RCmdOptions.parseArguments(Client.RSCRIPT, args.materialize().getDataCopy());
+            try {
+                return ContextPool.create(size.getDataAt(0), options, kind, RContext.getInstance(), RContext.getInstance().getConsoleHandler());
+            } catch (InterruptedException ex) {
+                throw RError.error(this, RError.Message.GENERIC, "error creating context pool");
+            } catch (IOException ex) {
+                throw RError.error(this, RError.Message.GENERIC, "error creating context pool: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The result has the same form as that of {@link Eval}, with one entry per expression.
+     */
+    public abstract static class PoolEval extends RExternalBuiltinNode.Arg2 {
+        @Specialization
+        @TruffleBoundary
+        protected Object eval(RAbstractIntVector pool, RAbstractStringVector exprs) {
+            try {
+                return RDataFactory.createList(checkPool(pool, this).eval(exprs.materialize().getDataCopy()));
+            } catch (InterruptedException ex) {
+                throw RError.error(this, RError.Message.GENERIC, "error evaluating in context pool");
+            }
+        }
+    }
+
+    public abstract static class PoolStats extends RExternalBuiltinNode.Arg1 {
+        private static final RStringVector NAMES = RDataFactory.createStringVector(new String[]{"size", "queued", "completed", "mean.latency.ms", "max.latency.ms"}, RDataFactory.COMPLETE_VECTOR);
+
+        @Specialization
+        @TruffleBoundary
+        protected Object stats(RAbstractIntVector pool) {
+            return RDataFactory.createDoubleVector(checkPool(pool, this).getStatistics(), RDataFactory.COMPLETE_VECTOR, NAMES);
+        }
+    }
+
+    public abstract static class PoolClose extends RExternalBuiltinNode.Arg1 {
+        @Specialization
+        @TruffleBoundary
+        protected RNull close(RAbstractIntVector pool) {
+            try {
+                checkPool(pool, this).close();
+            } catch (InterruptedException ex) {
+                throw RError.error(this, RError.Message.GENERIC, "error closing context pool");
+            }
+            return RNull.instance;
+        }
+    }
+
+    private static ContextPool checkPool(RAbstractIntVector poolVec, RBaseNode invokingNode) throws RError {
+        ContextPool pool = poolVec.getLength() == 1 ? ContextPool.get(poolVec.getDataAt(0)) : null;
+        if (pool == null) {
+            throw RError.error(invokingNode, RError.Message.GENERIC, "no context pool");
+        } else {
+            return pool;
+        }
+    }
+
     private static ContextInfo checkContext(int contextId, RBaseNode invokingNode) throws RError {
         ContextInfo info = ContextInfo.get(contextId);
         if (info == null) {
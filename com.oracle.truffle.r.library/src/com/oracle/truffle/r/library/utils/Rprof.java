@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.library.utils;
+
+import java.io.*;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.nodes.builtin.*;
+import com.oracle.truffle.r.runtime.*;
+import com.oracle.truffle.r.runtime.context.*;
+import com.oracle.truffle.r.runtime.data.*;
+import com.oracle.truffle.r.runtime.instrument.*;
+
+/**
+ * The {@code .External} part of {@code utils::Rprof}, see {@link RprofState}. An empty
+ * {@code filename} stops profiling. The {@code gc.profiling}, {@code numfiles} and {@code bufsize}
+ * arguments are ignored.
+ */
+public final class Rprof extends RExternalBuiltinNode {
+
+    @Override
+    public RNull call(RArgsValuesAndNames args) {
+        Object[] argValues = args.getArguments();
+        String filename = isString(argValues[0]);
+        if (filename == null) {
+            errorProfile.enter();
+            throw RError.error(this, RError.Message.INVALID_ARGUMENT, "filename");
+        }
+        boolean append = RRuntime.fromLogical(castLogical(castVector(argValues[1])));
+        double interval = castDouble(castVector(argValues[2])).getDataAt(0);
+        boolean memoryProfiling = RRuntime.fromLogical(castLogical(castVector(argValues[3])));
+        boolean lineProfiling = RRuntime.fromLogical(castLogical(castVector(argValues[5])));
+        rprof(filename, append, interval, memoryProfiling, lineProfiling);
+        return RNull.instance;
+    }
+
+    @TruffleBoundary
+    private void rprof(String filename, boolean append, double interval, boolean memoryProfiling, boolean lineProfiling) {
+        RprofState.ContextStateImpl state = RContext.getInstance().stateRprof;
+        try {
+            if (filename.length() == 0) {
+                state.stop();
+            } else {
+                if (memoryProfiling) {
+                    RError.warning(this, RError.Message.GENERIC, "memory profiling is not supported");
+                }
+                // as in GnuR, the interval is given in seconds but recorded in microseconds
+                int micros = Math.max((int) (1e6 * interval + 0.5), 1000);
+                state.start(Utils.tildeExpand(filename), append, micros, lineProfiling);
+            }
+        } catch (IOException ex) {
+            throw RError.error(this, RError.Message.GENERIC, "Rprof: cannot open profile file '" + filename + "'");
+        }
+    }
+}
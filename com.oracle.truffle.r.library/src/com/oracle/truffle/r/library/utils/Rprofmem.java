@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.library.utils;
+
+import java.io.*;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.nodes.builtin.*;
+import com.oracle.truffle.r.runtime.*;
+import com.oracle.truffle.r.runtime.context.*;
+import com.oracle.truffle.r.runtime.data.*;
+import com.oracle.truffle.r.runtime.instrument.*;
+
+/**
+ * The {@code .External} part of {@code utils::Rprofmem}, see {@link RprofState} and
+ * {@link AllocationTracker}. An empty {@code filename} stops the reporting. Only vector allocations
+ * are reported; GnuR's "new page" entries have no equivalent in FastR.
+ */
+public final class Rprofmem extends RExternalBuiltinNode {
+
+    @Override
+    public RNull call(RArgsValuesAndNames args) {
+        Object[] argValues = args.getArguments();
+        String filename = isString(argValues[0]);
+        if (filename == null) {
+            errorProfile.enter();
+            throw RError.error(this, RError.Message.INVALID_ARGUMENT, "filename");
+        }
+        boolean append = RRuntime.fromLogical(castLogical(castVector(argValues[1])));
+        double threshold = castDouble(castVector(argValues[2])).getDataAt(0);
+        rprofmem(filename, append, threshold);
+        return RNull.instance;
+    }
+
+    @TruffleBoundary
+    private void rprofmem(String filename, boolean append, double threshold) {
+        RprofState.ContextStateImpl state = RContext.getInstance().stateRprof;
+        try {
+            if (filename.length() == 0) {
+                state.stopMemoryProfiling();
+            } else {
+                state.startMemoryProfiling(Utils.tildeExpand(filename), append, (long) threshold);
+            }
+        } catch (IOException ex) {
+            throw RError.error(this, RError.Message.GENERIC, "Rprofmem: cannot open output file '" + filename + "'");
+        }
+    }
+}
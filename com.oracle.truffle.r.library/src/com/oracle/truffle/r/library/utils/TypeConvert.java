@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -24,72 +24,58 @@ package com.oracle.truffle.r.library.utils;
 
 import java.util.*;
 
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.*;
 import com.oracle.truffle.r.nodes.builtin.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.*;
 import com.oracle.truffle.r.runtime.data.model.*;
 
+/**
+ * The {@code type.convert} function, which converts a character vector to logical, integer,
+ * double, complex or factor. The conversion is done in a single pass over the input: each element
+ * is parsed as each of the types that are still possible, and the type is ruled out on the first
+ * element that does not conform, so that the (exception based) parsing fails at most once per type.
+ * Factors are built with a hash table from string to code, and only the distinct levels are sorted.
+ */
 public abstract class TypeConvert extends RExternalBuiltinNode.Arg5 {
 
-    private static boolean isNA(String s, RAbstractStringVector naStrings) {
-        // naStrings are in addition to NA_character_
-        if (RRuntime.isNA(s)) {
-            return true;
-        }
+    private static HashSet<String> naStringSet(RAbstractStringVector naStrings) {
+        HashSet<String> result = new HashSet<>();
         for (int i = 0; i < naStrings.getLength(); i++) {
-            if (s.equals(naStrings.getDataAt(i))) {
-                return true;
-            }
+            result.add(naStrings.getDataAt(i));
         }
-        return false;
+        return result;
     }
 
-    /*
-     * In the next three methods, firstPos is the index of the first element in the vector that is
-     * not isNA(elem, naStrings). However, there may be isNA values after that.
-     */
-
-    private static RIntVector readIntVector(RAbstractStringVector x, int firstPos, int firstVal, RAbstractStringVector naStrings) {
-        int[] data = new int[x.getLength()];
-        Arrays.fill(data, 0, firstPos, RRuntime.INT_NA);
-        boolean complete = RDataFactory.COMPLETE_VECTOR;
-        data[firstPos] = firstVal;
-        for (int i = firstPos + 1; i < data.length; i++) {
-            String s = x.getDataAt(i);
-            boolean isNA = isNA(s, naStrings);
-            data[i] = isNA ? RRuntime.INT_NA : RRuntime.string2intNoCheck(s, true);
-            complete = complete && !isNA;
-        }
-        return RDataFactory.createIntVector(data, complete);
+    private static boolean isNA(String s, HashSet<String> naStrings) {
+        // naStrings are in addition to NA_character_
+        return RRuntime.isNA(s) || naStrings.contains(s);
     }
 
-    private static RDoubleVector readDoubleVector(RAbstractStringVector x, int firstPos, double firstVal, RAbstractStringVector naStrings) {
-        double[] data = new double[x.getLength()];
-        Arrays.fill(data, 0, firstPos, RRuntime.DOUBLE_NA);
-        boolean complete = RDataFactory.COMPLETE_VECTOR;
-        data[firstPos] = firstVal;
-        for (int i = firstPos + 1; i < data.length; i++) {
-            String s = x.getDataAt(i);
-            boolean isNA = isNA(s, naStrings);
-            data[i] = isNA ? RRuntime.DOUBLE_NA : RRuntime.string2doubleNoCheck(s, true);
-            complete = complete && !isNA;
+    private static boolean isLogical(String s) {
+        switch (s) {
+            case "TRUE":
+            case "T":
+            case "True":
+            case "true":
+            case "FALSE":
+            case "F":
+            case "False":
+            case "false":
+                return true;
+            default:
+                return false;
         }
-        return RDataFactory.createDoubleVector(data, complete);
     }
 
-    private static RLogicalVector readLogicalVector(RAbstractStringVector x, int firstPos, byte firstVal, RAbstractStringVector naStrings) {
-        byte[] data = new byte[x.getLength()];
-        Arrays.fill(data, 0, firstPos, RRuntime.LOGICAL_NA);
-        boolean complete = RDataFactory.COMPLETE_VECTOR;
-        data[firstPos] = firstVal;
-        for (int i = firstPos + 1; i < data.length; i++) {
-            String s = x.getDataAt(i);
-            boolean isNA = isNA(s, naStrings);
-            data[i] = isNA ? RRuntime.LOGICAL_NA : RRuntime.string2logicalNoCheck(s, true);
-            complete = complete && !isNA;
-        }
-        return RDataFactory.createLogicalVector(data, complete);
+    /**
+     * A complex literal of the form {@code a+bi} (a real number is also complex, but that is tested
+     * separately). The {@code i} must only occur at the end, which
+     * {@link RRuntime#string2complexNoCheck} assumes.
+     */
+    private static boolean isComplex(String s) {
+        return s.length() > 1 && s.indexOf('i') == s.length() - 1 && !RRuntime.isNA(RRuntime.string2complexNoCheck(s));
     }
 
     @Specialization
@@ -97,80 +83,136 @@ public abstract class TypeConvert extends RExternalBuiltinNode.Arg5 {
         if (x.getLength() == 0) {
             return RDataFactory.createEmptyLogicalVector();
         }
+        return convert(x, naStringSet(naStrings), asIs == RRuntime.LOGICAL_TRUE);
+    }
 
-        int i = 0;
-        while (isNA(x.getDataAt(i), naStrings) && i < x.getLength()) {
-            i++;
-        }
-
-        if (i == x.getLength()) {
-            // all NAs
-            byte[] data = new byte[i];
-            Arrays.fill(data, RRuntime.LOGICAL_NA);
-            return RDataFactory.createLogicalVector(data, RDataFactory.INCOMPLETE_VECTOR);
-        }
+    @TruffleBoundary
+    private static Object convert(RAbstractStringVector x, HashSet<String> naStrings, boolean asIs) {
+        int length = x.getLength();
+        byte[] logicals = new byte[length];
+        int[] ints = new int[length];
+        double[] doubles = new double[length];
+        boolean complexPossible = true;
+        boolean complete = true;
 
-        String s = x.getDataAt(i);
-        try {
-            int intVal = RRuntime.string2intNoCheck(s, true);
-            return readIntVector(x, i, intVal, naStrings);
-        } catch (NumberFormatException ix) {
-            try {
-                double doubleVal = RRuntime.string2doubleNoCheck(s, true);
+        for (int i = 0; i < length; i++) {
+            String s = x.getDataAt(i);
+            if (isNA(s, naStrings)) {
+                complete = false;
+                if (logicals != null) {
+                    logicals[i] = RRuntime.LOGICAL_NA;
+                }
+                if (ints != null) {
+                    ints[i] = RRuntime.INT_NA;
+                }
+                if (doubles != null) {
+                    doubles[i] = RRuntime.DOUBLE_NA;
+                }
+                continue;
+            }
+            if (logicals != null) {
+                if (isLogical(s)) {
+                    logicals[i] = RRuntime.string2logicalNoCheck(s);
+                } else {
+                    logicals = null;
+                }
+            }
+            if (ints != null) {
                 try {
-                    return readDoubleVector(x, i, doubleVal, naStrings);
-                } catch (NumberFormatException lx) {
-                    // fall through
+                    ints[i] = RRuntime.string2intNoCheck(s, true);
+                } catch (NumberFormatException e) {
+                    ints = null;
                 }
-            } catch (NumberFormatException dx) {
+            }
+            boolean isReal = false;
+            if (doubles != null || complexPossible) {
                 try {
-                    byte logicalVal = RRuntime.string2logicalNoCheck(s, true);
-                    try {
-                        return readLogicalVector(x, i, logicalVal, naStrings);
-                    } catch (NumberFormatException lx) {
-                        // fall through
+                    double value = RRuntime.string2doubleNoCheck(s, true);
+                    if (doubles != null) {
+                        doubles[i] = value;
                     }
-                } catch (NumberFormatException lx) {
-                    // fall through
+                    isReal = true;
+                } catch (NumberFormatException e) {
+                    doubles = null;
                 }
             }
+            if (complexPossible && !isReal) {
+                complexPossible = isComplex(s);
+            }
+            if (logicals == null && ints == null && doubles == null && !complexPossible) {
+                break;
+            }
         }
 
-        // fall through target - conversion to int, double or logical failed
-
-        if (asIs == RRuntime.LOGICAL_TRUE) {
+        if (logicals != null) {
+            // this includes the case where all elements are NA
+            return RDataFactory.createLogicalVector(logicals, complete);
+        } else if (ints != null) {
+            return RDataFactory.createIntVector(ints, complete);
+        } else if (doubles != null) {
+            return RDataFactory.createDoubleVector(doubles, complete);
+        } else if (complexPossible) {
+            return readComplexVector(x, naStrings, complete);
+        } else if (asIs) {
             return x;
         } else {
-            // create a factor
-            TreeSet<String> levels = new TreeSet<>();
-            for (int j = 0; j < x.getLength(); j++) {
-                s = x.getDataAt(j);
-                if (!isNA(s, naStrings)) {
+            return createFactor(x, naStrings);
+        }
+    }
+
+    private static RComplexVector readComplexVector(RAbstractStringVector x, HashSet<String> naStrings, boolean complete) {
+        double[] data = new double[x.getLength() * 2];
+        for (int i = 0; i < x.getLength(); i++) {
+            String s = x.getDataAt(i);
+            RComplex value = isNA(s, naStrings) ? RRuntime.createComplexNA() : RRuntime.string2complexNoCheck(s);
+            data[2 * i] = value.getRealPart();
+            data[2 * i + 1] = value.getImaginaryPart();
+        }
+        return RDataFactory.createComplexVector(data, complete);
+    }
+
+    private static RIntVector createFactor(RAbstractStringVector x, HashSet<String> naStrings) {
+        // code the elements in order of first appearance
+        HashMap<String, Integer> codes = new HashMap<>();
+        ArrayList<String> levels = new ArrayList<>();
+        int[] data = new int[x.getLength()];
+        boolean complete = true;
+        for (int j = 0; j < data.length; j++) {
+            String s = x.getDataAt(j);
+            if (isNA(s, naStrings)) {
+                data[j] = RRuntime.INT_NA;
+                complete = false;
+            } else {
+                Integer code = codes.get(s);
+                if (code == null) {
+                    code = levels.size();
+                    codes.put(s, code);
                     levels.add(s);
                 }
+                data[j] = code;
             }
-            String[] levelsArray = new String[levels.size()];
-            levels.toArray(levelsArray);
+        }
 
-            int[] data = new int[x.getLength()];
-            boolean complete = true;
-            for (int j = 0; j < data.length; j++) {
-                s = x.getDataAt(j);
-                if (!isNA(s, naStrings)) {
-                    for (int k = 0; k < levelsArray.length; k++) {
-                        if (levelsArray[k].equals(s)) {
-                            data[j] = k + 1;
-                            break;
-                        }
-                    }
-                } else {
-                    data[j] = RRuntime.INT_NA;
-                    complete = false;
-                }
+        // sort the levels and recode
+        Integer[] order = new Integer[levels.size()];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (a, b) -> levels.get(a).compareTo(levels.get(b)));
+        String[] levelsArray = new String[order.length];
+        int[] recode = new int[order.length];
+        for (int k = 0; k < order.length; k++) {
+            levelsArray[k] = levels.get(order[k]);
+            recode[order[k]] = k + 1;
+        }
+        for (int j = 0; j < data.length; j++) {
+            if (data[j] != RRuntime.INT_NA) {
+                data[j] = recode[data[j]];
             }
-            RIntVector res = RDataFactory.createIntVector(data, complete);
-            res.setAttr(RRuntime.LEVELS_ATTR_KEY, RDataFactory.createStringVector(levelsArray, RDataFactory.COMPLETE_VECTOR));
-            return RVector.setVectorClassAttr(res, RDataFactory.createStringVector("factor"), null, null);
         }
+
+        RIntVector res = RDataFactory.createIntVector(data, complete);
+        res.setAttr(RRuntime.LEVELS_ATTR_KEY, RDataFactory.createStringVector(levelsArray, RDataFactory.COMPLETE_VECTOR));
+        return RVector.setVectorClassAttr(res, RDataFactory.createStringVector("factor"), null, null);
     }
 }
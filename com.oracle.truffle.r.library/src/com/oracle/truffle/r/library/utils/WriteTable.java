@@ -5,14 +5,18 @@
  *
  * Copyright (c) 1995-2012, The R Core Team
  * Copyright (c) 2003, The R Foundation
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates
  *
  * All rights reserved.
  */
 package com.oracle.truffle.r.library.utils;
 
 import java.io.*;
+import java.math.*;
+import java.util.*;
+import java.util.concurrent.*;
 
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.r.nodes.builtin.*;
 import com.oracle.truffle.r.runtime.*;
@@ -24,18 +28,38 @@ import com.oracle.truffle.r.runtime.data.model.*;
 
 public final class WriteTable extends RExternalBuiltinNode {
 
+    /**
+     * Rows are encoded in blocks of this many rows when encoding in parallel.
+     */
+    private static final int ROW_BLOCK_SIZE = 8192;
+    /**
+     * The encoded rows are written out when the buffer has reached this size.
+     */
+    private static final int FLUSH_SIZE = 1 << 20;
+
+    @CompilationFinal private static int parallelThreshold = -1;
+
+    private static boolean encodeInParallel(int nr) {
+        if (parallelThreshold < 0) {
+            parallelThreshold = FastROptions.ParallelWriteTableThreshold.getNonNegativeIntValue();
+        }
+        return parallelThreshold > 0 && nr >= parallelThreshold && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
     @TruffleBoundary
     private static Object execute(RConnection con, Object xx, int nr, int nc, Object rnames, String csep, String ceol, String cna, char cdec, boolean qmethod, boolean[] quoteCol, boolean quoteRn)
                     throws IOException, IllegalArgumentException {
         OutputStream os = con.getOutputStream();
-        String tmp = null;
+        TableEncoder table;
         if (xx instanceof RDataFrame) { /* A data frame */
             RVector x = ((RDataFrame) xx).getVector();
 
             /* handle factors internally, check integrity */
+            Object[] columns = new Object[nc];
             RStringVector[] levels = new RStringVector[nc];
             for (int j = 0; j < nc; j++) {
                 Object xjObj = x.getDataAtAsObject(j);
+                columns[j] = xjObj;
                 if (xjObj instanceof RAbstractContainer) {
                     RAbstractContainer xj = (RAbstractContainer) xjObj;
                     if (xj.getLength() != nr) {
@@ -50,75 +74,501 @@ public final class WriteTable extends RExternalBuiltinNode {
                     }
                 }
             }
+            table = new TableEncoder(columns, null, levels, nr, rnames, csep, ceol, cna, cdec, qmethod, quoteCol, quoteRn);
+        } else { /* A matrix */
 
+            // if (!isVectorAtomic(x))
+            // UNIMPLEMENTED_TYPE("write.table, matrix method", x);
+            RVector x = (RVector) xx;
+            /* quick integrity check */
+            if (x.getLength() != nr * nc) {
+                throw new IllegalArgumentException("corrupt matrix -- dims not not match length");
+            }
+            Object[] columns = new Object[nc];
+            int[] offsets = new int[nc];
+            for (int j = 0; j < nc; j++) {
+                columns[j] = x;
+                offsets[j] = j * nr;
+            }
+            table = new TableEncoder(columns, offsets, new RStringVector[nc], nr, rnames, csep, ceol, cna, cdec, qmethod, quoteCol, quoteRn);
+        }
+        if (encodeInParallel(nr)) {
+            table.writeParallel(os);
+        } else {
+            RowEncoder out = new RowEncoder(FLUSH_SIZE + 1024);
             for (int i = 0; i < nr; i++) {
                 // if (i % 1000 == 999)
                 // R_CheckUserInterrupt();
-                if (!(rnames instanceof RNull)) {
-                    os.write(encodeElement2((RStringVector) rnames, i, quoteRn, qmethod, cdec).getBytes());
-                    os.write(csep.getBytes());
+                table.encodeRow(out, i);
+                if (out.length() >= FLUSH_SIZE) {
+                    out.writeTo(os);
                 }
-                for (int j = 0; j < nc; j++) {
-                    Object xjObj = x.getDataAtAsObject(j);
-                    if (j > 0) {
-                        os.write(csep.getBytes());
+            }
+            out.writeTo(os);
+        }
+        return RNull.instance;
+    }
+
+    /**
+     * Encodes the rows of a data frame or matrix into a {@link RowEncoder}. The separator, end of
+     * line and NA strings and the levels of factor columns are encoded to bytes once, and integer,
+     * double and logical columns are formatted directly into the buffer. Other columns are encoded
+     * element-wise as strings. An instance is immutable, so that blocks of rows can be encoded
+     * concurrently.
+     */
+    private static final class TableEncoder {
+        private static final int INT = 0;
+        private static final int DOUBLE = 1;
+        private static final int LOGICAL = 2;
+        private static final int STRING = 3;
+        private static final int FACTOR = 4;
+        private static final int CONTAINER = 5;
+        private static final int PRIMITIVE = 6;
+
+        private final Object[] columns;
+        private final int[] offsets;
+        private final int[] kinds;
+        private final byte[][][] levels;
+        private final int nr;
+        private final RStringVector rnames;
+        private final byte[] sep;
+        private final byte[] eol;
+        private final byte[] na;
+        private final char dec;
+        private final String cna;
+        private final boolean qmethod;
+        private final boolean[] quoteCol;
+        private final boolean quoteRn;
+
+        TableEncoder(Object[] columns, int[] offsets, RStringVector[] factorLevels, int nr, Object rnames, String csep, String ceol, String cna, char cdec, boolean qmethod, boolean[] quoteCol,
+                        boolean quoteRn) {
+            this.columns = columns;
+            this.offsets = offsets;
+            this.nr = nr;
+            this.rnames = rnames instanceof RNull ? null : (RStringVector) rnames;
+            this.sep = csep.getBytes();
+            this.eol = ceol.getBytes();
+            this.na = cna.getBytes();
+            this.cna = cna;
+            this.dec = cdec;
+            this.qmethod = qmethod;
+            this.quoteCol = quoteCol;
+            this.quoteRn = quoteRn;
+            this.kinds = new int[columns.length];
+            this.levels = new byte[columns.length][][];
+            for (int j = 0; j < columns.length; j++) {
+                Object column = columns[j];
+                if (factorLevels[j] != null) {
+                    kinds[j] = FACTOR;
+                    levels[j] = new byte[factorLevels[j].getLength()][];
+                    for (int l = 0; l < levels[j].length; l++) {
+                        levels[j][l] = encodeStringElement(factorLevels[j].getDataAt(l), quoteCol[j], qmethod).getBytes();
                     }
-                    if (xjObj instanceof RAbstractContainer) {
-                        RAbstractContainer xj = (RAbstractContainer) xjObj;
-                        if (isna(xj, i)) {
-                            tmp = cna;
+                } else if (column instanceof RAbstractIntVector) {
+                    kinds[j] = INT;
+                } else if (column instanceof RAbstractDoubleVector) {
+                    kinds[j] = DOUBLE;
+                } else if (column instanceof RAbstractLogicalVector) {
+                    kinds[j] = LOGICAL;
+                } else if (column instanceof RAbstractStringVector) {
+                    kinds[j] = STRING;
+                } else if (column instanceof RAbstractContainer) {
+                    kinds[j] = CONTAINER;
+                } else {
+                    kinds[j] = PRIMITIVE;
+                }
+            }
+        }
+
+        void encodeRow(RowEncoder out, int i) {
+            if (rnames != null) {
+                out.putString(encodeElement2(rnames, i, quoteRn, qmethod, dec));
+                out.put(sep);
+            }
+            for (int j = 0; j < columns.length; j++) {
+                if (j > 0) {
+                    out.put(sep);
+                }
+                Object column = columns[j];
+                int index = offsets == null ? i : offsets[j] + i;
+                switch (kinds[j]) {
+                    case INT: {
+                        int value = ((RAbstractIntVector) column).getDataAt(index);
+                        if (RRuntime.isNA(value)) {
+                            out.put(na);
                         } else {
-                            if (levels[j] != null) {
-                                tmp = encodeElement2(levels[j], (int) xj.getDataAtAsObject(i) - 1, quoteCol[j], qmethod, cdec);
-                            } else {
-                                tmp = encodeElement2((RAbstractVector) xj, i, quoteCol[j], qmethod, cdec);
-                            }
-                            /* if(cdec) change_dec(tmp, cdec, TYPEOF(xj)); */
+                            out.putInt(value);
+                        }
+                        break;
+                    }
+                    case DOUBLE: {
+                        double value = ((RAbstractDoubleVector) column).getDataAt(index);
+                        if (RRuntime.isNA(value)) {
+                            out.put(na);
+                        } else {
+                            out.putDouble(value, dec);
+                        }
+                        break;
+                    }
+                    case LOGICAL: {
+                        byte value = ((RAbstractLogicalVector) column).getDataAt(index);
+                        if (RRuntime.isNA(value)) {
+                            out.put(na);
+                        } else {
+                            out.putString(RRuntime.logicalToStringNoCheck(value));
+                        }
+                        break;
+                    }
+                    case STRING: {
+                        String value = ((RAbstractStringVector) column).getDataAt(index);
+                        if (RRuntime.isNA(value)) {
+                            out.put(na);
+                        } else {
+                            out.putString(value, quoteCol[j], qmethod);
+                        }
+                        break;
+                    }
+                    case FACTOR: {
+                        int code = ((RAbstractIntVector) column).getDataAt(index);
+                        if (RRuntime.isNA(code)) {
+                            out.put(na);
+                        } else if (code < 1 || code > levels[j].length) {
+                            throw new IllegalArgumentException("index out of range");
+                        } else {
+                            out.put(levels[j][code - 1]);
+                        }
+                        break;
+                    }
+                    case CONTAINER: {
+                        RAbstractContainer xj = (RAbstractContainer) column;
+                        if (isna(xj, index)) {
+                            out.put(na);
+                        } else {
+                            out.putString(encodeElement2((RAbstractVector) xj, index, quoteCol[j], qmethod, dec));
                         }
-                    } else {
-                        tmp = encodePrimitiveElement(xjObj, cna, quoteRn, qmethod);
-                        /* if(cdec) change_dec(tmp, cdec, TYPEOF(xj)); */
+                        break;
                     }
-                    os.write(tmp.getBytes());
+                    default:
+                        out.putString(encodePrimitiveElement(column, cna, quoteRn, qmethod));
+                        break;
                 }
-                os.write(ceol.getBytes());
             }
+            out.put(eol);
+        }
 
-        } else { /* A matrix */
+        /**
+         * Encodes blocks of {@link #ROW_BLOCK_SIZE} rows as tasks on the common
+         * {@link ForkJoinPool}, with a bounded number of blocks in flight, and writes them in
+         * order.
+         */
+        void writeParallel(OutputStream os) throws IOException {
+            int blocks = (nr + ROW_BLOCK_SIZE - 1) / ROW_BLOCK_SIZE;
+            int window = 2 * ForkJoinPool.getCommonPoolParallelism();
+            ArrayDeque<Future<RowEncoder>> pending = new ArrayDeque<>();
+            int next = 0;
+            try {
+                while (next < blocks || !pending.isEmpty()) {
+                    while (next < blocks && pending.size() < window) {
+                        int from = next * ROW_BLOCK_SIZE;
+                        int to = Math.min(nr, from + ROW_BLOCK_SIZE);
+                        pending.add(ForkJoinPool.commonPool().submit(() -> {
+                            RowEncoder block = new RowEncoder(64 * (to - from));
+                            for (int i = from; i < to; i++) {
+                                encodeRow(block, i);
+                            }
+                            return block;
+                        }));
+                        next++;
+                    }
+                    pending.poll().get().writeTo(os);
+                }
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new IOException(ex.getCause());
+            } finally {
+                for (Future<RowEncoder> future : pending) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
 
-            // if (!isVectorAtomic(x))
-            // UNIMPLEMENTED_TYPE("write.table, matrix method", x);
-            RVector x = (RVector) xx;
-            /* quick integrity check */
-            if (x.getLength() != nr * nc) {
-                throw new IllegalArgumentException("corrupt matrix -- dims not not match length");
+    /**
+     * A growable byte buffer into which rows are encoded. Doubles are formatted as by GnuR's
+     * {@code EncodeElement} with 15 significant digits, i.e., in fixed notation unless scientific
+     * notation is narrower.
+     */
+    private static final class RowEncoder {
+        private static final int DIGITS = 15;
+        private static final long MAX_MANTISSA = 1000000000000000L;
+        private static final MathContext ROUND_DIGITS = new MathContext(DIGITS, RoundingMode.HALF_EVEN);
+
+        private byte[] buf;
+        private int length;
+        private final byte[] digits = new byte[20];
+
+        RowEncoder(int size) {
+            buf = new byte[size];
+        }
+
+        int length() {
+            return length;
+        }
+
+        void writeTo(OutputStream os) throws IOException {
+            os.write(buf, 0, length);
+            length = 0;
+        }
+
+        private void ensure(int n) {
+            if (length + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, length + n));
             }
+        }
 
-            for (int i = 0; i < nr; i++) {
-                if (i % 1000 == 999) {
-                    // R_CheckUserInterrupt();
+        void put(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void put(byte b) {
+            ensure(1);
+            buf[length++] = b;
+        }
+
+        void putString(String s) {
+            int n = s.length();
+            ensure(n);
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    // not ASCII, let the platform encoding deal with it
+                    put(s.substring(i).getBytes());
+                    return;
                 }
-                if (!(rnames instanceof RNull)) {
-                    os.write(encodeElement2((RStringVector) rnames, i, quoteRn, qmethod, cdec).getBytes());
-                    os.write(csep.getBytes());
+                buf[length++] = (byte) c;
+            }
+        }
+
+        void putString(String s, boolean quote, boolean qmethod) {
+            if (!quote) {
+                putString(s);
+            } else if (s.indexOf('"') < 0) {
+                put((byte) '"');
+                putString(s);
+                put((byte) '"');
+            } else {
+                putString(encodeStringElement(s, quote, qmethod));
+            }
+        }
+
+        void putInt(int value) {
+            long v = value;
+            if (v < 0) {
+                put((byte) '-');
+                v = -v;
+            }
+            putDigits(v, 0);
+        }
+
+        /**
+         * Appends the decimal digits of {@code v}, followed by {@code zeros} zeros.
+         */
+        private void putDigits(long v, int zeros) {
+            int n = 0;
+            long rest = v;
+            do {
+                digits[n++] = (byte) ('0' + rest % 10);
+                rest /= 10;
+            } while (rest != 0);
+            ensure(n + zeros);
+            while (n > 0) {
+                buf[length++] = digits[--n];
+            }
+            for (int i = 0; i < zeros; i++) {
+                buf[length++] = '0';
+            }
+        }
+
+        void putDouble(double value, char dec) {
+            if (Double.isNaN(value)) {
+                putString(RRuntime.STRING_NaN);
+                return;
+            }
+            if (value == 0) {
+                // including negative zero
+                put((byte) '0');
+                return;
+            }
+            double v = value;
+            if (v < 0) {
+                put((byte) '-');
+                v = -v;
+            }
+            if (Double.isInfinite(v)) {
+                putString("Inf");
+                return;
+            }
+            /*
+             * Determine the value rounded to 15 significant digits as mantissa * 10^(exponent -
+             * nsig + 1), where the mantissa has nsig digits and no trailing zeros.
+             */
+            long mantissa;
+            int exponent;
+            if (v < MAX_MANTISSA && v == Math.rint(v)) {
+                mantissa = (long) v;
+                exponent = -1;
+                for (long m = mantissa; m != 0; m /= 10) {
+                    exponent++;
                 }
-                for (int j = 0; j < nc; j++) {
-                    if (j > 0) {
-                        os.write(csep.getBytes());
-                    }
-                    if (isna(x, i + j * nr)) {
-                        tmp = cna;
-                    } else {
-                        tmp = encodeElement2(x, i + j * nr, quoteCol[j], qmethod, cdec);
-                        /* if(cdec) change_dec(tmp, cdec, TYPEOF(x)); */
+            } else {
+                // the precision of subnormals is too low for the shortest representation
+                long[] result = v < Double.MIN_NORMAL ? null : roundShortest(v);
+                if (result == null) {
+                    BigDecimal rounded = new BigDecimal(v).round(ROUND_DIGITS);
+                    mantissa = rounded.unscaledValue().longValue();
+                    exponent = rounded.precision() - rounded.scale() - 1;
+                } else {
+                    mantissa = result[0];
+                    exponent = (int) result[1];
+                }
+            }
+            int nsig = 0;
+            for (long m = mantissa; m != 0; m /= 10) {
+                nsig++;
+            }
+            while (mantissa % 10 == 0) {
+                mantissa /= 10;
+                nsig--;
+            }
+            int rgt = Math.max(0, nsig - exponent - 1);
+            int fixedWidth = (exponent >= 0 ? exponent + 1 : 1) + (rgt > 0 ? rgt + 1 : 0);
+            int sciWidth = (nsig > 1 ? nsig + 1 : 1) + (Math.abs(exponent) >= 100 ? 5 : 4);
+            if (fixedWidth <= sciWidth) {
+                if (exponent >= DIGITS) {
+                    // printed in full, as by sprintf("%.0f")
+                    putString(new BigDecimal(v).setScale(0, RoundingMode.HALF_EVEN).toPlainString());
+                } else if (exponent >= nsig - 1) {
+                    putDigits(mantissa, exponent - nsig + 1);
+                } else if (exponent >= 0) {
+                    long scale = pow10(nsig - exponent - 1);
+                    putDigits(mantissa / scale, 0);
+                    put((byte) dec);
+                    putFraction(mantissa % scale, nsig - exponent - 1);
+                } else {
+                    put((byte) '0');
+                    put((byte) dec);
+                    ensure(-exponent - 1);
+                    for (int i = 0; i < -exponent - 1; i++) {
+                        buf[length++] = '0';
                     }
-                    os.write(tmp.getBytes());
+                    putDigits(mantissa, 0);
+                }
+            } else {
+                long scale = pow10(nsig - 1);
+                putDigits(mantissa / scale, 0);
+                if (nsig > 1) {
+                    put((byte) dec);
+                    putFraction(mantissa % scale, nsig - 1);
                 }
-                os.write(ceol.getBytes());
+                put((byte) 'e');
+                put((byte) (exponent < 0 ? '-' : '+'));
+                int e = Math.abs(exponent);
+                if (e < 10) {
+                    put((byte) '0');
+                }
+                putDigits(e, 0);
             }
+        }
 
+        /**
+         * Appends {@code v} with leading zeros to {@code n} digits.
+         */
+        private void putFraction(long v, int n) {
+            long scale = pow10(n - 1);
+            while (scale > 1 && v < scale) {
+                put((byte) '0');
+                scale /= 10;
+            }
+            putDigits(v, 0);
+        }
+
+        private static long pow10(int n) {
+            long result = 1;
+            for (int i = 0; i < n; i++) {
+                result *= 10;
+            }
+            return result;
+        }
+
+        /**
+         * Rounds {@code v} to 15 significant digits using its shortest representation (as given by
+         * {@link Double#toString}), which is only valid if that has no more than 15 digits or is not
+         * close to a rounding boundary, as the exact value may differ from it by a few units in
+         * the 17th digit.
+         *
+         * @return the mantissa and exponent, or {@code null} if the exact value has to be rounded
+         */
+        private static long[] roundShortest(double v) {
+            String s = Double.toString(v);
+            long mantissa = 0;
+            int count = 0;
+            int dropped = 0;
+            int droppedDigits = 0;
+            int pointPos = -1;
+            int leadingZeros = 0;
+            int exponent = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '.') {
+                    pointPos = i;
+                } else if (c == 'E') {
+                    exponent = Integer.parseInt(s.substring(i + 1));
+                    break;
+                } else if (c == '0' && count == 0) {
+                    leadingZeros++;
+                } else if (count < DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    count++;
+                } else {
+                    if (droppedDigits < 2) {
+                        dropped = dropped * 10 + (c - '0');
+                        droppedDigits++;
+                    } else if (c != '0') {
+                        return null;
+                    }
+                }
+            }
+            if (pointPos < 0) {
+                pointPos = s.indexOf('E') < 0 ? s.length() : s.indexOf('E');
+            }
+            // the decimal exponent of the first significant digit
+            int leading = pointPos - leadingZeros - 1 + exponent;
+            if (droppedDigits > 0) {
+                if (droppedDigits == 1) {
+                    dropped *= 10;
+                }
+                if (dropped >= 39 && dropped <= 61) {
+                    return null;
+                }
+                if (dropped >= 50) {
+                    mantissa++;
+                }
+            }
+            for (int i = count; i < DIGITS; i++) {
+                mantissa *= 10;
+            }
+            if (mantissa == MAX_MANTISSA) {
+                mantissa /= 10;
+                leading++;
+            }
+            return new long[]{mantissa, leading};
         }
-        return RNull.instance;
     }
 
     private static String encodeStringElement(String p0, boolean quote, boolean qmethod) {
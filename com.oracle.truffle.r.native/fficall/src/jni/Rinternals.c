@@ -987,7 +987,8 @@ int *INTEGER(SEXP x){
 	    jintArray intArray = (*thisenv)->CallStaticObjectMethod(thisenv, CallRFFIHelperClass, INTEGER_MethodID, x);
 	    int len = (*thisenv)->GetArrayLength(thisenv, intArray);
 	    data = (*thisenv)->GetIntArrayElements(thisenv, intArray, NULL);
-	    addCopiedObject(thisenv, x, INTSXP, intArray, data);
+	    // INTEGER is also used on logical vectors, which have to be updated on return as for LOGICAL
+	    addCopiedObject(thisenv, x, TYPEOF(x) == LGLSXP ? LGLSXP : INTSXP, intArray, data);
 	}
 	return data;
 }
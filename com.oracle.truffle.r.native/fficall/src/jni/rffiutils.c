@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -40,6 +40,7 @@ static jclass RInternalErrorClass;
 static jmethodID unimplementedMethodID;
 jmethodID createSymbolMethodID;
 static jmethodID validateMethodID;
+static jmethodID setLogicalFromWideMethodID;
 
 JNIEnv *curenv = NULL;
 jmp_buf *callErrorJmpBuf;
@@ -64,6 +65,9 @@ static CopiedVector *copiedVectors;
 // hwm of copiedVectors
 static int copiedVectorsIndex;
 static int copiedVectorsLength;
+// index of the most recently found entry, checked first as the typical access pattern
+// is a loop over the elements of one vector, e.g. LOGICAL(x)[i]
+static int lastCopiedIndex;
 
 
 void init_utils(JNIEnv *env) {
@@ -75,6 +79,7 @@ void init_utils(JNIEnv *env) {
 	unimplementedMethodID = checkGetMethodID(env, RInternalErrorClass, "unimplemented", "(Ljava/lang/String;)Ljava/lang/RuntimeException;", 1);
 	createSymbolMethodID = checkGetMethodID(env, RDataFactoryClass, "createSymbolInterned", "(Ljava/lang/String;)Lcom/oracle/truffle/r/runtime/data/RSymbol;", 1);
     validateMethodID = checkGetMethodID(env, CallRFFIHelperClass, "validate", "(Ljava/lang/Object;)Ljava/lang/Object;", 1);
+    setLogicalFromWideMethodID = checkGetMethodID(env, CallRFFIHelperClass, "setLogicalFromWide", "(Ljava/lang/Object;[I)V", 1);
     for (int i = 0; i < CACHED_GLOBALREFS_TABLE_SIZE; i++) {
     	cachedGlobalRefs[i] = NULL;
     }
@@ -96,12 +101,32 @@ jmp_buf *getErrorJmpBuf() {
 void callExit(JNIEnv *env) {
 //	printf("callExit\n");
 	int i;
+	// no upcalls are allowed with an exception pending, so it is set aside and rethrown at the end
+	jthrowable pending = (*env)->ExceptionOccurred(env);
+	if (pending != NULL) {
+		(*env)->ExceptionClear(env);
+	}
 	for (i = 0; i < copiedVectorsIndex; i++) {
 		CopiedVector cv = copiedVectors[i];
 		switch (cv.type) {
-		    case INTSXP: case LGLSXP: {
+		    case INTSXP: {
+			    jintArray intArray = (jintArray) cv.jArray;
+			    (*env)->ReleaseIntArrayElements(env, intArray, (jint *)cv.data, 0);
+			    break;
+		    }
+
+		    case LGLSXP: {
+			    // the array is a copy of the (byte-based) logical vector, so propagate any updates
 			    jintArray intArray = (jintArray) cv.jArray;
 			    (*env)->ReleaseIntArrayElements(env, intArray, (jint *)cv.data, 0);
+			    (*env)->CallStaticVoidMethod(env, CallRFFIHelperClass, setLogicalFromWideMethodID, cv.obj, intArray);
+			    if ((*env)->ExceptionCheck(env)) {
+				    // keep the first exception, the remaining vectors must still be released
+				    if (pending == NULL) {
+					    pending = (*env)->ExceptionOccurred(env);
+				    }
+				    (*env)->ExceptionClear(env);
+			    }
 			    break;
 		    }
 
@@ -123,14 +148,22 @@ void callExit(JNIEnv *env) {
 		}
 	}
 	copiedVectorsIndex = 0;
+	lastCopiedIndex = 0;
+	if (pending != NULL) {
+		(*env)->Throw(env, pending);
+	}
 }
 
 void *findCopiedObject(JNIEnv *env, SEXP x) {
 	int i;
+	if (lastCopiedIndex < copiedVectorsIndex && (*env)->IsSameObject(env, copiedVectors[lastCopiedIndex].obj, x)) {
+		return copiedVectors[lastCopiedIndex].data;
+	}
 	for (i = 0; i < copiedVectorsIndex; i++) {
 		CopiedVector cv = copiedVectors[i];
 		if ((*env)->IsSameObject(env, cv.obj, x)) {
 			void *data = cv.data;
+			lastCopiedIndex = i;
 #if TRACE_COPIES
 			printf("findCopiedObject(%p): found %p\n", x, data);
 #endif
@@ -162,6 +195,7 @@ void addCopiedObject(JNIEnv *env, SEXP x, SEXPTYPE type, void *jArray, void *dat
 	copiedVectors[copiedVectorsIndex].data = data;
 	copiedVectors[copiedVectorsIndex].type = type;
 	copiedVectors[copiedVectorsIndex].jArray = jArray;
+	lastCopiedIndex = copiedVectorsIndex;
 	copiedVectorsIndex++;
 #if TRACE_COPIES
 	printf("copiedVectorsIndex: %d\n", copiedVectorsIndex);
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -58,6 +58,18 @@ import com.oracle.truffle.r.runtime.nodes.*;
  *
  */
 public abstract class ConnectionFunctions {
+
+    /**
+     * Records the {@code encoding} argument of a connection builtin, used when reading text.
+     */
+    private static BaseRConnection setEncoding(RBuiltinNode node, BaseRConnection conn, RAbstractStringVector encoding) {
+        String encodingName = encoding.getDataAt(0);
+        if (!conn.setEncoding(encodingName)) {
+            RError.warning(node, RError.Message.UNSUPPORTED_ENCODING_CONVERSION, encodingName, "UTF-8");
+        }
+        return conn;
+    }
+
     @RBuiltin(name = "stdin", kind = INTERNAL, parameterNames = {})
     public abstract static class Stdin extends RBuiltinNode {
         @Specialization
@@ -88,12 +100,16 @@ public abstract class ConnectionFunctions {
         }
     }
 
-    @RBuiltin(name = "file", kind = INTERNAL, parameterNames = {"description", "open", "blocking", "encoding", "raw"})
+    /**
+     * {@code file} takes an additional (FastR specific) argument {@code mmap}, see
+     * {@code connections_overrides.R}, that requests the file to be mapped into memory when opened
+     * for reading.
+     */
+    @RBuiltin(name = "file", kind = INTERNAL, parameterNames = {"description", "open", "blocking", "encoding", "raw", "mmap"})
     public abstract static class File extends RBuiltinNode {
         @Specialization
         @TruffleBoundary
-        @SuppressWarnings("unused")
-        protected Object file(RAbstractStringVector description, RAbstractStringVector openVec, byte blocking, RAbstractStringVector encoding, byte raw) {
+        protected Object file(RAbstractStringVector description, RAbstractStringVector openVec, byte blocking, RAbstractStringVector encoding, @SuppressWarnings("unused") byte raw, byte mmap) {
             controlVisibility();
             if (!RRuntime.fromLogical(blocking)) {
                 throw RError.nyi(this, "non-blocking mode not supported");
@@ -119,7 +135,7 @@ public abstract class ConnectionFunctions {
                 }
             }
             try {
-                return new FileRConnection(path, open);
+                return setEncoding(this, new FileRConnection(path, open, RRuntime.fromLogical(mmap)), encoding);
             } catch (IOException ex) {
                 RError.warning(this, RError.Message.CANNOT_OPEN_FILE, description.getDataAt(0), ex.getMessage());
                 throw RError.error(this, RError.Message.CANNOT_OPEN_CONNECTION);
@@ -128,7 +144,7 @@ public abstract class ConnectionFunctions {
 
         @SuppressWarnings("unused")
         @Fallback
-        protected Object file(Object description, Object open, Object blocking, Object encoding, Object raw) {
+        protected Object file(Object description, Object open, Object blocking, Object encoding, Object raw, Object mmap) {
             controlVisibility();
             throw RError.error(this, RError.Message.INVALID_UNNAMED_ARGUMENTS);
         }
@@ -147,11 +163,11 @@ public abstract class ConnectionFunctions {
         protected Object gzFile(RAbstractStringVector description, RAbstractStringVector open, RAbstractStringVector encoding, double compression) {
             controlVisibility();
             try {
-                return new GZIPRConnection(description.getDataAt(0), open.getDataAt(0));
+                return setEncoding(this, new GZIPRConnection(description.getDataAt(0), open.getDataAt(0)), encoding);
             } catch (ZipException ex) {
                 // wasn't a gzip file, try uncompressed text
                 try {
-                    return new FileRConnection(description.getDataAt(0), "r");
+                    return setEncoding(this, new FileRConnection(description.getDataAt(0), "r"), encoding);
                 } catch (IOException ex1) {
                     throw reportError(description.getDataAt(0), ex1);
                 }
@@ -236,10 +252,10 @@ public abstract class ConnectionFunctions {
     public abstract static class URLConnection extends RBuiltinNode {
         @Specialization
         @TruffleBoundary
-        protected Object urlConnection(RAbstractStringVector url, RAbstractStringVector open, @SuppressWarnings("unused") byte blocking, @SuppressWarnings("unused") RAbstractStringVector encoding) {
+        protected Object urlConnection(RAbstractStringVector url, RAbstractStringVector open, @SuppressWarnings("unused") byte blocking, RAbstractStringVector encoding) {
             controlVisibility();
             try {
-                return new URLRConnection(url.getDataAt(0), open.getDataAt(0));
+                return setEncoding(this, new URLRConnection(url.getDataAt(0), open.getDataAt(0)), encoding);
             } catch (MalformedURLException ex) {
                 throw RError.error(this, RError.Message.UNSUPPORTED_URL_SCHEME);
             } catch (IOException ex) {
@@ -672,54 +688,51 @@ public abstract class ConnectionFunctions {
         }
 
         private static RIntVector readInteger(RConnection con, int n, boolean swap) throws IOException {
-            ByteBuffer buffer = ByteBuffer.allocate(n * 4);
-            int bytesRead = con.readBin(buffer);
+            ByteBuffer buffer = con.readBinBuffer(n * 4);
+            int bytesRead = buffer.remaining();
             if (bytesRead == 0) {
                 return RDataFactory.createEmptyIntVector();
             }
-            buffer.flip();
             IntBuffer intBuffer = checkOrder(buffer, swap).asIntBuffer();
             int nInts = bytesRead / 4;
             int[] data = new int[nInts];
+            intBuffer.get(data);
             boolean complete = RDataFactory.COMPLETE_VECTOR;
             for (int i = 0; i < nInts; i++) {
-                int d = intBuffer.get();
-                if (RRuntime.isNA(d)) {
+                if (RRuntime.isNA(data[i])) {
                     complete = RDataFactory.INCOMPLETE_VECTOR;
+                    break;
                 }
-                data[i] = d;
             }
             return RDataFactory.createIntVector(data, complete);
         }
 
         private static RDoubleVector readDouble(RConnection con, int n, boolean swap) throws IOException {
-            ByteBuffer buffer = ByteBuffer.allocate(n * 8);
-            int bytesRead = con.readBin(buffer);
+            ByteBuffer buffer = con.readBinBuffer(n * 8);
+            int bytesRead = buffer.remaining();
             if (bytesRead == 0) {
                 return RDataFactory.createEmptyDoubleVector();
             }
-            buffer.flip();
             DoubleBuffer doubleBuffer = checkOrder(buffer, swap).asDoubleBuffer();
             int nDoubles = bytesRead / 8;
-            boolean complete = RDataFactory.COMPLETE_VECTOR;
             double[] data = new double[nDoubles];
+            doubleBuffer.get(data);
+            boolean complete = RDataFactory.COMPLETE_VECTOR;
             for (int i = 0; i < nDoubles; i++) {
-                double d = doubleBuffer.get();
-                if (RRuntime.isNA(d)) {
+                if (RRuntime.isNA(data[i])) {
                     complete = RDataFactory.INCOMPLETE_VECTOR;
+                    break;
                 }
-                data[i] = d;
             }
             return RDataFactory.createDoubleVector(data, complete);
         }
 
         private static RComplexVector readComplex(RConnection con, int n, boolean swap) throws IOException {
-            ByteBuffer buffer = ByteBuffer.allocate(n * 16);
-            int bytesRead = con.readBin(buffer);
+            ByteBuffer buffer = con.readBinBuffer(n * 16);
+            int bytesRead = buffer.remaining();
             if (bytesRead == 0) {
                 return RDataFactory.createEmptyComplexVector();
             }
-            buffer.flip();
             DoubleBuffer doubleBuffer = checkOrder(buffer, swap).asDoubleBuffer();
             int nComplex = bytesRead / 16;
             boolean complete = RDataFactory.COMPLETE_VECTOR;
@@ -758,24 +771,22 @@ public abstract class ConnectionFunctions {
         }
 
         private static RRawVector readRaw(RConnection con, int n) throws IOException {
-            ByteBuffer buffer = ByteBuffer.allocate(n);
-            int bytesRead = con.readBin(buffer);
+            ByteBuffer buffer = con.readBinBuffer(n);
+            int bytesRead = buffer.remaining();
             if (bytesRead == 0) {
                 return RDataFactory.createEmptyRawVector();
             }
-            buffer.flip();
             byte[] data = new byte[bytesRead];
             buffer.get(data);
             return RDataFactory.createRawVector(data);
         }
 
         private static RLogicalVector readLogical(RConnection con, int n, boolean swap) throws IOException {
-            ByteBuffer buffer = ByteBuffer.allocate(n * 4);
-            int bytesRead = con.readBin(buffer);
+            ByteBuffer buffer = con.readBinBuffer(n * 4);
+            int bytesRead = buffer.remaining();
             if (bytesRead == 0) {
                 return RDataFactory.createEmptyLogicalVector();
             }
-            buffer.flip();
             IntBuffer intBuffer = checkOrder(buffer, swap).asIntBuffer();
             int nInts = bytesRead / 4;
             byte[] data = new byte[nInts];
@@ -377,7 +377,7 @@ public class EnvFunctions {
         protected REnvironment newEnv(byte hash, REnvironment parent, int size) {
             controlVisibility();
             REnvironment env = RDataFactory.createNewEnv(null, RRuntime.fromLogical(hash), size);
-            RArguments.initializeEnclosingFrame(env.getFrame(), parent.getFrame());
+            RArguments.initializeEnclosingFrame(env.getFrameForLinkage(), parent.getFrame());
             return env;
         }
     }
@@ -5,7 +5,7 @@
  *
  * Copyright (c) 1995-2015, The R Core Team
  * Copyright (c) 2003, The R Foundation
- * Copyright (c) 2015, Oracle and/or its affiliates
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates
  *
  * All rights reserved.
  */
@@ -21,6 +21,7 @@ import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.*;
 import com.oracle.truffle.r.nodes.builtin.*;
 import com.oracle.truffle.r.runtime.*;
+import com.oracle.truffle.r.runtime.context.*;
 import com.oracle.truffle.r.runtime.data.*;
 import com.oracle.truffle.r.runtime.data.model.*;
 import com.oracle.truffle.r.runtime.ffi.*;
@@ -40,6 +41,9 @@ import com.oracle.truffle.r.runtime.ops.na.*;
  * ASCII.
  * <p>
  * Parts of this code, notably the perl support, were translated from GnuR grep.c.
+ * <p>
+ * Compiled patterns, both Java and PCRE, are obtained from the per-context cache in
+ * {@link RegExp.ContextStateImpl} rather than being compiled on every call (or element).
  */
 public class GrepFunctions {
     public abstract static class CommonCodeAdapter extends RBuiltinNode {
@@ -141,17 +145,40 @@ public class GrepFunctions {
             return RDataFactory.createIntVector(naData, RDataFactory.INCOMPLETE_VECTOR);
         }
 
+        /**
+         * Returns the (cached) PCRE compilation of {@code pattern}, throwing an R error if it is
+         * invalid.
+         */
+        protected PCRERFFI.Result compilePerl(String pattern, boolean ignoreCase, boolean useBytes) {
+            PCRERFFI.Result pcre = RContext.getInstance().stateRegExp.getPCREPattern(pattern, ignoreCase, useBytes);
+            if (pcre.result == 0) {
+                if (pcre.errorMessage != null) {
+                    RError.warning(this, RError.Message.PCRE_COMPILATION_ERROR, pcre.errorMessage, pattern.substring(Math.min(pcre.errOffset, pattern.length())));
+                }
+                throw RError.error(this, RError.Message.INVALID_REGEXP, pattern);
+            }
+            return pcre;
+        }
+
+        /**
+         * Returns the (cached) Java compilation of the R regular expression {@code pattern}.
+         */
+        protected static Pattern compileRegex(String pattern, boolean fixed, boolean ignoreCase, boolean useBytes) {
+            return RContext.getInstance().stateRegExp.getPattern(pattern, fixed, ignoreCase, useBytes);
+        }
+
     }
 
     private abstract static class GrepAdapter extends CommonCodeAdapter {
         protected Object doGrep(RAbstractStringVector patternArgVec, RAbstractStringVector vector, byte ignoreCaseLogical, byte valueLogical, byte perlLogical, byte fixedLogical,
-                        @SuppressWarnings("unused") byte useBytes, byte invertLogical, boolean grepl) {
+                        byte useBytesLogical, byte invertLogical, boolean grepl) {
             controlVisibility();
             boolean value = RRuntime.fromLogical(valueLogical);
             boolean invert = RRuntime.fromLogical(invertLogical);
             boolean perl = RRuntime.fromLogical(perlLogical);
             boolean ignoreCase = RRuntime.fromLogical(ignoreCaseLogical);
             boolean fixed = RRuntime.fromLogical(fixedLogical);
+            boolean useBytes = RRuntime.fromLogical(useBytesLogical);
             perl = checkPerlFixed(RRuntime.fromLogical(perlLogical), fixed);
             checkCaseFixed(ignoreCase, fixed);
 
@@ -168,14 +195,7 @@ public class GrepFunctions {
                 }
                 findAllMatches(matches, pattern, vector, fixed, ignoreCase);
             } else {
-                int cflags = ignoreCase ? PCRERFFI.CASELESS : 0;
-                long tables = RFFIFactory.getRFFI().getPCRERFFI().maketables();
-                PCRERFFI.Result pcre = RFFIFactory.getRFFI().getPCRERFFI().compile(pattern, cflags, tables);
-                if (pcre.result == 0) {
-                    // TODO output warning if pcre.errorMessage not NULL
-                    throw RError.error(this, RError.Message.INVALID_REGEXP, pattern);
-                }
-                // TODO pcre_study for vectors > 10 ? (cf GnuR)
+                PCRERFFI.Result pcre = compilePerl(pattern, ignoreCase, useBytes);
                 int[] ovector = new int[30];
                 for (int i = 0; i < len; i++) {
                     String text = vector.getDataAt(i);
@@ -236,23 +256,19 @@ public class GrepFunctions {
         }
 
         protected void findAllMatches(boolean[] result, String pattern, RAbstractStringVector vector, boolean fixed, boolean ignoreCase) {
+            Pattern compiled = fixed ? null : compileRegex(pattern, false, ignoreCase, false);
             for (int i = 0; i < result.length; i++) {
                 String text = vector.getDataAt(i);
                 if (!RRuntime.isNA(text)) {
                     if (fixed) {
                         result[i] = text.contains(pattern);
                     } else {
-                        result[i] = findMatch(pattern, text, ignoreCase);
+                        result[i] = compiled.matcher(text).find();
                     }
                 }
             }
         }
 
-        protected static boolean findMatch(String pattern, String text, boolean ignoreCase) {
-            Matcher m = Regexp.getPatternMatcher(pattern, text, ignoreCase);
-            return m.find();
-        }
-
     }
 
     @RBuiltin(name = "grep", kind = INTERNAL, parameterNames = {"pattern", "x", "ignore.case", "perl", "value", "fixed", "useBytes", "invert"})
@@ -281,11 +297,12 @@ public class GrepFunctions {
     protected abstract static class SubAdapter extends CommonCodeAdapter {
 
         protected RStringVector doSub(RAbstractStringVector patternArgVec, RAbstractStringVector replacementVec, RAbstractStringVector vector, byte ignoreCaseLogical, byte perlLogical,
-                        byte fixedLogical, @SuppressWarnings("unused") byte useBytes, boolean gsub) {
+                        byte fixedLogical, byte useBytesLogical, boolean gsub) {
             try {
                 boolean perl = RRuntime.fromLogical(perlLogical);
                 boolean fixed = RRuntime.fromLogical(fixedLogical);
                 boolean ignoreCase = RRuntime.fromLogical(ignoreCaseLogical);
+                boolean useBytes = RRuntime.fromLogical(useBytesLogical);
                 checkNotImplemented(!(perl || fixed) && ignoreCase, "ignoreCase", true);
                 checkCaseFixed(ignoreCase, fixed);
                 perl = checkPerlFixed(perl, fixed);
@@ -308,19 +325,14 @@ public class GrepFunctions {
                 }
 
                 PCRERFFI.Result pcre = null;
+                Pattern compiled = null;
                 if (fixed) {
                     // TODO case
                 } else if (perl) {
-                    int cflags = ignoreCase ? PCRERFFI.CASELESS : 0;
-                    long tables = RFFIFactory.getRFFI().getPCRERFFI().maketables();
-                    pcre = RFFIFactory.getRFFI().getPCRERFFI().compile(pattern, cflags, tables);
-                    if (pcre.result == 0) {
-                        // TODO output warning if pcre.errorMessage not NULL
-                        throw RError.error(this, RError.Message.INVALID_REGEXP, pattern);
-                    }
-                    // TODO pcre_study for vectors > 10 ? (cf GnuR)
+                    pcre = compilePerl(pattern, ignoreCase, useBytes);
                 } else {
-                    pattern = RegExp.checkPreDefinedClasses(pattern);
+                    compiled = compileRegex(pattern, false, false, useBytes);
+                    replacement = convertGroups(replacement);
                 }
                 String[] result = new String[len];
                 for (int i = 0; i < len; i++) {
@@ -373,12 +385,10 @@ public class GrepFunctions {
                             value = sb.toString();
                         }
                     } else {
-                        replacement = convertGroups(replacement);
-
                         if (gsub) {
-                            value = input.replaceAll(pattern, replacement);
+                            value = compiled.matcher(input).replaceAll(replacement);
                         } else {
-                            value = input.replaceFirst(pattern, replacement);
+                            value = compiled.matcher(input).replaceFirst(replacement);
                         }
                     }
                     result[i] = value;
@@ -562,7 +572,7 @@ public class GrepFunctions {
             controlVisibility();
             checkExtraArgs(RRuntime.LOGICAL_FALSE, perlL, RRuntime.LOGICAL_FALSE, useBytesL, RRuntime.LOGICAL_FALSE);
             boolean ignoreCase = RRuntime.fromLogical(ignoreCaseL);
-            String pattern = RegExp.checkPreDefinedClasses(patternArg.getDataAt(0));
+            String pattern = patternArg.getDataAt(0);
             int[] result = new int[vector.getLength()];
             for (int i = 0; i < vector.getLength(); i++) {
                 result[i] = findIndex(pattern, vector.getDataAt(i), ignoreCase, fixedL == RRuntime.LOGICAL_TRUE).get(0);
@@ -570,6 +580,10 @@ public class GrepFunctions {
             return RDataFactory.createIntVector(result, RDataFactory.COMPLETE_VECTOR);
         }
 
+        /**
+         * N.B. {@code pattern} is the R pattern, it is translated (and cached) by
+         * {@link #getPatternMatcher} when required.
+         */
         protected static List<Integer> findIndex(String pattern, String text, boolean ignoreCase, boolean fixed) {
             List<Integer> list = new ArrayList<>();
             if (!fixed) {
@@ -596,7 +610,7 @@ public class GrepFunctions {
 
         @TruffleBoundary
         public static Matcher getPatternMatcher(String pattern, String text, boolean ignoreCase) {
-            return Pattern.compile(pattern, ignoreCase ? Pattern.CASE_INSENSITIVE : 0).matcher(text);
+            return compileRegex(pattern, false, ignoreCase, false).matcher(text);
         }
     }
 
@@ -610,7 +624,7 @@ public class GrepFunctions {
             controlVisibility();
             checkExtraArgs(RRuntime.LOGICAL_FALSE, perlL, fixedL, useBytesL, RRuntime.LOGICAL_FALSE);
             boolean ignoreCase = RRuntime.fromLogical(ignoreCaseL);
-            String pattern = RegExp.checkPreDefinedClasses(patternArg.getDataAt(0));
+            String pattern = patternArg.getDataAt(0);
             Object[] result = new Object[vector.getLength()];
             for (int i = 0; i < vector.getLength(); i++) {
                 int[] data = toIntArray(findIndex(pattern, vector.getDataAt(i), ignoreCase, true));
@@ -759,29 +773,27 @@ public class GrepFunctions {
 
         @Specialization
         @TruffleBoundary
-        protected RList split(RAbstractStringVector x, RAbstractStringVector splitArg, byte fixedLogical, byte perlLogical, @SuppressWarnings("unused") byte useBytes) {
+        protected RList split(RAbstractStringVector x, RAbstractStringVector splitArg, byte fixedLogical, byte perlLogical, byte useBytesLogical) {
             controlVisibility();
             boolean fixed = RRuntime.fromLogical(fixedLogical);
             boolean perl = checkPerlFixed(RRuntime.fromLogical(perlLogical), fixed);
+            boolean useBytes = RRuntime.fromLogical(useBytesLogical);
             RStringVector[] result = new RStringVector[x.getLength()];
             // treat split = NULL as split = ""
             RAbstractStringVector split = splitArg.getLength() == 0 ? RDataFactory.createStringVectorFromScalar("") : splitArg;
             String[] splits = new String[split.getLength()];
-            long pcreTables = perl ? RFFIFactory.getRFFI().getPCRERFFI().maketables() : 0;
             PCRERFFI.Result[] pcreSplits = perl ? new PCRERFFI.Result[splits.length] : null;
+            Pattern[] regexSplits = perl ? null : new Pattern[splits.length];
 
             na.enable(x);
             for (int i = 0; i < splits.length; i++) {
                 String currentSplit = split.getDataAt(i);
-                splits[i] = fixed || perl ? split.getDataAt(i) : RegExp.checkPreDefinedClasses(split.getDataAt(i));
-                if (perl) {
-                    if (!currentSplit.isEmpty()) {
-                        pcreSplits[i] = RFFIFactory.getRFFI().getPCRERFFI().compile(currentSplit, 0, pcreTables);
-                        if (pcreSplits[i].result == 0) {
-                            // TODO output warning if pcre.errorMessage not NULL
-                            throw RError.error(this, RError.Message.INVALID_REGEXP, currentSplit);
-                        }
-                        // TODO pcre_study for vectors > 10 ? (cf GnuR)
+                splits[i] = currentSplit;
+                if (!currentSplit.isEmpty() && !RRuntime.isNA(currentSplit)) {
+                    if (perl) {
+                        pcreSplits[i] = compilePerl(currentSplit, false, useBytes);
+                    } else {
+                        regexSplits[i] = compileRegex(currentSplit, fixed, false, useBytes);
                     }
                 }
             }
@@ -801,7 +813,7 @@ public class GrepFunctions {
                         if (perl) {
                             resultItem = splitPerl(data, pcreSplits[i % splits.length]);
                         } else {
-                            resultItem = splitIntl(data, currentSplit);
+                            resultItem = splitIntl(data, regexSplits[i % splits.length]);
                         }
                     }
                     result[i] = resultItem;
@@ -825,9 +837,9 @@ public class GrepFunctions {
             }
         }
 
-        private static RStringVector splitIntl(String input, String separator) {
+        private static RStringVector splitIntl(String input, Pattern separator) {
             assert !RRuntime.isNA(input);
-            return RDataFactory.createStringVector(input.split(separator), true);
+            return RDataFactory.createStringVector(separator.split(input), true);
         }
 
         private static RStringVector emptySplitIntl(String input) {
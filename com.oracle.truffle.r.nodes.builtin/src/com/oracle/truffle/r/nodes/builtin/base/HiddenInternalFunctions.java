@@ -192,14 +192,47 @@ public class HiddenInternalFunctions {
             }
             String dbPath = datafile.getDataAt(0);
             String packageName = new File(dbPath).getName();
-            byte[] dbData = RContext.getInstance().stateLazyDBCache.getData(dbPath);
             int dotIndex;
             if ((dotIndex = packageName.lastIndexOf('.')) > 0) {
                 packageName = packageName.substring(0, dotIndex);
             }
             int offset = key.getDataAt(0);
             int length = key.getDataAt(1);
-            int outlen = getOutlen(dbData, offset); // length of uncompressed data
+            LazyDBCache.Value cached = LazyDBCache.getValue(dbPath, offset, length);
+            if (cached != null && cached.object != null) {
+                return cached.object;
+            }
+            byte[] udata;
+            if (cached != null) {
+                udata = cached.data;
+            } else {
+                udata = uncompressValue(dbPath, offset, length, compression);
+                if (udata == null) {
+                    return RNull.instance;
+                }
+            }
+            try {
+                RSerialize.CallHook callHook = new RSerialize.CallHook() {
+                    public Object eval(Object arg) {
+                        Object[] callArgs = RArguments.create(envhook, caller, null, RArguments.getDepth(frame) + 1, new Object[]{arg}, SIGNATURE, null);
+                        return callCache.execute(new SubstituteVirtualFrame(frame), envhook.getTarget(), callArgs);
+                    }
+                };
+                String functionName = ReadVariableNode.getSlowPathEvaluationName();
+                Object result = RSerialize.unserialize(udata, callHook, packageName, functionName);
+                return cached == null ? LazyDBCache.putValue(dbPath, offset, length, udata, result) : result;
+            } catch (IOException ex) {
+                // unexpected
+                throw RInternalError.shouldNotReachHere(ex);
+            }
+        }
+
+        /**
+         * Returns the uncompressed data of the value at {@code offset/length} in {@code dbPath}, or
+         * {@code null} if the compression type is unknown.
+         */
+        private byte[] uncompressValue(String dbPath, int offset, int length, int compression) {
+            ByteBuffer dbData = LazyDBCache.getSlice(dbPath, offset, length);
             byte[] udata = null;
             boolean rc = true;
             /*
@@ -211,49 +244,32 @@ public class HiddenInternalFunctions {
              */
             if (compression == 0) {
                 udata = new byte[length];
-                System.arraycopy(dbData, offset, udata, 0, length);
+                dbData.get(udata);
             } else {
+                int outlen = dbData.getInt(0); // length of uncompressed data
                 udata = new byte[outlen];
                 if (compression == 2 || compression == 3) {
-                    RCompression.Type type = RCompression.Type.fromTypeChar(dbData[4]);
+                    RCompression.Type type = RCompression.Type.fromTypeChar(dbData.get(4));
                     if (type == null) {
                         RError.warning(this, RError.Message.GENERIC, "unknown compression type");
-                        return RNull.instance;
+                        return null;
                     }
                     byte[] data = new byte[length - 5];
-                    System.arraycopy(dbData, offset + 5, data, 0, data.length);
+                    dbData.position(5);
+                    dbData.get(data);
                     rc = RCompression.uncompress(type, udata, data);
                 } else {
                     // GnuR treats any other value as 1
                     byte[] data = new byte[length - 4];
-                    System.arraycopy(dbData, offset + 4, data, 0, data.length);
+                    dbData.position(4);
+                    dbData.get(data);
                     rc = RCompression.uncompress(RCompression.Type.GZIP, udata, data);
                 }
             }
             if (!rc) {
                 throw RError.error(this, RError.Message.LAZY_LOAD_DB_CORRUPT, dbPath);
             }
-            try {
-                RSerialize.CallHook callHook = new RSerialize.CallHook() {
-                    public Object eval(Object arg) {
-                        Object[] callArgs = RArguments.create(envhook, caller, null, RArguments.getDepth(frame) + 1, new Object[]{arg}, SIGNATURE, null);
-                        return callCache.execute(new SubstituteVirtualFrame(frame), envhook.getTarget(), callArgs);
-                    }
-                };
-                String functionName = ReadVariableNode.getSlowPathEvaluationName();
-                Object result = RSerialize.unserialize(udata, callHook, packageName, functionName);
-                return result;
-            } catch (IOException ex) {
-                // unexpected
-                throw RInternalError.shouldNotReachHere(ex);
-            }
-        }
-
-        private static int getOutlen(byte[] dbData, int offset) {
-            ByteBuffer dataLengthBuf = ByteBuffer.allocate(4);
-            dataLengthBuf.put(dbData, offset, 4);
-            dataLengthBuf.position(0);
-            return dataLengthBuf.getInt();
+            return udata;
         }
 
     }
@@ -371,36 +387,38 @@ public class HiddenInternalFunctions {
             };
 
             try {
-                byte[] data = RSerialize.serialize(value, RRuntime.fromLogical(asciiL), false, RSerialize.DEFAULT_VERSION, callHook);
-                // See comment in LazyLoadDBFetch for format
-                int outLen;
-                int offset;
+                /*
+                 * The value is serialized directly into the compressor, so only the compressed data
+                 * is held in memory. It cannot be written to the file as it is produced because the
+                 * uncompressed length precedes it.
+                 */
                 RCompression.Type type;
-                byte[] cdata;
+                int offset;
                 if (compression == 1) {
                     type = RCompression.Type.GZIP;
                     offset = 4;
-                    outLen = (int) (1.001 * data.length) + 20;
-                    cdata = new byte[outLen];
-                    boolean rc = RCompression.compress(type, data, cdata);
-                    if (!rc) {
-                        throw RError.error(this, Message.GENERIC, "zlib compress error");
-                    }
                 } else if (compression == 3) {
                     type = RCompression.Type.LZMA;
                     offset = 5;
-                    outLen = data.length;
-                    cdata = new byte[outLen];
-                    boolean rc = RCompression.compress(type, data, cdata);
-                    if (!rc) {
-                        throw RError.error(this, Message.GENERIC, "lzma compress error");
-                    }
                 } else {
                     throw RInternalError.shouldNotReachHere();
                 }
+                ByteArrayOutputStream cout = new ByteArrayOutputStream();
+                RCompression.CompressingOutputStream out;
+                try {
+                    out = RCompression.compressStream(type, cout);
+                    try {
+                        RSerialize.serialize(out, value, RRuntime.fromLogical(asciiL), false, RSerialize.DEFAULT_VERSION, callHook);
+                    } finally {
+                        out.close();
+                    }
+                } catch (IOException ex) {
+                    throw RError.error(this, Message.GENERIC, (type == RCompression.Type.GZIP ? "zlib" : "lzma") + " compress error");
+                }
+                byte[] cdata = cout.toByteArray();
                 int[] intData = new int[2];
-                intData[1] = outLen + offset; // include length + type (compression == 3)
-                intData[0] = appendFile(file.getDataAt(0), cdata, data.length, type);
+                intData[1] = cdata.length + offset; // include length + type (compression == 3)
+                intData[0] = appendFile(file.getDataAt(0), cdata, (int) out.getUncompressedLength(), type);
                 return RDataFactory.createIntVector(intData, RDataFactory.COMPLETE_VECTOR);
             } catch (Throwable ex) {
                 // Exceptions have been observed that were masked and very hard to find
@@ -425,6 +443,8 @@ public class HiddenInternalFunctions {
          * @return offset in file of appended data
          */
         private int appendFile(String path, byte[] cdata, int ulen, RCompression.Type type) {
+            // the database may have been truncated and is being rewritten
+            LazyDBCache.remove(path);
             File file = new File(path);
             try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
                 int result = (int) file.length();
@@ -450,7 +470,7 @@ public class HiddenInternalFunctions {
     public abstract static class LazyLoadDBFlush extends RBuiltinNode {
         @Specialization
         protected RNull doLazyLoadDBFlush(RAbstractStringVector dbPath) {
-            RContext.getInstance().stateLazyDBCache.remove(dbPath.getDataAt(0));
+            LazyDBCache.remove(dbPath.getDataAt(0));
             return RNull.instance;
         }
     }
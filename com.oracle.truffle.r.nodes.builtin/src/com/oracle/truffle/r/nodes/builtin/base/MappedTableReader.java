@@ -0,0 +1,805 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.builtin.base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.FastROptions;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.conn.ConnectionSupport;
+import com.oracle.truffle.r.runtime.conn.FileConnections.FileRConnection;
+import com.oracle.truffle.r.runtime.data.RComplex;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RDouble;
+import com.oracle.truffle.r.runtime.data.RInteger;
+import com.oracle.truffle.r.runtime.data.RList;
+import com.oracle.truffle.r.runtime.data.RLogical;
+import com.oracle.truffle.r.runtime.data.RString;
+import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
+
+/**
+ * A fast path for {@code scan} of records into a list of columns, as used by {@code read.table},
+ * from a file connection. The unread rest of the file is mapped into memory and split into chunks,
+ * which are processed in two parallel phases on the common {@link ForkJoinPool}:
+ * <ol>
+ * <li>Each chunk is scanned for the start of its first record and for the state at its end, for
+ * each state it may start in (outside quotes, inside each kind of quote, inside a comment). The
+ * actual start state, and thereby the first record, of each chunk then follows sequentially.</li>
+ * <li>The records starting in each chunk are split into fields, which are converted directly into
+ * primitive arrays of the column types given by {@code what} (i.e., {@code colClasses}).</li>
+ * </ol>
+ * The chunk results are then concatenated into the columns. Fields are split as by GnuR's
+ * {@code scan} with a separator: quotes can occur anywhere in a character field, a doubled quote
+ * inside quotes stands for the quote itself, and quoted fields may span lines.
+ *
+ * With a limit on the number of records (e.g., {@code nrows}), the chunks are instead processed one
+ * after the other, and the rest of the file is left alone as soon as enough records were parsed.
+ *
+ * Anything that is not supported, e.g., whitespace separated fields, escapes, raw columns, values
+ * that cannot be converted or records with too many fields, makes {@link #read} return
+ * {@code null} without having changed the state of the connection, in which case the general (line
+ * by line) implementation must be used.
+ */
+final class MappedTableReader {
+
+    /**
+     * The minimum size of a chunk, see {@link FastROptions#MappedScanChunkSize}. This, like
+     * {@link #THRESHOLD}, is read when the class is initialized, which happens on the first
+     * {@code scan}, i.e., after the options have been set.
+     */
+    private static final int MIN_CHUNK_SIZE = Math.max(1, FastROptions.MappedScanChunkSize.getNonNegativeIntValue());
+
+    /**
+     * The minimum size of a file for which this reader is used, see
+     * {@link FastROptions#MappedScanThreshold}; zero means never.
+     */
+    private static final int THRESHOLD = FastROptions.MappedScanThreshold.getNonNegativeIntValue();
+
+    private static final int LOGICAL = 0;
+    private static final int INTEGER = 1;
+    private static final int DOUBLE = 2;
+    private static final int COMPLEX = 3;
+    private static final int STRING = 4;
+
+    /**
+     * The states of the record boundary scan; {@code QUOTE + i} is the state inside the i-th quote
+     * character.
+     */
+    private static final int OUTSIDE = 0;
+    private static final int COMMENT = 1;
+    private static final int QUOTE = 2;
+
+    /**
+     * The value of {@link #comment} if there is no comment character, which matches no byte.
+     */
+    private static final int NO_COMMENT = 0x100;
+
+    private final ByteBuffer pushBack;
+    private final ByteBuffer file;
+    private final int[] types;
+    private final int maxRecords;
+    private final boolean fill;
+    private final boolean stripWhite;
+    private final boolean blSkip;
+    private final byte sep;
+    private final byte[] quotes;
+    private final int comment;
+    private final char dec;
+    private final HashSet<String> naStrings;
+    private final Charset encoding;
+
+    private MappedTableReader(ByteBuffer pushBack, ByteBuffer file, int[] types, int maxRecords, boolean fill, boolean stripWhite, boolean blSkip, byte sep, byte[] quotes, int comment, char dec,
+                    HashSet<String> naStrings, Charset encoding) {
+        this.pushBack = pushBack;
+        this.file = file;
+        this.types = types;
+        this.maxRecords = maxRecords;
+        this.fill = fill;
+        this.stripWhite = stripWhite;
+        this.blSkip = blSkip;
+        this.sep = sep;
+        this.quotes = quotes;
+        this.comment = comment < 0 ? NO_COMMENT : comment;
+        this.dec = dec;
+        this.naStrings = naStrings;
+        this.encoding = encoding;
+    }
+
+    private static boolean isEnabled(long size) {
+        return THRESHOLD > 0 && size >= THRESHOLD;
+    }
+
+    /**
+     * Reads the records from the current position of {@code conn} into the (empty) columns of
+     * {@code list}, replacing them, and advances the connection past the records read.
+     *
+     * @param maxRecords the maximum number of records to read, 0 for no limit
+     * @param comment the comment character, or {@code -1}
+     * @return {@code list}, or {@code null} if the input cannot be handled, in which case the
+     *         connection is unchanged
+     */
+    @TruffleBoundary
+    static RList read(FileRConnection conn, RList list, int maxRecords, boolean fill, boolean stripWhite, boolean blSkip, char sep, String quoteSet, int comment, char dec,
+                    RAbstractStringVector naStringsVec) throws IOException {
+        if (sep > 0x7F || dec > 0x7F || comment > 0x7F) {
+            return null;
+        }
+        byte[] quotes = new byte[quoteSet.length()];
+        for (int i = 0; i < quotes.length; i++) {
+            char ch = quoteSet.charAt(i);
+            if (ch > 0x7F || ch == sep || ch == comment || ch == '\n') {
+                return null;
+            }
+            quotes[i] = (byte) ch;
+        }
+        int[] types = new int[list.getLength()];
+        for (int i = 0; i < types.length; i++) {
+            Class<?> elementClass = ((RAbstractVector) list.getDataAt(i)).getElementClass();
+            if (elementClass == RLogical.class) {
+                types[i] = LOGICAL;
+            } else if (elementClass == RInteger.class) {
+                types[i] = INTEGER;
+            } else if (elementClass == RDouble.class) {
+                types[i] = DOUBLE;
+            } else if (elementClass == RComplex.class) {
+                types[i] = COMPLEX;
+            } else if (elementClass == RString.class) {
+                types[i] = STRING;
+            } else {
+                return null;
+            }
+        }
+        long offset = conn.getReadOffset();
+        if (offset < 0) {
+            return null;
+        }
+        Charset encoding = conn.getEncoding();
+        if (!ConnectionSupport.isAsciiCompatible(encoding)) {
+            return null;
+        }
+        ByteBuffer pushBackBuffer = null;
+        String pushBackText = conn.pushBackText();
+        if (pushBackText != null) {
+            if (!pushBackText.endsWith("\n")) {
+                return null;
+            }
+            pushBackBuffer = ByteBuffer.wrap(pushBackText.getBytes(encoding));
+        }
+        HashSet<String> naStrings = new HashSet<>();
+        for (int i = 0; i < naStringsVec.getLength(); i++) {
+            naStrings.add(naStringsVec.getDataAt(i));
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(conn.getPath()), StandardOpenOption.READ)) {
+            long size = channel.size() - offset;
+            if (size < 0 || size > Integer.MAX_VALUE || !isEnabled(size)) {
+                return null;
+            }
+            ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            MappedTableReader reader = new MappedTableReader(pushBackBuffer, file, types, maxRecords, fill, stripWhite, blSkip, (byte) sep, quotes, comment, dec, naStrings, encoding);
+            Chunk[] chunks = reader.createChunks();
+            if (chunks == null) {
+                return null;
+            }
+            int consumed = reader.assemble(chunks, list);
+            if (consumed < 0) {
+                return null;
+            }
+            conn.pushBackClear();
+            conn.setReadOffset(offset + consumed);
+            return list;
+        }
+    }
+
+    /**
+     * A range of the input and the records parsed from it.
+     */
+    private final class Chunk {
+        final ByteBuffer buffer;
+        /**
+         * The nominal range {@code [start, end)} of the chunk.
+         */
+        final int start;
+        final int end;
+        /**
+         * The offset of the first record starting in the chunk for each start state, and the state
+         * at the end of the chunk for each start state.
+         */
+        final int[] firstRecord;
+        final int[] endState;
+        /**
+         * The actual range {@code [from, to)} of the records starting in the chunk, with
+         * {@code from == -1} if there is none.
+         */
+        int from = -1;
+        int to;
+        /**
+         * The maximum number of records to parse, 0 for no limit.
+         */
+        int limit;
+
+        boolean failed;
+        int records;
+        final Object[] columns = new Object[types.length];
+        final boolean[] complete = new boolean[types.length];
+        /**
+         * The offset after each record, only recorded if the number of records is limited.
+         */
+        int[] recordEnds;
+
+        private byte[] field = new byte[64];
+        private int fieldLength;
+
+        Chunk(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.firstRecord = new int[QUOTE + quotes.length];
+            this.endState = new int[QUOTE + quotes.length];
+        }
+
+        private int nextState(int state, byte b) {
+            if (state == OUTSIDE) {
+                if (b == comment) {
+                    return COMMENT;
+                }
+                for (int q = 0; q < quotes.length; q++) {
+                    if (b == quotes[q]) {
+                        return QUOTE + q;
+                    }
+                }
+                return OUTSIDE;
+            } else if (state == COMMENT) {
+                return b == '\n' ? OUTSIDE : COMMENT;
+            } else {
+                return b == quotes[state - QUOTE] ? OUTSIDE : state;
+            }
+        }
+
+        /**
+         * Phase one: determines {@link #firstRecord} and {@link #endState} for all start states.
+         * The scans for the different start states are run in lockstep until they have all seen a
+         * record end and agree on the state, after which only one of them is continued.
+         */
+        void findRecords() {
+            int numStates = firstRecord.length;
+            int[] state = new int[numStates];
+            for (int s = 0; s < numStates; s++) {
+                state[s] = s;
+                firstRecord[s] = -1;
+            }
+            int i = start;
+            boolean converged = false;
+            while (i < end && !converged) {
+                byte b = buffer.get(i++);
+                for (int s = 0; s < numStates; s++) {
+                    if (b == '\n' && state[s] <= COMMENT && firstRecord[s] < 0) {
+                        firstRecord[s] = i;
+                    }
+                    state[s] = nextState(state[s], b);
+                }
+                if (b == '\n') {
+                    converged = true;
+                    for (int s = 0; s < numStates; s++) {
+                        converged &= firstRecord[s] >= 0 && state[s] == state[0];
+                    }
+                }
+            }
+            int current = state[0];
+            while (i < end) {
+                current = nextState(current, buffer.get(i++));
+            }
+            for (int s = 0; s < numStates; s++) {
+                endState[s] = converged ? current : state[s];
+            }
+        }
+
+        private void append(byte b) {
+            if (fieldLength == field.length) {
+                field = Arrays.copyOf(field, field.length * 2);
+            }
+            field[fieldLength++] = b;
+        }
+
+        private int quoteIndex(byte b) {
+            for (int q = 0; q < quotes.length; q++) {
+                if (b == quotes[q]) {
+                    return q;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isBlank(int p) {
+            byte b = buffer.get(p);
+            return (b == ' ' || b == '\t' || b == '\r') && b != sep;
+        }
+
+        /**
+         * Phase two: parses the records in {@code [from, to)}.
+         */
+        void parse() {
+            if (from < 0) {
+                return;
+            }
+            int capacity = Math.max(16, (to - from) / (8 * types.length + 1));
+            for (int c = 0; c < types.length; c++) {
+                columns[c] = allocate(types[c], capacity);
+                complete[c] = true;
+            }
+            if (maxRecords > 0) {
+                recordEnds = new int[capacity];
+            }
+            int p = from;
+            while (p < to && (limit == 0 || records < limit)) {
+                int q = p;
+                while (q < to && isBlank(q)) {
+                    q++;
+                }
+                if (q == to || buffer.get(q) == '\n' || buffer.get(q) == comment) {
+                    // blank or comment-only line
+                    if (!blSkip) {
+                        failed = true;
+                        return;
+                    }
+                    while (q < to && buffer.get(q) != '\n') {
+                        q++;
+                    }
+                    p = q + 1;
+                    continue;
+                }
+                if (records == capacity) {
+                    capacity *= 2;
+                    for (int c = 0; c < types.length; c++) {
+                        columns[c] = resize(types[c], columns[c], capacity);
+                    }
+                    if (recordEnds != null) {
+                        recordEnds = Arrays.copyOf(recordEnds, capacity);
+                    }
+                }
+                p = parseRecord(p);
+                if (p < 0) {
+                    failed = true;
+                    return;
+                }
+                if (recordEnds != null) {
+                    recordEnds[records] = p;
+                }
+                records++;
+            }
+        }
+
+        /**
+         * Parses the record starting at {@code p}.
+         *
+         * @return the offset after the record, or {@code -1} if the record is not supported
+         */
+        private int parseRecord(int start) {
+            int p = start;
+            int col = 0;
+            while (true) {
+                fieldLength = 0;
+                // the unquoted prefix and suffix of the field are subject to stripping
+                int prefixLength = -1;
+                int suffixStart = 0;
+                while (p < to) {
+                    byte b = buffer.get(p);
+                    if (b == sep || b == '\n' || b == comment) {
+                        break;
+                    }
+                    p++;
+                    int quote = quoteIndex(b);
+                    if (quote < 0) {
+                        append(b);
+                        continue;
+                    }
+                    if (prefixLength < 0) {
+                        prefixLength = fieldLength;
+                    }
+                    while (true) {
+                        if (p >= to) {
+                            return -1;
+                        }
+                        b = buffer.get(p++);
+                        if (b == quotes[quote]) {
+                            if (p < to && buffer.get(p) == b) {
+                                // doubled quote
+                                p++;
+                            } else {
+                                break;
+                            }
+                        }
+                        append(b);
+                    }
+                    suffixStart = fieldLength;
+                }
+                if (col == types.length || !store(col, prefixLength, suffixStart)) {
+                    return -1;
+                }
+                col++;
+                if (p < to && buffer.get(p) == sep) {
+                    p++;
+                    continue;
+                }
+                // end of record
+                while (p < to && buffer.get(p) != '\n') {
+                    // comment
+                    p++;
+                }
+                if (p < to) {
+                    p++;
+                }
+                break;
+            }
+            if (col < types.length) {
+                if (!fill) {
+                    return -1;
+                }
+                for (; col < types.length; col++) {
+                    fieldLength = 0;
+                    store(col, -1, 0);
+                }
+            }
+            return p;
+        }
+
+        private boolean isSpace(int i) {
+            byte b = field[i];
+            return b == ' ' || b == '\t' || b == '\r';
+        }
+
+        /**
+         * Converts the current field and stores it as the current record's value in column
+         * {@code col}.
+         *
+         * @param prefixLength the length of the field before the first quote, {@code -1} if
+         *            unquoted
+         * @param suffixStart the start of the field after the last quote
+         */
+        private boolean store(int col, int prefixLength, int suffixStart) {
+            int type = types[col];
+            int begin = 0;
+            int stop = fieldLength;
+            // a CR of a CRLF line end is never part of the field
+            if (stop > suffixStart && field[stop - 1] == '\r') {
+                stop--;
+            }
+            if (type == STRING) {
+                if (stripWhite) {
+                    int prefixEnd = prefixLength < 0 ? stop : prefixLength;
+                    while (begin < prefixEnd && isSpace(begin)) {
+                        begin++;
+                    }
+                    while (stop > Math.max(suffixStart, begin) && isSpace(stop - 1)) {
+                        stop--;
+                    }
+                }
+                String value = new String(field, begin, stop - begin, encoding);
+                if (naStrings.contains(value)) {
+                    value = RRuntime.STRING_NA;
+                    complete[col] = false;
+                }
+                ((String[]) columns[col])[records] = value;
+                return true;
+            }
+            if (prefixLength >= 0) {
+                // quotes are only interpreted in character fields
+                return false;
+            }
+            while (begin < stop && isSpace(begin)) {
+                begin++;
+            }
+            while (stop > begin && isSpace(stop - 1)) {
+                stop--;
+            }
+            String value = new String(field, begin, stop - begin, StandardCharsets.ISO_8859_1);
+            boolean isNA = value.isEmpty() || naStrings.contains(value);
+            if (isNA) {
+                complete[col] = false;
+            }
+            try {
+                switch (type) {
+                    case LOGICAL:
+                        ((byte[]) columns[col])[records] = isNA ? RRuntime.LOGICAL_NA : RRuntime.string2logicalNoCheck(value, true);
+                        break;
+                    case INTEGER:
+                        ((int[]) columns[col])[records] = isNA ? RRuntime.INT_NA : RRuntime.string2intNoCheck(value, true);
+                        break;
+                    case DOUBLE:
+                        ((double[]) columns[col])[records] = isNA ? RRuntime.DOUBLE_NA : RRuntime.string2doubleNoCheck(withDecimalPoint(value), true);
+                        break;
+                    case COMPLEX:
+                        RComplex complex = isNA ? RRuntime.createComplexNA() : RRuntime.string2complexNoCheck(withDecimalPoint(value));
+                        if (RRuntime.isNA(complex)) {
+                            complete[col] = false;
+                        }
+                        ((double[]) columns[col])[2 * records] = complex.getRealPart();
+                        ((double[]) columns[col])[2 * records + 1] = complex.getImaginaryPart();
+                        break;
+                    default:
+                        throw new AssertionError();
+                }
+            } catch (NumberFormatException ex) {
+                // leave it to the general implementation to deal with the value
+                return false;
+            }
+            return true;
+        }
+
+        private String withDecimalPoint(String value) {
+            return dec == '.' ? value : value.replace(dec, '.');
+        }
+    }
+
+    private static Object allocate(int type, int length) {
+        switch (type) {
+            case LOGICAL:
+                return new byte[length];
+            case INTEGER:
+                return new int[length];
+            case DOUBLE:
+                return new double[length];
+            case COMPLEX:
+                return new double[2 * length];
+            default:
+                return new String[length];
+        }
+    }
+
+    private static Object resize(int type, Object array, int length) {
+        switch (type) {
+            case LOGICAL:
+                return Arrays.copyOf((byte[]) array, length);
+            case INTEGER:
+                return Arrays.copyOf((int[]) array, length);
+            case DOUBLE:
+                return Arrays.copyOf((double[]) array, length);
+            case COMPLEX:
+                return Arrays.copyOf((double[]) array, 2 * length);
+            default:
+                return Arrays.copyOf((String[]) array, length);
+        }
+    }
+
+    /**
+     * Runs phase one or two on a range of chunks, splitting it across the pool.
+     */
+    @SuppressWarnings("serial")
+    private static final class ChunkTask extends RecursiveAction {
+        private final Chunk[] chunks;
+        private final int lo;
+        private final int hi;
+        private final boolean parse;
+
+        ChunkTask(Chunk[] chunks, int lo, int hi, boolean parse) {
+            this.chunks = chunks;
+            this.lo = lo;
+            this.hi = hi;
+            this.parse = parse;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                if (parse) {
+                    chunks[lo].parse();
+                } else {
+                    chunks[lo].findRecords();
+                }
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ChunkTask(chunks, lo, mid, parse), new ChunkTask(chunks, mid, hi, parse));
+            }
+        }
+    }
+
+    private static void run(Chunk[] chunks, int lo, boolean parse) {
+        if (chunks.length - lo == 1) {
+            new ChunkTask(chunks, lo, chunks.length, parse).compute();
+        } else if (chunks.length > lo) {
+            ForkJoinPool.commonPool().invoke(new ChunkTask(chunks, lo, chunks.length, parse));
+        }
+    }
+
+    /**
+     * Splits the input into chunks, which start with the pushback (if any), and parses them.
+     *
+     * @return the chunks, or {@code null} if the input ends inside quotes
+     */
+    private Chunk[] createChunks() {
+        int size = file.limit();
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        // with a limit on the records, the chunks are processed in order until it is reached
+        int chunkSize = maxRecords > 0 ? MIN_CHUNK_SIZE : Math.max(MIN_CHUNK_SIZE, size / (4 * parallelism) + 1);
+        int fileChunks = Math.max(1, (int) ((size + (long) chunkSize - 1) / chunkSize));
+        int first = pushBack == null ? 0 : 1;
+        Chunk[] chunks = new Chunk[first + fileChunks];
+        if (pushBack != null) {
+            chunks[0] = new Chunk(pushBack, 0, pushBack.limit());
+        }
+        for (int i = 0; i < fileChunks; i++) {
+            int start = (int) ((long) size * i / fileChunks);
+            int end = (int) ((long) size * (i + 1) / fileChunks);
+            chunks[first + i] = new Chunk(file, start, end);
+        }
+        // the first chunk of the file (and the pushback) start with a record
+        if (pushBack != null) {
+            chunks[0].findRecords();
+            if (chunks[0].endState[OUTSIDE] != OUTSIDE) {
+                return null;
+            }
+            chunks[0].from = 0;
+            chunks[0].to = pushBack.limit();
+        }
+        return maxRecords > 0 ? parseSequentially(chunks, first) : parseInParallel(chunks, first);
+    }
+
+    private Chunk[] parseInParallel(Chunk[] chunks, int first) {
+        run(chunks, first, false);
+        int state = OUTSIDE;
+        Chunk previous = null;
+        for (int i = first; i < chunks.length; i++) {
+            Chunk chunk = chunks[i];
+            chunk.from = i == first ? 0 : chunk.firstRecord[state];
+            state = chunk.endState[state];
+            if (chunk.from >= 0) {
+                if (previous != null) {
+                    previous.to = chunk.from;
+                }
+                previous = chunk;
+            }
+        }
+        if (state >= QUOTE) {
+            return null;
+        }
+        if (previous != null) {
+            previous.to = file.limit();
+        }
+        run(chunks, 0, true);
+        return chunks;
+    }
+
+    /**
+     * Finds and parses the records chunk by chunk, stopping as soon as {@link #maxRecords} records
+     * have been parsed, so that the rest of the file is not even scanned. The chunks after that
+     * are left empty, which {@link #assemble} never looks at.
+     */
+    private Chunk[] parseSequentially(Chunk[] chunks, int first) {
+        int remaining = maxRecords;
+        if (first > 0) {
+            remaining -= parseChunk(chunks[0], remaining);
+        }
+        int state = OUTSIDE;
+        Chunk pending = null;
+        for (int i = first; i < chunks.length && remaining > 0; i++) {
+            Chunk chunk = chunks[i];
+            chunk.findRecords();
+            chunk.from = i == first ? 0 : chunk.firstRecord[state];
+            state = chunk.endState[state];
+            if (chunk.from >= 0) {
+                if (pending != null) {
+                    pending.to = chunk.from;
+                    remaining -= parseChunk(pending, remaining);
+                }
+                pending = chunk;
+            }
+        }
+        if (remaining > 0) {
+            // the end of the input has been reached
+            if (state >= QUOTE) {
+                return null;
+            }
+            if (pending != null) {
+                pending.to = file.limit();
+                parseChunk(pending, remaining);
+            }
+        }
+        return chunks;
+    }
+
+    private static int parseChunk(Chunk chunk, int limit) {
+        chunk.limit = limit;
+        chunk.parse();
+        return chunk.records;
+    }
+
+    /**
+     * Concatenates the columns of the chunks into {@code list}.
+     *
+     * @return the number of bytes of the file that were consumed, or {@code -1} if the records
+     *         could not be parsed
+     */
+    private int assemble(Chunk[] chunks, RList list) {
+        int total = 0;
+        int used = 0;
+        int consumed = file.limit();
+        for (Chunk chunk : chunks) {
+            if (chunk.failed) {
+                return -1;
+            }
+            used++;
+            if (maxRecords > 0 && total + chunk.records >= maxRecords) {
+                int last = maxRecords - total - 1;
+                total = maxRecords;
+                if (chunk.buffer == pushBack) {
+                    if (chunk.recordEnds[last] != pushBack.limit()) {
+                        // the rest of the pushback would have to be kept
+                        return -1;
+                    }
+                    consumed = 0;
+                } else {
+                    consumed = chunk.recordEnds[last];
+                }
+                break;
+            }
+            total += chunk.records;
+        }
+        for (int c = 0; c < types.length; c++) {
+            int type = types[c];
+            int factor = type == COMPLEX ? 2 : 1;
+            Object data = allocate(type, total);
+            boolean complete = true;
+            int pos = 0;
+            for (int i = 0; i < used; i++) {
+                Chunk chunk = chunks[i];
+                int count = Math.min(chunk.records, total - pos);
+                if (count > 0) {
+                    System.arraycopy(chunk.columns[c], 0, data, pos * factor, count * factor);
+                    complete &= chunk.complete[c];
+                    pos += count;
+                }
+            }
+            Object vector;
+            switch (type) {
+                case LOGICAL:
+                    vector = RDataFactory.createLogicalVector((byte[]) data, complete);
+                    break;
+                case INTEGER:
+                    vector = RDataFactory.createIntVector((int[]) data, complete);
+                    break;
+                case DOUBLE:
+                    vector = RDataFactory.createDoubleVector((double[]) data, complete);
+                    break;
+                case COMPLEX:
+                    vector = RDataFactory.createComplexVector((double[]) data, complete);
+                    break;
+                default:
+                    vector = RDataFactory.createStringVector((String[]) data, complete);
+                    break;
+            }
+            list.updateDataAt(c, vector, null);
+        }
+        return consumed;
+    }
+}
@@ -6,7 +6,7 @@
  * Copyright (c) 1995, 1996, 1997  Robert Gentleman and Ross Ihaka
  * Copyright (c) 1995-2014, The R Core Team
  * Copyright (c) 2002-2008, The R Foundation
- * Copyright (c) 2015, Oracle and/or its affiliates
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates
  *
  * All rights reserved.
  */
@@ -15,17 +15,23 @@ package com.oracle.truffle.r.nodes.builtin.base;
 import static com.oracle.truffle.r.runtime.RBuiltinKind.*;
 
 import com.oracle.truffle.api.*;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.*;
 import com.oracle.truffle.api.profiles.*;
 import com.oracle.truffle.r.nodes.builtin.*;
-import com.oracle.truffle.r.nodes.builtin.base.OrderNodeGen.CmpNodeGen;
 import com.oracle.truffle.r.nodes.unary.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.*;
 import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.data.model.*;
-import com.oracle.truffle.r.runtime.nodes.*;
 
+/**
+ * The {@code order} builtin. Integer, logical (and therefore factor), double and character keys are
+ * ordered by the stable algorithms in {@link RadixOrder} on the primitive data of the vector,
+ * complex keys by its merge sort with an element comparator. For multiple keys, the index vector is
+ * ordered by each key in turn, starting with the last, which yields the lexicographic order, with
+ * ties broken by element index.
+ */
 @RBuiltin(name = "order", kind = INTERNAL, parameterNames = {"na.last", "decreasing", "..."})
 public abstract class Order extends RPrecedenceBuiltinNode {
 
@@ -33,12 +39,8 @@ public abstract class Order extends RPrecedenceBuiltinNode {
 
     @Child private CastToVectorNode castVector;
     @Child private CastToVectorNode castVector2;
-    @Child private CmpNode cmpNode;
 
     private final BranchProfile error = BranchProfile.create();
-    private final ConditionProfile decProfile = ConditionProfile.createBinaryProfile();
-
-    private static final int[] SINCS = {1073790977, 268460033, 67121153, 16783361, 4197377, 1050113, 262913, 65921, 16577, 4193, 1073, 281, 77, 23, 8, 1, 0};
 
     private RAbstractVector castVector(Object value) {
         if (castVector == null) {
@@ -56,12 +58,27 @@ public abstract class Order extends RPrecedenceBuiltinNode {
         return (RAbstractVector) castVector2.execute(value);
     }
 
-    private int cmp(Object v, int i, int j, byte naLast) {
-        if (cmpNode == null) {
-            CompilerDirectives.transferToInterpreterAndInvalidate();
-            cmpNode = insert(CmpNodeGen.create(null, null, null, null));
+    private static boolean isNaLast(RAbstractLogicalVector naLastVec) {
+        return !(naLastVec.getLength() == 0 || naLastVec.getDataAt(0) == RRuntime.LOGICAL_FALSE);
+    }
+
+    private static boolean isDecreasing(RAbstractLogicalVector decVec) {
+        return !(decVec.getLength() == 0 || decVec.getDataAt(0) == RRuntime.LOGICAL_FALSE);
+    }
+
+    private static int[] createIndexes(int n) {
+        int[] indx = new int[n];
+        for (int i = 0; i < indx.length; i++) {
+            indx[i] = i;
         }
-        return cmpNode.executeInt(v, i, j, naLast);
+        return indx;
+    }
+
+    private static RIntVector createResult(int[] indx) {
+        for (int i = 0; i < indx.length; i++) {
+            indx[i] = indx[i] + 1;
+        }
+        return RDataFactory.createIntVector(indx, RDataFactory.COMPLETE_VECTOR);
     }
 
     @SuppressWarnings("unused")
@@ -74,56 +91,18 @@ public abstract class Order extends RPrecedenceBuiltinNode {
     Object orderInt(RAbstractLogicalVector naLastVec, RAbstractLogicalVector decVec, RArgsValuesAndNames args) {
         Object[] vectors = args.getArguments();
         RAbstractIntVector v = (RAbstractIntVector) castVector(vectors[0]);
-        int n = v.getLength();
-
-        boolean naLast = true;
-        boolean dec = true;
-
-        if (naLastVec.getLength() == 0 || naLastVec.getDataAt(0) == RRuntime.LOGICAL_FALSE) {
-            naLast = false;
-        }
-        if (decVec.getLength() == 0 || decVec.getDataAt(0) == RRuntime.LOGICAL_FALSE) {
-            dec = false;
-        }
-
-        int[] indx = new int[n];
-        for (int i = 0; i < indx.length; i++) {
-            indx[i] = i;
-        }
-        orderVector1(indx, v, naLast, dec);
-        for (int i = 0; i < indx.length; i++) {
-            indx[i] = indx[i] + 1;
-        }
-
-        return RDataFactory.createIntVector(indx, RDataFactory.COMPLETE_VECTOR);
+        int[] indx = createIndexes(v.getLength());
+        RadixOrder.order(indx, v.materialize().getDataWithoutCopying(), isNaLast(naLastVec), isDecreasing(decVec));
+        return createResult(indx);
     }
 
     @Specialization(guards = {"oneVec(args)", "isFirstDoublePrecedence(args)"})
     Object orderDouble(RAbstractLogicalVector naLastVec, RAbstractLogicalVector decVec, RArgsValuesAndNames args) {
         Object[] vectors = args.getArguments();
         RAbstractDoubleVector v = (RAbstractDoubleVector) castVector(vectors[0]);
-        int n = v.getLength();
-
-        boolean naLast = true;
-        boolean dec = true;
-
-        if (naLastVec.getLength() == 0 || naLastVec.getDataAt(0) == RRuntime.LOGICAL_FALSE) {
-            naLast = false;
-        }
-        if (decVec.getLength() == 0 || decVec.getDataAt(0) == RRuntime.LOGICAL_FALSE) {
-            dec = false;
-        }
-
-        int[] indx = new int[n];
-        for (int i = 0; i < indx.length; i++) {
-            indx[i] = i;
-        }
-        orderVector1(indx, v, naLast, dec);
-        for (int i = 0; i < indx.length; i++) {
-            indx[i] = indx[i] + 1;
-        }
-
-        return RDataFactory.createIntVector(indx, RDataFactory.COMPLETE_VECTOR);
+        int[] indx = createIndexes(v.getLength());
+        RadixOrder.order(indx, v.materialize().getDataWithoutCopying(), isNaLast(naLastVec), isDecreasing(decVec));
+        return createResult(indx);
     }
 
     @Specialization(guards = {"oneVec(args)", "isFirstLogicalPrecedence(args)"})
@@ -137,56 +116,18 @@ public abstract class Order extends RPrecedenceBuiltinNode {
     Object orderString(RAbstractLogicalVector naLastVec, RAbstractLogicalVector decVec, RArgsValuesAndNames args) {
         Object[] vectors = args.getArguments();
         RAbstractStringVector v = (RAbstractStringVector) castVector(vectors[0]);
-        int n = v.getLength();
-
-        boolean naLast = true;
-        boolean dec = true;
-
-        if (naLastVec.getLength() == 0 || naLastVec.getDataAt(0) == RRuntime.LOGICAL_FALSE) {
-            naLast = false;
-        }
-        if (decVec.getLength() == 0 || decVec.getDataAt(0) == RRuntime.LOGICAL_FALSE) {
-            dec = false;
-        }
-
-        int[] indx = new int[n];
-        for (int i = 0; i < indx.length; i++) {
-            indx[i] = i;
-        }
-        orderVector1(indx, v, naLast, dec);
-        for (int i = 0; i < indx.length; i++) {
-            indx[i] = indx[i] + 1;
-        }
-
-        return RDataFactory.createIntVector(indx, RDataFactory.COMPLETE_VECTOR);
+        int[] indx = createIndexes(v.getLength());
+        RadixOrder.order(indx, v.materialize().getDataWithoutCopying(), isNaLast(naLastVec), isDecreasing(decVec));
+        return createResult(indx);
     }
 
     @Specialization(guards = {"oneVec(args)", "isFirstComplexPrecedence( args)"})
     Object orderComplex(RAbstractLogicalVector naLastVec, RAbstractLogicalVector decVec, RArgsValuesAndNames args) {
         Object[] vectors = args.getArguments();
         RAbstractComplexVector v = (RAbstractComplexVector) castVector(vectors[0]);
-        int n = v.getLength();
-
-        boolean naLast = true;
-        boolean dec = true;
-
-        if (naLastVec.getLength() == 0 || naLastVec.getDataAt(0) == RRuntime.LOGICAL_FALSE) {
-            naLast = false;
-        }
-        if (decVec.getLength() == 0 || decVec.getDataAt(0) == RRuntime.LOGICAL_FALSE) {
-            dec = false;
-        }
-
-        int[] indx = new int[n];
-        for (int i = 0; i < indx.length; i++) {
-            indx[i] = i;
-        }
-        orderVector1(indx, v, naLast, dec);
-        for (int i = 0; i < indx.length; i++) {
-            indx[i] = indx[i] + 1;
-        }
-
-        return RDataFactory.createIntVector(indx, RDataFactory.COMPLETE_VECTOR);
+        int[] indx = createIndexes(v.getLength());
+        orderComplex(indx, v, isNaLast(naLastVec), isDecreasing(decVec));
+        return createResult(indx);
     }
 
     private int preprocessVectors(RArgsValuesAndNames args, ValueProfile lengthProfile) {
@@ -210,344 +151,50 @@ public abstract class Order extends RPrecedenceBuiltinNode {
     Object orderMulti(RAbstractLogicalVector naLastVec, RAbstractLogicalVector decVec, RArgsValuesAndNames args, //
                     @Cached("createEqualityProfile()") ValueProfile lengthProfile) {
         int n = preprocessVectors(args, lengthProfile);
-
-        byte naLast = RRuntime.LOGICAL_TRUE;
-        boolean dec = true;
-
-        if (naLastVec.getLength() == 0 || naLastVec.getDataAt(0) == RRuntime.LOGICAL_FALSE) {
-            naLast = RRuntime.LOGICAL_FALSE;
-        }
-        if (decVec.getLength() == 0 || decVec.getDataAt(0) == RRuntime.LOGICAL_FALSE) {
-            dec = false;
-        }
-
-        int[] indx = new int[n];
-        for (int i = 0; i < indx.length; i++) {
-            indx[i] = i;
-        }
-        orderVector(indx, args.getArguments(), naLast, dec);
-        for (int i = 0; i < indx.length; i++) {
-            indx[i] = indx[i] + 1;
-        }
-
-        return RDataFactory.createIntVector(indx, RDataFactory.COMPLETE_VECTOR);
-    }
-
-    private boolean greaterSub(int i, int j, Object[] vectors, byte naLast, boolean dec) {
-        int c = -1;
-        for (int k = 0; k < vectors.length; k++) {
+        int[] indx = createIndexes(n);
+        orderVector(indx, args.getArguments(), isNaLast(naLastVec), isDecreasing(decVec));
+        return createResult(indx);
+    }
+
+    /**
+     * Orders {@code indx} by each of {@code vectors} in turn, from the least significant (last) to
+     * the most significant (first) key. As in GnuR's {@code listgreater}, the whole comparison of
+     * a key, including the placement of {@code NA}, is reversed when {@code dec} is set.
+     */
+    @TruffleBoundary
+    private void orderVector(int[] indx, Object[] vectors, boolean naLast, boolean dec) {
+        boolean keyNaLast = naLast != dec;
+        for (int k = vectors.length - 1; k >= 0; k--) {
             RAbstractVector v = (RAbstractVector) vectors[k];
-            c = cmp(v, i, j, naLast);
-            if (dec) {
-                c = -c;
-            }
-            if (c > 0) {
-                return true;
-            }
-            if (c < 0) {
-                return false;
-            }
-        }
-        return (c == 0 && i < j) ? false : true;
-    }
-
-    private void orderVector(int[] indx, Object[] vectors, byte naLast, boolean dec) {
-        if (indx.length > 1) {
-
-            int t = 0;
-            for (; SINCS[t] > indx.length; t++) {
-            }
-            for (int h = SINCS[t]; t < 16; h = SINCS[++t]) {
-                for (int i = h; i < indx.length; i++) {
-                    int itmp = indx[i];
-                    int j = i;
-                    while (j >= h && greaterSub(indx[j - h], itmp, vectors, naLast, dec)) {
-                        indx[j] = indx[j - h];
-                        j -= h;
-                    }
-                    indx[j] = itmp;
-                }
-            }
-        }
-    }
-
-    private void orderVector1(int[] indx, RAbstractIntVector dv, boolean naLast, boolean dec) {
-        int lo = 0;
-        int hi = indx.length - 1;
-        int numNa = 0;
-        if (!dv.isComplete()) {
-            boolean[] isNa = new boolean[indx.length];
-            for (int i = 0; i < isNa.length; i++) {
-                if (RRuntime.isNA(dv.getDataAt(i))) {
-                    isNa[i] = true;
-                    numNa++;
-                }
-            }
-
-            if (numNa > 0) {
-                if (!naLast) {
-                    for (int i = 0; i < isNa.length; i++) {
-                        isNa[i] = !isNa[i];
-                    }
-                }
-                sortNA(indx, isNa, lo, hi);
-                if (naLast) {
-                    hi -= numNa;
-                } else {
-                    lo += numNa;
-                }
-            }
-        }
-
-        sort(indx, dv, lo, hi, dec);
-    }
-
-    private void orderVector1(int[] indx, RAbstractDoubleVector dv, boolean naLast, boolean dec) {
-        int lo = 0;
-        int hi = indx.length - 1;
-        int numNa = 0;
-        boolean[] isNa = new boolean[indx.length];
-        for (int i = 0; i < isNa.length; i++) {
-            if (RRuntime.isNAorNaN(dv.getDataAt(i))) {
-                isNa[i] = true;
-                numNa++;
-            }
-        }
-
-        if (numNa > 0) {
-            if (!naLast) {
-                for (int i = 0; i < isNa.length; i++) {
-                    isNa[i] = !isNa[i];
-                }
-            }
-            sortNA(indx, isNa, lo, hi);
-            if (naLast) {
-                hi -= numNa;
+            if (v instanceof RAbstractIntVector) {
+                RadixOrder.order(indx, ((RAbstractIntVector) v).materialize().getDataWithoutCopying(), keyNaLast, dec);
+            } else if (v instanceof RAbstractDoubleVector) {
+                RadixOrder.order(indx, ((RAbstractDoubleVector) v).materialize().getDataWithoutCopying(), keyNaLast, dec);
+            } else if (v instanceof RAbstractLogicalVector) {
+                RadixOrder.order(indx, RClosures.createLogicalToIntVector((RAbstractLogicalVector) v).materialize().getDataWithoutCopying(), keyNaLast, dec);
+            } else if (v instanceof RAbstractStringVector) {
+                RadixOrder.order(indx, ((RAbstractStringVector) v).materialize().getDataWithoutCopying(), keyNaLast, dec);
+            } else if (v instanceof RAbstractComplexVector) {
+                orderComplex(indx, (RAbstractComplexVector) v, keyNaLast, dec);
             } else {
-                lo += numNa;
-            }
-        }
-
-        sort(indx, dv, lo, hi, dec);
-    }
-
-    private void orderVector1(int[] indx, RAbstractStringVector dv, boolean naLast, boolean dec) {
-        int lo = 0;
-        int hi = indx.length - 1;
-        int numNa = 0;
-        if (!dv.isComplete()) {
-            boolean[] isNa = new boolean[indx.length];
-            for (int i = 0; i < isNa.length; i++) {
-                if (RRuntime.isNA(dv.getDataAt(i))) {
-                    isNa[i] = true;
-                    numNa++;
-                }
-            }
-
-            if (numNa > 0) {
-                if (!naLast) {
-                    for (int i = 0; i < isNa.length; i++) {
-                        isNa[i] = !isNa[i];
-                    }
-                }
-                sortNA(indx, isNa, lo, hi);
-                if (naLast) {
-                    hi -= numNa;
-                } else {
-                    lo += numNa;
-                }
-            }
-        }
-
-        sort(indx, dv, lo, hi, dec);
-    }
-
-    private void orderVector1(int[] indx, RAbstractComplexVector dv, boolean naLast, boolean dec) {
-        int lo = 0;
-        int hi = indx.length - 1;
-        int numNa = 0;
-        if (!dv.isComplete()) {
-            boolean[] isNa = new boolean[indx.length];
-            for (int i = 0; i < isNa.length; i++) {
-                if (RRuntime.isNA(dv.getDataAt(i))) {
-                    isNa[i] = true;
-                    numNa++;
-                }
-            }
-
-            if (numNa > 0) {
-                if (!naLast) {
-                    for (int i = 0; i < isNa.length; i++) {
-                        isNa[i] = !isNa[i];
-                    }
-                }
-                sortNA(indx, isNa, lo, hi);
-                if (naLast) {
-                    hi -= numNa;
-                } else {
-                    lo += numNa;
-                }
-            }
-        }
-
-        sort(indx, dv, lo, hi, dec);
-    }
-
-    private static void sortNA(int[] indx, boolean[] isNa, int lo, int hi) {
-        int t = 0;
-        for (; SINCS[t] > indx.length; t++) {
-        }
-        for (int h = SINCS[t]; t < 16; h = SINCS[++t]) {
-            for (int i = lo + h; i <= hi; i++) {
-                int itmp = indx[i];
-                int j = i;
-                while (j >= lo + h) {
-                    int a = indx[j - h];
-                    int b = itmp;
-                    if (!((isNa[a] && !isNa[b]) || (isNa[a] == isNa[b] && a > b))) {
-                        break;
-                    }
-                    indx[j] = indx[j - h];
-                    j -= h;
-                }
-                indx[j] = itmp;
-            }
-        }
-
-    }
-
-    private void sort(int[] indx, RAbstractDoubleVector dv, int lo, int hi, boolean dec) {
-        int t = 0;
-        for (; SINCS[t] > hi - lo + 1; t++) {
-        }
-        for (int h = SINCS[t]; t < 16; h = SINCS[++t]) {
-            for (int i = lo + h; i <= hi; i++) {
-                int itmp = indx[i];
-                int j = i;
-                while (j >= lo + h) {
-                    int a = indx[j - h];
-                    int b = itmp;
-                    if (decProfile.profile(dec)) {
-                        if (!((dv.getDataAt(a)) < dv.getDataAt(b) || (dv.getDataAt(a) == dv.getDataAt(b) && a > b))) {
-                            break;
-                        }
-                    } else {
-                        if (!((dv.getDataAt(a)) > dv.getDataAt(b) || (dv.getDataAt(a) == dv.getDataAt(b) && a > b))) {
-                            break;
-                        }
-
-                    }
-                    indx[j] = indx[j - h];
-                    j -= h;
-                }
-                indx[j] = itmp;
-            }
-        }
-    }
-
-    private void sort(int[] indx, RAbstractIntVector dv, int lo, int hi, boolean dec) {
-        int t = 0;
-        for (; SINCS[t] > hi - lo + 1; t++) {
-        }
-        for (int h = SINCS[t]; t < 16; h = SINCS[++t]) {
-            for (int i = lo + h; i <= hi; i++) {
-                int itmp = indx[i];
-                int j = i;
-                while (j >= lo + h) {
-                    int a = indx[j - h];
-                    int b = itmp;
-                    if (decProfile.profile(dec)) {
-                        if (!((dv.getDataAt(a)) < dv.getDataAt(b) || (dv.getDataAt(a) == dv.getDataAt(b) && a > b))) {
-                            break;
-                        }
-                    } else {
-                        if (!((dv.getDataAt(a)) > dv.getDataAt(b) || (dv.getDataAt(a) == dv.getDataAt(b) && a > b))) {
-                            break;
-                        }
-
-                    }
-                    indx[j] = indx[j - h];
-                    j -= h;
-                }
-                indx[j] = itmp;
+                throw RInternalError.unimplemented("order on " + v.getRType().getName() + " keys");
             }
         }
     }
 
-    private void sort(int[] indx, RAbstractStringVector dv, int lo, int hi, boolean dec) {
-        int t = 0;
-        for (; SINCS[t] > hi - lo + 1; t++) {
-        }
-        for (int h = SINCS[t]; t < 16; h = SINCS[++t]) {
-            for (int i = lo + h; i <= hi; i++) {
-                int itmp = indx[i];
-                int j = i;
-                while (j >= lo + h) {
-                    int a = indx[j - h];
-                    int b = itmp;
-                    if (decProfile.profile(dec)) {
-                        if (!(dv.getDataAt(a).compareTo(dv.getDataAt(b)) < 0 || (dv.getDataAt(a).compareTo(dv.getDataAt(b)) == 0 && a > b))) {
-                            break;
-                        }
-                    } else {
-                        if (!(dv.getDataAt(a).compareTo(dv.getDataAt(b)) > 0 || (dv.getDataAt(a).compareTo(dv.getDataAt(b)) == 0 && a > b))) {
-                            break;
-                        }
-                    }
-                    indx[j] = indx[j - h];
-                    j -= h;
-                }
-                indx[j] = itmp;
-            }
-        }
-    }
-
-    private static boolean lt(RComplex a, RComplex b) {
-        if (a.getRealPart() == b.getRealPart()) {
-            return a.getImaginaryPart() < b.getImaginaryPart();
-        } else {
-            return a.getRealPart() < b.getRealPart();
-        }
-    }
-
-    private static boolean gt(RComplex a, RComplex b) {
-        if (a.getRealPart() == b.getRealPart()) {
-            return a.getImaginaryPart() > b.getImaginaryPart();
+    /**
+     * Complex keys have no primitive representation that {@link RadixOrder} could sort on, so they
+     * are ordered by the stable merge sort with {@link #ccmp}. {@code NA} elements are placed
+     * according to {@code naLast} regardless of {@code dec}.
+     */
+    @TruffleBoundary
+    private static void orderComplex(int[] indx, RAbstractComplexVector v, boolean naLast, boolean dec) {
+        if (dec) {
+            byte naLastByte = RRuntime.asLogical(!naLast);
+            RadixOrder.order(indx, (i, j) -> ccmp(v, j, i, naLastByte));
         } else {
-            return a.getRealPart() > b.getRealPart();
-        }
-    }
-
-    private static boolean eq(RComplex a, RComplex b) {
-        return a.getRealPart() == b.getRealPart() && a.getImaginaryPart() == b.getImaginaryPart();
-    }
-
-    private void sort(int[] indx, RAbstractComplexVector dv, int lo, int hi, boolean dec) {
-        int t = 0;
-        for (; SINCS[t] > hi - lo + 1; t++) {
-        }
-        for (int h = SINCS[t]; t < 16; h = SINCS[++t]) {
-            for (int i = lo + h; i <= hi; i++) {
-                int itmp = indx[i];
-                int j = i;
-                while (j >= lo + h) {
-                    int a = indx[j - h];
-                    int b = itmp;
-                    if (decProfile.profile(dec)) {
-                        if (!(lt(dv.getDataAt(a), dv.getDataAt(b)) || (eq(dv.getDataAt(a), dv.getDataAt(b)) && a > b))) {
-                            break;
-                        }
-                    } else {
-                        if (!(gt(dv.getDataAt(a), dv.getDataAt(b)) || (eq(dv.getDataAt(a), dv.getDataAt(b)) && a > b))) {
-                            break;
-                        }
-
-                    }
-                    indx[j] = indx[j - h];
-                    j -= h;
-                }
-                indx[j] = itmp;
-            }
+            byte naLastByte = RRuntime.asLogical(naLast);
+            RadixOrder.order(indx, (i, j) -> ccmp(v, i, j, naLastByte));
         }
     }
 
@@ -579,150 +226,46 @@ public abstract class Order extends RPrecedenceBuiltinNode {
         return args.getLength() == 1;
     }
 
-    @NodeChildren({@NodeChild("v"), @NodeChild("i"), @NodeChild("j"), @NodeChild("naLast")})
-    protected abstract static class CmpNode extends RNode {
-
-        public abstract int executeInt(Object v, int i, int j, byte naLast);
-
-        @Specialization
-        protected int lcmp(RAbstractLogicalVector v, int i, int j, byte naLast) {
-            byte x = v.getDataAt(i);
-            byte y = v.getDataAt(j);
-            boolean nax = RRuntime.isNA(x);
-            boolean nay = RRuntime.isNA(y);
-            if (nax && nay) {
-                return 0;
-            }
-            if (nax) {
-                return naLast == RRuntime.LOGICAL_TRUE ? 1 : -1;
-            }
-            if (nay) {
-                return naLast == RRuntime.LOGICAL_TRUE ? -1 : 1;
-            }
-            if (x < y) {
-                return -1;
-            }
-            if (x > y) {
-                return 1;
-            }
+    private static int ccmp(RAbstractComplexVector v, int i, int j, byte naLast) {
+        RComplex x = v.getDataAt(i);
+        RComplex y = v.getDataAt(j);
+        // compare real parts
+        boolean nax = RRuntime.isNA(x.getRealPart());
+        boolean nay = RRuntime.isNA(y.getRealPart());
+        if (nax && nay) {
             return 0;
         }
-
-        @Specialization
-        protected int icmp(RAbstractIntVector v, int i, int j, byte naLast) {
-            int x = v.getDataAt(i);
-            int y = v.getDataAt(j);
-            boolean nax = RRuntime.isNA(x);
-            boolean nay = RRuntime.isNA(y);
-            if (nax && nay) {
-                return 0;
-            }
-            if (nax) {
-                return naLast == RRuntime.LOGICAL_TRUE ? 1 : -1;
-            }
-            if (nay) {
-                return naLast == RRuntime.LOGICAL_TRUE ? -1 : 1;
-            }
-            if (x < y) {
-                return -1;
-            }
-            if (x > y) {
-                return 1;
-            }
-            return 0;
+        if (nax) {
+            return naLast == RRuntime.LOGICAL_TRUE ? 1 : -1;
         }
-
-        @Specialization
-        protected int rcmp(RAbstractDoubleVector v, int i, int j, byte naLast) {
-            double x = v.getDataAt(i);
-            double y = v.getDataAt(j);
-            boolean nax = RRuntime.isNAorNaN(x);
-            boolean nay = RRuntime.isNAorNaN(y);
-            if (nax && nay) {
-                return 0;
-            }
-            if (nax) {
-                return naLast == RRuntime.LOGICAL_TRUE ? 1 : -1;
-            }
-            if (nay) {
-                return naLast == RRuntime.LOGICAL_TRUE ? -1 : 1;
-            }
-            if (x < y) {
-                return -1;
-            }
-            if (x > y) {
-                return 1;
-            }
-            return 0;
+        if (nay) {
+            return naLast == RRuntime.LOGICAL_TRUE ? -1 : 1;
+        }
+        if (x.getRealPart() < y.getRealPart()) {
+            return -1;
+        }
+        if (x.getRealPart() > y.getRealPart()) {
+            return 1;
         }
 
-        @Specialization
-        protected int scmp(RAbstractStringVector v, int i, int j, byte naLast) {
-            String x = v.getDataAt(i);
-            String y = v.getDataAt(j);
-            boolean nax = RRuntime.isNA(x);
-            boolean nay = RRuntime.isNA(y);
-            if (nax && nay) {
-                return 0;
-            }
-            if (nax) {
-                return naLast == RRuntime.LOGICAL_TRUE ? 1 : -1;
-            }
-            if (nay) {
-                return naLast == RRuntime.LOGICAL_TRUE ? -1 : 1;
-            }
-            if (x.compareTo(y) < 0) {
-                return -1;
-            }
-            if (x.compareTo(y) > 0) {
-                return 1;
-            }
+        // compare real parts
+        nax = RRuntime.isNA(x.getImaginaryPart());
+        nay = RRuntime.isNA(y.getImaginaryPart());
+        if (nax && nay) {
             return 0;
         }
-
-        @Specialization
-        protected int ccmp(RAbstractComplexVector v, int i, int j, byte naLast) {
-            RComplex x = v.getDataAt(i);
-            RComplex y = v.getDataAt(j);
-            // compare real parts
-            boolean nax = RRuntime.isNA(x.getRealPart());
-            boolean nay = RRuntime.isNA(y.getRealPart());
-            if (nax && nay) {
-                return 0;
-            }
-            if (nax) {
-                return naLast == RRuntime.LOGICAL_TRUE ? 1 : -1;
-            }
-            if (nay) {
-                return naLast == RRuntime.LOGICAL_TRUE ? -1 : 1;
-            }
-            if (x.getRealPart() < y.getRealPart()) {
-                return -1;
-            }
-            if (x.getRealPart() > y.getRealPart()) {
-                return 1;
-            }
-
-            // compare real parts
-            nax = RRuntime.isNA(x.getImaginaryPart());
-            nay = RRuntime.isNA(y.getImaginaryPart());
-            if (nax && nay) {
-                return 0;
-            }
-            if (nax) {
-                return naLast == RRuntime.LOGICAL_TRUE ? 1 : -1;
-            }
-            if (nay) {
-                return naLast == RRuntime.LOGICAL_TRUE ? -1 : 1;
-            }
-            if (x.getImaginaryPart() < y.getImaginaryPart()) {
-                return -1;
-            }
-            if (x.getImaginaryPart() > y.getImaginaryPart()) {
-                return 1;
-            }
-            return 0; // equal
+        if (nax) {
+            return naLast == RRuntime.LOGICAL_TRUE ? 1 : -1;
         }
-
+        if (nay) {
+            return naLast == RRuntime.LOGICAL_TRUE ? -1 : 1;
+        }
+        if (x.getImaginaryPart() < y.getImaginaryPart()) {
+            return -1;
+        }
+        if (x.getImaginaryPart() > y.getImaginaryPart()) {
+            return 1;
+        }
+        return 0; // equal
     }
 }
@@ -0,0 +1,711 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.builtin.base;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.FastROptions;
+import com.oracle.truffle.r.runtime.RRuntime;
+
+/**
+ * Stable sorting algorithms on primitive arrays, used by {@link Order} and {@link SortFunctions}.
+ *
+ * The {@code order} methods permute an array of (0-based) element indices, {@code perm}, such that
+ * the referenced keys are in (increasing or decreasing) order, with the {@code NA} elements all
+ * placed first or last. The sort is stable, i.e., elements with equal keys (and all {@code NA}
+ * elements) keep their relative order in {@code perm}. Since {@code perm} is typically the identity
+ * permutation on entry, this means that ties are broken by element index, as in GnuR. Multi-key
+ * ordering is achieved by ordering by each key in turn, starting with the least significant.
+ *
+ * Integer (and therefore logical and factor) and double keys are sorted with an LSD radix sort on
+ * an order-preserving unsigned transformation of the key, eight bits at a time. A digit that has
+ * the same value for all keys, e.g. the high bytes of small integers, is skipped. All other keys
+ * are sorted with a merge sort on the index array.
+ *
+ * Sorts of at least {@link FastROptions#ParallelSortThreshold} elements are performed by a
+ * {@link ParallelSortTask} on the common {@link ForkJoinPool}: each half of the range is sorted in
+ * parallel, down to a minimum range size, and the sorted halves are merged stably, so the result is
+ * identical to that of the sequential sort, including the order of ties.
+ */
+public final class RadixOrder {
+
+    private RadixOrder() {
+        // no instances
+    }
+
+    /**
+     * Segments shorter than this are sorted by insertion sort.
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int RADIX_MASK = RADIX - 1;
+
+    /**
+     * Compares two elements given by their index.
+     */
+    @FunctionalInterface
+    public interface IndexComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * Orders {@code perm} by the {@code int} keys, where {@link RRuntime#INT_NA} denotes {@code NA}.
+     */
+    @TruffleBoundary
+    public static void order(int[] perm, int[] keys, boolean naLast, boolean dec) {
+        int n = perm.length;
+        int numNa = 0;
+        for (int i = 0; i < n; i++) {
+            if (keys[perm[i]] == RRuntime.INT_NA) {
+                numNa++;
+            }
+        }
+        int m = n - numNa;
+        int[] k = new int[m];
+        int[] idx = new int[m];
+        int[] nas = new int[numNa];
+        int j = 0;
+        int a = 0;
+        for (int i = 0; i < n; i++) {
+            int p = perm[i];
+            int x = keys[p];
+            if (x == RRuntime.INT_NA) {
+                nas[a++] = p;
+            } else {
+                k[j] = unsignedKey(x, dec);
+                idx[j++] = p;
+            }
+        }
+        radixSort(k, idx);
+        assemble(perm, idx, nas, naLast);
+    }
+
+    /**
+     * Orders {@code perm} by the {@code double} keys, where both {@code NA} and {@code NaN} are
+     * treated as {@code NA}. As in a numerical comparison, {@code -0.0} is equal to {@code 0.0}.
+     */
+    @TruffleBoundary
+    public static void order(int[] perm, double[] keys, boolean naLast, boolean dec) {
+        int n = perm.length;
+        int numNa = 0;
+        for (int i = 0; i < n; i++) {
+            if (RRuntime.isNAorNaN(keys[perm[i]])) {
+                numNa++;
+            }
+        }
+        int m = n - numNa;
+        long[] k = new long[m];
+        int[] idx = new int[m];
+        int[] nas = new int[numNa];
+        int j = 0;
+        int a = 0;
+        for (int i = 0; i < n; i++) {
+            int p = perm[i];
+            double x = keys[p];
+            if (RRuntime.isNAorNaN(x)) {
+                nas[a++] = p;
+            } else {
+                k[j] = unsignedKey(x, dec);
+                idx[j++] = p;
+            }
+        }
+        radixSort(k, idx);
+        assemble(perm, idx, nas, naLast);
+    }
+
+    /**
+     * Orders {@code perm} by the {@code String} keys, using {@link String#compareTo}.
+     */
+    @TruffleBoundary
+    public static void order(int[] perm, String[] keys, boolean naLast, boolean dec) {
+        int n = perm.length;
+        int numNa = 0;
+        for (int i = 0; i < n; i++) {
+            if (RRuntime.isNA(keys[perm[i]])) {
+                numNa++;
+            }
+        }
+        int[] idx = new int[n - numNa];
+        int[] nas = new int[numNa];
+        int j = 0;
+        int a = 0;
+        for (int i = 0; i < n; i++) {
+            int p = perm[i];
+            if (RRuntime.isNA(keys[p])) {
+                nas[a++] = p;
+            } else {
+                idx[j++] = p;
+            }
+        }
+        if (dec) {
+            mergeSort(idx, (x, y) -> keys[y].compareTo(keys[x]));
+        } else {
+            mergeSort(idx, (x, y) -> keys[x].compareTo(keys[y]));
+        }
+        assemble(perm, idx, nas, naLast);
+    }
+
+    /**
+     * Orders {@code perm} with an arbitrary comparator, which must itself handle {@code NA}.
+     */
+    @TruffleBoundary
+    public static void order(int[] perm, IndexComparator cmp) {
+        mergeSort(perm, cmp);
+    }
+
+    private static void assemble(int[] perm, int[] values, int[] nas, boolean naLast) {
+        if (naLast) {
+            System.arraycopy(values, 0, perm, 0, values.length);
+            System.arraycopy(nas, 0, perm, values.length, nas.length);
+        } else {
+            System.arraycopy(nas, 0, perm, 0, nas.length);
+            System.arraycopy(values, 0, perm, nas.length, values.length);
+        }
+    }
+
+    /**
+     * Maps {@code x} to an {@code int} whose unsigned order is the requested order of {@code x}.
+     */
+    static int unsignedKey(int x, boolean dec) {
+        int k = x ^ Integer.MIN_VALUE;
+        return dec ? ~k : k;
+    }
+
+    /**
+     * Maps (non-NaN) {@code x} to a {@code long} whose unsigned order is the requested order of
+     * {@code x}.
+     */
+    static long unsignedKey(double x, boolean dec) {
+        // normalizes -0.0
+        return bitsKey(x == 0.0 ? 0.0 : x, dec);
+    }
+
+    /**
+     * As {@link #unsignedKey(double, boolean)} but ordering {@code -0.0} before {@code 0.0}, as
+     * {@link Double#compare} does.
+     */
+    static long bitsKey(double x, boolean dec) {
+        long bits = Double.doubleToRawLongBits(x);
+        long k = bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+        return dec ? ~k : k;
+    }
+
+    /**
+     * Inverse of {@link #bitsKey(double, boolean)}.
+     */
+    static double doubleFromKey(long key, boolean dec) {
+        long k = dec ? ~key : key;
+        return Double.longBitsToDouble(k < 0 ? k ^ Long.MIN_VALUE : ~k);
+    }
+
+    /**
+     * Stable sort of the pairs {@code (k[i], idx[i])} by the unsigned value of {@code k[i]}. If
+     * {@code idx} is {@code null} only {@code k} is sorted.
+     */
+    static void radixSort(int[] k, int[] idx) {
+        if (useParallelSort(k.length)) {
+            int[] tmpK = new int[k.length];
+            int[] tmpIdx = idx == null ? null : new int[k.length];
+            ForkJoinPool.commonPool().invoke(new IntKeySortTask(k, idx, tmpK, tmpIdx, 0, k.length, parallelGrain(k.length)));
+        } else {
+            radixSort(k, idx, 0, k.length);
+        }
+    }
+
+    /**
+     * As {@link #radixSort(int[], int[])} for the range {@code [from, to)}.
+     */
+    static void radixSort(int[] k, int[] idx, int from, int to) {
+        int m = to - from;
+        if (m < INSERTION_SORT_THRESHOLD) {
+            insertionSort(k, idx, from, to);
+            return;
+        }
+        int digits = Integer.SIZE / RADIX_BITS;
+        int[][] counts = new int[digits][RADIX + 1];
+        for (int i = from; i < to; i++) {
+            int x = k[i];
+            for (int d = 0; d < digits; d++) {
+                counts[d][((x >>> (d * RADIX_BITS)) & RADIX_MASK) + 1]++;
+            }
+        }
+        int[] srcK = k;
+        int[] srcIdx = idx;
+        int srcFrom = from;
+        int[] dstK = new int[m];
+        int[] dstIdx = idx == null ? null : new int[m];
+        int dstFrom = 0;
+        for (int d = 0; d < digits; d++) {
+            int shift = d * RADIX_BITS;
+            int[] count = counts[d];
+            if (count[((srcK[srcFrom] >>> shift) & RADIX_MASK) + 1] == m) {
+                // all keys have the same digit
+                continue;
+            }
+            for (int b = 0; b < RADIX; b++) {
+                count[b + 1] += count[b];
+            }
+            for (int i = 0; i < m; i++) {
+                int pos = dstFrom + count[(srcK[srcFrom + i] >>> shift) & RADIX_MASK]++;
+                dstK[pos] = srcK[srcFrom + i];
+                if (srcIdx != null) {
+                    dstIdx[pos] = srcIdx[srcFrom + i];
+                }
+            }
+            int[] t = srcK;
+            srcK = dstK;
+            dstK = t;
+            t = srcIdx;
+            srcIdx = dstIdx;
+            dstIdx = t;
+            int f = srcFrom;
+            srcFrom = dstFrom;
+            dstFrom = f;
+        }
+        if (srcK != k) {
+            System.arraycopy(srcK, srcFrom, k, from, m);
+            if (idx != null) {
+                System.arraycopy(srcIdx, srcFrom, idx, from, m);
+            }
+        }
+    }
+
+    /**
+     * Stable sort of the pairs {@code (k[i], idx[i])} by the unsigned value of {@code k[i]}. If
+     * {@code idx} is {@code null} only {@code k} is sorted.
+     */
+    static void radixSort(long[] k, int[] idx) {
+        if (useParallelSort(k.length)) {
+            long[] tmpK = new long[k.length];
+            int[] tmpIdx = idx == null ? null : new int[k.length];
+            ForkJoinPool.commonPool().invoke(new LongKeySortTask(k, idx, tmpK, tmpIdx, 0, k.length, parallelGrain(k.length)));
+        } else {
+            radixSort(k, idx, 0, k.length);
+        }
+    }
+
+    /**
+     * As {@link #radixSort(long[], int[])} for the range {@code [from, to)}.
+     */
+    static void radixSort(long[] k, int[] idx, int from, int to) {
+        int m = to - from;
+        if (m < INSERTION_SORT_THRESHOLD) {
+            insertionSort(k, idx, from, to);
+            return;
+        }
+        int digits = Long.SIZE / RADIX_BITS;
+        int[][] counts = new int[digits][RADIX + 1];
+        for (int i = from; i < to; i++) {
+            long x = k[i];
+            for (int d = 0; d < digits; d++) {
+                counts[d][(int) ((x >>> (d * RADIX_BITS)) & RADIX_MASK) + 1]++;
+            }
+        }
+        long[] srcK = k;
+        int[] srcIdx = idx;
+        int srcFrom = from;
+        long[] dstK = new long[m];
+        int[] dstIdx = idx == null ? null : new int[m];
+        int dstFrom = 0;
+        for (int d = 0; d < digits; d++) {
+            int shift = d * RADIX_BITS;
+            int[] count = counts[d];
+            if (count[(int) ((srcK[srcFrom] >>> shift) & RADIX_MASK) + 1] == m) {
+                // all keys have the same digit
+                continue;
+            }
+            for (int b = 0; b < RADIX; b++) {
+                count[b + 1] += count[b];
+            }
+            for (int i = 0; i < m; i++) {
+                int pos = dstFrom + count[(int) ((srcK[srcFrom + i] >>> shift) & RADIX_MASK)]++;
+                dstK[pos] = srcK[srcFrom + i];
+                if (srcIdx != null) {
+                    dstIdx[pos] = srcIdx[srcFrom + i];
+                }
+            }
+            long[] tk = srcK;
+            srcK = dstK;
+            dstK = tk;
+            int[] t = srcIdx;
+            srcIdx = dstIdx;
+            dstIdx = t;
+            int f = srcFrom;
+            srcFrom = dstFrom;
+            dstFrom = f;
+        }
+        if (srcK != k) {
+            System.arraycopy(srcK, srcFrom, k, from, m);
+            if (idx != null) {
+                System.arraycopy(srcIdx, srcFrom, idx, from, m);
+            }
+        }
+    }
+
+    private static void insertionSort(int[] k, int[] idx, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            int x = k[i];
+            int p = idx == null ? 0 : idx[i];
+            int j = i - 1;
+            while (j >= from && Integer.compareUnsigned(k[j], x) > 0) {
+                k[j + 1] = k[j];
+                if (idx != null) {
+                    idx[j + 1] = idx[j];
+                }
+                j--;
+            }
+            k[j + 1] = x;
+            if (idx != null) {
+                idx[j + 1] = p;
+            }
+        }
+    }
+
+    private static void insertionSort(long[] k, int[] idx, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            long x = k[i];
+            int p = idx == null ? 0 : idx[i];
+            int j = i - 1;
+            while (j >= from && Long.compareUnsigned(k[j], x) > 0) {
+                k[j + 1] = k[j];
+                if (idx != null) {
+                    idx[j + 1] = idx[j];
+                }
+                j--;
+            }
+            k[j + 1] = x;
+            if (idx != null) {
+                idx[j + 1] = p;
+            }
+        }
+    }
+
+    /**
+     * Stable merge sort of {@code idx}.
+     */
+    static void mergeSort(int[] idx, IndexComparator cmp) {
+        if (useParallelSort(idx.length)) {
+            ForkJoinPool.commonPool().invoke(new ComparatorSortTask(idx, new int[idx.length], cmp, 0, idx.length, parallelGrain(idx.length)));
+        } else {
+            mergeSort(idx, cmp, 0, idx.length, null);
+        }
+    }
+
+    /**
+     * Stable bottom-up merge sort of {@code idx[from, to)}, with runs of
+     * {@link #INSERTION_SORT_THRESHOLD} sorted by insertion sort. The same range of {@code tmp}, if
+     * not {@code null}, is used as the merge buffer.
+     */
+    static void mergeSort(int[] idx, IndexComparator cmp, int from, int to, int[] tmp) {
+        for (int lo = from; lo < to; lo += INSERTION_SORT_THRESHOLD) {
+            int hi = Math.min(lo + INSERTION_SORT_THRESHOLD, to);
+            for (int i = lo + 1; i < hi; i++) {
+                int p = idx[i];
+                int j = i - 1;
+                while (j >= lo && cmp.compare(idx[j], p) > 0) {
+                    idx[j + 1] = idx[j];
+                    j--;
+                }
+                idx[j + 1] = p;
+            }
+        }
+        int m = to - from;
+        if (m <= INSERTION_SORT_THRESHOLD) {
+            return;
+        }
+        int[] src = idx;
+        int[] dst = tmp == null ? new int[idx.length] : tmp;
+        for (int width = INSERTION_SORT_THRESHOLD; width < m; width *= 2) {
+            for (int lo = from; lo < to; lo += 2 * width) {
+                int mid = Math.min(lo + width, to);
+                int hi = Math.min(lo + 2 * width, to);
+                merge(src, dst, lo, mid, hi, cmp);
+            }
+            int[] t = src;
+            src = dst;
+            dst = t;
+        }
+        if (src != idx) {
+            System.arraycopy(src, from, idx, from, m);
+        }
+    }
+
+    /**
+     * Merges the sorted ranges {@code src[lo, mid)} and {@code src[mid, hi)} into {@code dst},
+     * taking from the left range on ties.
+     */
+    static void merge(int[] src, int[] dst, int lo, int mid, int hi, IndexComparator cmp) {
+        if (mid >= hi || cmp.compare(src[mid - 1], src[mid]) <= 0) {
+            // already in order
+            System.arraycopy(src, lo, dst, lo, hi - lo);
+            return;
+        }
+        int i = lo;
+        int j = mid;
+        int k = lo;
+        while (i < mid && j < hi) {
+            if (cmp.compare(src[j], src[i]) < 0) {
+                dst[k++] = src[j++];
+            } else {
+                dst[k++] = src[i++];
+            }
+        }
+        while (i < mid) {
+            dst[k++] = src[i++];
+        }
+        while (j < hi) {
+            dst[k++] = src[j++];
+        }
+    }
+
+    // Parallel sorting
+
+    /**
+     * Minimum length of a range sorted by a single task, so that the merge overhead stays small.
+     * Lowering {@link FastROptions#ParallelSortThreshold} below it also lowers the grain, so that
+     * small sorts are actually split when testing.
+     */
+    private static final int MIN_PARALLEL_GRAIN = 1 << 16;
+
+    /**
+     * Sorts of at least this many elements are split across the common {@link ForkJoinPool}, see
+     * {@link FastROptions#ParallelSortThreshold}. Zero means never.
+     */
+    private static final int PARALLEL_THRESHOLD = ForkJoinPool.getCommonPoolParallelism() > 1 ? FastROptions.ParallelSortThreshold.getNonNegativeIntValue() : 0;
+
+    private static boolean useParallelSort(int length) {
+        return PARALLEL_THRESHOLD > 0 && length >= PARALLEL_THRESHOLD;
+    }
+
+    private static int parallelGrain(int length) {
+        return Math.max(Math.min(MIN_PARALLEL_GRAIN, PARALLEL_THRESHOLD), length / (4 * ForkJoinPool.getCommonPoolParallelism()));
+    }
+
+    /**
+     * Sorts the range {@code [lo, hi)} by sorting both halves in parallel and merging the result
+     * (stably, i.e. taking from the left half on ties), so that the result is identical to the
+     * sequential sort. Ranges of at most {@code grain} elements are sorted sequentially.
+     */
+    @SuppressWarnings("serial")
+    private abstract static class ParallelSortTask extends RecursiveAction {
+        protected final int lo;
+        protected final int hi;
+        protected final int grain;
+
+        protected ParallelSortTask(int lo, int hi, int grain) {
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        protected abstract void sortSequential();
+
+        protected abstract ParallelSortTask create(int from, int to);
+
+        /**
+         * Merges the sorted ranges {@code [lo, mid)} and {@code [mid, hi)}.
+         */
+        protected abstract void merge(int mid);
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= grain) {
+                sortSequential();
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(create(lo, mid), create(mid, hi));
+                merge(mid);
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class IntKeySortTask extends ParallelSortTask {
+        private final int[] k;
+        private final int[] idx;
+        private final int[] tmpK;
+        private final int[] tmpIdx;
+
+        IntKeySortTask(int[] k, int[] idx, int[] tmpK, int[] tmpIdx, int lo, int hi, int grain) {
+            super(lo, hi, grain);
+            this.k = k;
+            this.idx = idx;
+            this.tmpK = tmpK;
+            this.tmpIdx = tmpIdx;
+        }
+
+        @Override
+        protected void sortSequential() {
+            radixSort(k, idx, lo, hi);
+        }
+
+        @Override
+        protected ParallelSortTask create(int from, int to) {
+            return new IntKeySortTask(k, idx, tmpK, tmpIdx, from, to, grain);
+        }
+
+        @Override
+        protected void merge(int mid) {
+            if (Integer.compareUnsigned(k[mid - 1], k[mid]) <= 0) {
+                return;
+            }
+            int i = lo;
+            int j = mid;
+            int d = lo;
+            while (i < mid && j < hi) {
+                int from = Integer.compareUnsigned(k[j], k[i]) < 0 ? j++ : i++;
+                tmpK[d] = k[from];
+                if (idx != null) {
+                    tmpIdx[d] = idx[from];
+                }
+                d++;
+            }
+            int rest = i < mid ? i : j;
+            int restLength = hi - d;
+            System.arraycopy(k, rest, tmpK, d, restLength);
+            System.arraycopy(tmpK, lo, k, lo, hi - lo);
+            if (idx != null) {
+                System.arraycopy(idx, rest, tmpIdx, d, restLength);
+                System.arraycopy(tmpIdx, lo, idx, lo, hi - lo);
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class LongKeySortTask extends ParallelSortTask {
+        private final long[] k;
+        private final int[] idx;
+        private final long[] tmpK;
+        private final int[] tmpIdx;
+
+        LongKeySortTask(long[] k, int[] idx, long[] tmpK, int[] tmpIdx, int lo, int hi, int grain) {
+            super(lo, hi, grain);
+            this.k = k;
+            this.idx = idx;
+            this.tmpK = tmpK;
+            this.tmpIdx = tmpIdx;
+        }
+
+        @Override
+        protected void sortSequential() {
+            radixSort(k, idx, lo, hi);
+        }
+
+        @Override
+        protected ParallelSortTask create(int from, int to) {
+            return new LongKeySortTask(k, idx, tmpK, tmpIdx, from, to, grain);
+        }
+
+        @Override
+        protected void merge(int mid) {
+            if (Long.compareUnsigned(k[mid - 1], k[mid]) <= 0) {
+                return;
+            }
+            int i = lo;
+            int j = mid;
+            int d = lo;
+            while (i < mid && j < hi) {
+                int from = Long.compareUnsigned(k[j], k[i]) < 0 ? j++ : i++;
+                tmpK[d] = k[from];
+                if (idx != null) {
+                    tmpIdx[d] = idx[from];
+                }
+                d++;
+            }
+            int rest = i < mid ? i : j;
+            int restLength = hi - d;
+            System.arraycopy(k, rest, tmpK, d, restLength);
+            System.arraycopy(tmpK, lo, k, lo, hi - lo);
+            if (idx != null) {
+                System.arraycopy(idx, rest, tmpIdx, d, restLength);
+                System.arraycopy(tmpIdx, lo, idx, lo, hi - lo);
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class ComparatorSortTask extends ParallelSortTask {
+        private final int[] idx;
+        private final int[] tmp;
+        private final IndexComparator cmp;
+
+        ComparatorSortTask(int[] idx, int[] tmp, IndexComparator cmp, int lo, int hi, int grain) {
+            super(lo, hi, grain);
+            this.idx = idx;
+            this.tmp = tmp;
+            this.cmp = cmp;
+        }
+
+        @Override
+        protected void sortSequential() {
+            mergeSort(idx, cmp, lo, hi, tmp);
+        }
+
+        @Override
+        protected ParallelSortTask create(int from, int to) {
+            return new ComparatorSortTask(idx, tmp, cmp, from, to, grain);
+        }
+
+        @Override
+        protected void merge(int mid) {
+            RadixOrder.merge(idx, tmp, lo, mid, hi, cmp);
+            System.arraycopy(tmp, lo, idx, lo, hi - lo);
+        }
+    }
+
+    /**
+     * Sorts {@code data} (which contains no {@code NA} values) in place.
+     */
+    @TruffleBoundary
+    public static void sort(int[] data, boolean dec) {
+        int m = data.length;
+        for (int i = 0; i < m; i++) {
+            data[i] = unsignedKey(data[i], dec);
+        }
+        radixSort(data, null);
+        for (int i = 0; i < m; i++) {
+            // the transformation is its own inverse
+            data[i] = unsignedKey(data[i], dec);
+        }
+    }
+
+    /**
+     * Sorts {@code data} (which contains no {@code NA} or {@code NaN} values) in place.
+     */
+    @TruffleBoundary
+    public static void sort(double[] data, boolean dec) {
+        int m = data.length;
+        long[] k = new long[m];
+        for (int i = 0; i < m; i++) {
+            k[i] = bitsKey(data[i], dec);
+        }
+        radixSort(k, null);
+        for (int i = 0; i < m; i++) {
+            data[i] = doubleFromKey(k[i], dec);
+        }
+    }
+}
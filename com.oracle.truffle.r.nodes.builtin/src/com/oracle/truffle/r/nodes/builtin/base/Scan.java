@@ -383,9 +383,34 @@ public abstract class Scan extends RBuiltinNode {
 
         naCheck.enable(true);
 
+        RList mapped = scanFrameMapped(list, maxRecords, maxLines, flush, fill, stripWhite, blSkip, multiLine, data);
+        if (mapped != null) {
+            return mapped;
+        }
         return scanFrameInternal(maxRecords, maxLines, flush, fill, blSkip, multiLine, data, nc, blockSize, list);
     }
 
+    /**
+     * Tries to read the records with {@link MappedTableReader}, which supports file connections
+     * with a (one byte) separator.
+     */
+    @TruffleBoundary
+    private static RList scanFrameMapped(RList list, int maxRecords, int maxLines, boolean flush, boolean fill, boolean stripWhite, boolean blSkip, boolean multiLine, LocalData data)
+                    throws IOException {
+        if (!(data.con instanceof FileConnections.FileRConnection) || data.sepchar == null || maxLines > 0 || flush || (multiLine && !fill) || data.escapes) {
+            return null;
+        }
+        int comment = data.comchar == NO_COMCHAR ? -1 : data.comchar;
+        RList result = MappedTableReader.read((FileConnections.FileRConnection) data.con, list, maxRecords, fill, stripWhite, blSkip, data.sepchar.charAt(0), data.quoteset, comment, data.decchar,
+                        data.naStrings);
+        if (result != null && !data.quiet) {
+            int records = list.getLength() == 0 ? 0 : ((RAbstractVector) list.getDataAt(0)).getLength();
+            String s = String.format("Read %d record%s", records, (records == 1) ? "" : "s");
+            StdConnections.getStdout().writeString(s, true);
+        }
+        return result;
+    }
+
     @TruffleBoundary
     private RVector scanFrameInternal(int maxRecords, int maxLines, boolean flush, boolean fill, boolean blSkip, boolean multiLine, LocalData data, int nc, int initialBlockSize, RList list)
                     throws IOException {
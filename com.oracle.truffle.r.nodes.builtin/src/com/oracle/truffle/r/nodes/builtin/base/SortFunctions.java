@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -34,39 +34,21 @@ import java.util.*;
 import static com.oracle.truffle.r.runtime.RBuiltinKind.INTERNAL;
 
 /**
- * The internal functions mandated by {@code base/sort.R}. N.B. We use the standard JDK sorting
- * algorithms and not the specific algorithms specified in the R manual entry. TODO: implement psort
- * and radixsort.
+ * The internal functions mandated by {@code base/sort.R}. N.B. We use the radix sort in
+ * {@link RadixOrder} for integer and double vectors, and the standard JDK sorting algorithms
+ * otherwise, and not the specific algorithms specified in the R manual entry. TODO: implement
+ * psort.
  */
 public class SortFunctions {
 
     private abstract static class Adapter extends RBuiltinNode {
-        @TruffleBoundary
         private static double[] sort(double[] data, byte decreasing) {
-            // no reverse comparator for primitives
-            Arrays.parallelSort(data);
-            if (RRuntime.fromLogical(decreasing)) {
-                int len = data.length;
-                for (int i = len / 2 - 1; i >= 0; i--) {
-                    double temp = data[i];
-                    data[i] = data[len - i - 1];
-                    data[len - i - 1] = temp;
-                }
-            }
+            RadixOrder.sort(data, RRuntime.fromLogical(decreasing));
             return data;
         }
 
-        @TruffleBoundary
         private static int[] sort(int[] data, byte decreasing) {
-            Arrays.parallelSort(data);
-            if (RRuntime.fromLogical(decreasing)) {
-                int len = data.length;
-                for (int i = len / 2 - 1; i >= 0; i--) {
-                    int temp = data[i];
-                    data[i] = data[len - i - 1];
-                    data[len - i - 1] = temp;
-                }
-            }
+            RadixOrder.sort(data, RRuntime.fromLogical(decreasing));
             return data;
         }
 
@@ -118,8 +100,9 @@ public class SortFunctions {
 
     /**
      * In GnuR this is a shell sort variant, see <a href =
-     * "https://stat.ethz.ch/R-manual/R-devel/library/base/html/sort.html>here">here</a>. The JDK
-     * does not have a shell sort so for now we just use the default JDK sort (quicksort).
+     * "https://stat.ethz.ch/R-manual/R-devel/library/base/html/sort.html>here">here</a>. We use
+     * the radix sort in {@link RadixOrder} for integer and double vectors and the default JDK sort
+     * otherwise.
      *
      * N.B. The R code strips out {@code NA} and {@code NaN} values before calling the builtin.
      */
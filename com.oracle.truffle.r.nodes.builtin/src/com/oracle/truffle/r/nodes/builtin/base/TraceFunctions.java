@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -23,6 +23,7 @@
 package com.oracle.truffle.r.nodes.builtin.base;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
 import com.oracle.truffle.r.nodes.builtin.RInvisibleBuiltinNode;
@@ -33,7 +34,14 @@ import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.context.RContext;
 import com.oracle.truffle.r.runtime.data.RFunction;
+import com.oracle.truffle.r.runtime.data.RMissing;
 import com.oracle.truffle.r.runtime.data.RNull;
+import com.oracle.truffle.r.runtime.data.RSequence;
+import com.oracle.truffle.r.runtime.data.RShareable;
+import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
+import com.oracle.truffle.r.runtime.env.REnvironment;
+import com.oracle.truffle.r.runtime.instrument.MemoryCopyTracer;
 
 public class TraceFunctions {
     @RBuiltin(name = ".primTrace", kind = RBuiltinKind.PRIMITIVE, parameterNames = "what")
@@ -78,4 +86,95 @@ public class TraceFunctions {
 
     }
 
+    @RBuiltin(name = "tracemem", kind = RBuiltinKind.PRIMITIVE, parameterNames = "x")
+    public abstract static class Tracemem extends RBuiltinNode {
+
+        @Specialization
+        protected String tracemem(@SuppressWarnings("unused") RNull x) {
+            throw RError.error(this, RError.Message.GENERIC, "cannot trace NULL");
+        }
+
+        @Specialization
+        protected String tracemem(@SuppressWarnings("unused") RFunction x) {
+            throw RError.error(this, RError.Message.GENERIC, "argument must not be a function");
+        }
+
+        @Specialization
+        protected String tracemem(@SuppressWarnings("unused") REnvironment x) {
+            throw RError.error(this, RError.Message.GENERIC, "'tracemem' is not useful for promise and environment objects");
+        }
+
+        @Specialization
+        protected String tracemem(RShareable x) {
+            return MemoryCopyTracer.trace(x);
+        }
+
+        @Specialization
+        protected String tracemem(RSequence x) {
+            return MemoryCopyTracer.trace(x);
+        }
+
+        /**
+         * Scalars are represented by (boxed) Java values, which have no identity that would survive
+         * a copy. As in GnuR, an address is returned nonetheless (that of the boxed vector), but no
+         * copy of the value is ever reported.
+         */
+        @Fallback
+        protected String tracemem(Object x) {
+            Object vector = RRuntime.asAbstractVector(x);
+            if (vector instanceof RAbstractVector) {
+                return MemoryCopyTracer.getAddress(vector);
+            }
+            throw RError.error(this, RError.Message.GENERIC, "'tracemem' is not useful for this object");
+        }
+    }
+
+    @RBuiltin(name = "untracemem", kind = RBuiltinKind.PRIMITIVE, parameterNames = "x")
+    public abstract static class Untracemem extends RInvisibleBuiltinNode {
+
+        @Specialization
+        protected RNull untracemem(Object x) {
+            controlVisibility();
+            MemoryCopyTracer.untrace(x);
+            return RNull.instance;
+        }
+    }
+
+    @RBuiltin(name = "retracemem", kind = RBuiltinKind.PRIMITIVE, parameterNames = {"x", "previous"})
+    public abstract static class Retracemem extends RBuiltinNode {
+
+        @Override
+        public Object[] getDefaultParameterValues() {
+            return new Object[]{RMissing.instance, RNull.instance};
+        }
+
+        @Specialization
+        protected Object retracemem(Object x, @SuppressWarnings("unused") RNull previous) {
+            return traceResult(x);
+        }
+
+        @Specialization
+        protected Object retracemem(Object x, RAbstractStringVector previous) {
+            Object result = traceResult(x);
+            MemoryCopyTracer.retrace(x, previous.getDataAt(0));
+            return result;
+        }
+
+        @Fallback
+        protected Object retracemem(@SuppressWarnings("unused") Object x, @SuppressWarnings("unused") Object previous) {
+            throw RError.error(this, RError.Message.INVALID_ARGUMENT, "previous");
+        }
+
+        /**
+         * The trace of {@code x}, or an invisible {@code NULL} if it is not traced.
+         */
+        private static Object traceResult(Object x) {
+            String trace = MemoryCopyTracer.getTrace(x);
+            if (trace == null) {
+                RContext.getInstance().setVisible(false);
+                return RNull.instance;
+            }
+            return trace;
+        }
+    }
 }
@@ -48,6 +48,7 @@ public abstract class DotC extends RBuiltinNode {
 
     @Child private ExtractVectorNode nameExtract = ExtractVectorNode.create(ElementAccessMode.SUBSCRIPT, true);
     @Child private ExtractVectorNode addressExtract = ExtractVectorNode.create(ElementAccessMode.SUBSCRIPT, true);
+    @Child private NativeSymbolLookupNode symbolLookup = NativeSymbolLookupNode.create();
 
     @Override
     public Object[] getDefaultParameterValues() {
@@ -68,7 +69,7 @@ public abstract class DotC extends RBuiltinNode {
     protected RList c(String f, RArgsValuesAndNames args, byte naok, byte dup, RMissing rPackage, RMissing encoding, //
                     @Cached("create()") BranchProfile errorProfile) {
         controlVisibility();
-        SymbolInfo symbolInfo = DLL.findSymbolInfo(f, null);
+        SymbolInfo symbolInfo = symbolLookup.execute(f, null);
         if (symbolInfo == null) {
             errorProfile.enter();
             throw RError.error(this, RError.Message.C_SYMBOL_NOT_IN_TABLE, f);
@@ -167,7 +168,9 @@ public abstract class DotC extends RBuiltinNode {
         if (FastROptions.TraceNativeCalls.getBooleanValue()) {
             trace(name, nativeArgs);
         }
+        long start = RFFIUtils.callStart();
         RFFIFactory.getRFFI().getCRFFI().invoke(address, nativeArgs);
+        RFFIUtils.recordCall(name, start);
         // we have to assume that the native method updated everything
         RStringVector listNames = validateArgNames(argValues.length, node.getSuppliedSignature());
         Object[] results = new Object[argValues.length];
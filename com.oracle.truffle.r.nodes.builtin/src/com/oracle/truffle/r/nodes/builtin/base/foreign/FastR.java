@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -100,6 +100,14 @@ public abstract class FastR extends RBuiltinNode {
                 return FastRContextFactory.JoinNodeGen.create();
             case "context.eval":
                 return FastRContextFactory.EvalNodeGen.create();
+            case "context.pool.create":
+                return FastRContextFactory.PoolCreateNodeGen.create();
+            case "context.pool.eval":
+                return FastRContextFactory.PoolEvalNodeGen.create();
+            case "context.pool.stats":
+                return FastRContextFactory.PoolStatsNodeGen.create();
+            case "context.pool.close":
+                return FastRContextFactory.PoolCloseNodeGen.create();
             case "fastr.channel.create":
                 return FastRContextFactory.CreateChannelNodeGen.create();
             case "fastr.channel.get":
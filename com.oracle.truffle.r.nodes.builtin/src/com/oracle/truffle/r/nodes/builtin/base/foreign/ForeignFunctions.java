@@ -137,6 +137,7 @@ public class ForeignFunctions {
 
         @Child private ExtractVectorNode nameExtract = ExtractVectorNode.create(ElementAccessMode.SUBSCRIPT, true);
         @Child private ExtractVectorNode addressExtract = ExtractVectorNode.create(ElementAccessMode.SUBSCRIPT, true);
+        @Child protected NativeSymbolLookupNode symbolLookup = NativeSymbolLookupNode.create();
 
         protected String getNameFromSymbolInfo(VirtualFrame frame, RList symbol) {
             if (nameExtract == null) {
@@ -190,6 +191,8 @@ public class ForeignFunctions {
     @RBuiltin(name = ".Fortran", kind = RBuiltinKind.PRIMITIVE, parameterNames = {".NAME", "...", "NAOK", "DUP", "PACKAGE", "ENCODING"})
     public abstract static class Fortran extends LookupAdapter {
 
+        @Child private NativeSymbolLookupNode registeredSymbolLookup = NativeSymbolLookupNode.createRegistered();
+
         @Override
         public Object[] getDefaultParameterValues() {
             return new Object[]{RMissing.instance, RArgsValuesAndNames.EMPTY, RRuntime.LOGICAL_FALSE, RRuntime.LOGICAL_FALSE, RMissing.instance, RMissing.instance};
@@ -226,7 +229,7 @@ public class ForeignFunctions {
         protected RList c(String f, RArgsValuesAndNames args, byte naok, byte dup, @SuppressWarnings("unused") RMissing rPackage, @SuppressWarnings("unused") RMissing encoding, //
                         @Cached("create()") BranchProfile errorProfile) {
             controlVisibility();
-            SymbolInfo symbolInfo = DLL.findRegisteredSymbolinInDLL(f, null, "");
+            SymbolInfo symbolInfo = registeredSymbolLookup.execute(f, null);
             if (symbolInfo == null) {
                 errorProfile.enter();
                 throw RError.error(this, RError.Message.C_SYMBOL_NOT_IN_TABLE, f);
@@ -475,7 +478,7 @@ public class ForeignFunctions {
         @Specialization
         public Object callNamedFunctionWithPackage(String name, RArgsValuesAndNames args, String packageName) {
             controlVisibility();
-            SymbolInfo symbolInfo = DLL.findSymbolInfo(name, packageName);
+            SymbolInfo symbolInfo = symbolLookup.execute(name, packageName);
             if (symbolInfo == null) {
                 errorProfile.enter();
                 throw RError.error(this, Message.C_SYMBOL_NOT_IN_TABLE, name);
@@ -523,9 +526,11 @@ public class ForeignFunctions {
                     return QgammaNodeGen.create();
                 case "download":
                     return new Download();
-                case "unzip":
                 case "Rprof":
+                    return new Rprof();
                 case "Rprofmem":
+                    return new Rprofmem();
+                case "unzip":
                 case "addhistory":
                 case "loadhistory":
                 case "savehistory":
@@ -564,7 +569,7 @@ public class ForeignFunctions {
         @Specialization
         public Object callNamedFunctionWithPackage(String name, RArgsValuesAndNames args, String packageName) {
             controlVisibility();
-            SymbolInfo symbolInfo = DLL.findSymbolInfo(name, packageName);
+            SymbolInfo symbolInfo = symbolLookup.execute(name, packageName);
             if (symbolInfo == null) {
                 errorProfile.enter();
                 throw RError.error(this, Message.C_SYMBOL_NOT_IN_TABLE, name);
@@ -634,7 +639,7 @@ public class ForeignFunctions {
         @Specialization
         public Object callNamedFunctionWithPackage(String name, RArgsValuesAndNames args, String packageName) {
             controlVisibility();
-            SymbolInfo symbolInfo = DLL.findSymbolInfo(name, packageName);
+            SymbolInfo symbolInfo = symbolLookup.execute(name, packageName);
             if (symbolInfo == null) {
                 errorProfile.enter();
                 throw RError.error(this, Message.C_SYMBOL_NOT_IN_TABLE, name);
@@ -692,7 +697,7 @@ public class ForeignFunctions {
         @Specialization
         public Object callNamedFunctionWithPackage(String name, RArgsValuesAndNames args, String packageName) {
             controlVisibility();
-            SymbolInfo symbolInfo = DLL.findSymbolInfo(name, packageName);
+            SymbolInfo symbolInfo = symbolLookup.execute(name, packageName);
             if (symbolInfo == null) {
                 errorProfile.enter();
                 throw RError.error(this, Message.C_SYMBOL_NOT_IN_TABLE, name);
@@ -747,7 +752,7 @@ public class ForeignFunctions {
         @Specialization
         public Object callNamedFunctionWithPackage(String name, RArgsValuesAndNames args, String packageName) {
             controlVisibility();
-            SymbolInfo symbolInfo = DLL.findSymbolInfo(name, packageName);
+            SymbolInfo symbolInfo = symbolLookup.execute(name, packageName);
             if (symbolInfo == null) {
                 errorProfile.enter();
                 throw RError.error(this, Message.C_SYMBOL_NOT_IN_TABLE, name);
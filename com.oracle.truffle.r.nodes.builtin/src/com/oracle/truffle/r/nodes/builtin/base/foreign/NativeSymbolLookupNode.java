@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.builtin.base.foreign;
+
+import com.oracle.truffle.api.Assumption;
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.r.runtime.ffi.DLL;
+import com.oracle.truffle.r.runtime.ffi.DLL.SymbolInfo;
+
+/**
+ * Looks up a native symbol given by name, as in {@code .Call("foo", ..., PACKAGE = "bar")}, and
+ * caches the result at the call site. The cache is invalidated when a DLL is loaded or unloaded. A
+ * call site that sees more than one name (or package) reverts to an uncached lookup.
+ */
+public final class NativeSymbolLookupNode extends Node {
+
+    /**
+     * Whether to restrict the search to the registered symbols (for {@code .Fortran}).
+     */
+    private final boolean registeredOnly;
+
+    @CompilationFinal private String cachedName;
+    @CompilationFinal private String cachedPackage;
+    @CompilationFinal private SymbolInfo cachedSymbolInfo;
+    @CompilationFinal private Assumption dllsUnchanged;
+    @CompilationFinal private boolean generic;
+
+    private NativeSymbolLookupNode(boolean registeredOnly) {
+        this.registeredOnly = registeredOnly;
+    }
+
+    public static NativeSymbolLookupNode create() {
+        return new NativeSymbolLookupNode(false);
+    }
+
+    public static NativeSymbolLookupNode createRegistered() {
+        return new NativeSymbolLookupNode(true);
+    }
+
+    /**
+     * @return the symbol, or {@code null} if not found (which is never cached).
+     */
+    public SymbolInfo execute(String name, String packageName) {
+        if (!generic) {
+            if (cachedSymbolInfo != null && dllsUnchanged.isValid() && name.equals(cachedName) && samePackage(packageName)) {
+                return cachedSymbolInfo;
+            }
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            if (cachedName != null && !(name.equals(cachedName) && samePackage(packageName))) {
+                generic = true;
+                cachedSymbolInfo = null;
+            } else {
+                Assumption assumption = DLL.getDLLsUnchangedAssumption();
+                SymbolInfo result = lookup(name, packageName);
+                if (result != null) {
+                    cachedName = name;
+                    cachedPackage = packageName;
+                    cachedSymbolInfo = result;
+                    dllsUnchanged = assumption;
+                }
+                return result;
+            }
+        }
+        return lookup(name, packageName);
+    }
+
+    private boolean samePackage(String packageName) {
+        return packageName == null ? cachedPackage == null : packageName.equals(cachedPackage);
+    }
+
+    @TruffleBoundary
+    private SymbolInfo lookup(String name, String packageName) {
+        if (registeredOnly) {
+            return DLL.findRegisteredSymbolinInDLL(name, packageName, "");
+        } else {
+            return DLL.findSymbolInfo(name, packageName);
+        }
+    }
+}
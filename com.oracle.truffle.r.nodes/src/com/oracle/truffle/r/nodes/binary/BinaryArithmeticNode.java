@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -22,33 +22,68 @@
  */
 package com.oracle.truffle.r.nodes.binary;
 
+import java.util.*;
+
 import com.oracle.truffle.api.*;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.*;
 import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.instrument.WrapperNode;
+import com.oracle.truffle.api.nodes.Node;
 import com.oracle.truffle.api.profiles.*;
 import com.oracle.truffle.r.nodes.builtin.*;
 import com.oracle.truffle.r.nodes.control.*;
+import com.oracle.truffle.r.nodes.function.*;
 import com.oracle.truffle.r.nodes.primitive.*;
 import com.oracle.truffle.r.nodes.profile.*;
 import com.oracle.truffle.r.nodes.unary.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.RError.Message;
 import com.oracle.truffle.r.runtime.data.*;
+import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.data.model.*;
 import com.oracle.truffle.r.runtime.nodes.*;
 import com.oracle.truffle.r.runtime.ops.*;
 
+/**
+ * Chains of element-wise double arithmetic on long vectors, e.g. {@code a * b + c - d}, are not
+ * evaluated operator by operator. If the result of an operation is directly an operand of another
+ * such operation, it is returned as a {@link RDoubleVectorExpression}, and the outermost operation
+ * of the chain evaluates the whole expression in a single fused loop.
+ */
 public abstract class BinaryArithmeticNode extends RBuiltinNode {
 
     protected static final int CACHE_LIMIT = 5;
 
+    /**
+     * The operators whose operands may be {@link RDoubleVectorExpression}s.
+     */
+    private static final Set<String> FUSED_OPERATORS = new HashSet<>(Arrays.asList("+", "-", "*", "/"));
+
     protected final BinaryArithmeticFactory binary;
     protected final UnaryArithmeticFactory unary;
+    private final RDoubleVectorExpression.Operation fusedOperation;
+
+    @CompilationFinal private Boolean operandOfArithmetic;
 
     public BinaryArithmeticNode(BinaryArithmeticFactory binaryFactory, UnaryArithmeticFactory unaryFactory) {
         this.binary = binaryFactory;
         this.unary = unaryFactory;
+        this.fusedOperation = getFusedOperation(binaryFactory);
+    }
+
+    private static RDoubleVectorExpression.Operation getFusedOperation(BinaryArithmeticFactory factory) {
+        if (factory == BinaryArithmetic.ADD) {
+            return RDoubleVectorExpression.Operation.ADD;
+        } else if (factory == BinaryArithmetic.SUBTRACT) {
+            return RDoubleVectorExpression.Operation.SUBTRACT;
+        } else if (factory == BinaryArithmetic.MULTIPLY) {
+            return RDoubleVectorExpression.Operation.MULTIPLY;
+        } else if (factory == BinaryArithmetic.DIV) {
+            return RDoubleVectorExpression.Operation.DIVIDE;
+        }
+        return null;
     }
 
     @Override
@@ -62,6 +97,106 @@ public abstract class BinaryArithmeticNode extends RBuiltinNode {
         return BinaryArithmeticNodeGen.create(binary, unary, new RNode[]{null, null}, null, null);
     }
 
+    @Specialization(guards = "isFusable(left, right)")
+    protected Object doFused(Object left, Object right) {
+        RAbstractVector leftVector = (RAbstractVector) left;
+        RAbstractVector rightVector = (RAbstractVector) right;
+        int leftLength = leftVector.getLength();
+        int rightLength = rightVector.getLength();
+        if (Math.max(leftLength, rightLength) % Math.min(leftLength, rightLength) != 0) {
+            try {
+                RError.warning(this, RError.Message.LENGTH_NOT_MULTI);
+            } catch (Throwable e) {
+                // the warning was turned into an error
+                RDoubleVectorExpression.discard(left, right);
+                throw e;
+            }
+        }
+        RDoubleVectorExpression expression = RDoubleVectorExpression.create(fusedOperation, leftVector, rightVector);
+        return isOperandOfArithmetic() ? expression : expression.materialize();
+    }
+
+    @Specialization(guards = "isFusableNegation(left)")
+    protected Object doFusedNegation(Object left, @SuppressWarnings("unused") RMissing right) {
+        RDoubleVectorExpression expression = RDoubleVectorExpression.createNegation((RAbstractDoubleVector) left);
+        return isOperandOfArithmetic() ? expression : expression.materialize();
+    }
+
+    /**
+     * An {@link RDoubleVectorExpression} operand that cannot be fused, e.g. because the other
+     * operand has attributes or is not a double or integer vector, is materialized, and the
+     * operation is then performed (or fails) on the materialized vector like on any other.
+     */
+    @Specialization(guards = "isUnfusedExpression(left, right)")
+    protected Object doMaterialize(VirtualFrame frame, Object left, Object right) {
+        return execute(frame, RDoubleVectorExpression.materialize(left), RDoubleVectorExpression.materialize(right));
+    }
+
+    protected boolean isUnfusedExpression(Object left, Object right) {
+        if (!(left instanceof RDoubleVectorExpression || right instanceof RDoubleVectorExpression)) {
+            return false;
+        }
+        return right instanceof RMissing ? !isFusableNegation(left) : !isFusable(left, right);
+    }
+
+    /**
+     * An operation is fused if it has a double result and is either an operand of another
+     * arithmetic operation (and the result is long enough) or has an operand that is an
+     * {@link RDoubleVectorExpression}, which it then materializes.
+     */
+    protected boolean isFusable(Object left, Object right) {
+        if (fusedOperation == null || !isFusableOperand(left) || !isFusableOperand(right) || !(left instanceof RAbstractDoubleVector || right instanceof RAbstractDoubleVector)) {
+            return false;
+        }
+        int leftLength = ((RAbstractVector) left).getLength();
+        int rightLength = ((RAbstractVector) right).getLength();
+        if (leftLength == 0 || rightLength == 0) {
+            return false;
+        }
+        return left instanceof RDoubleVectorExpression || right instanceof RDoubleVectorExpression || (isOperandOfArithmetic() && RDoubleVectorExpression.isEnabled(Math.max(leftLength, rightLength)));
+    }
+
+    protected boolean isFusableNegation(Object operand) {
+        if (unary != UnaryArithmetic.NEGATE || !(operand instanceof RAbstractDoubleVector) || !isFusableOperand(operand)) {
+            return false;
+        }
+        int length = ((RAbstractVector) operand).getLength();
+        return length > 0 && (operand instanceof RDoubleVectorExpression || (isOperandOfArithmetic() && RDoubleVectorExpression.isEnabled(length)));
+    }
+
+    private static boolean isFusableOperand(Object value) {
+        return (value instanceof RAbstractDoubleVector || value instanceof RAbstractIntVector) && ((RAbstractVector) value).getAttributes() == null;
+    }
+
+    /**
+     * Determines whether the result of this node is directly an operand of one of the
+     * {@link #FUSED_OPERATORS}, i.e., whether the builtin is called by a {@link GroupDispatchNode}
+     * that is itself an argument of such an operator.
+     */
+    protected final boolean isOperandOfArithmetic() {
+        if (operandOfArithmetic == null) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            Node call = getSyntaxAncestor(this);
+            Node consumer = call instanceof GroupDispatchNode ? getSyntaxAncestor(call) : null;
+            operandOfArithmetic = consumer instanceof GroupDispatchNode && isFusedOperator((GroupDispatchNode) consumer);
+        }
+        return operandOfArithmetic;
+    }
+
+    private static boolean isFusedOperator(GroupDispatchNode call) {
+        String name = call.getGenericName();
+        // unary plus returns its operand, which would then escape
+        return FUSED_OPERATORS.contains(name) && (call.getArguments().getLength() == 2 || name.equals("-"));
+    }
+
+    private static Node getSyntaxAncestor(Node node) {
+        Node current = node.getParent();
+        while (current != null && (!(current instanceof RSyntaxNode) || current instanceof WrapperNode)) {
+            current = current.getParent();
+        }
+        return current;
+    }
+
     @Specialization(limit = "CACHE_LIMIT", guards = {"cached != null", "cached.isSupported(left, right)"})
     protected Object doNumericVectorCached(Object left, Object right, //
                     @Cached("createFastCached(left, right)") BinaryMapNode cached) {
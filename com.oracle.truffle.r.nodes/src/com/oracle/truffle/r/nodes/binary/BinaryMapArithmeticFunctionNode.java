@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -22,6 +22,7 @@
  */
 package com.oracle.truffle.r.nodes.binary;
 
+import com.oracle.truffle.api.nodes.NodeUtil;
 import com.oracle.truffle.r.nodes.primitive.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.*;
@@ -50,6 +51,18 @@ public final class BinaryMapArithmeticFunctionNode extends BinaryMapNAFunctionNo
         return arithmetic.introducesNA();
     }
 
+    @Override
+    public boolean supportsParallel() {
+        return true;
+    }
+
+    @Override
+    public BinaryMapFunctionNode createParallelCopy() {
+        BinaryMapArithmeticFunctionNode copy = new BinaryMapArithmeticFunctionNode(NodeUtil.cloneNode(arithmetic));
+        copy.adoptChildren();
+        return copy;
+    }
+
     @Override
     public boolean mayFoldConstantTime(Class<? extends RAbstractVector> leftClass, Class<? extends RAbstractVector> rightClass) {
         return (isSequenceAddArithmetic() || isSequenceMulArithmetic()) && (RSequence.class.isAssignableFrom(leftClass) || RSequence.class.isAssignableFrom(rightClass));
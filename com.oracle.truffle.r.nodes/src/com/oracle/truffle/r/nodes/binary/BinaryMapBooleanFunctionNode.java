@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -22,6 +22,7 @@
  */
 package com.oracle.truffle.r.nodes.binary;
 
+import com.oracle.truffle.api.nodes.NodeUtil;
 import com.oracle.truffle.r.nodes.primitive.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.*;
@@ -54,6 +55,18 @@ public final class BinaryMapBooleanFunctionNode extends BinaryMapNAFunctionNode
         return false;
     }
 
+    @Override
+    public boolean supportsParallel() {
+        return true;
+    }
+
+    @Override
+    public BinaryMapFunctionNode createParallelCopy() {
+        BinaryMapBooleanFunctionNode copy = new BinaryMapBooleanFunctionNode(NodeUtil.cloneNode(operation));
+        copy.adoptChildren();
+        return copy;
+    }
+
     @Override
     public byte applyLogical(byte left, byte right) {
         assert RLogical.isValid(left);
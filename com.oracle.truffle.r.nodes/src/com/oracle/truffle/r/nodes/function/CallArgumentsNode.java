@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -34,6 +34,7 @@ import com.oracle.truffle.r.nodes.function.PromiseHelperNode.PromiseCheckHelperN
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.*;
 import com.oracle.truffle.r.runtime.data.RPromise.Closure;
+import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.nodes.*;
 
 /**
@@ -182,17 +183,23 @@ public class CallArgumentsNode extends ArgumentsNode {
         Object[] values = new Object[size];
         int vargsSymbolsIndex = 0;
         int index = 0;
-        for (int i = 0; i < arguments.length; i++) {
-            if (vargsSymbolsIndex < varArgsSymbolIndices.length && varArgsSymbolIndices[vargsSymbolsIndex] == i) {
-                index = flattenVarArgs(frame, varArgInfo, names, values, index);
-                vargsSymbolsIndex++;
-            } else {
-                values[index] = arguments[i] == null ? RMissing.instance : arguments[i].execute(frame);
-                if (names != null) {
-                    names[index] = signature.getName(i);
+        try {
+            for (int i = 0; i < arguments.length; i++) {
+                if (vargsSymbolsIndex < varArgsSymbolIndices.length && varArgsSymbolIndices[vargsSymbolsIndex] == i) {
+                    index = flattenVarArgs(frame, varArgInfo, names, values, index);
+                    vargsSymbolsIndex++;
+                } else {
+                    values[index] = arguments[i] == null ? RMissing.instance : arguments[i].execute(frame);
+                    if (names != null) {
+                        names[index] = signature.getName(i);
+                    }
+                    index++;
                 }
-                index++;
             }
+        } catch (Throwable e) {
+            // arguments evaluated so far may be pending arithmetic expressions
+            RDoubleVectorExpression.discard(values);
+            throw e;
         }
         if (resultSignature == null) {
             resultSignature = ArgumentsSignature.get(names);
@@ -46,6 +46,7 @@ import com.oracle.truffle.r.runtime.data.*;
 import com.oracle.truffle.r.runtime.env.*;
 import com.oracle.truffle.r.runtime.env.frame.*;
 import com.oracle.truffle.r.runtime.instrument.FunctionUIDFactory;
+import com.oracle.truffle.r.runtime.instrument.RprofState;
 import com.oracle.truffle.r.runtime.nodes.*;
 
 public final class FunctionDefinitionNode extends RRootNode implements RSyntaxNode {
@@ -232,6 +233,7 @@ public final class FunctionDefinitionNode extends RRootNode implements RSyntaxNo
         boolean runOnExitHandlers = true;
         try {
             verifyEnclosingAssumptions(vf);
+            RprofState.checkSample();
             setupS3Slots(vf);
             Object result = body.execute(vf);
             normalExit.enter();
@@ -272,6 +274,7 @@ public final class FunctionDefinitionNode extends RRootNode implements RSyntaxNo
              * has no exit handlers (by fiat), so any exceptions from onExits handlers will be
              * caught above.
              */
+            RprofState.checkSampleOnExit();
             if (argPostProcess != null) {
                 resetArgs.enter();
                 argPostProcess.execute(vf);
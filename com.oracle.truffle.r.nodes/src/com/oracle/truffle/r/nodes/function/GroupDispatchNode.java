@@ -40,6 +40,7 @@ import com.oracle.truffle.r.runtime.data.RDataFactory;
 import com.oracle.truffle.r.runtime.data.RFunction;
 import com.oracle.truffle.r.runtime.data.RStringVector;
 import com.oracle.truffle.r.runtime.data.RSymbol;
+import com.oracle.truffle.r.runtime.data.closures.RDoubleVectorExpression;
 import com.oracle.truffle.r.runtime.env.REnvironment;
 import com.oracle.truffle.r.runtime.nodes.RNode;
 import com.oracle.truffle.r.runtime.nodes.RSyntaxNode;
@@ -199,6 +200,16 @@ public final class GroupDispatchNode extends RNode implements RSyntaxNode {
     }
 
     private Object executeInternal(VirtualFrame frame, RArgsValuesAndNames argAndNames, String genericName, RGroupGenerics group, RFunction builtinFunction) {
+        try {
+            return dispatch(frame, argAndNames, genericName, group, builtinFunction);
+        } catch (Throwable e) {
+            // pending arithmetic expressions that were not consumed, see RDoubleVectorExpression
+            RDoubleVectorExpression.discard(argAndNames.getArguments());
+            throw e;
+        }
+    }
+
+    private Object dispatch(VirtualFrame frame, RArgsValuesAndNames argAndNames, String genericName, RGroupGenerics group, RFunction builtinFunction) {
         Object[] evaluatedArgs = argAndNames.getArguments();
 
         if (classHierarchyL == null) {
@@ -273,6 +284,7 @@ public final class GroupDispatchNode extends RNode implements RSyntaxNode {
         } else {
             s3Args = new S3Args(genericName, result.clazz, dotMethod, frame.materialize(), null, result.groupMatch ? group.getName() : null);
             function = result.function;
+            materializeExpressions(evaluatedArgs);
         }
         if (function == null) {
             CompilerDirectives.transferToInterpreter();
@@ -280,4 +292,16 @@ public final class GroupDispatchNode extends RNode implements RSyntaxNode {
         }
         return callMatcher.execute(frame, signature, evaluatedArgs, function, s3Args);
     }
+
+    /**
+     * The deferred results of arithmetic operations must not escape into S3 methods, see
+     * {@link RDoubleVectorExpression}.
+     */
+    private static void materializeExpressions(Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof RDoubleVectorExpression) {
+                args[i] = ((RDoubleVectorExpression) args[i]).materialize();
+            }
+        }
+    }
 }
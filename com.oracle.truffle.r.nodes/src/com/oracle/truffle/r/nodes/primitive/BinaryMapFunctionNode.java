@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -110,4 +110,21 @@ public abstract class BinaryMapFunctionNode extends RBaseNode {
         return true;
     }
 
+    /**
+     * Returns <code>true</code> if the operation can be split across threads, see
+     * {@link #createParallelCopy()}.
+     */
+    public boolean supportsParallel() {
+        return false;
+    }
+
+    /**
+     * Returns a new instance of this node that is independent of it, so that it can process a part
+     * of the vectors on another thread. Only called if {@link #supportsParallel()}. The copy needs
+     * to be enabled before use.
+     */
+    public BinaryMapFunctionNode createParallelCopy() {
+        throw RInternalError.shouldNotReachHere();
+    }
+
 }
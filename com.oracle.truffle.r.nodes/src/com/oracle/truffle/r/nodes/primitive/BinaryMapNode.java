@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -22,6 +22,7 @@
  */
 package com.oracle.truffle.r.nodes.primitive;
 
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.*;
 import com.oracle.truffle.api.profiles.*;
 import com.oracle.truffle.r.nodes.attributes.*;
@@ -38,6 +39,11 @@ import com.oracle.truffle.r.runtime.nodes.*;
  * is provided using a {@link BinaryMapFunctionNode}.
  *
  * The implementation tries to share input vectors if they are implementing {@link RShareable}.
+ *
+ * Numeric and logical operations with a double or logical result on long vectors are split across
+ * threads by {@link ParallelMap} if the function node supports it (see
+ * {@link BinaryMapFunctionNode#createParallelCopy()}). Integer results are always computed
+ * sequentially, as an integer overflow rewrites the arithmetic node.
  */
 public final class BinaryMapNode extends RBaseNode {
 
@@ -55,6 +61,7 @@ public final class BinaryMapNode extends RBaseNode {
     private final BranchProfile seenEmpty = BranchProfile.create();
     private final ConditionProfile shareLeft;
     private final ConditionProfile shareRight;
+    private final ConditionProfile parallelProfile;
     private final RType argumentType;
     private final RType resultType;
 
@@ -64,6 +71,7 @@ public final class BinaryMapNode extends RBaseNode {
     private final boolean mayFoldConstantTime;
     private final boolean mayShareLeft;
     private final boolean mayShareRight;
+    private final boolean mayRunParallel;
 
     private BinaryMapNode(BinaryMapFunctionNode function, RAbstractVector left, RAbstractVector right, RType argumentType, RType resultType, boolean copyAttributes) {
         this.function = function;
@@ -80,11 +88,13 @@ public final class BinaryMapNode extends RBaseNode {
         this.argumentType = argumentType;
         this.resultType = resultType;
         this.maxLengthProfile = ConditionProfile.createBinaryProfile();
+        this.mayRunParallel = ParallelMap.isAvailable() && isParallelType(argumentType, resultType) && function.supportsParallel();
 
         // lazily create profiles only if needed to avoid unnecessary allocations
         this.shareLeft = mayShareLeft ? ConditionProfile.createBinaryProfile() : null;
         this.shareRight = mayShareRight ? ConditionProfile.createBinaryProfile() : null;
         this.dimensionsProfile = mayContainMetadata ? ConditionProfile.createBinaryProfile() : null;
+        this.parallelProfile = mayRunParallel ? ConditionProfile.createBinaryProfile() : null;
 
         this.copyAttributes = mayContainMetadata ? CopyAttributesNodeGen.create(copyAttributes) : null;
     }
@@ -93,6 +103,10 @@ public final class BinaryMapNode extends RBaseNode {
         return new BinaryMapNode(function, left, right, argumentType, resultType, copyAttributes);
     }
 
+    private static boolean isParallelType(RType argumentType, RType resultType) {
+        return (argumentType == RType.Logical || argumentType == RType.Integer || argumentType == RType.Double) && (resultType == RType.Logical || resultType == RType.Double);
+    }
+
     public boolean isSupported(Object left, Object right) {
         return left.getClass() == leftClass && right.getClass() == rightClass;
     }
@@ -236,9 +250,15 @@ public final class BinaryMapNode extends RBaseNode {
             assert rightCast.getRType() == argumentType;
             assert isStoreCompatible(store, resultType, leftLength, rightLength);
 
-            vectorNode.execute(function, store, leftCast, leftLength, rightCast, rightLength);
+            boolean complete;
+            if (mayRunParallel && parallelProfile.profile(ParallelMap.isEnabled(maxLength))) {
+                complete = applyParallel(store, leftCast, leftLength, rightCast, rightLength, maxLength);
+            } else {
+                vectorNode.execute(function, store, leftCast, leftLength, rightCast, rightLength);
+                complete = function.isComplete();
+            }
             RNode.reportWork(this, maxLength);
-            target.setComplete(function.isComplete());
+            target.setComplete(complete);
         }
         if (mayContainMetadata) {
             target = copyAttributes.execute(target, left, leftLength, right, rightLength);
@@ -246,6 +266,26 @@ public final class BinaryMapNode extends RBaseNode {
         return target;
     }
 
+    /**
+     * Computes the result in chunks on multiple threads, each with its own copy of the function
+     * node. Returns <code>true</code> if the result is complete.
+     */
+    @TruffleBoundary
+    private boolean applyParallel(Object store, RAbstractVector left, int leftLength, RAbstractVector right, int rightLength, int maxLength) {
+        BinaryMapFunctionNode original = function;
+        VectorMapBinaryInternalNode vector = vectorNode;
+        boolean complete = ParallelMap.execute(maxLength, (from, to) -> {
+            BinaryMapFunctionNode copy = original.createParallelCopy();
+            copy.enable(left, right);
+            vector.applyRange(copy, store, left, leftLength, right, rightLength, from, to);
+            return copy.isComplete();
+        });
+        if (maxLength % Math.min(leftLength, rightLength) != 0) {
+            RError.warning(this, RError.Message.LENGTH_NOT_MULTI);
+        }
+        return complete;
+    }
+
     private RAbstractVector createOrShareVector(int leftLength, RAbstractVector left, int rightLength, RAbstractVector right, int maxLength) {
         if (mayShareLeft && left.getRType() == resultType && shareLeft.profile(leftLength == maxLength && ((RShareable) left).isTemporary())) {
             return left;
@@ -495,6 +535,20 @@ public final class BinaryMapNode extends RBaseNode {
             RError.warning(this, RError.Message.LENGTH_NOT_MULTI);
         }
 
+        /**
+         * Computes the elements {@code [from, to)} of the result, recycling the shorter vector as
+         * the specializations do. Used to process a chunk of the result on another thread.
+         */
+        public final void applyRange(BinaryMapFunctionNode node, Object store, RAbstractVector left, int leftLength, RAbstractVector right, int rightLength, int from, int to) {
+            int j = from % leftLength;
+            int k = from % rightLength;
+            for (int i = from; i < to; ++i) {
+                indexedAction.perform(node, store, i, left, j, right, k);
+                j = Utils.incMod(j, leftLength);
+                k = Utils.incMod(k, rightLength);
+            }
+        }
+
         private interface MapBinaryIndexedAction<A, V extends RAbstractVector> {
 
             void perform(BinaryMapFunctionNode action, A store, int resultIndex, V left, int leftIndex, V right, int rightIndex);
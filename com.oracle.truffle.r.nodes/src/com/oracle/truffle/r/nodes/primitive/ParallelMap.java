@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.primitive;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.oracle.truffle.r.runtime.FastROptions;
+
+/**
+ * Splits the index range of an element-wise operation on long vectors (see {@link BinaryMapNode}
+ * and {@link UnaryMapNode}) across the common {@link ForkJoinPool}. The range is halved
+ * recursively down to a minimum size, and each resulting chunk is processed by a
+ * {@link ChunkAction}.
+ *
+ * The function nodes keep state that is not thread safe (NA checks, self-rewriting arithmetic
+ * nodes), so each chunk is processed with its own copy of the function node, and the chunk reports
+ * whether its copy has seen an {@code NA}. The result is complete if all chunks are.
+ */
+final class ParallelMap {
+
+    private ParallelMap() {
+        // no instances
+    }
+
+    /**
+     * Minimum number of elements processed by a single task.
+     */
+    private static final int MIN_GRAIN = 1 << 15;
+
+    /**
+     * Operations on at least this many elements are split across the common {@link ForkJoinPool},
+     * see {@link FastROptions#ParallelMapThreshold}. Zero means never, which is also the case if
+     * the pool has only one thread. This is read when the class is initialized, which happens when
+     * the first map node is created, i.e., after the options have been set.
+     */
+    private static final int THRESHOLD = ForkJoinPool.getCommonPoolParallelism() > 1 ? FastROptions.ParallelMapThreshold.getNonNegativeIntValue() : 0;
+
+    /**
+     * Returns <code>true</code> if operations may be split across threads at all.
+     */
+    static boolean isAvailable() {
+        return THRESHOLD > 0;
+    }
+
+    static boolean isEnabled(int length) {
+        return length >= THRESHOLD;
+    }
+
+    interface ChunkAction {
+
+        /**
+         * Processes the elements {@code [from, to)} and returns <code>true</code> if no
+         * <code>NA</code> was encountered.
+         */
+        boolean apply(int from, int to);
+    }
+
+    /**
+     * Applies {@code action} to all elements {@code [0, length)} in parallel.
+     *
+     * @return <code>true</code> if no chunk encountered an <code>NA</code>
+     */
+    static boolean execute(int length, ChunkAction action) {
+        int grain = Math.max(MIN_GRAIN, length / (4 * ForkJoinPool.getCommonPoolParallelism()));
+        MapTask task = new MapTask(action, 0, length, grain);
+        ForkJoinPool.commonPool().invoke(task);
+        return task.complete;
+    }
+
+    @SuppressWarnings("serial")
+    private static final class MapTask extends RecursiveAction {
+        private final ChunkAction action;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+        private boolean complete;
+
+        MapTask(ChunkAction action, int lo, int hi, int grain) {
+            this.action = action;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= grain) {
+                complete = action.apply(lo, hi);
+            } else {
+                int mid = (lo + hi) >>> 1;
+                MapTask left = new MapTask(action, lo, mid, grain);
+                MapTask right = new MapTask(action, mid, hi, grain);
+                invokeAll(left, right);
+                complete = left.complete && right.complete;
+            }
+        }
+    }
+}
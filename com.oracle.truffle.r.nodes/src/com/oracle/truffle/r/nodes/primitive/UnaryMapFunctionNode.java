@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -51,6 +51,23 @@ public abstract class UnaryMapFunctionNode extends RBaseNode {
         return false;
     }
 
+    /**
+     * Returns <code>true</code> if the operation can be split across threads, see
+     * {@link #createParallelCopy()}.
+     */
+    public boolean supportsParallel() {
+        return false;
+    }
+
+    /**
+     * Returns a new instance of this node that is independent of it, so that it can process a part
+     * of the operand on another thread. Only called if {@link #supportsParallel()}. The copy needs
+     * to be enabled before use.
+     */
+    public UnaryMapFunctionNode createParallelCopy() {
+        throw RInternalError.shouldNotReachHere();
+    }
+
     public byte applyLogical(byte operand) {
         throw RInternalError.shouldNotReachHere();
     }
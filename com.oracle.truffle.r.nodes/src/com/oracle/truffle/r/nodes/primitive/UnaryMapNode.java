@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -43,12 +43,14 @@ public final class UnaryMapNode extends RBaseNode {
     private final BranchProfile hasAttributesProfile;
     private final RAttributeProfiles attrProfiles;
     private final ConditionProfile shareOperand;
+    private final ConditionProfile parallelProfile;
 
     // compile-time optimization flags
     private final boolean scalarType;
     private final boolean mayContainMetadata;
     private final boolean mayFoldConstantTime;
     private final boolean mayShareOperand;
+    private final boolean mayRunParallel;
 
     public UnaryMapNode(UnaryMapFunctionNode scalarNode, RAbstractVector operand, RType argumentType, RType resultType) {
         this.scalarNode = scalarNode;
@@ -59,11 +61,13 @@ public final class UnaryMapNode extends RBaseNode {
         this.mayContainMetadata = operandVector;
         this.mayFoldConstantTime = scalarNode.mayFoldConstantTime(operandClass);
         this.mayShareOperand = operandVector;
+        this.mayRunParallel = ParallelMap.isAvailable() && (resultType == RType.Integer || resultType == RType.Double) && scalarNode.supportsParallel();
 
         // lazily create profiles only if needed to avoid unnecessary allocations
         this.shareOperand = operandVector ? ConditionProfile.createBinaryProfile() : null;
         this.attrProfiles = mayContainMetadata ? RAttributeProfiles.create() : null;
         this.hasAttributesProfile = mayContainMetadata ? BranchProfile.create() : null;
+        this.parallelProfile = mayRunParallel ? ConditionProfile.createBinaryProfile() : null;
     }
 
     public static UnaryMapNode create(UnaryMapFunctionNode scalarNode, RAbstractVector operand, RType argumentType, RType resultType) {
@@ -125,9 +129,15 @@ public final class UnaryMapNode extends RBaseNode {
         if (target == null) {
             target = createOrShareVector(operandLength, operand);
             Object store = target.getInternalStore();
-            vectorNode.apply(scalarNode, store, operandCast, operandLength);
+            boolean complete;
+            if (mayRunParallel && parallelProfile.profile(ParallelMap.isEnabled(operandLength))) {
+                complete = applyParallel(store, operandCast, operandLength);
+            } else {
+                vectorNode.apply(scalarNode, store, operandCast, operandLength);
+                complete = scalarNode.isComplete();
+            }
             RNode.reportWork(this, operandLength);
-            target.setComplete(scalarNode.isComplete());
+            target.setComplete(complete);
         }
         if (mayContainMetadata) {
             target = handleMetadata(target, operand);
@@ -135,6 +145,22 @@ public final class UnaryMapNode extends RBaseNode {
         return target;
     }
 
+    /**
+     * Computes the result in chunks on multiple threads, each with its own copy of the function
+     * node. Returns <code>true</code> if the result is complete.
+     */
+    @TruffleBoundary
+    private boolean applyParallel(Object store, RAbstractVector operand, int operandLength) {
+        UnaryMapFunctionNode original = scalarNode;
+        MapUnaryVectorInternalNode vector = vectorNode;
+        return ParallelMap.execute(operandLength, (from, to) -> {
+            UnaryMapFunctionNode copy = original.createParallelCopy();
+            copy.enable(operand);
+            vector.applyRange(copy, store, operand, from, to);
+            return copy.isComplete();
+        });
+    }
+
     private RAbstractVector createOrShareVector(int operandLength, RAbstractVector operand) {
         RType resultType = getResultType();
         if (mayShareOperand && operand.getRType() == resultType && shareOperand.profile(((RShareable) operand).isTemporary())) {
@@ -270,6 +296,16 @@ public final class UnaryMapNode extends RBaseNode {
             }
         }
 
+        /**
+         * Computes the elements {@code [from, to)} of the result. Used to process a chunk of the
+         * result on another thread.
+         */
+        public final void applyRange(UnaryMapFunctionNode scalarAction, Object store, RAbstractVector operand, int from, int to) {
+            for (int i = from; i < to; ++i) {
+                indexedAction.perform(scalarAction, store, i, operand, i);
+            }
+        }
+
         protected abstract void executeInternal(UnaryMapFunctionNode node, Object store, RAbstractVector operand, int operandLength);
 
         @Specialization(guards = {"operandLength == 1"})
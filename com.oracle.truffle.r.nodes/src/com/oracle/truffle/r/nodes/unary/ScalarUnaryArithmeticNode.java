@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -22,6 +22,7 @@
  */
 package com.oracle.truffle.r.nodes.unary;
 
+import com.oracle.truffle.api.nodes.NodeUtil;
 import com.oracle.truffle.r.nodes.primitive.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.*;
@@ -66,6 +67,18 @@ public class ScalarUnaryArithmeticNode extends UnaryMapNAFunctionNode {
         return false;
     }
 
+    @Override
+    public boolean supportsParallel() {
+        return true;
+    }
+
+    @Override
+    public UnaryMapFunctionNode createParallelCopy() {
+        ScalarUnaryArithmeticNode copy = new ScalarUnaryArithmeticNode(NodeUtil.cloneNode(arithmetic));
+        copy.adoptChildren();
+        return copy;
+    }
+
     @Override
     public final double applyDouble(double operand) {
         if (operandNACheck.check(operand)) {
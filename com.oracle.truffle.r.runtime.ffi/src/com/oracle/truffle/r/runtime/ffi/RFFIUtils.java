@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -23,9 +23,14 @@
 package com.oracle.truffle.r.runtime.ffi;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.r.runtime.FastROptions;
+import com.oracle.truffle.r.runtime.RPerfStats;
 import com.oracle.truffle.r.runtime.data.RPairList;
 import com.oracle.truffle.r.runtime.data.RTypedValue;
 
@@ -55,6 +60,24 @@ public class RFFIUtils {
         }
     }
 
+    /**
+     * Returns the start time of a native call, to be passed to {@link #recordCall}, or {@code 0} if
+     * native call statistics are not being gathered.
+     */
+    public static long callStart() {
+        return stats != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a call of the native function {@code name} (as reported by
+     * {@link FastROptions#TraceNativeCalls}) that started at {@code start}.
+     */
+    public static void recordCall(String name, long start) {
+        if (stats != null) {
+            stats.record(name, System.nanoTime() - start);
+        }
+    }
+
     private static void printArgs(Object[] args) {
         for (Object arg : args) {
             System.out.print(" ");
@@ -70,4 +93,51 @@ public class RFFIUtils {
         }
     }
 
+    // Performance analysis
+
+    @CompilationFinal private static PerfHandler stats;
+
+    static {
+        RPerfStats.register(new PerfHandler());
+    }
+
+    /**
+     * Counts the calls of, and the time spent in, each native function, over all contexts.
+     */
+    private static class PerfHandler implements RPerfStats.Handler {
+        /**
+         * Number of calls and total time in nanoseconds, by function name.
+         */
+        private static Map<String, long[]> calls;
+
+        @TruffleBoundary
+        synchronized void record(String name, long time) {
+            long[] entry = calls.get(name);
+            if (entry == null) {
+                entry = new long[2];
+                calls.put(name, entry);
+            }
+            entry[0]++;
+            entry[1] += time;
+        }
+
+        public void initialize(String optionText) {
+            stats = this;
+            calls = new HashMap<>();
+        }
+
+        public String getName() {
+            return "nativecalls";
+        }
+
+        public void report() {
+            ArrayList<Map.Entry<String, long[]>> entries = new ArrayList<>(calls.entrySet());
+            entries.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+            RPerfStats.out().println("Native calls (name, calls, time in ms)");
+            for (Map.Entry<String, long[]> entry : entries) {
+                RPerfStats.out().printf("%s: %d, %.3f%n", entry.getKey(), entry.getValue()[0], entry.getValue()[1] / 1e6);
+            }
+        }
+    }
+
 }
@@ -27,6 +27,7 @@ import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.context.*;
 import com.oracle.truffle.r.runtime.context.Engine.ParseException;
 import com.oracle.truffle.r.runtime.data.*;
+import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.data.model.*;
 import com.oracle.truffle.r.runtime.env.*;
 import com.oracle.truffle.r.runtime.env.REnvironment.PutException;
@@ -379,9 +380,13 @@ public class CallRFFIHelper {
         return RRuntime.isNA(v) ? Integer.MIN_VALUE : v;
     }
 
+    /**
+     * FastR stores logical vectors as bytes, so the result has to be a copy. The native side keeps
+     * it for the duration of the call, and any updates are copied back to {@code x} by
+     * {@link #setLogicalFromWide} when the call returns.
+     */
     public static int[] LOGICAL(Object x) {
         if (x instanceof RLogicalVector) {
-            // TODO: this should not actually copy...
             RLogicalVector vector = (RLogicalVector) x;
             int[] array = new int[vector.getLength()];
             for (int i = 0; i < vector.getLength(); i++) {
@@ -396,6 +401,28 @@ public class CallRFFIHelper {
 
     }
 
+    /**
+     * Copies the content of an array returned by {@link #LOGICAL} (or {@link #INTEGER} for a
+     * logical vector), as possibly updated by native code, back to {@code x}.
+     */
+    public static void setLogicalFromWide(Object x, int[] data) {
+        if (x instanceof RLogicalVector) {
+            RLogicalVector vector = (RLogicalVector) x;
+            byte[] store = vector.getDataWithoutCopying();
+            boolean complete = true;
+            for (int i = 0; i < store.length; i++) {
+                int v = data[i];
+                if (v == RRuntime.INT_NA) {
+                    store[i] = RRuntime.LOGICAL_NA;
+                    complete = false;
+                } else {
+                    store[i] = v == 0 ? RRuntime.LOGICAL_FALSE : RRuntime.LOGICAL_TRUE;
+                }
+            }
+            vector.setComplete(complete);
+        }
+    }
+
     public static int[] INTEGER(Object x) {
         if (x instanceof RIntVector) {
             return ((RIntVector) x).getDataWithoutCopying();
@@ -407,7 +434,7 @@ public class CallRFFIHelper {
             RLogicalVector vec = (RLogicalVector) x;
             int[] result = new int[vec.getLength()];
             for (int i = 0; i < result.length; i++) {
-                result[i] = vec.getDataAt(i);
+                result[i] = toWideLogical(vec.getDataAt(i));
             }
             return result;
         } else {
@@ -421,6 +448,8 @@ public class CallRFFIHelper {
             return ((RDoubleVector) x).getDataWithoutCopying();
         } else if (x instanceof RDoubleSequence) {
             return ((RDoubleSequence) x).materialize().getDataWithoutCopying();
+        } else if (x instanceof RDoubleVectorExpression) {
+            return ((RDoubleVectorExpression) x).materialize().getDataWithoutCopying();
         } else {
             guaranteeInstanceOf(x, Double.class);
             return new double[]{(Double) x};
@@ -563,7 +592,7 @@ public class CallRFFIHelper {
 
     public static REnvironment Rf_createNewEnv(REnvironment parent, String name, boolean hashed, int initialSize) {
         REnvironment env = RDataFactory.createNewEnv(name, hashed, initialSize);
-        RArguments.initializeEnclosingFrame(env.getFrame(), parent.getFrame());
+        RArguments.initializeEnclosingFrame(env.getFrameForLinkage(), parent.getFrame());
         return env;
     }
 
@@ -22,6 +22,8 @@
  */
 package com.oracle.truffle.r.runtime.ffi.jnr;
 
+import static com.oracle.truffle.r.runtime.ffi.RFFIUtils.callStart;
+import static com.oracle.truffle.r.runtime.ffi.RFFIUtils.recordCall;
 import static com.oracle.truffle.r.runtime.ffi.RFFIUtils.traceCall;
 
 import java.util.concurrent.Semaphore;
@@ -74,8 +76,10 @@ public class JNI_CallRFFI implements CallRFFI {
 
     public Object invokeCall(long address, String name, Object[] args) {
         traceCall(name, args);
+        long start = 0;
         try {
             inCritical.acquire();
+            start = callStart();
             switch (args.length) {
             // @formatter:off
             case 0: return call0(address);
@@ -95,6 +99,7 @@ public class JNI_CallRFFI implements CallRFFI {
         } catch (InterruptedException ex) {
             throw RInternalError.shouldNotReachHere();
         } finally {
+            recordCall(name, start);
             inCritical.release();
         }
     }
@@ -127,8 +132,10 @@ public class JNI_CallRFFI implements CallRFFI {
 
     public void invokeVoidCall(long address, String name, Object[] args) {
         traceCall(name, args);
+        long start = 0;
         try {
             inCritical.acquire();
+            start = callStart();
             switch (args.length) {
                 case 0:
                     callVoid0(address);
@@ -141,6 +148,7 @@ public class JNI_CallRFFI implements CallRFFI {
             }
         } catch (InterruptedException ex) {
         } finally {
+            recordCall(name, start);
             inCritical.release();
         }
     }
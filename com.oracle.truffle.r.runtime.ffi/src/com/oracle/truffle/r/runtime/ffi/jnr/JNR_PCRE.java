@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -72,7 +72,11 @@ public class JNR_PCRE implements PCRERFFI {
         byte[] errorMessage = new byte[512];
         long result = pcre().pcre_compile(pattern, options, errorMessage, errOffset, tables);
         if (result == 0) {
-            return new Result(result, new String(errorMessage), errOffset[0]);
+            int length = 0;
+            while (length < errorMessage.length && errorMessage[length] != 0) {
+                length++;
+            }
+            return new Result(result, new String(errorMessage, 0, length), errOffset[0]);
         } else {
             return new Result(result, null, 0);
         }
@@ -55,6 +55,13 @@ public enum FastROptions {
     NewStateTransition("Experimental state transition implementation", true),
     RefCountIncrementOnly("Disable reference count decrements for experimental state transition implementation", false),
     UseInternalGraphics("Whether the internal (Java) graphics subsystem should be used", false),
+    ParallelSortThreshold("ParallelSortThreshold=n; Minimum vector length for which order/sort use multiple threads, 0 to disable", "1000000", true),
+    ParallelWriteTableThreshold("ParallelWriteTableThreshold=n; Minimum number of rows for which write.table formats blocks of rows on multiple threads, 0 to disable", "100000", true),
+    MappedScanThreshold("MappedScanThreshold=n; Minimum file size in bytes for which scan/read.table map the file and parse it in parallel, 0 to disable", "65536", true),
+    MappedScanChunkSize("MappedScanChunkSize=n; Minimum size in bytes of the chunks into which scan/read.table split a mapped file", "1048576", true),
+    ParallelGZIPBlockSize("ParallelGZIPBlockSize=n; Size in bytes of the blocks that gzfile connections compress in parallel (with option fastr.gzip.threads > 1)", "1048576", true),
+    FusedArithmeticThreshold("FusedArithmeticThreshold=n; Minimum vector length for which chains of double arithmetic are evaluated in a single fused loop, 0 to disable", "65536", true),
+    ParallelMapThreshold("ParallelMapThreshold=n; Minimum vector length for which element-wise arithmetic and comparisons use multiple threads, 0 to disable", "1000000", true),
 
     // Promises optimizations
     EagerEval("If enabled, overrides all other EagerEval switches (see EagerEvalHelper)", false),
@@ -89,6 +96,26 @@ public enum FastROptions {
         return (String) value;
     }
 
+    /**
+     * Convenience function for a string option whose value is expected to be a non-negative
+     * integer. An invalid value is reported and replaced by the default.
+     */
+    public int getNonNegativeIntValue() {
+        assert !isBoolean;
+        String s = (String) value;
+        try {
+            int result = Integer.parseInt(s);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException ex) {
+            // fall through
+        }
+        System.out.println("-DR:" + name() + "=" + s + ": non-negative integer expected, using " + defaultValue);
+        value = defaultValue;
+        return Integer.parseInt((String) defaultValue);
+    }
+
     private static FastROptions[] VALUES = values();
 
     static void setValue(String name, Object value) {
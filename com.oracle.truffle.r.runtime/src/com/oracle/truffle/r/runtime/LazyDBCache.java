@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2015, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -22,41 +22,318 @@
  */
 package com.oracle.truffle.r.runtime;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.util.HashMap;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-import com.oracle.truffle.r.runtime.context.RContext;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.r.runtime.data.RAttributes;
+import com.oracle.truffle.r.runtime.data.RAttributes.RAttribute;
+import com.oracle.truffle.r.runtime.data.RShareable;
+import com.oracle.truffle.r.runtime.data.model.RAbstractListVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
 
+/**
+ * Cache for the contents of the lazy-load databases ({@code .rdb} files) of packages. The files
+ * are mapped read-only into memory and the mappings are shared by all contexts, so fetching a
+ * value only touches the bytes of that value. The number of mapped files is bounded and the least
+ * recently used mapping is dropped when the bound is exceeded (the memory is actually unmapped
+ * when the buffer is garbage collected).
+ *
+ * A mapping is discarded explicitly by {@code lazyLoadDBflush}, which is called after a database
+ * has been (re)written, and when a value is inserted (by {@code lazyLoadDBinsertValue}). To keep
+ * fetching cheap, the file itself is only checked for changes when it is (re)mapped, i.e., when it
+ * is first used, after its mapping has been evicted, or when a value lies beyond the end of the
+ * mapping because the file has grown.
+ *
+ * In addition, the results of fetching a value are cached, keyed by the database and the
+ * offset/length of the value, see {@link #getValue}. This is bounded by the total size of the
+ * uncompressed data.
+ */
 public class LazyDBCache {
 
-    public static final class ContextStateImpl implements RContext.ContextState {
-        private Map<String, byte[]> dbCache = new HashMap<>();
-
-        public byte[] getData(String dbPath) {
-            byte[] dbData = dbCache.get(dbPath);
-            if (dbData == null) {
-                try {
-                    dbData = Files.readAllBytes(FileSystems.getDefault().getPath(dbPath));
-                } catch (IOException ex) {
-                    // unexpected
-                    throw RInternalError.shouldNotReachHere(ex);
+    private static final int MAX_MAPPED_DBS = 128;
+
+    private static final class DBMapping {
+        private final MappedByteBuffer data;
+        private final long lastModified;
+
+        DBMapping(MappedByteBuffer data, long lastModified) {
+            this.data = data;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final LinkedHashMap<String, DBMapping> dbCache = new LinkedHashMap<String, DBMapping>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DBMapping> eldest) {
+            if (size() > MAX_MAPPED_DBS) {
+                recordEviction();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Returns the mapping of {@code dbPath}, which must extend at least to {@code end}.
+     */
+    private static synchronized ByteBuffer getData(String dbPath, int end) {
+        DBMapping mapping = dbCache.get(dbPath);
+        if (mapping == null || mapping.data.capacity() < end) {
+            long lastModified = new File(dbPath).lastModified();
+            DBMapping old = mapping;
+            try (FileChannel channel = FileChannel.open(FileSystems.getDefault().getPath(dbPath), StandardOpenOption.READ)) {
+                mapping = new DBMapping(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), lastModified);
+            } catch (IOException ex) {
+                // unexpected
+                throw RInternalError.shouldNotReachHere(ex);
+            }
+            dbCache.put(dbPath, mapping);
+            if (old == null || old.lastModified != lastModified) {
+                /*
+                 * Any cached values were decoded from an earlier mapping, which may have been
+                 * evicted before the file changed, so they cannot be trusted either.
+                 */
+                removeValues(dbPath);
+            }
+            recordMapping(mapping.data.capacity());
+        }
+        return mapping.data;
+    }
+
+    /**
+     * Returns a (big-endian) buffer on the {@code length} bytes at {@code offset} in the database
+     * {@code dbPath}, independent of any other buffers on the same data.
+     */
+    public static ByteBuffer getSlice(String dbPath, int offset, int length) {
+        ByteBuffer data = getData(dbPath, offset + length).duplicate();
+        data.position(offset);
+        data.limit(offset + length);
+        recordSlice(length);
+        return data.slice();
+    }
+
+    public static synchronized void remove(String dbPath) {
+        // no an error if missing
+        dbCache.remove(dbPath);
+        removeValues(dbPath);
+    }
+
+    private static final int MAX_VALUE_BYTES = 32 * 1024 * 1024;
+
+    private static final class ValueKey {
+        private final String dbPath;
+        private final int offset;
+        private final int length;
+
+        ValueKey(String dbPath, int offset, int length) {
+            this.dbPath = dbPath;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int hashCode() {
+            return (dbPath.hashCode() * 31 + offset) * 31 + length;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ValueKey)) {
+                return false;
+            }
+            ValueKey other = (ValueKey) obj;
+            return offset == other.offset && length == other.length && dbPath.equals(other.dbPath);
+        }
+    }
+
+    /**
+     * The cached result of a fetch: the uncompressed serialized data and, if it is immutable, the
+     * unserialized object.
+     */
+    public static final class Value {
+        public final byte[] data;
+        public final Object object;
+
+        private Value(byte[] data, Object object) {
+            this.data = data;
+            this.object = object;
+        }
+    }
+
+    private static int valueBytes;
+
+    private static final LinkedHashMap<ValueKey, Value> valueCache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Returns the cached result of fetching the value at {@code offset/length} in {@code dbPath},
+     * or {@code null} if there is none.
+     */
+    public static synchronized Value getValue(String dbPath, int offset, int length) {
+        // validates any cached values
+        getData(dbPath, offset + length);
+        Value value = valueCache.get(new ValueKey(dbPath, offset, length));
+        recordValueLookup(value);
+        return value;
+    }
+
+    /**
+     * Caches the uncompressed {@code data} of the value at {@code offset/length} in
+     * {@code dbPath}, and the corresponding unserialized {@code object} if it can be shared (in
+     * which case it is marked as permanently shared). Returns {@code object}.
+     */
+    public static synchronized Object putValue(String dbPath, int offset, int length, byte[] data, Object object) {
+        if (data.length > MAX_VALUE_BYTES) {
+            return object;
+        }
+        Object sharedObject = null;
+        if (isImmutable(object)) {
+            ((RShareable) object).makeSharedPermanent();
+            sharedObject = object;
+        }
+        Value old = valueCache.put(new ValueKey(dbPath, offset, length), new Value(data, sharedObject));
+        if (old != null) {
+            valueBytes -= old.data.length;
+        }
+        valueBytes += data.length;
+        Iterator<Value> iter = valueCache.values().iterator();
+        while (valueBytes > MAX_VALUE_BYTES && iter.hasNext()) {
+            valueBytes -= iter.next().data.length;
+            iter.remove();
+        }
+        return object;
+    }
+
+    private static void removeValues(String dbPath) {
+        Iterator<Map.Entry<ValueKey, Value>> iter = valueCache.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<ValueKey, Value> entry = iter.next();
+            if (entry.getKey().dbPath.equals(dbPath)) {
+                valueBytes -= entry.getValue().data.length;
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Only atomic vectors (with atomic attributes) are shared, as they cannot refer to any context
+     * specific state. In particular closures refer to their environment and language objects hold
+     * AST nodes that are adopted by the call target evaluating them.
+     */
+    private static boolean isImmutable(Object object) {
+        if (!(object instanceof RAbstractVector) || object instanceof RAbstractListVector || !(object instanceof RShareable)) {
+            return false;
+        }
+        RAttributes attributes = ((RAbstractVector) object).getAttributes();
+        if (attributes != null) {
+            for (RAttribute attribute : attributes) {
+                if (!isImmutable(attribute.getValue())) {
+                    return false;
                 }
-                dbCache.put(dbPath, dbData);
             }
-            return dbData;
         }
+        return true;
+    }
+
+    // Performance analysis
+
+    @CompilationFinal private static PerfHandler stats;
+
+    private static void recordMapping(long size) {
+        if (stats != null) {
+            stats.mapping(size);
+        }
+    }
 
-        public void remove(String dbPath) {
-            // no an error if missing
-            dbCache.remove(dbPath);
+    private static void recordEviction() {
+        if (stats != null) {
+            stats.eviction();
         }
+    }
 
-        public static ContextStateImpl newContext(@SuppressWarnings("unused") RContext context) {
-            return new ContextStateImpl();
+    private static void recordValueLookup(Value value) {
+        if (stats != null) {
+            stats.valueLookup(value);
         }
+    }
 
+    private static void recordSlice(int length) {
+        if (stats != null) {
+            stats.slice(length);
+        }
+    }
+
+    static {
+        RPerfStats.register(new PerfHandler());
+    }
+
+    /**
+     * Counts the files mapped, the mappings evicted, the number and total size of the slices
+     * accessed, and the lookups in the value cache.
+     */
+    private static class PerfHandler implements RPerfStats.Handler {
+        private static long mappings;
+        private static long mappedBytes;
+        private static long evictions;
+        private static long slices;
+        private static long sliceBytes;
+        private static long valueMisses;
+        private static long dataHits;
+        private static long objectHits;
+
+        synchronized void mapping(long size) {
+            mappings++;
+            mappedBytes += size;
+        }
+
+        synchronized void eviction() {
+            evictions++;
+        }
+
+        synchronized void valueLookup(Value value) {
+            if (value == null) {
+                valueMisses++;
+            } else if (value.object == null) {
+                dataHits++;
+            } else {
+                objectHits++;
+            }
+        }
+
+        synchronized void slice(int length) {
+            slices++;
+            sliceBytes += length;
+        }
+
+        public void initialize(String optionText) {
+            stats = this;
+            mappings = 0;
+            mappedBytes = 0;
+            evictions = 0;
+            slices = 0;
+            sliceBytes = 0;
+            valueMisses = 0;
+            dataHits = 0;
+            objectHits = 0;
+        }
+
+        public String getName() {
+            return "lazydbcache";
+        }
+
+        public void report() {
+            RPerfStats.out().printf("LazyDB cache: %d files mapped (%d bytes), %d evicted, %d slices accessed (%d bytes)%n", mappings, mappedBytes, evictions, slices, sliceBytes);
+            RPerfStats.out().printf("LazyDB value cache: %d misses, %d data hits, %d object hits%n", valueMisses, dataHits, objectHits);
+        }
     }
 }
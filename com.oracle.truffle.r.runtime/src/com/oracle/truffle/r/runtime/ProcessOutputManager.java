@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -24,6 +24,7 @@ package com.oracle.truffle.r.runtime;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Managing output from sub-processes, which is needed in a several places, e.g.
@@ -108,4 +109,36 @@ public class ProcessOutputManager {
         }
     }
 
+    /**
+     * Copies the data to an {@link OutputStream} until EOF. An error while reading or writing is
+     * recorded and can be retrieved with {@link #getError} once the thread has finished.
+     */
+    public static final class OutputThreadStream extends OutputThread {
+        private final OutputStream out;
+        private IOException error;
+
+        public OutputThreadStream(String name, InputStream is, OutputStream out) {
+            super(name, is);
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            byte[] data = new byte[8192];
+            int n;
+            try {
+                while ((n = is.read(data)) != -1) {
+                    out.write(data, 0, n);
+                    totalRead += n;
+                }
+            } catch (IOException ex) {
+                error = ex;
+            }
+        }
+
+        public IOException getError() {
+            return error;
+        }
+    }
+
 }
@@ -35,6 +35,12 @@ import com.oracle.truffle.r.runtime.env.*;
 /**
  * Implementation of a channel abstraction used for communication between parallel contexts in
  * shared memory space.
+ *
+ * Vectors, lists and their attributes are not serialized but handed over directly, after being
+ * made (permanently) shared, so that both the sender and the receiver copy them on the first
+ * update. Only objects that refer to context specific state (functions, environments, language
+ * objects etc.) are serialized, and a list (or attribute set) is (shallowly) copied only if some of
+ * its elements had to be serialized.
  */
 public class RChannel {
 
@@ -193,6 +199,10 @@ public class RChannel {
         RAttributable attributable = (RAttributable) msg;
         RAttributes attr = attributable.getAttributes();
         RAttributes newAttr = createShareableSlow(attr);
+        if (newAttr == attr) {
+            // the attributes are shareable as they are, e.g., "dim" or "names" - no need to copy
+            return msg;
+        }
         if (attributable instanceof RAbstractVector) {
             attributable = ((RAbstractVector) msg).copy();
         }
@@ -204,6 +214,10 @@ public class RChannel {
     private static Object convertPrivateList(Object msg) throws IOException {
         RList l = (RList) msg;
         Object newMsg = createShareable(l);
+        if (newMsg == l) {
+            // the list itself is handed over, so it must be copied on update by either side
+            makeShared(l);
+        }
         if (l.getAttributes() != null) {
             return convertListAttributesToPrivate(l, newMsg);
         } else {
@@ -212,8 +226,13 @@ public class RChannel {
 
     }
 
+    /**
+     * Objects that are bound to a context, or hold AST nodes, must be serialized. N.B. expressions
+     * consist of language objects.
+     */
     private static boolean serializeObject(Object o) {
-        return o instanceof RFunction || o instanceof REnvironment || o instanceof RConnection || o instanceof RLanguage || o instanceof RPromise;
+        return o instanceof RFunction || o instanceof REnvironment || o instanceof RConnection || o instanceof RLanguage || o instanceof RPromise || o instanceof RExpression ||
+                        o instanceof RExternalPtr;
     }
 
     private static Object convertPrivate(Object o) throws IOException {
@@ -278,27 +297,12 @@ public class RChannel {
     }
 
     public static void send(int id, Object data) {
-        Object msg = data;
         RChannel channel = getChannelFromId(id);
-        if (msg instanceof RList) {
-            try {
-                msg = convertPrivateList(msg);
-            } catch (IOException x) {
-                throw RError.error(RError.NO_NODE, RError.Message.GENERIC, "error creating shareable list");
-            }
-        } else if (!serializeObject(msg)) {
-            // make sure that what's passed through the channel will be copied on the first
-            // update
-            makeShared(msg);
-            try {
-                if (msg instanceof RAttributable && ((RAttributable) msg).getAttributes() != null) {
-                    msg = convertObjectAttributesToPrivate(msg);
-                }
-            } catch (IOException x) {
-                throw RError.error(RError.NO_NODE, RError.Message.GENERIC, "error creating channel message");
-            }
-        } else {
-            msg = RSerialize.serialize(msg, false, true, RSerialize.DEFAULT_VERSION, null);
+        Object msg;
+        try {
+            msg = convertPrivate(data);
+        } catch (IOException x) {
+            throw RError.error(RError.NO_NODE, RError.Message.GENERIC, "error creating channel message");
         }
         try {
             (id > 0 ? channel.masterToClient : channel.clientToMaster).put(msg);
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -22,10 +22,13 @@
  */
 package com.oracle.truffle.r.runtime;
 
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.InputStream;
 import java.lang.ProcessBuilder.Redirect;
+import java.util.zip.DeflaterOutputStream;
 
 import com.oracle.truffle.r.runtime.conn.GZIPConnections.GZIPRConnection;
 import com.oracle.truffle.r.runtime.ffi.RFFIFactory;
@@ -105,6 +108,55 @@ public class RCompression {
 
     }
 
+    /**
+     * Returns a stream that compresses the data written to it in the same format as
+     * {@link #compress} and writes the result to {@code out}, so that the uncompressed data need
+     * not be held in memory as a whole. Closing the returned stream completes the compressed data
+     * and closes {@code out}.
+     */
+    public static CompressingOutputStream compressStream(Type type, OutputStream out) throws IOException {
+        switch (type) {
+            case NONE:
+                return new CompressingOutputStream(out);
+            case GZIP:
+                return new CompressingOutputStream(new DeflaterOutputStream(out));
+            case BZIP2:
+                throw RInternalError.unimplemented("BZIP2 compression");
+            case LZMA:
+                return new CompressingOutputStream(new ProcessOutputStream(new String[]{"xz", "--compress", "--format=raw", "--lzma2", "--stdout"}, out));
+            default:
+                throw RInternalError.shouldNotReachHere();
+        }
+    }
+
+    /**
+     * See {@link #compressStream}. Keeps track of the length of the uncompressed data, which is
+     * needed by the lazy-load DB format.
+     */
+    public static final class CompressingOutputStream extends FilterOutputStream {
+        private long length;
+
+        private CompressingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            length++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            length += len;
+        }
+
+        public long getUncompressedLength() {
+            return length;
+        }
+    }
+
     private static boolean gzipCompress(byte[] udata, byte[] cdata) {
         long[] cdatalen = new long[1];
         cdatalen[0] = cdata.length;
@@ -169,34 +221,125 @@ public class RCompression {
     }
 
     /**
-     * This is used by {@link GZIPRConnection}.
+     * This is used by {@link GZIPRConnection}. The data is decompressed as it is read, so neither
+     * the compressed nor the uncompressed content is ever held in memory as a whole.
      */
-    public static byte[] lzmaUncompressFromFile(String path) {
-        return genericUncompressFromFile(new String[]{"xz", "--decompress", "--lzma2", "--stdout", path});
+    public static InputStream lzmaUncompressStreamFromFile(String path) throws IOException {
+        return genericUncompressStreamFromFile(new String[]{"xz", "--decompress", "--lzma2", "--stdout", path});
     }
 
-    public static byte[] bzipUncompressFromFile(String path) {
-        return genericUncompressFromFile(new String[]{"bzip2", "-dc", path});
+    public static InputStream bzipUncompressStreamFromFile(String path) throws IOException {
+        return genericUncompressStreamFromFile(new String[]{"bzip2", "-dc", path});
     }
 
-    private static byte[] genericUncompressFromFile(String[] command) {
-        int rc;
+    private static InputStream genericUncompressStreamFromFile(String[] command) throws IOException {
         ProcessBuilder pb = new ProcessBuilder(command);
         pb.redirectError(Redirect.INHERIT);
-        try {
-            Process p = pb.start();
-            InputStream is = p.getInputStream();
-            ProcessOutputManager.OutputThreadVariable readThread = new ProcessOutputManager.OutputThreadVariable(command[0], is);
+        return new ProcessInputStream(pb.start(), command);
+    }
+
+    /**
+     * The standard output of a decompression subprocess. The exit status of the process is checked
+     * when the end of the output is reached; if the stream is closed before that, the process is
+     * simply destroyed.
+     */
+    private static final class ProcessInputStream extends FilterInputStream {
+        private final Process process;
+        private final String[] command;
+        private boolean eof;
+
+        ProcessInputStream(Process process, String[] command) {
+            super(process.getInputStream());
+            this.process = process;
+            this.command = command;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result == -1) {
+                checkExit();
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if (result == -1) {
+                checkExit();
+            }
+            return result;
+        }
+
+        private void checkExit() throws IOException {
+            if (!eof) {
+                eof = true;
+                try {
+                    if (process.waitFor() != 0) {
+                        throw new IOException("error while executing " + join(command));
+                    }
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (!eof) {
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * The standard input of a compression subprocess, whose standard output is copied to another
+     * stream by a separate thread. Closing the stream waits for the process and checks its exit
+     * status.
+     */
+    private static final class ProcessOutputStream extends FilterOutputStream {
+        private final Process process;
+        private final String[] command;
+        private final OutputStream target;
+        private final ProcessOutputManager.OutputThreadStream readThread;
+
+        ProcessOutputStream(String[] command, OutputStream target) throws IOException {
+            super(null);
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectError(Redirect.INHERIT);
+            this.process = pb.start();
+            this.out = process.getOutputStream();
+            this.command = command;
+            this.target = target;
+            this.readThread = new ProcessOutputManager.OutputThreadStream(command[0], process.getInputStream(), target);
             readThread.start();
-            rc = p.waitFor();
-            if (rc == 0) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.close();
+                if (process.waitFor() != 0) {
+                    throw new IOException("error while executing " + join(command));
+                }
                 readThread.join();
-                return readThread.getData();
+                if (readThread.getError() != null) {
+                    throw readThread.getError();
+                }
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            } finally {
+                process.destroy();
+                target.close();
             }
-        } catch (InterruptedException | IOException ex) {
-            // fall through
         }
-        throw RInternalError.shouldNotReachHere(join(command));
     }
 
     private static String join(String[] args) {
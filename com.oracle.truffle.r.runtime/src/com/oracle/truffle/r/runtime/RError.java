@@ -498,6 +498,7 @@ public final class RError extends RuntimeException {
         MUST_BE_CHARACTER("'%s' must be of mode character"),
         ALL_ATTRIBUTES_NAMES("all attributes must have names [%d does not]"),
         INVALID_REGEXP("invalid regular expression '%s'"),
+        PCRE_COMPILATION_ERROR("PCRE pattern compilation error\n\t'%s'\n\tat '%s'\n"),
         COERCING_ARGUMENT("coercing argument of type '%s' to %s"),
         MUST_BE_TRUE_FALSE_ENVIRONMENT("'%s' must be TRUE, FALSE or an environment"),
         UNKNOWN_OBJECT_MODE("object '%s' of mode '%s' was not found"),
@@ -591,6 +592,7 @@ public final class RError extends RuntimeException {
         MATRIX_LIKE_REQUIRED("a matrix-like object is required as argument to '%s'"),
         NOT_MEANINGFUL_FOR_ORDERED_FACTORS("'%s' is not meaningful for ordered factors"),
         UNSUPPORTED_URL_SCHEME("unsupported URL scheme"),
+        UNSUPPORTED_ENCODING_CONVERSION("unsupported conversion from '%s' to '%s'"),
         CANNOT_CLOSE_STANDARD_CONNECTIONS("cannot close standard connections"),
         FULL_PRECISION("full precision may not have been achieved in '%s'"),
         ATTACH_BAD_TYPE("'attach' only works for lists, data frames and environments"),
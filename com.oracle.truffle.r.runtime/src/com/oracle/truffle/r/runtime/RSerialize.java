@@ -12,10 +12,12 @@
 package com.oracle.truffle.r.runtime;
 
 import java.io.*;
+import java.nio.*;
 import java.nio.charset.*;
 import java.util.*;
 
 import com.oracle.truffle.api.CompilerAsserts;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.frame.*;
 import com.oracle.truffle.api.source.*;
@@ -201,15 +203,6 @@ public class RSerialize {
             assert index > 0 && index <= refTableIndex;
             return refTable[index - 1];
         }
-
-        protected int getRefIndex(Object obj) {
-            for (int i = 0; i < refTableIndex; i++) {
-                if (refTable[i] == obj) {
-                    return i + 1;
-                }
-            }
-            return -1;
-        }
     }
 
     public static final int DEFAULT_VERSION = 2;
@@ -294,7 +287,8 @@ public class RSerialize {
             this.functionName = functionName;
             this.closureDepth = 0;
             byte[] buf = new byte[2];
-            is.read(buf);
+            // a (decompressing) stream may deliver fewer bytes than requested
+            new DataInputStream(is).readFully(buf);
             switch (buf[0]) {
                 case 'A':
                 case 'B':
@@ -583,13 +577,13 @@ public class RSerialize {
                 case INTSXP: {
                     int len = stream.readInt();
                     int[] data = new int[len];
+                    stream.readInts(data);
                     boolean complete = RDataFactory.COMPLETE_VECTOR;
                     for (int i = 0; i < len; i++) {
-                        int intVal = stream.readInt();
-                        if (intVal == RRuntime.INT_NA) {
+                        if (data[i] == RRuntime.INT_NA) {
                             complete = false;
+                            break;
                         }
-                        data[i] = intVal;
                     }
                     result = RDataFactory.createIntVector(data, complete);
                     break;
@@ -615,13 +609,13 @@ public class RSerialize {
                 case REALSXP: {
                     int len = stream.readInt();
                     double[] data = new double[len];
+                    stream.readDoubles(data);
                     boolean complete = RDataFactory.COMPLETE_VECTOR;
                     for (int i = 0; i < len; i++) {
-                        double doubleVal = stream.readDouble();
-                        if (RRuntime.isNA(doubleVal)) {
+                        if (RRuntime.isNA(data[i])) {
                             complete = false;
+                            break;
                         }
-                        data[i] = doubleVal;
                     }
                     result = RDataFactory.createDoubleVector(data, complete);
                     break;
@@ -630,19 +624,14 @@ public class RSerialize {
                 case CPLXSXP: {
                     int len = stream.readInt();
                     double[] data = new double[2 * len];
+                    // the real and imaginary parts are interleaved, as in the vector
+                    stream.readDoubles(data);
                     boolean complete = RDataFactory.COMPLETE_VECTOR;
-                    for (int i = 0; i < len; i++) {
-                        int ix = 2 * i;
-                        double reVal = stream.readDouble();
-                        if (RRuntime.isNA(reVal)) {
-                            complete = false;
-                        }
-                        double imVal = stream.readDouble();
-                        if (RRuntime.isNA(imVal)) {
+                    for (int i = 0; i < data.length; i++) {
+                        if (RRuntime.isNA(data[i])) {
                             complete = false;
+                            break;
                         }
-                        data[ix] = reVal;
-                        data[ix + 1] = imVal;
                     }
                     result = RDataFactory.createComplexVector(data, complete);
                     break;
@@ -990,6 +979,18 @@ public class RSerialize {
 
         abstract void readRaw(byte[] data) throws IOException;
 
+        void readInts(int[] data) throws IOException {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = readInt();
+            }
+        }
+
+        void readDoubles(double[] data) throws IOException {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = readDouble();
+            }
+        }
+
     }
 
     @SuppressWarnings("unused")
@@ -1093,9 +1094,42 @@ public class RSerialize {
 
         @Override
         void readRaw(byte[] data) throws IOException {
-            ensureData(data.length);
-            System.arraycopy(buf, offset, data, 0, data.length);
-            offset += data.length;
+            int index = 0;
+            while (index < data.length) {
+                ensureData(1);
+                int count = Math.min(data.length - index, size - offset);
+                System.arraycopy(buf, offset, data, index, count);
+                offset += count;
+                index += count;
+            }
+        }
+
+        /**
+         * Decodes as many elements as are available in {@link #buf} at a time, i.e., the whole
+         * vector if the input is a byte array.
+         */
+        @Override
+        void readInts(int[] data) throws IOException {
+            int index = 0;
+            while (index < data.length) {
+                ensureData(4);
+                int count = Math.min(data.length - index, (size - offset) / 4);
+                ByteBuffer.wrap(buf, offset, count * 4).asIntBuffer().get(data, index, count);
+                offset += count * 4;
+                index += count;
+            }
+        }
+
+        @Override
+        void readDoubles(double[] data) throws IOException {
+            int index = 0;
+            while (index < data.length) {
+                ensureData(8);
+                int count = Math.min(data.length - index, (size - offset) / 8);
+                ByteBuffer.wrap(buf, offset, count * 8).asDoubleBuffer().get(data, index, count);
+                offset += count * 8;
+                index += count;
+            }
         }
 
     }
@@ -1156,17 +1190,31 @@ public class RSerialize {
 
         abstract void writeRaw(byte[] value) throws IOException;
 
+        void writeInts(int[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                writeInt(values[i]);
+            }
+        }
+
+        void writeDoubles(double[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                writeDouble(values[i]);
+            }
+        }
+
         abstract void flush() throws IOException;
 
     }
 
     private static class XdrOutputFormat extends POutputStream {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
         private byte[] buf;
         private int offset;
 
         XdrOutputFormat(OutputStream os) {
             super(os);
-            buf = new byte[8192];
+            buf = new byte[BUFFER_SIZE];
             buf[offset++] = 'X';
             buf[offset++] = '\n';
         }
@@ -1215,7 +1263,8 @@ public class RSerialize {
         @Override
         void writeDouble(double value) throws IOException {
             ensureSpace(8);
-            long valueBits = Double.doubleToLongBits(value);
+            // N.B. the raw bits, to distinguish NA from NaN
+            long valueBits = Double.doubleToRawLongBits(value);
             buf[offset++] = (byte) (valueBits >>> 56);
             buf[offset++] = (byte) ((valueBits >> 48) & 0xff);
             buf[offset++] = (byte) ((valueBits >> 40) & 0xff);
@@ -1226,6 +1275,33 @@ public class RSerialize {
             buf[offset++] = (byte) (valueBits & 0xff);
         }
 
+        /**
+         * Encodes as many elements as fit in {@link #buf} at a time.
+         */
+        @Override
+        void writeInts(int[] values) throws IOException {
+            int index = 0;
+            while (index < values.length) {
+                ensureSpace(4);
+                int count = Math.min(values.length - index, (buf.length - offset) / 4);
+                ByteBuffer.wrap(buf, offset, count * 4).asIntBuffer().put(values, index, count);
+                offset += count * 4;
+                index += count;
+            }
+        }
+
+        @Override
+        void writeDoubles(double[] values) throws IOException {
+            int index = 0;
+            while (index < values.length) {
+                ensureSpace(8);
+                int count = Math.min(values.length - index, (buf.length - offset) / 8);
+                ByteBuffer.wrap(buf, offset, count * 8).asDoubleBuffer().put(values, index, count);
+                offset += count * 8;
+                index += count;
+            }
+        }
+
         private void ensureSpace(int n) throws IOException {
             if (offset + n > buf.length) {
                 flushBuffer();
@@ -1251,10 +1327,12 @@ public class RSerialize {
         private State state;
         protected final POutputStream stream;
         private int version;
-
-        private Output(RConnection conn, char format, int version, CallHook hook) throws IOException {
-            this(conn.getOutputStream(), format, version, hook);
-        }
+        /**
+         * Maps the items already written to their (1-based) reference index. Unlike the input side,
+         * which looks up items by index, the output side looks up the index of an item, which must
+         * be done by identity and without scanning all the items written so far.
+         */
+        private final IdentityHashMap<Object, Integer> refMap = new IdentityHashMap<>();
 
         private Output(OutputStream os, char format, int version, CallHook hook) throws IOException {
             super(hook);
@@ -1285,6 +1363,22 @@ public class RSerialize {
             }
             writeItem(obj);
             stream.flush();
+            if (stats != null) {
+                stats.recordTableSize(refMap.size());
+            }
+        }
+
+        private void addWriteRef(Object item) {
+            assert item != null;
+            refMap.put(item, refMap.size() + 1);
+        }
+
+        private int getRefIndex(Object obj) {
+            Integer index = refMap.get(obj);
+            if (stats != null) {
+                stats.recordLookup(index != null);
+            }
+            return index == null ? -1 : index;
         }
 
         private static SEXPTYPE saveSpecialHook(Object item) {
@@ -1334,7 +1428,7 @@ public class RSerialize {
                 SEXPTYPE specialType;
                 Object psn;
                 if ((psn = getPersistentName(obj)) != RNull.instance) {
-                    addReadRef(obj);
+                    addWriteRef(obj);
                     stream.writeInt(SEXPTYPE.PERSISTSXP.code);
                     outStringVec((RStringVector) psn, false);
                     return;
@@ -1352,7 +1446,7 @@ public class RSerialize {
                     writeSymbol((RSymbol) obj);
                 } else if (type == SEXPTYPE.ENVSXP) {
                     REnvironment env = (REnvironment) obj;
-                    addReadRef(obj);
+                    addWriteRef(obj);
                     String name = null;
                     if ((name = env.isPackageEnv()) != null) {
                         RError.warning(RError.NO_NODE, RError.Message.PACKAGE_AVAILABLE, name);
@@ -1426,8 +1520,12 @@ public class RSerialize {
                         case INTSXP: {
                             RAbstractIntVector vec = (RAbstractIntVector) obj;
                             stream.writeInt(vec.getLength());
-                            for (int i = 0; i < vec.getLength(); i++) {
-                                stream.writeInt(vec.getDataAt(i));
+                            if (vec instanceof RIntVector) {
+                                stream.writeInts(((RIntVector) vec).getDataWithoutCopying());
+                            } else {
+                                for (int i = 0; i < vec.getLength(); i++) {
+                                    stream.writeInt(vec.getDataAt(i));
+                                }
                             }
                             break;
                         }
@@ -1435,8 +1533,12 @@ public class RSerialize {
                         case REALSXP: {
                             RAbstractDoubleVector vec = (RAbstractDoubleVector) obj;
                             stream.writeInt(vec.getLength());
-                            for (int i = 0; i < vec.getLength(); i++) {
-                                stream.writeDouble(vec.getDataAt(i));
+                            if (vec instanceof RDoubleVector) {
+                                stream.writeDoubles(((RDoubleVector) vec).getDataWithoutCopying());
+                            } else {
+                                for (int i = 0; i < vec.getLength(); i++) {
+                                    stream.writeDouble(vec.getDataAt(i));
+                                }
                             }
                             break;
                         }
@@ -1459,11 +1561,7 @@ public class RSerialize {
                         case CPLXSXP: {
                             RComplexVector vec = (RComplexVector) obj;
                             stream.writeInt(vec.getLength());
-                            for (int i = 0; i < vec.getLength(); i++) {
-                                RComplex val = vec.getDataAt(i);
-                                stream.writeDouble(val.getRealPart());
-                                stream.writeDouble(val.getImaginaryPart());
-                            }
+                            stream.writeDoubles(vec.getDataWithoutCopying());
                             break;
                         }
 
@@ -1486,7 +1584,7 @@ public class RSerialize {
                         }
 
                         case EXTPTRSXP: {
-                            addReadRef(obj);
+                            addWriteRef(obj);
                             RExternalPtr xptr = (RExternalPtr) obj;
                             writeItem(xptr.getProt());
                             writeItem(xptr.getTag());
@@ -1719,7 +1817,7 @@ public class RSerialize {
         }
 
         private void writeSymbol(RSymbol name) throws IOException {
-            addReadRef(name);
+            addWriteRef(name);
             stream.writeInt(SEXPTYPE.SYMSXP.code);
             writeCHARSXP(name.getName());
         }
@@ -2080,15 +2178,14 @@ public class RSerialize {
     }
 
     /**
-     * For {@code lazyLoadDBinsertValue}.
+     * For {@code serialize} to a raw vector and {@link RChannel}, where the result is needed as a
+     * whole.
      */
     @TruffleBoundary
-    public static byte[] serialize(Object obj, boolean ascii, @SuppressWarnings("unused") boolean xdr, int version, Object refhook) {
+    public static byte[] serialize(Object obj, boolean ascii, boolean xdr, int version, Object refhook) {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
-            Output output = new Output(out, ascii ? 'A' : 'X', version, (CallHook) refhook);
-            State state = new PLState(output);
-            output.serialize(state, obj);
+            serialize(out, obj, ascii, xdr, version, refhook);
             return out.toByteArray();
         } catch (IOException ex) {
             throw RInternalError.shouldNotReachHere();
@@ -2096,12 +2193,73 @@ public class RSerialize {
     }
 
     @TruffleBoundary
-    public static void serialize(RConnection conn, Object obj, boolean ascii, @SuppressWarnings("unused") boolean xdr, int version, Object refhook) throws IOException {
-        Output output = new Output(conn, ascii ? 'A' : 'X', version, (CallHook) refhook);
+    public static void serialize(RConnection conn, Object obj, boolean ascii, boolean xdr, int version, Object refhook) throws IOException {
+        serialize(conn.getOutputStream(), obj, ascii, xdr, version, refhook);
+    }
+
+    /**
+     * Writes the serialized form of {@code obj} to {@code os} as it is produced, through a buffer
+     * of bounded size, so that the serialized form is never held in memory as a whole. {@code os}
+     * is flushed but not closed. For {@code lazyLoadDBinsertValue}, where {@code os} compresses
+     * the data.
+     */
+    @TruffleBoundary
+    public static void serialize(OutputStream os, Object obj, boolean ascii, @SuppressWarnings("unused") boolean xdr, int version, Object refhook) throws IOException {
+        Output output = new Output(os, ascii ? 'A' : 'X', version, (CallHook) refhook);
         State state = new PLState(output);
         output.serialize(state, obj);
     }
 
+    // Performance analysis
+
+    @CompilationFinal private static PerfHandler stats;
+
+    static {
+        RPerfStats.register(new PerfHandler());
+    }
+
+    /**
+     * Reports the size of the reference tables built by {@code serialize} and the number of
+     * lookups in them, over all contexts.
+     */
+    private static class PerfHandler implements RPerfStats.Handler {
+        private static long serializations;
+        private static long totalTableSize;
+        private static int maxTableSize;
+        private static long lookups;
+        private static long hits;
+
+        synchronized void recordLookup(boolean hit) {
+            lookups++;
+            if (hit) {
+                hits++;
+            }
+        }
+
+        synchronized void recordTableSize(int size) {
+            serializations++;
+            totalTableSize += size;
+            maxTableSize = Math.max(maxTableSize, size);
+        }
+
+        public void initialize(String optionText) {
+            stats = this;
+            serializations = 0;
+            totalTableSize = 0;
+            maxTableSize = 0;
+            lookups = 0;
+            hits = 0;
+        }
+
+        public String getName() {
+            return "serialize";
+        }
+
+        public void report() {
+            RPerfStats.out().printf("Serialize: %d objects, reference table size %d total, %d max, %d lookups (%d hits)%n", serializations, totalTableSize, maxTableSize, lookups, hits);
+        }
+    }
+
     private static class Debug {
         private static int indent;
         private static PrintStream out;
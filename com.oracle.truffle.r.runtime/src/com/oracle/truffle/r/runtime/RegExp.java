@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -22,7 +22,16 @@
  */
 package com.oracle.truffle.r.runtime;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.context.RContext;
+import com.oracle.truffle.r.runtime.ffi.PCRERFFI;
+import com.oracle.truffle.r.runtime.ffi.RFFIFactory;
 
 /**
  * Support methods for regular expressions.
@@ -106,4 +115,157 @@ public class RegExp {
         }
         return result;
     }
+
+    /**
+     * Maximum number of compiled patterns of each kind (Java and PCRE) retained per context.
+     */
+    private static final int MAX_CACHED_PATTERNS = 256;
+
+    private static final char FLAG_FIXED = 'f';
+    private static final char FLAG_PERL = 'p';
+    private static final char FLAG_IGNORE_CASE = 'i';
+    private static final char FLAG_USE_BYTES = 'b';
+
+    /**
+     * A least-recently-used map, bounded to {@link #MAX_CACHED_PATTERNS} entries.
+     */
+    @SuppressWarnings("serial")
+    private static final class LRUCache<V> extends LinkedHashMap<String, V> {
+        LRUCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+            return size() > MAX_CACHED_PATTERNS;
+        }
+    }
+
+    /**
+     * Cache of compiled regular expressions shared by the {@code grep} family of builtins, so that
+     * a pattern applied to every element of a (long) vector, or repeatedly across calls, is only
+     * compiled once. The key consists of the R pattern, i.e. before any translation by
+     * {@link RegExp#checkPreDefinedClasses}, plus the {@code fixed}, {@code perl},
+     * {@code ignore.case} and {@code useBytes} flags.
+     *
+     * N.B. The PCRE interface provides no way to free a compiled pattern, so an evicted PCRE entry
+     * is simply dropped (as was every compiled pattern prior to this cache). The character tables
+     * are created once per context.
+     */
+    public static final class ContextStateImpl implements RContext.ContextState {
+        private final LRUCache<Pattern> patterns = new LRUCache<>();
+        private final LRUCache<PCRERFFI.Result> pcrePatterns = new LRUCache<>();
+        private long pcreTables;
+
+        private static String key(String pattern, boolean fixed, boolean perl, boolean ignoreCase, boolean useBytes) {
+            StringBuilder sb = new StringBuilder(pattern.length() + 5);
+            if (fixed) {
+                sb.append(FLAG_FIXED);
+            }
+            if (perl) {
+                sb.append(FLAG_PERL);
+            }
+            if (ignoreCase) {
+                sb.append(FLAG_IGNORE_CASE);
+            }
+            if (useBytes) {
+                sb.append(FLAG_USE_BYTES);
+            }
+            return sb.append(':').append(pattern).toString();
+        }
+
+        /**
+         * Returns the compiled Java form of the R regular expression {@code pattern}, or of the
+         * literal string {@code pattern} if {@code fixed}.
+         */
+        @TruffleBoundary
+        public Pattern getPattern(String pattern, boolean fixed, boolean ignoreCase, boolean useBytes) {
+            String key = key(pattern, fixed, false, ignoreCase, useBytes);
+            Pattern result = patterns.get(key);
+            if (result == null) {
+                recordLookup(false);
+                if (fixed) {
+                    result = Pattern.compile(pattern, Pattern.LITERAL | (ignoreCase ? Pattern.CASE_INSENSITIVE : 0));
+                } else {
+                    result = Pattern.compile(checkPreDefinedClasses(pattern), ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+                }
+                patterns.put(key, result);
+            } else {
+                recordLookup(true);
+            }
+            return result;
+        }
+
+        /**
+         * Returns the result of compiling {@code pattern} with PCRE. A failed compilation (i.e.
+         * {@code result == 0}) is returned but not cached.
+         */
+        @TruffleBoundary
+        public PCRERFFI.Result getPCREPattern(String pattern, boolean ignoreCase, boolean useBytes) {
+            String key = key(pattern, false, true, ignoreCase, useBytes);
+            PCRERFFI.Result result = pcrePatterns.get(key);
+            if (result == null) {
+                recordLookup(false);
+                if (pcreTables == 0) {
+                    pcreTables = RFFIFactory.getRFFI().getPCRERFFI().maketables();
+                }
+                result = RFFIFactory.getRFFI().getPCRERFFI().compile(pattern, ignoreCase ? PCRERFFI.CASELESS : 0, pcreTables);
+                if (result.result != 0) {
+                    pcrePatterns.put(key, result);
+                }
+            } else {
+                recordLookup(true);
+            }
+            return result;
+        }
+
+        public static ContextStateImpl newContext(@SuppressWarnings("unused") RContext context) {
+            return new ContextStateImpl();
+        }
+    }
+
+    // Performance analysis
+
+    @CompilationFinal private static PerfHandler stats;
+
+    private static void recordLookup(boolean hit) {
+        if (stats != null) {
+            stats.record(hit);
+        }
+    }
+
+    static {
+        RPerfStats.register(new PerfHandler());
+    }
+
+    /**
+     * Counts the hits and misses on the compiled pattern cache, over all contexts. The caches of
+     * different contexts may be used concurrently, hence the atomic counters.
+     */
+    private static class PerfHandler implements RPerfStats.Handler {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        void record(boolean hit) {
+            if (hit) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+        }
+
+        public void initialize(String optionText) {
+            stats = this;
+            hits.set(0);
+            misses.set(0);
+        }
+
+        public String getName() {
+            return "regexpcache";
+        }
+
+        public void report() {
+            RPerfStats.out().printf("RegExp cache: %d hits, %d misses%n", hits.get(), misses.get());
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -25,6 +25,7 @@ package com.oracle.truffle.r.runtime.conn;
 import java.io.*;
 import java.lang.ref.*;
 import java.nio.*;
+import java.nio.charset.*;
 import java.util.*;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
@@ -511,6 +512,11 @@ public class ConnectionSupport {
          */
         private int descriptor;
 
+        /**
+         * The encoding used to decode text read from this connection.
+         */
+        private Charset encoding = Charset.defaultCharset();
+
         /**
          * The constructor for every connection class except {@link StdConnections}.
          *
@@ -686,6 +692,12 @@ public class ConnectionSupport {
             return theConnection.readBin(buffer);
         }
 
+        @Override
+        public ByteBuffer readBinBuffer(int length) throws IOException {
+            checkOpen();
+            return theConnection.readBinBuffer(length);
+        }
+
         @Override
         public byte[] readBinChars() throws IOException {
             checkOpen();
@@ -771,6 +783,58 @@ public class ConnectionSupport {
             return closed;
         }
 
+        public Charset getEncoding() {
+            return encoding;
+        }
+
+        /**
+         * Sets the encoding from the {@code encoding} argument of the connection builtins, where
+         * {@code ""} and {@code "native.enc"} denote the platform default.
+         *
+         * @return {@code false} if the encoding is not supported, which includes those that are not
+         *         {@link ConnectionSupport#isAsciiCompatible ASCII compatible}, in which case the
+         *         encoding is unchanged.
+         */
+        public boolean setEncoding(String encodingName) {
+            if (encodingName == null || encodingName.length() == 0 || encodingName.equals("native.enc")) {
+                encoding = Charset.defaultCharset();
+                return true;
+            }
+            String name = encodingName.equals("latin1") ? "ISO-8859-1" : encodingName;
+            Charset charset;
+            try {
+                charset = Charset.forName(name);
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+                return false;
+            }
+            if (!isAsciiCompatible(charset)) {
+                // the bytes are split into lines before decoding
+                return false;
+            }
+            encoding = charset;
+            return true;
+        }
+
+    }
+
+    /**
+     * Determines whether each byte below {@code 0x80} stands for the corresponding ASCII character
+     * in {@code encoding}, and never for a part of another character, as lines (and, by
+     * {@code scan}, records and fields) are split on the raw bytes. This excludes, e.g., UTF-16 and
+     * the multi-byte east Asian encodings.
+     */
+    public static boolean isAsciiCompatible(Charset encoding) {
+        if (encoding.equals(StandardCharsets.UTF_8) || encoding.equals(StandardCharsets.US_ASCII)) {
+            return true;
+        }
+        if (!encoding.canEncode() || encoding.newEncoder().maxBytesPerChar() != 1) {
+            return false;
+        }
+        byte[] ascii = new byte[0x80];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return Arrays.equals(new String(ascii, StandardCharsets.US_ASCII).getBytes(encoding), ascii);
     }
 
     public static BaseRConnection getBaseConnection(RConnection conn) {
@@ -786,11 +850,22 @@ public class ConnectionSupport {
     interface ReadWriteHelper {
 
         /**
-         * {@code readLines} from an {@link InputStream}. It would be convenient to use a
+         * {@code readLines} from a {@link LineReaderInputStream}, which scans its buffer for line
+         * ends rather than reading byte by byte. This is the variant used by all connections that
+         * do not have to track their own read position.
+         */
+        default String[] readLinesHelper(LineReaderInputStream in, int n, BaseRConnection base) throws IOException {
+            return in.readLines(n, base.getEncoding(), base.getSummaryDescription());
+        }
+
+        /**
+         * {@code readLines} from an arbitrary {@link InputStream}, one byte at a time, so that no
+         * bytes beyond the last line are consumed. It would be convenient to use a
          * {@link BufferedReader} but mixing binary and text operations, which is a requirement,
          * would then be difficult.
          */
-        default String[] readLinesHelper(InputStream in, int n) throws IOException {
+        default String[] readLinesHelper(InputStream in, int n, BaseRConnection base) throws IOException {
+            Charset encoding = base.getEncoding();
             ArrayList<String> lines = new ArrayList<>();
             int totalRead = 0;
             byte[] buffer = new byte[64];
@@ -809,11 +884,10 @@ public class ConnectionSupport {
                         /*
                          * TODO GnuR says keep data and output a warning if blocking, otherwise
                          * silently push back. FastR doesn't support non-blocking yet, so we keep
-                         * the data. Some refactoring is needed to be able to reliably access the
-                         * "name" for the warning.
+                         * the data.
                          */
-                        lines.add(new String(buffer, 0, totalRead));
-                        RError.warning(RError.NO_NODE, RError.Message.INCOMPLETE_FINAL_LINE, "TODO: connection path");
+                        lines.add(new String(buffer, 0, totalRead, encoding));
+                        RError.warning(RError.NO_NODE, RError.Message.INCOMPLETE_FINAL_LINE, base.getSummaryDescription());
                     }
                     break;
                 }
@@ -829,7 +903,7 @@ public class ConnectionSupport {
                     }
                 }
                 if (lineEnd) {
-                    lines.add(new String(buffer, 0, totalRead));
+                    lines.add(new String(buffer, 0, totalRead, encoding));
                     if (n > 0 && lines.size() == n) {
                         break;
                     }
@@ -912,7 +986,11 @@ public class ConnectionSupport {
 
         default String readCharHelper(int nchars, InputStream in, @SuppressWarnings("unused") boolean useBytes) throws IOException {
             byte[] bytes = new byte[nchars];
-            in.read(bytes);
+            int totalRead = 0;
+            int thisRead = 0;
+            while (totalRead < nchars && (thisRead = in.read(bytes, totalRead, nchars - totalRead)) > 0) {
+                totalRead += thisRead;
+            }
             int j = 0;
             for (; j < bytes.length; j++) {
                 // strings end at 0
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -26,6 +26,9 @@ import static com.oracle.truffle.r.runtime.conn.ConnectionSupport.*;
 
 import java.io.*;
 import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.zip.*;
 
 import com.oracle.truffle.api.CompilerDirectives.*;
@@ -38,9 +41,18 @@ public class FileConnections {
      *
      */
     public static class FileRConnection extends BasePathRConnection {
+        /**
+         * Read modes are implemented by mapping the file into memory.
+         */
+        private final boolean mmap;
 
         public FileRConnection(String path, String modeString) throws IOException {
+            this(path, modeString, false);
+        }
+
+        public FileRConnection(String path, String modeString, boolean mmap) throws IOException {
             super(checkTemp(path), ConnectionClass.File, modeString);
+            this.mmap = mmap;
             openNonLazyConnection();
         }
 
@@ -57,7 +69,7 @@ public class FileConnections {
             DelegateRConnection delegate = null;
             switch (getOpenMode().abstractOpenMode) {
                 case Read:
-                    delegate = new FileReadTextRConnection(this);
+                    delegate = mmap && !isGZIPFile(path) ? new FileReadMMapRConnection(this) : new FileReadTextRConnection(this);
                     break;
                 case Write:
                     delegate = new FileWriteTextRConnection(this, false);
@@ -66,7 +78,7 @@ public class FileConnections {
                     delegate = new FileWriteTextRConnection(this, true);
                     break;
                 case ReadBinary:
-                    delegate = new FileReadBinaryRConnection(this);
+                    delegate = mmap && !isGZIPFile(path) ? new FileReadMMapRConnection(this) : new FileReadBinaryRConnection(this);
                     break;
                 case WriteBinary:
                     delegate = new FileWriteBinaryConnection(this, false);
@@ -80,32 +92,98 @@ public class FileConnections {
             }
             setDelegate(delegate);
         }
+
+        /**
+         * Compressed files are read through a stream, never mapped.
+         */
+        private static boolean isGZIPFile(String path) throws IOException {
+            try (InputStream is = new FileInputStream(path)) {
+                int byte1 = is.read();
+                int byte2 = is.read();
+                return byte1 == (GZIPInputStream.GZIP_MAGIC & 0x000000FF) && byte2 == (GZIPInputStream.GZIP_MAGIC >> 8);
+            }
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Support for readers that process the rest of the file in bulk, e.g. by mapping it into
+         * memory: returns the offset in the file of the first byte that has not been read through
+         * this connection (ignoring any pushback), or {@code -1} if this is not known, e.g.,
+         * because the connection is not open for reading or the file is compressed.
+         */
+        public long getReadOffset() throws IOException {
+            if (isOpen() && theConnection instanceof ReadOffsetAccess) {
+                return ((ReadOffsetAccess) theConnection).getReadOffset();
+            }
+            return -1;
+        }
+
+        /**
+         * Marks the bytes up to {@code offset}, which must not be less than
+         * {@link #getReadOffset()}, as read.
+         */
+        public void setReadOffset(long offset) throws IOException {
+            assert offset >= getReadOffset();
+            ((ReadOffsetAccess) theConnection).setReadOffset(offset);
+        }
     }
 
-    static class FileReadTextRConnection extends DelegateReadRConnection implements ReadWriteHelper {
-        private InputStream inputStream;
+    /**
+     * Implemented by the read delegates that support {@link FileRConnection#getReadOffset()}.
+     */
+    private interface ReadOffsetAccess {
+        long getReadOffset() throws IOException;
+
+        void setReadOffset(long offset) throws IOException;
+    }
+
+    static class FileReadTextRConnection extends DelegateReadRConnection implements ReadWriteHelper, ReadOffsetAccess {
+        private LineReaderInputStream inputStream;
+        private boolean compressed;
 
         FileReadTextRConnection(BasePathRConnection base) throws IOException {
             super(base);
-            inputStream = new BufferedInputStream(new FileInputStream(base.path));
+            InputStream is = new BufferedInputStream(new FileInputStream(base.path));
             // can be compressed - check for it
-            inputStream.mark(2);
-            int byte1 = inputStream.read();
+            is.mark(2);
+            int byte1 = is.read();
             if (byte1 == -1) {
-                inputStream.reset();
+                is.reset();
             } else {
-                int byte2 = inputStream.read();
+                int byte2 = is.read();
                 if (byte2 == -1) {
-                    inputStream.reset();
+                    is.reset();
                 } else {
                     if (byte1 == (GZIPInputStream.GZIP_MAGIC & 0x000000FF) && byte2 == (GZIPInputStream.GZIP_MAGIC >> 8)) {
-                        inputStream.close();
-                        inputStream = new GZIPInputStream(new FileInputStream(base.path), GZIPConnections.GZIP_BUFFER_SIZE);
+                        is.close();
+                        is = new GZIPInputStream(new FileInputStream(base.path), GZIPConnections.GZIP_BUFFER_SIZE);
+                        compressed = true;
                     } else {
-                        inputStream.reset();
+                        is.reset();
                     }
                 }
             }
+            inputStream = new LineReaderInputStream(is);
+        }
+
+        @Override
+        public long getReadOffset() {
+            return compressed ? -1 : inputStream.position();
+        }
+
+        @Override
+        public void setReadOffset(long offset) throws IOException {
+            long remaining = offset - inputStream.position();
+            while (remaining > 0) {
+                long count = inputStream.skip(remaining);
+                if (count <= 0) {
+                    break;
+                }
+                remaining -= count;
+            }
         }
 
         @Override
@@ -121,7 +199,7 @@ public class FileConnections {
         @TruffleBoundary
         @Override
         public String[] readLinesInternal(int n) throws IOException {
-            return readLinesHelper(inputStream, n);
+            return readLinesHelper(inputStream, n, base);
         }
 
         @Override
@@ -199,11 +277,14 @@ public class FileConnections {
     }
 
     private static class FileReadBinaryRConnection extends DelegateReadRConnection implements ReadWriteHelper {
-        private FileInputStream inputStream;
+        private final FileChannel channel;
+        private final LineReaderInputStream inputStream;
 
         FileReadBinaryRConnection(FileRConnection base) throws IOException {
             super(base);
-            inputStream = new FileInputStream(base.path);
+            FileInputStream fileInputStream = new FileInputStream(base.path);
+            channel = fileInputStream.getChannel();
+            inputStream = new LineReaderInputStream(fileInputStream);
         }
 
         @Override
@@ -213,7 +294,13 @@ public class FileConnections {
 
         @Override
         public int readBin(ByteBuffer buffer) throws IOException {
-            return inputStream.getChannel().read(buffer);
+            // bytes buffered by a previous text read come first
+            int buffered = inputStream.drainTo(buffer);
+            if (!buffer.hasRemaining()) {
+                return buffered;
+            }
+            int count = channel.read(buffer);
+            return buffered == 0 ? count : buffered + Math.max(count, 0);
         }
 
         @Override
@@ -224,7 +311,7 @@ public class FileConnections {
         @TruffleBoundary
         @Override
         public String[] readLinesInternal(int n) throws IOException {
-            return readLinesHelper(inputStream, n);
+            return readLinesHelper(inputStream, n, base);
         }
 
         @Override
@@ -245,6 +332,213 @@ public class FileConnections {
 
     }
 
+    /**
+     * A read connection, text or binary, on a file that is mapped into memory, which makes
+     * {@code readBin} read directly from the mapping. Files of any size are handled by mapping a
+     * window of at most {@link #WINDOW_SIZE} bytes at a time, which is moved as the read position
+     * advances or is changed by {@code seek}. Text and {@code readChar} operations go through a
+     * {@link LineReaderInputStream} on the mapping, whose unconsumed bytes are accounted for when
+     * switching to {@code readBin} or seeking.
+     */
+    private static class FileReadMMapRConnection extends DelegateReadRConnection implements ReadWriteHelper, ReadOffsetAccess {
+        private static final long WINDOW_SIZE = 1L << 28;
+
+        private final FileChannel channel;
+        private final long size;
+        /**
+         * The current mapping, covering {@code [windowStart, windowStart + window.limit())}.
+         */
+        private MappedByteBuffer window;
+        private long windowStart;
+        /**
+         * Position of the next byte to be transferred out of the mapping, which may be ahead of
+         * the logical read position by the bytes held in {@link #inputStream}.
+         */
+        private long position;
+        private final LineReaderInputStream inputStream;
+
+        /**
+         * Makes the mapping appear to be an {@link InputStream}.
+         */
+        private class MappedInputStream extends InputStream {
+            @Override
+            public int read() throws IOException {
+                if (!mapPosition()) {
+                    return -1;
+                }
+                int value = window.get((int) (position - windowStart)) & 0xFF;
+                position++;
+                return value;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!mapPosition()) {
+                    return -1;
+                }
+                ByteBuffer src = window.duplicate();
+                src.position((int) (position - windowStart));
+                int count = Math.min(len, src.remaining());
+                src.get(b, off, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(size - position, Integer.MAX_VALUE);
+            }
+        }
+
+        FileReadMMapRConnection(FileRConnection base) throws IOException {
+            super(base);
+            channel = FileChannel.open(Paths.get(base.path), StandardOpenOption.READ);
+            size = channel.size();
+            inputStream = new LineReaderInputStream(new MappedInputStream());
+        }
+
+        /**
+         * Ensures that {@link #position} is covered by {@link #window}, remapping if necessary.
+         *
+         * @return {@code false} iff {@link #position} is at the end of the file.
+         */
+        private boolean mapPosition() throws IOException {
+            if (position >= size) {
+                return false;
+            }
+            if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, size - windowStart));
+            }
+            return true;
+        }
+
+        @Override
+        public int readBin(ByteBuffer buffer) throws IOException {
+            if (base.isTextMode()) {
+                throw RError.error(RError.NO_NODE, RError.Message.ONLY_READ_BINARY_CONNECTION);
+            }
+            int total = inputStream.drainTo(buffer);
+            while (buffer.hasRemaining() && mapPosition()) {
+                ByteBuffer src = window.duplicate();
+                src.position((int) (position - windowStart));
+                if (src.remaining() > buffer.remaining()) {
+                    src.limit(src.position() + buffer.remaining());
+                }
+                int count = src.remaining();
+                buffer.put(src);
+                position += count;
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * Returns a view on the mapping rather than a copy, unless some of the bytes are held in
+         * {@link #inputStream}.
+         */
+        @Override
+        public ByteBuffer readBinBuffer(int length) throws IOException {
+            if (base.isTextMode()) {
+                throw RError.error(RError.NO_NODE, RError.Message.ONLY_READ_BINARY_CONNECTION);
+            }
+            if (inputStream.buffered() > 0 || length > WINDOW_SIZE) {
+                return super.readBinBuffer(length);
+            }
+            if (!mapPosition()) {
+                return ByteBuffer.allocate(0);
+            }
+            int count = (int) Math.min(length, size - position);
+            if (position + count > windowStart + window.limit()) {
+                // move the window so that it covers all the bytes
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, size - windowStart));
+            }
+            ByteBuffer slice = window.duplicate();
+            slice.position((int) (position - windowStart));
+            slice.limit(slice.position() + count);
+            position += count;
+            return slice.slice();
+        }
+
+        @Override
+        public byte[] readBinChars() throws IOException {
+            if (base.isTextMode()) {
+                throw RError.error(RError.NO_NODE, RError.Message.ONLY_READ_BINARY_CONNECTION);
+            }
+            return readBinCharsHelper(inputStream);
+        }
+
+        @Override
+        public String readChar(int nchars, boolean useBytes) throws IOException {
+            return readCharHelper(nchars, inputStream, useBytes);
+        }
+
+        @TruffleBoundary
+        @Override
+        public String[] readLinesInternal(int n) throws IOException {
+            return readLinesHelper(inputStream, n, base);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return inputStream;
+        }
+
+        @Override
+        public boolean isSeekable() {
+            return true;
+        }
+
+        @Override
+        public long getReadOffset() {
+            return position - inputStream.buffered();
+        }
+
+        @Override
+        public void setReadOffset(long offset) {
+            inputStream.discardBuffer();
+            position = offset;
+        }
+
+        @Override
+        public long seek(long offset, SeekMode seekMode, SeekRWMode seekRWMode) throws IOException {
+            long result = position - inputStream.buffered();
+            long newPosition;
+            switch (seekMode) {
+                case START:
+                    newPosition = offset;
+                    break;
+                case CURRENT:
+                    newPosition = result + offset;
+                    break;
+                case END:
+                    newPosition = size + offset;
+                    break;
+                default:
+                    throw RInternalError.shouldNotReachHere();
+            }
+            inputStream.discardBuffer();
+            position = Math.max(0, newPosition);
+            return result;
+        }
+
+        @Override
+        public void closeAndDestroy() throws IOException {
+            base.closed = true;
+            close();
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+    }
+
     private static class FileWriteBinaryConnection extends DelegateWriteRConnection implements ReadWriteHelper {
         private FileOutputStream outputStream;
 
@@ -384,7 +678,7 @@ public class FileConnections {
         @Override
         public String[] readLinesInternal(int n) throws IOException {
             raf.seek(readOffset);
-            return readLinesHelper(inputStream, n);
+            return readLinesHelper(inputStream, n, base);
         }
 
         @Override
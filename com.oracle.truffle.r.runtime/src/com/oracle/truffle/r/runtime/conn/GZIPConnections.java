@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -29,6 +29,7 @@ import java.nio.*;
 import java.util.zip.*;
 
 import com.oracle.truffle.r.runtime.*;
+import com.oracle.truffle.r.runtime.context.*;
 import com.oracle.truffle.r.runtime.data.model.*;
 
 public class GZIPConnections {
@@ -68,16 +69,14 @@ public class GZIPConnections {
                             break;
                         case LZMA:
                             /*
-                             * no lzma support in Java. For now we use RCompression to a byte array
-                             * and return a ByteArrayInputStream on that.
+                             * no lzma support in Java. For now we use RCompression to stream the
+                             * output of an external decompressor.
                              */
-                            byte[] lzmaUdata = RCompression.lzmaUncompressFromFile(path);
-                            delegate = new ByteGZipInputRConnection(this, new ByteArrayInputStream(lzmaUdata));
+                            delegate = new GZIPInputRConnection(this, RCompression.lzmaUncompressStreamFromFile(path));
                             break;
                         case BZIP2:
                             // ditto
-                            byte[] bzipUdata = RCompression.bzipUncompressFromFile(path);
-                            delegate = new ByteGZipInputRConnection(this, new ByteArrayInputStream(bzipUdata));
+                            delegate = new GZIPInputRConnection(this, RCompression.bzipUncompressStreamFromFile(path));
                     }
                     break;
                 case Write:
@@ -100,16 +99,16 @@ public class GZIPConnections {
     }
 
     private static class GZIPInputRConnection extends DelegateReadRConnection implements ReadWriteHelper {
-        private InputStream inputStream;
+        private LineReaderInputStream inputStream;
 
         GZIPInputRConnection(GZIPRConnection base) throws IOException {
             super(base);
-            inputStream = new GZIPInputStream(new FileInputStream(base.path), GZIP_BUFFER_SIZE);
+            inputStream = new LineReaderInputStream(new GZIPInputStream(new FileInputStream(base.path), GZIP_BUFFER_SIZE));
         }
 
-        protected GZIPInputRConnection(GZIPRConnection base, InputStream is) {
+        GZIPInputRConnection(GZIPRConnection base, InputStream is) {
             super(base);
-            this.inputStream = is;
+            this.inputStream = new LineReaderInputStream(is);
         }
 
         @Override
@@ -129,7 +128,7 @@ public class GZIPConnections {
 
         @Override
         public String[] readLinesInternal(int n) throws IOException {
-            return readLinesHelper(inputStream, n);
+            return readLinesHelper(inputStream, n, base);
         }
 
         @Override
@@ -150,18 +149,28 @@ public class GZIPConnections {
 
     }
 
-    private static class ByteGZipInputRConnection extends GZIPInputRConnection {
-        ByteGZipInputRConnection(GZIPRConnection base, ByteArrayInputStream is) {
-            super(base, is);
-        }
+    /**
+     * Returns the number of threads used to compress the output of a gzfile connection, as given by
+     * the {@code fastr.gzip.threads} option. Compression is sequential unless this is greater than
+     * one, in which case the connection starts that many threads of its own, see
+     * {@link ParallelGZIPOutputStream}.
+     */
+    private static int compressionThreads() {
+        int threads = RRuntime.asInteger(RContext.getInstance().stateROptions.getValue("fastr.gzip.threads"));
+        return threads == RRuntime.INT_NA ? 1 : threads;
     }
 
     private static class GZIPOutputRConnection extends DelegateWriteRConnection implements ReadWriteHelper {
-        private GZIPOutputStream outputStream;
+        private OutputStream outputStream;
 
         GZIPOutputRConnection(GZIPRConnection base) throws IOException {
             super(base);
-            outputStream = new GZIPOutputStream(new FileOutputStream(base.path), GZIP_BUFFER_SIZE);
+            int threads = compressionThreads();
+            if (threads > 1) {
+                outputStream = new ParallelGZIPOutputStream(new FileOutputStream(base.path), threads);
+            } else {
+                outputStream = new GZIPOutputStream(new FileOutputStream(base.path), GZIP_BUFFER_SIZE);
+            }
         }
 
         @Override
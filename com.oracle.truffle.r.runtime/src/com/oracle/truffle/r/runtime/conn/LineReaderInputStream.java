@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.conn;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import com.oracle.truffle.r.runtime.RError;
+
+/**
+ * A buffered {@link InputStream} that can also split its content into lines. Since all reads on a
+ * connection, binary or text, go through the same instance, {@code readLines} can be freely mixed
+ * with {@code readBin}, {@code readChar} etc.; bytes that have been buffered but not consumed by
+ * one operation are seen by the next.
+ *
+ * Lines are terminated by {@code \n}, {@code \r} or {@code \r\n}, which limits the supported
+ * encodings to those that are ASCII compatible, as in GnuR.
+ */
+public final class LineReaderInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer;
+    /**
+     * Index of the next unconsumed byte in {@link #buffer}.
+     */
+    private int pos;
+    /**
+     * Number of valid bytes in {@link #buffer}.
+     */
+    private int limit;
+    /**
+     * Number of bytes obtained from the underlying stream (read or skipped).
+     */
+    private long streamPosition;
+    /**
+     * Set if a line ended in {@code \r} at the end of the buffer, in which case a {@code \n} at the
+     * start of the next fill belongs to the same line end and is dropped. Looking ahead right away
+     * would block a {@code readLines(n = 1)} on a terminal, pipe or socket.
+     */
+    private boolean skipLf;
+
+    public LineReaderInputStream(InputStream in) {
+        this(in, BUFFER_SIZE);
+    }
+
+    public LineReaderInputStream(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Refills the (empty) buffer from the underlying stream.
+     *
+     * @return {@code false} iff the end of the stream has been reached.
+     */
+    private boolean fill() throws IOException {
+        assert pos >= limit;
+        int count = in.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            pos = 0;
+            limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = count;
+        streamPosition += count;
+        if (skipLf) {
+            skipLf = false;
+            if (buffer[0] == '\n') {
+                pos = 1;
+                if (limit == 1) {
+                    return fill();
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int buffered = limit - pos;
+        if (buffered <= 0) {
+            if (len >= buffer.length && !skipLf) {
+                // no point in copying through the buffer
+                int count = in.read(b, off, len);
+                if (count > 0) {
+                    streamPosition += count;
+                }
+                return count;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            buffered = limit;
+        }
+        int count = Math.min(buffered, len);
+        System.arraycopy(buffer, pos, b, off, count);
+        pos += count;
+        return count;
+    }
+
+    /**
+     * Transfers any buffered but unconsumed bytes to {@code dst}, without reading from the
+     * underlying stream. This allows a connection to mix buffered reads with direct channel
+     * access.
+     */
+    public int drainTo(ByteBuffer dst) {
+        int count = Math.min(limit - pos, dst.remaining());
+        if (count > 0) {
+            dst.put(buffer, pos, count);
+            pos += count;
+            return count;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of bytes that have been read from the underlying stream but not yet
+     * consumed.
+     */
+    public int buffered() {
+        return limit - pos;
+    }
+
+    /**
+     * Returns the number of bytes consumed from the start of the underlying stream, i.e., its
+     * position less the bytes that are buffered but not yet consumed.
+     */
+    public long position() {
+        return streamPosition - (limit - pos);
+    }
+
+    /**
+     * Drops any buffered bytes, e.g., after the position of the underlying stream was changed.
+     */
+    public void discardBuffer() {
+        pos = 0;
+        limit = 0;
+        skipLf = false;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        int buffered = limit - pos;
+        if (buffered > 0) {
+            int count = (int) Math.min(buffered, n);
+            pos += count;
+            return count;
+        }
+        if (skipLf) {
+            return fill() ? skip(n) : 0;
+        }
+        long count = in.skip(n);
+        streamPosition += count;
+        return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (limit - pos) + in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        pos = 0;
+        limit = 0;
+        in.close();
+    }
+
+    /**
+     * Reads (n > 0 up to n else unlimited) lines, decoding them with {@code encoding}. An
+     * incomplete final line is returned (with a warning that names the connection by
+     * {@code description}), any bytes beyond the last line read remain available.
+     */
+    public String[] readLines(int n, Charset encoding, String description) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        // holds the prefix of a line that spans more than one buffer fill
+        byte[] partial = null;
+        int partialLength = 0;
+        while (n <= 0 || lines.size() < n) {
+            if (pos >= limit && !fill()) {
+                if (partialLength > 0) {
+                    /*
+                     * TODO GnuR says keep data and output a warning if blocking, otherwise silently
+                     * push back. FastR doesn't support non-blocking yet, so we keep the data.
+                     */
+                    lines.add(new String(partial, 0, partialLength, encoding));
+                    RError.warning(RError.NO_NODE, RError.Message.INCOMPLETE_FINAL_LINE, description);
+                }
+                break;
+            }
+            int start = pos;
+            int i = start;
+            while (i < limit && buffer[i] != '\n' && buffer[i] != '\r') {
+                i++;
+            }
+            int length = i - start;
+            if (i == limit) {
+                // no line end in the buffer, save the prefix and refill
+                if (partial == null) {
+                    partial = new byte[Math.max(length * 2, 80)];
+                } else if (partialLength + length > partial.length) {
+                    byte[] newPartial = new byte[Math.max(partial.length * 2, partialLength + length)];
+                    System.arraycopy(partial, 0, newPartial, 0, partialLength);
+                    partial = newPartial;
+                }
+                System.arraycopy(buffer, start, partial, partialLength, length);
+                partialLength += length;
+                pos = limit;
+                continue;
+            }
+            if (partialLength == 0) {
+                lines.add(new String(buffer, start, length, encoding));
+            } else {
+                byte[] line = new byte[partialLength + length];
+                System.arraycopy(partial, 0, line, 0, partialLength);
+                System.arraycopy(buffer, start, line, partialLength, length);
+                lines.add(new String(line, encoding));
+                partialLength = 0;
+            }
+            pos = i + 1;
+            if (buffer[i] == '\r') {
+                // swallow the lf of a crlf, or drop it on the next fill if not buffered yet
+                if (pos < limit) {
+                    if (buffer[pos] == '\n') {
+                        pos++;
+                    }
+                } else {
+                    skipLf = true;
+                }
+            }
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.conn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import com.oracle.truffle.r.runtime.FastROptions;
+
+/**
+ * A gzip {@link OutputStream} that splits the data into blocks (of
+ * {@link FastROptions#ParallelGZIPBlockSize} bytes) which are compressed independently on a
+ * {@link ForkJoinPool} of its own with the requested number of threads (in the manner of
+ * {@code pigz}). Each block becomes a complete gzip member, and since a gzip file may consist of
+ * any number of concatenated members, the output can be read by any conforming reader, including
+ * GnuR's {@code gzfile}.
+ *
+ * The number of blocks that are compressed or waiting to be written is bounded (by twice the
+ * number of threads), so the memory used does not depend on the total amount of data written.
+ */
+public final class ParallelGZIPOutputStream extends OutputStream {
+
+    private static final int BLOCK_SIZE = Math.max(1, FastROptions.ParallelGZIPBlockSize.getNonNegativeIntValue());
+
+    private final OutputStream out;
+    /**
+     * The threads that compress the blocks of this stream, which terminate when it is closed.
+     */
+    private final ForkJoinPool pool;
+    private final int maxPending;
+    /**
+     * The compressed blocks, in the order in which they have to be written.
+     */
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength;
+    private boolean submitted;
+    private boolean closed;
+
+    public ParallelGZIPOutputStream(OutputStream out, int threads) {
+        this.out = out;
+        this.pool = new ForkJoinPool(threads);
+        this.maxPending = 2 * threads;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (blockLength == block.length) {
+            submitBlock();
+        }
+        block[blockLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int index = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (blockLength == block.length) {
+                submitBlock();
+            }
+            int count = Math.min(remaining, block.length - blockLength);
+            System.arraycopy(b, index, block, blockLength, count);
+            blockLength += count;
+            index += count;
+            remaining -= count;
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        if (blockLength == 0) {
+            return;
+        }
+        final byte[] data = block;
+        final int length = blockLength;
+        pending.add(pool.submit(() -> compress(data, length)));
+        submitted = true;
+        block = new byte[BLOCK_SIZE];
+        blockLength = 0;
+        while (pending.size() >= maxPending) {
+            writeNext();
+        }
+    }
+
+    private static byte[] compress(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(member)) {
+            gzip.write(data, 0, length);
+        }
+        return member.toByteArray();
+    }
+
+    /**
+     * Waits for the oldest pending block and writes it.
+     */
+    private void writeNext() throws IOException {
+        Future<byte[]> next = pending.remove();
+        try {
+            out.write(next.get());
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Writes all the blocks that have been submitted. As with {@link GZIPOutputStream}, the data
+     * in the current, incomplete, block is not flushed.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (!submitted && blockLength == 0) {
+                // an empty gzip file still consists of one (empty) member
+                out.write(compress(block, 0));
+            }
+            submitBlock();
+            while (!pending.isEmpty()) {
+                writeNext();
+            }
+        } finally {
+            // only non-empty after an error
+            for (Future<byte[]> future : pending) {
+                future.cancel(false);
+            }
+            pending.clear();
+            pool.shutdown();
+            out.close();
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -213,6 +213,23 @@ public abstract class RConnection extends RAttributeStorage implements RTypedVal
         return pushBack == null ? 0 : pushBack.size();
     }
 
+    /**
+     * Returns the pushback as a single string, in the order in which it would be read, without
+     * consuming it, or {@code null} if there is no pushback.
+     */
+    @TruffleBoundary
+    public String pushBackText() {
+        if (pushBack == null || pushBack.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        Iterator<String> iter = pushBack.descendingIterator();
+        while (iter.hasNext()) {
+            sb.append(iter.next());
+        }
+        return sb.toString();
+    }
+
     /**
      * Clears the pushback.
      */
@@ -297,6 +314,18 @@ public abstract class RConnection extends RAttributeStorage implements RTypedVal
      */
     public abstract int readBin(ByteBuffer buffer) throws IOException;
 
+    /**
+     * Reads up to {@code length} bytes as {@link #readBin} does, and returns them as a buffer
+     * ready to be read, i.e., with its limit set to the number of bytes read. Connections that can
+     * provide a view on their data, e.g. on a mapped file, may do so instead of copying.
+     */
+    public ByteBuffer readBinBuffer(int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readBin(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
     /**
      * Internal connection-specific support for the {@code readBin} builtin on character data.
      * character data is null-terminated and, therefore of length unknown to the caller. The result
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -70,7 +70,7 @@ public class SocketConnections {
     private abstract static class RSocketReadWriteConnection extends DelegateReadWriteRConnection implements ReadWriteHelper {
         private Socket socket;
         private SocketChannel socketChannel;
-        protected InputStream inputStream;
+        protected LineReaderInputStream inputStream;
         protected OutputStream outputStream;
         protected final RSocketConnection thisBase;
 
@@ -92,13 +92,13 @@ public class SocketConnections {
             } else {
                 socketChannel.configureBlocking(false);
             }
-            inputStream = socket.getInputStream();
+            inputStream = new LineReaderInputStream(socket.getInputStream());
             outputStream = socket.getOutputStream();
         }
 
         @Override
         public String[] readLinesInternal(int n) throws IOException {
-            return readLinesHelper(inputStream, n);
+            return readLinesHelper(inputStream, n, base);
         }
 
         @Override
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -60,12 +60,12 @@ public class URLConnections {
 
     private static class URLReadRConnection extends DelegateReadRConnection implements ReadWriteHelper {
 
-        private BufferedInputStream inputStream;
+        private LineReaderInputStream inputStream;
 
         protected URLReadRConnection(URLRConnection base) throws MalformedURLException, IOException {
             super(base);
             URL url = new URL(base.urlString);
-            inputStream = new BufferedInputStream(url.openStream());
+            inputStream = new LineReaderInputStream(url.openStream());
         }
 
         @Override
@@ -80,7 +80,7 @@ public class URLConnections {
 
         @Override
         public String[] readLinesInternal(int n) throws IOException {
-            return readLinesHelper(inputStream, n);
+            return readLinesHelper(inputStream, n, base);
         }
 
         @Override
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -31,6 +31,7 @@ import com.oracle.truffle.api.interop.TruffleObject;
 import com.oracle.truffle.api.vm.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.context.RContext.ContextKind;
+import com.oracle.truffle.r.runtime.env.REnvironment;
 
 /**
  * Represents custom initialization state for an R instance.
@@ -71,7 +72,9 @@ public final class ContextInfo implements TruffleObject {
     }
 
     /**
-     * Create a context configuration object.
+     * Create a context configuration object. N.B. For a {@link ContextKind#SHARE_PARENT_RO} context,
+     * this must be called on the thread of {@code parent}, as it prepares the values of the parent
+     * for sharing, see {@link REnvironment#prepareSharedBindings}.
      *
      * @param parent if non-null {@code null}, the parent creating the context
      * @param kind defines the degree to which this context shares base and package environments
@@ -81,6 +84,9 @@ public final class ContextInfo implements TruffleObject {
      * @param systemTimeZone the system's time zone
      */
     public static ContextInfo create(RCmdOptions options, ContextKind kind, RContext parent, ConsoleHandler consoleHandler, TimeZone systemTimeZone) {
+        if (kind == ContextKind.SHARE_PARENT_RO) {
+            REnvironment.prepareSharedBindings(parent);
+        }
         int id = contextInfoIds.incrementAndGet();
         return new ContextInfo(options, kind, parent, consoleHandler, systemTimeZone, id);
     }
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.context;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.api.vm.PolyglotEngine;
+import com.oracle.truffle.r.runtime.RCmdOptions;
+import com.oracle.truffle.r.runtime.RInternalError;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.data.RList;
+
+/**
+ * A pool of contexts, each with its own thread, that are created (and initialized) once and then
+ * reused to evaluate any number of expressions (used by {@code fastr} package). Unlike
+ * {@link RContext.EvalThread}, which creates a new context for every evaluation, the cost of
+ * loading the base package, running the profiles etc. is only paid when the pool is created.
+ *
+ * Between tasks, only the global environment of a context is cleared; any other state, e.g. loaded
+ * packages or options, persists. For this reason, {@link RContext.ContextKind#SHARE_PARENT_RW}
+ * contexts cannot be pooled, as they share the global environment of the parent.
+ *
+ * A worker that terminates with an exception fails the task it was running (and, if it was the last
+ * one, all queued tasks) with an error result, so callers of {@link #eval} never wait forever.
+ */
+public final class ContextPool {
+
+    private static final Source GET_CONTEXT = Source.fromText("invisible(fastr.context.get())", "<get_context>").withMimeType(RRuntime.R_APP_MIME);
+    private static final Source CLEAR_GLOBALENV = Source.fromText("rm(list = ls(envir = globalenv(), all.names = TRUE), envir = globalenv())", "<context_pool_reset>").withMimeType(
+                    RRuntime.R_APP_MIME);
+
+    private static final ConcurrentHashMap<Integer, ContextPool> pools = new ConcurrentHashMap<>();
+    private static final AtomicInteger poolIds = new AtomicInteger();
+
+    /**
+     * A single evaluation submitted to the pool.
+     */
+    private static final class Task {
+        private final Source source;
+        private final CountDownLatch done;
+        private final long submitTime;
+        private RList result;
+
+        Task(Source source, CountDownLatch done) {
+            this.source = source;
+            this.done = done;
+            this.submitTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Tells a worker to dispose its context and terminate.
+     */
+    private static final Task SHUTDOWN = new Task(null, null);
+
+    private final class Worker extends RContext.ContextThread {
+        private final ContextInfo info;
+
+        Worker(ContextInfo info) {
+            super(null);
+            this.info = info;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            PolyglotEngine vm = null;
+            Task task = null;
+            try {
+                try {
+                    vm = info.apply(PolyglotEngine.newBuilder()).build();
+                    setContext(vm.eval(GET_CONTEXT).as(RContext.class));
+                } finally {
+                    started.countDown();
+                }
+                while (true) {
+                    task = tasks.take();
+                    if (task == SHUTDOWN) {
+                        break;
+                    }
+                    task.result = RContext.EvalThread.eval(vm, info, task.source);
+                    complete(task);
+                    task = null;
+                    // start the next task with a clean slate
+                    RContext.EvalThread.eval(vm, info, CLEAR_GLOBALENV);
+                }
+            } catch (InterruptedException e) {
+                // terminate
+            } catch (Throwable e) {
+                workerFailed(e, task);
+            } finally {
+                if (vm != null) {
+                    vm.dispose();
+                }
+            }
+        }
+    }
+
+    private final int id;
+    private final Worker[] workers;
+    private final LinkedBlockingQueue<Task> tasks = new LinkedBlockingQueue<>();
+    private final CountDownLatch started;
+
+    /**
+     * The number of workers that have not failed, see {@link #workerFailed}.
+     */
+    private int liveWorkers;
+    /**
+     * The first exception that terminated a worker.
+     */
+    private Throwable failure;
+
+    private long completedTasks;
+    private long totalLatency;
+    private long maxLatency;
+
+    private ContextPool(int size, RCmdOptions options, RContext.ContextKind kind, RContext parent, ConsoleHandler consoleHandler) {
+        this.id = poolIds.incrementAndGet();
+        this.workers = new Worker[size];
+        this.started = new CountDownLatch(size);
+        this.liveWorkers = size;
+        for (int i = 0; i < size; i++) {
+            workers[i] = new Worker(ContextInfo.create(options, kind, parent, consoleHandler));
+        }
+    }
+
+    /**
+     * Creates a pool of {@code size} contexts and waits until they are all initialized.
+     *
+     * @return the id of the pool, for use with {@link #get}
+     */
+    public static int create(int size, RCmdOptions options, RContext.ContextKind kind, RContext parent, ConsoleHandler consoleHandler) throws InterruptedException, IOException {
+        assert kind != RContext.ContextKind.SHARE_PARENT_RW : "a SHARE_PARENT_RW context cannot be cleared between tasks";
+        ContextPool pool = new ContextPool(size, options, kind, parent, consoleHandler);
+        for (Worker worker : pool.workers) {
+            worker.start();
+        }
+        pool.started.await();
+        Throwable initFailure = pool.getFailure();
+        if (initFailure != null) {
+            pool.close();
+            throw new IOException(initFailure.getMessage() == null ? initFailure.getClass().getSimpleName() : initFailure.getMessage(), initFailure);
+        }
+        pools.put(pool.id, pool);
+        return pool.id;
+    }
+
+    public static ContextPool get(int id) {
+        return pools.get(id);
+    }
+
+    /**
+     * Evaluates {@code exprs} on the contexts of the pool (in no particular order) and waits for
+     * all the results. Each result is a list as per {@link RContext.EvalThread#createEvalResult}.
+     */
+    public Object[] eval(String[] exprs) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(exprs.length);
+        Task[] submitted = new Task[exprs.length];
+        for (int i = 0; i < exprs.length; i++) {
+            submitted[i] = new Task(Source.fromText(exprs[i], "<context_pool_eval>").withMimeType(RRuntime.R_APP_MIME), done);
+            submit(submitted[i]);
+        }
+        done.await();
+        Object[] results = new Object[exprs.length];
+        for (int i = 0; i < exprs.length; i++) {
+            results[i] = submitted[i].result;
+        }
+        return results;
+    }
+
+    /**
+     * Queues {@code task}, or fails it right away if there are no workers left to run it. This is
+     * synchronized with {@link #workerFailed} so that no task is left behind in the queue.
+     */
+    private synchronized void submit(Task task) {
+        if (liveWorkers == 0) {
+            fail(task);
+        } else {
+            tasks.add(task);
+        }
+    }
+
+    private void complete(Task task) {
+        recordLatency(System.nanoTime() - task.submitTime);
+        task.done.countDown();
+    }
+
+    private void fail(Task task) {
+        task.result = RContext.EvalThread.createErrorResult("context pool worker failed: " + failure);
+        complete(task);
+    }
+
+    /**
+     * Records the exception that terminated a worker and fails the task it was running. When the
+     * last worker is gone, all queued tasks are failed as well, so that no caller waits forever.
+     */
+    private synchronized void workerFailed(Throwable e, Task task) {
+        RInternalError.reportError(e);
+        if (failure == null) {
+            failure = e;
+        }
+        if (task != null) {
+            fail(task);
+        }
+        if (--liveWorkers == 0) {
+            Task queued;
+            while ((queued = tasks.poll()) != null) {
+                if (queued != SHUTDOWN) {
+                    fail(queued);
+                }
+            }
+        }
+    }
+
+    private synchronized Throwable getFailure() {
+        return failure;
+    }
+
+    private synchronized void recordLatency(long latency) {
+        completedTasks++;
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+    }
+
+    /**
+     * Returns the pool size, the number of queued (not yet started) tasks, the number of completed
+     * tasks and their mean and maximum latency (from submission to completion) in milliseconds.
+     */
+    public synchronized double[] getStatistics() {
+        double meanLatency = completedTasks == 0 ? 0 : (double) totalLatency / completedTasks / 1e6;
+        return new double[]{workers.length, tasks.size(), completedTasks, meanLatency, maxLatency / 1e6};
+    }
+
+    /**
+     * Terminates the workers (after any queued tasks) and disposes their contexts.
+     */
+    public void close() throws InterruptedException {
+        pools.remove(id);
+        for (int i = 0; i < workers.length; i++) {
+            tasks.put(SHUTDOWN);
+        }
+        for (Worker worker : workers) {
+            worker.join();
+        }
+    }
+}
@@ -39,7 +39,6 @@ import com.oracle.truffle.api.interop.TruffleObject;
 import com.oracle.truffle.api.nodes.InvalidAssumptionException;
 import com.oracle.truffle.api.source.Source;
 import com.oracle.truffle.api.vm.PolyglotEngine;
-import com.oracle.truffle.r.runtime.LazyDBCache;
 import com.oracle.truffle.r.runtime.RBuiltinKind;
 import com.oracle.truffle.r.runtime.RBuiltinLookup;
 import com.oracle.truffle.r.runtime.RCmdOptions;
@@ -53,6 +52,7 @@ import com.oracle.truffle.r.runtime.RProfile;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.RRuntimeASTAccess;
 import com.oracle.truffle.r.runtime.RSerialize;
+import com.oracle.truffle.r.runtime.RegExp;
 import com.oracle.truffle.r.runtime.Utils;
 import com.oracle.truffle.r.runtime.conn.ConnectionSupport;
 import com.oracle.truffle.r.runtime.conn.StdConnections;
@@ -64,6 +64,7 @@ import com.oracle.truffle.r.runtime.data.RList;
 import com.oracle.truffle.r.runtime.data.RStringVector;
 import com.oracle.truffle.r.runtime.env.REnvironment;
 import com.oracle.truffle.r.runtime.ffi.RFFIContextStateFactory;
+import com.oracle.truffle.r.runtime.instrument.RprofState;
 import com.oracle.truffle.r.runtime.instrument.TraceState;
 import com.oracle.truffle.r.runtime.rng.RRNG;
 
@@ -120,7 +121,12 @@ public final class RContext extends ExecutionContext implements TruffleObject {
          * distinct copies in each context, in this kind of context, they are shared. Strictly
          * speaking, the bindings of R functions are shared, and this is achieved by creating a
          * shallow copy of the environments associated with the default packages of the parent
-         * context at the time the context is created.
+         * context at the time the context is created. The values bound in these environments are
+         * marked as permanently shared, so any update (in the parent or in the child) makes a
+         * private copy, i.e., the data is effectively copy-on-write and only the per-context
+         * modifications take up additional memory. This kind of context can therefore be used in
+         * a parallel computation, and is much cheaper to create than {@link #SHARE_NOTHING} as
+         * neither the default packages nor the profiles have to be loaded again.
          */
         SHARE_PARENT_RO;
 
@@ -187,26 +193,34 @@ public final class RContext extends ExecutionContext implements TruffleObject {
                 throw new RInternalError(e1, "error while initializing eval thread");
             }
             try {
-                try {
-                    PolyglotEngine.Value resultValue = vm.eval(source);
-                    evalResult = createEvalResult(resultValue);
-                } catch (ParseException e) {
-                    e.report(info.getConsoleHandler());
-                    evalResult = createErrorResult(e.getMessage());
-                } catch (IOException e) {
-                    Throwable cause = e.getCause();
-                    if (cause instanceof RInternalError) {
-                        info.getConsoleHandler().println("internal error: " + e.getMessage() + " (see fastr_errors.log)");
-                        RInternalError.reportError(e);
-                    }
-                    evalResult = createErrorResult(e.getCause().getMessage());
-                }
+                evalResult = eval(vm, info, source);
             } finally {
                 vm.dispose();
                 threads.remove(info.getId());
             }
         }
 
+        /**
+         * Evaluates {@code source} in {@code vm}, returning the result as per
+         * {@link #createEvalResult}, or {@link #createErrorResult} in case of an error.
+         */
+        public static RList eval(PolyglotEngine vm, ContextInfo info, Source source) {
+            try {
+                PolyglotEngine.Value resultValue = vm.eval(source);
+                return createEvalResult(resultValue);
+            } catch (ParseException e) {
+                e.report(info.getConsoleHandler());
+                return createErrorResult(e.getMessage());
+            } catch (IOException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RInternalError) {
+                    info.getConsoleHandler().println("internal error: " + e.getMessage() + " (see fastr_errors.log)");
+                    RInternalError.reportError(e);
+                }
+                return createErrorResult(e.getCause().getMessage());
+            }
+        }
+
         /**
          * The result is an {@link RList} contain the value, plus an "error" attribute if the
          * evaluation resulted in an error.
@@ -362,12 +376,13 @@ public final class RContext extends ExecutionContext implements TruffleObject {
     public final RRNG.ContextStateImpl stateRNG;
     public final ContextState stateRFFI;
     public final RSerialize.ContextStateImpl stateRSerialize;
-    public final LazyDBCache.ContextStateImpl stateLazyDBCache;
     public final TraceState.ContextStateImpl stateTraceHandling;
+    public final RegExp.ContextStateImpl stateRegExp;
+    public final RprofState.ContextStateImpl stateRprof;
 
     private ContextState[] contextStates() {
         return new ContextState[]{stateREnvVars, stateRProfile, stateROptions, stateREnvironment, stateRErrorHandling, stateRConnection, stateStdConnections, stateRNG, stateRFFI, stateRSerialize,
-                        stateLazyDBCache, stateTraceHandling};
+                        stateTraceHandling, stateRegExp, stateRprof};
     }
 
     private RContext(Env env, boolean isInitial) {
@@ -415,8 +430,9 @@ public final class RContext extends ExecutionContext implements TruffleObject {
         stateRNG = RRNG.ContextStateImpl.newContext(this);
         stateRFFI = RFFIContextStateFactory.newContext(this);
         stateRSerialize = RSerialize.ContextStateImpl.newContext(this);
-        stateLazyDBCache = LazyDBCache.ContextStateImpl.newContext(this);
         stateTraceHandling = TraceState.newContext(this);
+        stateRegExp = RegExp.ContextStateImpl.newContext(this);
+        stateRprof = RprofState.newContext(this);
         engine.activate(stateREnvironment);
 
         if (info.getKind() == ContextKind.SHARE_PARENT_RW) {
@@ -27,6 +27,7 @@ import java.util.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.data.model.*;
+import com.oracle.truffle.r.runtime.instrument.*;
 import com.oracle.truffle.r.runtime.ops.na.*;
 
 public final class RComplexVector extends RVector implements RAbstractComplexVector {
@@ -192,7 +193,9 @@ public final class RComplexVector extends RVector implements RAbstractComplexVec
     @Override
     public RComplexVector copyResized(int size, boolean fillNA) {
         boolean isComplete = isComplete() && ((data.length >= size) || !fillNA);
-        return RDataFactory.createComplexVector(copyResizedData(size, fillNA), isComplete);
+        RComplexVector result = RDataFactory.createComplexVector(copyResizedData(size, fillNA), isComplete);
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     public RComplexVector materialize() {
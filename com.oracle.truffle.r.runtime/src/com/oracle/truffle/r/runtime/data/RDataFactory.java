@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -38,6 +38,7 @@ import com.oracle.truffle.r.runtime.data.RPromise.PromiseType;
 import com.oracle.truffle.r.runtime.data.model.*;
 import com.oracle.truffle.r.runtime.env.*;
 import com.oracle.truffle.r.runtime.gnur.*;
+import com.oracle.truffle.r.runtime.instrument.*;
 import com.oracle.truffle.r.runtime.nodes.*;
 
 public final class RDataFactory {
@@ -448,9 +449,14 @@ public final class RDataFactory {
     }
 
     public static REnvironment createNewEnv(String name, boolean hashed, int initialSize) {
-        REnvironment.NewEnv env = new REnvironment.NewEnv(RRuntime.createNonFunctionFrame("<new-env-" + environmentCount.incrementAndGet() + ">"), name);
-        env.setHashed(hashed);
-        env.setInitialSize(initialSize);
+        MaterializedFrame frame = RRuntime.createNonFunctionFrame("<new-env-" + environmentCount.incrementAndGet() + ">");
+        REnvironment.NewEnv env;
+        if (hashed) {
+            env = new REnvironment.NewEnv(frame, name, hashed, initialSize);
+        } else {
+            env = new REnvironment.NewEnv(frame, name);
+            env.setInitialSize(initialSize);
+        }
         return traceDataCreated(env);
     }
 
@@ -472,6 +478,7 @@ public final class RDataFactory {
         if (statsProfile.profile(stats != null)) {
             stats.record(data);
         }
+        AllocationTracker.checkAllocation(data);
         return data;
     }
 
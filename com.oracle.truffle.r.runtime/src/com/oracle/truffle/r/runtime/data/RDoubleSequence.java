@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -26,6 +26,7 @@ import com.oracle.truffle.api.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.data.model.*;
+import com.oracle.truffle.r.runtime.instrument.*;
 
 public final class RDoubleSequence extends RSequence implements RAbstractDoubleVector {
 
@@ -102,7 +103,9 @@ public final class RDoubleSequence extends RSequence implements RAbstractDoubleV
 
     @Override
     public RDoubleVector materialize() {
-        return this.internalCreateVector();
+        RDoubleVector result = this.internalCreateVector();
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     @Override
@@ -115,7 +118,9 @@ public final class RDoubleSequence extends RSequence implements RAbstractDoubleV
         double[] data = new double[size];
         populateVectorData(data);
         RDoubleVector.resizeData(data, data, getLength(), fillNA);
-        return RDataFactory.createDoubleVector(data, !(fillNA && size > getLength()));
+        RDoubleVector result = RDataFactory.createDoubleVector(data, !(fillNA && size > getLength()));
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     @Override
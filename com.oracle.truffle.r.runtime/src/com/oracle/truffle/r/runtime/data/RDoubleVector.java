@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -27,6 +27,7 @@ import java.util.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.data.model.*;
+import com.oracle.truffle.r.runtime.instrument.*;
 import com.oracle.truffle.r.runtime.ops.na.*;
 
 public final class RDoubleVector extends RVector implements RAbstractDoubleVector {
@@ -205,7 +206,9 @@ public final class RDoubleVector extends RVector implements RAbstractDoubleVecto
     @Override
     public RDoubleVector copyResized(int size, boolean fillNA) {
         boolean isComplete = isComplete() && ((data.length >= size) || !fillNA);
-        return RDataFactory.createDoubleVector(copyResizedData(size, fillNA), isComplete);
+        RDoubleVector result = RDataFactory.createDoubleVector(copyResizedData(size, fillNA), isComplete);
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     public RDoubleVector materialize() {
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -26,6 +26,7 @@ import com.oracle.truffle.api.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.data.model.*;
+import com.oracle.truffle.r.runtime.instrument.*;
 
 public final class RIntSequence extends RSequence implements RAbstractIntVector {
 
@@ -105,7 +106,9 @@ public final class RIntSequence extends RSequence implements RAbstractIntVector
     }
 
     public RIntVector materialize() {
-        return this.internalCreateVector();
+        RIntVector result = this.internalCreateVector();
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     public RStringVector getImplicitClass() {
@@ -117,7 +120,9 @@ public final class RIntSequence extends RSequence implements RAbstractIntVector
         int[] data = new int[size];
         populateVectorData(data);
         RIntVector.resizeData(data, data, getLength(), fillNA);
-        return RDataFactory.createIntVector(data, !(fillNA && size > getLength()));
+        RIntVector result = RDataFactory.createIntVector(data, !(fillNA && size > getLength()));
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     @Override
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -27,6 +27,7 @@ import java.util.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.data.model.*;
+import com.oracle.truffle.r.runtime.instrument.*;
 import com.oracle.truffle.r.runtime.ops.na.*;
 
 public final class RIntVector extends RVector implements RAbstractIntVector {
@@ -203,7 +204,9 @@ public final class RIntVector extends RVector implements RAbstractIntVector {
     @Override
     public RIntVector copyResized(int size, boolean fillNA) {
         boolean isComplete = isComplete() && ((data.length >= size) || !fillNA);
-        return RDataFactory.createIntVector(copyResizedData(size, fillNA), isComplete);
+        RIntVector result = RDataFactory.createIntVector(copyResizedData(size, fillNA), isComplete);
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     public RIntVector materialize() {
@@ -29,6 +29,7 @@ import java.util.*;
 
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.context.RContext;
+import com.oracle.truffle.r.runtime.instrument.*;
 
 public final class RList extends RListBase implements RGPBits, TruffleObject {
 
@@ -77,7 +78,9 @@ public final class RList extends RListBase implements RGPBits, TruffleObject {
 
     @Override
     public RList copyResized(int size, boolean fillNA) {
-        return RDataFactory.createList(copyResizedData(size, fillNA));
+        RList result = RDataFactory.createList(copyResizedData(size, fillNA));
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     @Override
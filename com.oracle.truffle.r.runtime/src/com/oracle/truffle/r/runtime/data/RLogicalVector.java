@@ -27,6 +27,7 @@ import java.util.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.data.model.*;
+import com.oracle.truffle.r.runtime.instrument.*;
 import com.oracle.truffle.r.runtime.ops.na.*;
 
 public final class RLogicalVector extends RVector implements RAbstractLogicalVector {
@@ -166,7 +167,9 @@ public final class RLogicalVector extends RVector implements RAbstractLogicalVec
     @Override
     public RLogicalVector copyResized(int size, boolean fillNA) {
         boolean isComplete = isComplete() && ((data.length >= size) || !fillNA);
-        return RDataFactory.createLogicalVector(copyResizedData(size, fillNA), isComplete);
+        RLogicalVector result = RDataFactory.createLogicalVector(copyResizedData(size, fillNA), isComplete);
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     @Override
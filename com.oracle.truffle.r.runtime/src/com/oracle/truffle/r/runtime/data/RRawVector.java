@@ -27,6 +27,7 @@ import java.util.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.data.model.*;
+import com.oracle.truffle.r.runtime.instrument.*;
 import com.oracle.truffle.r.runtime.ops.na.*;
 
 public final class RRawVector extends RVector implements RAbstractRawVector {
@@ -178,7 +179,9 @@ public final class RRawVector extends RVector implements RAbstractRawVector {
 
     @Override
     public RRawVector copyResized(int size, boolean fillNA) {
-        return RDataFactory.createRawVector(copyResizedData(size, fillNA));
+        RRawVector result = RDataFactory.createRawVector(copyResizedData(size, fillNA));
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     @Override
@@ -27,6 +27,7 @@ import java.util.*;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.data.closures.*;
 import com.oracle.truffle.r.runtime.data.model.*;
+import com.oracle.truffle.r.runtime.instrument.*;
 import com.oracle.truffle.r.runtime.ops.na.*;
 
 public final class RStringVector extends RVector implements RAbstractStringVector {
@@ -184,7 +185,9 @@ public final class RStringVector extends RVector implements RAbstractStringVecto
     @Override
     public RStringVector copyResized(int size, boolean fillNA) {
         boolean isComplete = isComplete() && ((data.length >= size) || !fillNA);
-        return RDataFactory.createStringVector(copyResizedData(size, fillNA ? RRuntime.STRING_NA : null), isComplete);
+        RStringVector result = RDataFactory.createStringVector(copyResizedData(size, fillNA ? RRuntime.STRING_NA : null), isComplete);
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     public RStringVector resizeWithEmpty(int size) {
@@ -22,6 +22,7 @@
  */
 package com.oracle.truffle.r.runtime.data;
 
+import java.util.*;
 import java.util.function.*;
 
 import com.oracle.truffle.api.*;
@@ -32,6 +33,7 @@ import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.conn.*;
 import com.oracle.truffle.r.runtime.data.RAttributes.RAttribute;
 import com.oracle.truffle.r.runtime.data.model.*;
+import com.oracle.truffle.r.runtime.instrument.*;
 import com.oracle.truffle.r.runtime.ops.na.*;
 import com.oracle.truffle.r.runtime.nodes.*;
 
@@ -548,12 +550,15 @@ public abstract class RVector extends RSharingAttributeStorage implements RShare
         setAttributes(result);
         incCopyCount();
         result.gpbits = gpbits;
+        MemoryCopyTracer.reportCopying(this, result);
         return result;
     }
 
     @Override
     public final RVector copyDropAttributes() {
-        return internalCopy();
+        RVector result = internalCopy();
+        MemoryCopyTracer.reportCopying(this, result);
+        return result;
     }
 
     @Override
@@ -834,17 +839,47 @@ public abstract class RVector extends RSharingAttributeStorage implements RShare
         RPerfStats.register(new PerfHandler());
     }
 
+    /**
+     * Counts the vector copies, in total and by the class (typically a node) that requested the
+     * copy, as determined from the Java stack.
+     */
     private static class PerfHandler implements RPerfStats.Handler {
 
         private static int count;
+        private static Map<String, Integer> countsByOrigin;
 
-        void record(@SuppressWarnings("unused") Object data) {
+        @TruffleBoundary
+        synchronized void record(@SuppressWarnings("unused") Object data) {
             count++;
+            String origin = copyOrigin(new Throwable().getStackTrace());
+            Integer originCount = countsByOrigin.get(origin);
+            countsByOrigin.put(origin, originCount == null ? 1 : originCount + 1);
+        }
+
+        /**
+         * Returns the simple name of the first class on the stack outside of this package, without
+         * the {@code Gen} suffix of DSL generated classes, e.g. {@code CachedReplaceVectorNode} or
+         * {@code CastIntegerNode}.
+         */
+        private static String copyOrigin(StackTraceElement[] stack) {
+            String dataPackage = RVector.class.getPackage().getName() + ".";
+            for (StackTraceElement element : stack) {
+                String className = element.getClassName();
+                if (!className.startsWith(dataPackage)) {
+                    String name = className.substring(className.lastIndexOf('.') + 1);
+                    if (name.endsWith("Gen")) {
+                        name = name.substring(0, name.length() - "Gen".length());
+                    }
+                    return name;
+                }
+            }
+            return "<unknown>";
         }
 
         public void initialize(String optionData) {
             stats = this;
             count = 0;
+            countsByOrigin = new HashMap<>();
         }
 
         public String getName() {
@@ -853,6 +888,11 @@ public abstract class RVector extends RSharingAttributeStorage implements RShare
 
         public void report() {
             RPerfStats.out().printf("NUMBER OF VECTOR COPIES: %d\n", count);
+            ArrayList<Map.Entry<String, Integer>> entries = new ArrayList<>(countsByOrigin.entrySet());
+            entries.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+            for (Map.Entry<String, Integer> entry : entries) {
+                RPerfStats.out().printf("%s: %d%n", entry.getKey(), entry.getValue());
+            }
         }
     }
 
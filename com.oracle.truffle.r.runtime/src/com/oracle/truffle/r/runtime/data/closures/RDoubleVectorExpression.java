@@ -0,0 +1,581 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.data.closures;
+
+import java.util.Arrays;
+
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.FastROptions;
+import com.oracle.truffle.r.runtime.RInternalError;
+import com.oracle.truffle.r.runtime.RPerfStats;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.RType;
+import com.oracle.truffle.r.runtime.data.RAttributeProfiles;
+import com.oracle.truffle.r.runtime.data.RAttributes;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RDoubleVector;
+import com.oracle.truffle.r.runtime.data.RList;
+import com.oracle.truffle.r.runtime.data.RNull;
+import com.oracle.truffle.r.runtime.data.RShareable;
+import com.oracle.truffle.r.runtime.data.RStringVector;
+import com.oracle.truffle.r.runtime.data.RVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractContainer;
+import com.oracle.truffle.r.runtime.data.model.RAbstractDoubleVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
+
+/**
+ * A deferred element-wise double arithmetic expression, e.g. {@code a * b + c - d}. Instead of
+ * allocating a result vector for every operator, the arithmetic nodes build a tree of expressions
+ * whose leaves are the (attribute-free) operand vectors, which are recycled as usual. The tree is
+ * evaluated by {@link #materialize()} in a single pass over the result, chunk by chunk, so that the
+ * intermediate values only ever occupy small buffers of {@link #CHUNK_SIZE} elements.
+ *
+ * Expressions are only handed to consumers that are themselves fused arithmetic operations, all
+ * other consumers (including assignments and native code) receive the materialized vector. The
+ * operand vectors have their reference count incremented until then, so that an in-place update of
+ * an operand cannot change the value of a pending expression. An arithmetic operation that does not
+ * fuse its operands materializes them first, and an expression whose consumer fails is
+ * {@linkplain #discard(Object...) discarded}, so that the reference counts are always restored.
+ */
+public final class RDoubleVectorExpression implements RAbstractDoubleVector {
+
+    public enum Operation {
+        ADD,
+        SUBTRACT,
+        MULTIPLY,
+        DIVIDE,
+        NEGATE
+    }
+
+    /**
+     * The number of elements evaluated at a time.
+     */
+    private static final int CHUNK_SIZE = 2048;
+
+    /**
+     * Subtrees deeper than this are materialized, which bounds the number of chunk buffers.
+     */
+    private static final int MAX_DEPTH = 16;
+
+    @CompilationFinal private static int threshold = -1;
+
+    private final Operation operation;
+    private final RAbstractVector leftOperand;
+    private final RAbstractVector rightOperand;
+    private RAbstractDoubleVector left;
+    private RAbstractDoubleVector right;
+    private final int length;
+    /**
+     * The height of the tree, i.e., 1 for an expression on two vectors.
+     */
+    private final int depth;
+    /**
+     * The number of operations in the tree.
+     */
+    private final int operations;
+    /**
+     * {@code true} if none of the leaves contains {@code NA}, in which case the result does not
+     * either.
+     */
+    private final boolean complete;
+    private RDoubleVector materialized;
+
+    private RDoubleVectorExpression(Operation operation, RAbstractVector leftOperand, RAbstractVector rightOperand, int length) {
+        this.operation = operation;
+        this.leftOperand = leftOperand;
+        this.rightOperand = rightOperand;
+        this.length = length;
+        this.left = asOperand(leftOperand, length);
+        this.right = rightOperand == null ? null : asOperand(rightOperand, length);
+        this.depth = 1 + Math.max(depth(left), depth(right));
+        this.operations = 1 + operations(left) + operations(right);
+        this.complete = left.isComplete() && (right == null || right.isComplete());
+        retain(leftOperand);
+        retain(rightOperand);
+    }
+
+    /**
+     * Returns {@code true} if fusing operations producing vectors of {@code resultLength} elements
+     * is enabled.
+     */
+    public static boolean isEnabled(int resultLength) {
+        if (threshold < 0) {
+            threshold = FastROptions.FusedArithmeticThreshold.getNonNegativeIntValue();
+        }
+        // the operands are protected by reference counting, which the old scheme does not support
+        return threshold > 0 && resultLength >= threshold && FastROptions.NewStateTransition.getBooleanValue();
+    }
+
+    /**
+     * Creates the expression {@code left operation right}. The operands must be attribute-free
+     * double or integer vectors of non-zero length.
+     */
+    @TruffleBoundary
+    public static RDoubleVectorExpression create(Operation operation, RAbstractVector left, RAbstractVector right) {
+        assert operation != Operation.NEGATE;
+        return new RDoubleVectorExpression(operation, left, right, Math.max(left.getLength(), right.getLength()));
+    }
+
+    @TruffleBoundary
+    public static RDoubleVectorExpression createNegation(RAbstractDoubleVector operand) {
+        return new RDoubleVectorExpression(Operation.NEGATE, operand, null, operand.getLength());
+    }
+
+    private static RAbstractDoubleVector asOperand(RAbstractVector operand, int resultLength) {
+        if (operand instanceof RDoubleVectorExpression) {
+            RDoubleVectorExpression expression = (RDoubleVectorExpression) operand;
+            if (expression.materialized != null || expression.length != resultLength || expression.depth >= MAX_DEPTH) {
+                // recycled or deep subexpressions are evaluated on their own
+                return expression.materialize();
+            }
+            return expression;
+        }
+        RAbstractDoubleVector result = (RAbstractDoubleVector) operand.castSafe(RType.Double);
+        assert result != null;
+        return result;
+    }
+
+    private static int depth(RAbstractDoubleVector operand) {
+        return operand instanceof RDoubleVectorExpression ? ((RDoubleVectorExpression) operand).depth : 0;
+    }
+
+    private static int operations(RAbstractDoubleVector operand) {
+        return operand instanceof RDoubleVectorExpression ? ((RDoubleVectorExpression) operand).operations : 0;
+    }
+
+    private static void retain(RAbstractVector operand) {
+        if (operand instanceof RShareable && !((RShareable) operand).isSharedPermanent()) {
+            ((RShareable) operand).incRefCount();
+        }
+    }
+
+    private static void release(RAbstractVector operand) {
+        if (operand instanceof RDoubleVectorExpression) {
+            ((RDoubleVectorExpression) operand).release();
+        } else if (operand instanceof RShareable && !FastROptions.RefCountIncrementOnly.getBooleanValue()) {
+            RShareable shareable = (RShareable) operand;
+            if (!shareable.isSharedPermanent()) {
+                shareable.decRefCount();
+            }
+        }
+    }
+
+    private void release() {
+        if (left == null) {
+            // already released
+            return;
+        }
+        release(leftOperand);
+        release(rightOperand);
+        left = null;
+        right = null;
+    }
+
+    /**
+     * Returns the materialized vector if {@code value} is an expression, otherwise {@code value}
+     * itself. Used by arithmetic operations that cannot fuse their operands.
+     */
+    public static Object materialize(Object value) {
+        return value instanceof RDoubleVectorExpression ? ((RDoubleVectorExpression) value).materialize() : value;
+    }
+
+    /**
+     * Releases the operands of all pending expressions in {@code values}, which will never be
+     * evaluated because the operation that was to consume them failed. Materialized expressions
+     * and other values are ignored.
+     */
+    @TruffleBoundary
+    public static void discard(Object... values) {
+        for (Object value : values) {
+            if (value instanceof RDoubleVectorExpression) {
+                RDoubleVectorExpression expression = (RDoubleVectorExpression) value;
+                if (expression.materialized == null) {
+                    expression.release();
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    @TruffleBoundary
+    public double getDataAt(int index) {
+        if (materialized != null) {
+            return materialized.getDataAt(index);
+        }
+        double leftValue = left.getDataAt(index % left.getLength());
+        if (operation == Operation.NEGATE) {
+            return RRuntime.isNA(leftValue) ? RRuntime.DOUBLE_NA : -leftValue;
+        }
+        return applyWithNA(operation, leftValue, right.getDataAt(index % right.getLength()));
+    }
+
+    @Override
+    @TruffleBoundary
+    public RDoubleVector materialize() {
+        if (materialized == null) {
+            materialized = RDataFactory.createDoubleVector(evaluate(), complete);
+            if (stats != null) {
+                stats.record(operations, length);
+            }
+            release();
+        }
+        return materialized;
+    }
+
+    @TruffleBoundary
+    private double[] evaluate() {
+        double[] result = new double[length];
+        double[][] buffers = new double[depth][CHUNK_SIZE];
+        for (int from = 0; from < length; from += CHUNK_SIZE) {
+            evaluate(from, Math.min(CHUNK_SIZE, length - from), result, from, buffers);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the elements {@code [from, from + count)} into {@code result}, starting at
+     * {@code offset}. The right operand is evaluated into {@code buffers[depth - 1]}, which is not
+     * used by any subtree.
+     */
+    private void evaluate(int from, int count, double[] result, int offset, double[][] buffers) {
+        load(left, from, count, result, offset, buffers);
+        if (operation == Operation.NEGATE) {
+            for (int i = offset; i < offset + count; i++) {
+                double value = result[i];
+                result[i] = complete || !RRuntime.isNA(value) ? -value : RRuntime.DOUBLE_NA;
+            }
+            return;
+        }
+        double[] operand = buffers[depth - 1];
+        load(right, from, count, operand, 0, buffers);
+        if (complete) {
+            switch (operation) {
+                case ADD:
+                    for (int i = 0; i < count; i++) {
+                        result[offset + i] += operand[i];
+                    }
+                    break;
+                case SUBTRACT:
+                    for (int i = 0; i < count; i++) {
+                        result[offset + i] -= operand[i];
+                    }
+                    break;
+                case MULTIPLY:
+                    for (int i = 0; i < count; i++) {
+                        result[offset + i] *= operand[i];
+                    }
+                    break;
+                case DIVIDE:
+                    for (int i = 0; i < count; i++) {
+                        result[offset + i] /= operand[i];
+                    }
+                    break;
+                default:
+                    throw RInternalError.shouldNotReachHere();
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                result[offset + i] = applyWithNA(operation, result[offset + i], operand[i]);
+            }
+        }
+    }
+
+    /**
+     * Loads the (recycled) elements {@code [from, from + count)} of {@code operand}.
+     */
+    private static void load(RAbstractDoubleVector operand, int from, int count, double[] dest, int offset, double[][] buffers) {
+        if (operand instanceof RDoubleVectorExpression) {
+            ((RDoubleVectorExpression) operand).evaluate(from, count, dest, offset, buffers);
+            return;
+        }
+        int operandLength = operand.getLength();
+        if (operandLength == 1) {
+            Arrays.fill(dest, offset, offset + count, operand.getDataAt(0));
+        } else if (operand instanceof RDoubleVector) {
+            double[] data = ((RDoubleVector) operand).getDataWithoutCopying();
+            int i = 0;
+            int j = from % operandLength;
+            while (i < count) {
+                int n = Math.min(count - i, operandLength - j);
+                System.arraycopy(data, j, dest, offset + i, n);
+                i += n;
+                j = 0;
+            }
+        } else {
+            int j = from % operandLength;
+            for (int i = offset; i < offset + count; i++) {
+                dest[i] = operand.getDataAt(j);
+                j = j + 1 == operandLength ? 0 : j + 1;
+            }
+        }
+    }
+
+    /**
+     * Applies {@code operation} with the same {@code NA} handling as the arithmetic nodes.
+     */
+    private static double applyWithNA(Operation operation, double leftValue, double rightValue) {
+        if (RRuntime.isNA(leftValue)) {
+            return RRuntime.DOUBLE_NA;
+        }
+        if (RRuntime.isNA(rightValue)) {
+            // NaN op NA == NaN
+            return Double.isNaN(leftValue) ? leftValue : RRuntime.DOUBLE_NA;
+        }
+        switch (operation) {
+            case ADD:
+                return leftValue + rightValue;
+            case SUBTRACT:
+                return leftValue - rightValue;
+            case MULTIPLY:
+                return leftValue * rightValue;
+            case DIVIDE:
+                return leftValue / rightValue;
+            default:
+                throw RInternalError.shouldNotReachHere();
+        }
+    }
+
+    @Override
+    public RAbstractVector castSafe(RType type) {
+        switch (type) {
+            case Double:
+            case Numeric:
+                return this;
+            case Integer:
+                return RClosures.createDoubleToIntVector(this);
+            case Complex:
+                return RClosures.createDoubleToComplexVector(this);
+            case Character:
+                return RClosures.createDoubleToStringVector(this);
+            case List:
+                return RClosures.createAbstractVectorToListVector(this);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public void setComplete(boolean complete) {
+        // completeness is determined by the leaves
+    }
+
+    @Override
+    public RAbstractContainer resize(int size) {
+        return materialize().resize(size);
+    }
+
+    @Override
+    public boolean hasDimensions() {
+        return false;
+    }
+
+    @Override
+    public int[] getDimensions() {
+        return null;
+    }
+
+    @Override
+    public void setDimensions(int[] newDimensions) {
+        // should only be used on the materialized vector
+        throw RInternalError.shouldNotReachHere();
+    }
+
+    @Override
+    public RAbstractVector copy() {
+        return materialize().copy();
+    }
+
+    @Override
+    public RVector copyResized(int size, boolean fillNA) {
+        return materialize().copyResized(size, fillNA);
+    }
+
+    @Override
+    public RAbstractVector copyWithNewDimensions(int[] newDimensions) {
+        return materialize().copyWithNewDimensions(newDimensions);
+    }
+
+    @Override
+    public RVector copyResizedWithDimensions(int[] newDimensions, boolean fillNA) {
+        return materialize().copyResizedWithDimensions(newDimensions, fillNA);
+    }
+
+    @Override
+    public RAbstractVector copyDropAttributes() {
+        return materialize().copyDropAttributes();
+    }
+
+    @Override
+    public RVector createEmptySameType(int newLength, boolean newIsComplete) {
+        return RDataFactory.createDoubleVector(new double[newLength], newIsComplete);
+    }
+
+    @Override
+    public RAbstractContainer materializeNonShared() {
+        return materialize().materializeNonShared();
+    }
+
+    @Override
+    public RShareable materializeToShareable() {
+        return materialize();
+    }
+
+    @Override
+    public boolean isMatrix() {
+        return false;
+    }
+
+    @Override
+    public boolean isArray() {
+        return false;
+    }
+
+    @Override
+    public RStringVector getNames(RAttributeProfiles attrProfiles) {
+        return null;
+    }
+
+    @Override
+    public void setNames(RStringVector newNames) {
+        // should only be used on the materialized vector
+        throw RInternalError.shouldNotReachHere();
+    }
+
+    @Override
+    public RList getDimNames(RAttributeProfiles attrProfiles) {
+        return null;
+    }
+
+    @Override
+    public void setDimNames(RList newDimNames) {
+        // should only be used on the materialized vector
+        throw RInternalError.shouldNotReachHere();
+    }
+
+    @Override
+    public Object getRowNames(RAttributeProfiles attrProfiles) {
+        return RNull.instance;
+    }
+
+    @Override
+    public void setRowNames(RAbstractVector rowNames) {
+        // should only be used on the materialized vector
+        throw RInternalError.shouldNotReachHere();
+    }
+
+    @Override
+    public boolean isObject(RAttributeProfiles attrProfiles) {
+        return false;
+    }
+
+    @Override
+    public RAttributes initAttributes() {
+        throw RInternalError.shouldNotReachHere();
+    }
+
+    @Override
+    public void initAttributes(RAttributes newAttributes) {
+        throw RInternalError.shouldNotReachHere();
+    }
+
+    @Override
+    public RAttributes getAttributes() {
+        return null;
+    }
+
+    @Override
+    public RStringVector getClassHierarchy() {
+        return getImplicitClass();
+    }
+
+    @Override
+    public RStringVector getImplicitClass() {
+        return RDoubleVector.implicitClassHeader;
+    }
+
+    @Override
+    public int getGPBits() {
+        return 0;
+    }
+
+    @Override
+    public void setGPBits(int value) {
+        throw RInternalError.shouldNotReachHere();
+    }
+
+    @Override
+    public boolean isS4() {
+        return false;
+    }
+
+    // Performance analysis
+
+    @CompilationFinal private static PerfHandler stats;
+
+    static {
+        RPerfStats.register(new PerfHandler());
+    }
+
+    /**
+     * Counts the fused evaluations and the intermediate vectors that they did not allocate.
+     */
+    private static class PerfHandler implements RPerfStats.Handler {
+        private long evaluations;
+        private long operationCount;
+        private long elements;
+        private long intermediates;
+        private long intermediateBytes;
+
+        synchronized void record(int ops, int len) {
+            evaluations++;
+            operationCount += ops;
+            elements += len;
+            intermediates += ops - 1;
+            intermediateBytes += (long) (ops - 1) * len * Double.BYTES;
+        }
+
+        public void initialize(String optionText) {
+            stats = this;
+        }
+
+        public String getName() {
+            return "vectorexpressions";
+        }
+
+        public void report() {
+            RPerfStats.out().printf("Fused vector expressions: %d evaluations, %d operations, %d elements, %d intermediate vectors (%d bytes) not allocated%n", evaluations, operationCount,
+                            elements, intermediates, intermediateBytes);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -32,6 +32,7 @@ import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.RError.RErrorException;
 import com.oracle.truffle.r.runtime.context.*;
 import com.oracle.truffle.r.runtime.data.*;
+import com.oracle.truffle.r.runtime.data.RAttributes.RAttribute;
 import com.oracle.truffle.r.runtime.env.frame.*;
 
 /**
@@ -200,7 +201,11 @@ public abstract class REnvironment extends RAttributeStorage implements RTypedVa
     private static final Empty emptyEnv = new Empty();
 
     private final String name;
-    private final REnvFrameAccess frameAccess;
+    /**
+     * Not final as a {@link REnvMapFrameAccess} is replaced by an {@link REnvTruffleFrameAccess}
+     * when the frame is needed (see {@link #getFrame()}).
+     */
+    private REnvFrameAccess frameAccess;
     private boolean locked;
 
     public RType getRType() {
@@ -422,18 +427,84 @@ public abstract class REnvironment extends RAttributeStorage implements RTypedVa
     }
 
     /**
-     * Copies the bindings from {@code this} environment to {@code newEnv}, recursively copying any
-     * bindings are are {@link REnvironment}s.
+     * Prepares the default package environments and namespaces of {@code context} for sharing
+     * with a {@code SHARE_PARENT_RO} child, by marking the values bound in them (and the values
+     * reachable from those through list elements and attributes) as permanently shared. This
+     * causes any update, in either context, to operate on a private copy.
+     *
+     * N.B. Reference counts are not synchronized, so this must run on the thread of
+     * {@code context}, before the child is started, see {@link ContextInfo#create}.
+     */
+    public static void prepareSharedBindings(RContext context) {
+        ContextStateImpl state = context.stateREnvironment;
+        REnvironment env = state.getSearchPath().get(1);
+        while (env != emptyEnv) {
+            env.makeBindingsSharedPermanent();
+            env = env.getParent();
+        }
+        RStringVector namespaces = state.namespaceRegistry.ls(true, null, false);
+        for (int i = 0; i < namespaces.getLength(); i++) {
+            ((REnvironment) state.namespaceRegistry.get(namespaces.getDataAt(i))).makeBindingsSharedPermanent();
+        }
+    }
+
+    private void makeBindingsSharedPermanent() {
+        RStringVector bindings = ls(true, null, false);
+        for (int i = 0; i < bindings.getLength(); i++) {
+            makeSharedPermanent(get(bindings.getDataAt(i)));
+        }
+    }
+
+    /**
+     * Copies the bindings from {@code this} environment to {@code newEnv}. The values themselves
+     * are shared between the two environments (and hence contexts), having been marked as
+     * permanently shared by {@link #prepareSharedBindings}. This runs on the thread of the new
+     * context, so a value that was bound after that, and therefore is not marked, is copied
+     * instead.
      */
     protected void copyBindings(REnvironment newEnv) {
         RStringVector bindings = ls(true, null, false);
         for (int i = 0; i < bindings.getLength(); i++) {
             String binding = bindings.getDataAt(i);
             Object value = get(binding);
+            if (value instanceof RShareable && !isSharedPermanent((RShareable) value)) {
+                value = ((RShareable) value).deepCopy();
+            }
             newEnv.safePut(binding, value);
         }
     }
 
+    private static boolean isSharedPermanent(RShareable shareable) {
+        // the old scheme never reverts the shared state, so shared is permanent
+        return FastROptions.NewStateTransition.getBooleanValue() ? shareable.isSharedPermanent() : shareable.isShared();
+    }
+
+    private static void makeSharedPermanent(Object value) {
+        if (value instanceof RShareable) {
+            RShareable shareable = (RShareable) value;
+            if (shareable.isSharedPermanent()) {
+                return;
+            }
+            shareable.makeSharedPermanent();
+            if (value instanceof RList) {
+                // the elements of a shared list are reachable from both contexts as well
+                RList list = (RList) value;
+                for (int i = 0; i < list.getLength(); i++) {
+                    makeSharedPermanent(list.getDataAt(i));
+                }
+            }
+            if (value instanceof RAttributable) {
+                // and so are the values of its attributes
+                RAttributes attributes = ((RAttributable) value).getAttributes();
+                if (attributes != null) {
+                    for (RAttribute attribute : attributes) {
+                        makeSharedPermanent(attribute.getValue());
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Data for the {@code search} function.
      */
@@ -720,8 +791,17 @@ public abstract class REnvironment extends RAttributeStorage implements RTypedVa
         RArguments.setEnvironment(frame, this);
     }
 
+    /**
+     * An environment whose bindings are kept in a hashmap rather than in {@code frame}.
+     */
+    private REnvironment(String name, MaterializedFrame frame, int initialSize) {
+        this(name, new REnvMapFrameAccess(frame, initialSize));
+        RArguments.setEnvironment(frame, this);
+    }
+
     public REnvironment getParent() {
-        MaterializedFrame enclosingFrame = RArguments.getEnclosingFrame(getFrame());
+        // the enclosing frame is available without switching to a Truffle frame access
+        MaterializedFrame enclosingFrame = RArguments.getEnclosingFrame(frameAccess.getFrame());
         return enclosingFrame == null ? emptyEnv : frameToEnvironment(enclosingFrame);
     }
 
@@ -731,7 +811,7 @@ public abstract class REnvironment extends RAttributeStorage implements RTypedVa
      */
     public void setParent(REnvironment env) {
         if (getParent() != env) {
-            RArguments.setEnclosingFrame(getFrame(), env.getFrame());
+            RArguments.setEnclosingFrame(frameAccess.getFrame(), env.getFrame());
         }
     }
 
@@ -780,13 +860,30 @@ public abstract class REnvironment extends RAttributeStorage implements RTypedVa
     }
 
     /**
-     * Return the {@link MaterializedFrame} associated with this environment, installing one if
-     * there is none in the case of {@link NewEnv} environments.
+     * Return the {@link MaterializedFrame} associated with this environment. If the bindings are
+     * held in a hashmap, they are first copied into the frame, which is used for all accesses from
+     * then on.
      */
     public MaterializedFrame getFrame() {
+        if (frameAccess instanceof REnvMapFrameAccess) {
+            switchToTruffleFrameAccess();
+        }
+        return frameAccess.getFrame();
+    }
+
+    /**
+     * Like {@link #getFrame()}, but only for the purpose of setting up the enclosing frame, which
+     * does not require the bindings to be held in the frame.
+     */
+    public MaterializedFrame getFrameForLinkage() {
         return frameAccess.getFrame();
     }
 
+    @TruffleBoundary
+    private void switchToTruffleFrameAccess() {
+        frameAccess = ((REnvMapFrameAccess) frameAccess).toTruffleFrameAccess();
+    }
+
     public void lock(boolean bindings) {
         locked = true;
         if (bindings) {
@@ -960,9 +1057,10 @@ public abstract class REnvironment extends RAttributeStorage implements RTypedVa
     /**
      * An environment explicitly created with, typically, {@code new.env}, but also used internally.
      * Such environments are always {@link #UNNAMED} but can later be given a name as an attribute.
-     * This is the class used by the {@code new.env} function. We record but do not interpret the
-     * {@code hash} input, as we always use a hashmap, for possible use by the serialization code
-     * (GnuR generates different output format for hash environments).
+     * This is the class used by the {@code new.env} function. If {@code hash} is {@code TRUE}, the
+     * bindings are held in a hashmap (see {@link REnvMapFrameAccess}) until the environment is
+     * used for evaluation. The {@code hash} input is also recorded for possible use by the
+     * serialization code (GnuR generates different output format for hash environments).
      *
      */
     public static final class NewEnv extends REnvironment {
@@ -976,6 +1074,15 @@ public abstract class REnvironment extends RAttributeStorage implements RTypedVa
             }
         }
 
+        public NewEnv(MaterializedFrame frame, String name, boolean hashed, int initialSize) {
+            super(UNNAMED, frame, initialSize);
+            this.hashed = hashed;
+            this.initialSize = initialSize;
+            if (name != null) {
+                setAttr(NAME_ATTR_KEY, name);
+            }
+        }
+
         public boolean isHashed() {
             return hashed;
         }
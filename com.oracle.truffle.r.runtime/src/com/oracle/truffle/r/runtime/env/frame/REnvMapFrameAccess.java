@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.env.frame;
+
+import java.util.*;
+import java.util.regex.*;
+
+import com.oracle.truffle.api.*;
+import com.oracle.truffle.api.CompilerDirectives.*;
+import com.oracle.truffle.api.frame.*;
+import com.oracle.truffle.r.runtime.*;
+import com.oracle.truffle.r.runtime.data.*;
+import com.oracle.truffle.r.runtime.env.*;
+import com.oracle.truffle.r.runtime.env.REnvironment.*;
+
+/**
+ * Variant of {@link REnvFrameAccess} that keeps the bindings in a {@link HashMap} rather than in
+ * the slots of a Truffle frame. This is used for environments created by {@code new.env(hash =
+ * TRUE)}, which are typically used as dictionaries with a large number of keys, for which the
+ * growth of the {@link FrameDescriptor} and the assumptions maintained by
+ * {@link FrameSlotChangeMonitor} for every slot would be prohibitively expensive.
+ *
+ * The associated frame is only used for the linkage to the enclosing environment. Since R code
+ * cannot be evaluated in such an environment, {@link REnvironment} replaces this access with an
+ * {@link REnvTruffleFrameAccess} (see {@link #toTruffleFrameAccess}) as soon as the frame is
+ * requested for evaluation or variable lookup.
+ */
+public final class REnvMapFrameAccess extends REnvFrameAccess {
+
+    private final MaterializedFrame frame;
+    private final HashMap<String, Object> bindings;
+    /**
+     * Records which bindings are locked, allocated lazily as in {@link REnvTruffleFrameAccess}.
+     */
+    private Set<String> lockedBindings;
+
+    public REnvMapFrameAccess(MaterializedFrame frame, int initialSize) {
+        this.frame = frame;
+        this.bindings = new HashMap<>(Math.max(initialSize, 16));
+    }
+
+    /**
+     * Returns the frame, which, as it contains none of the bindings, must only be used to access
+     * the frame arguments (i.e., the enclosing frame).
+     */
+    @Override
+    public MaterializedFrame getFrame() {
+        return frame;
+    }
+
+    @Override
+    @TruffleBoundary
+    public Object get(String key) {
+        return bindings.get(key);
+    }
+
+    @Override
+    @TruffleBoundary
+    public void put(String key, Object value) throws PutException {
+        assert key != null;
+        assert value != null;
+        if (lockedBindings != null && lockedBindings.contains(key)) {
+            throw new PutException(RError.Message.ENV_CHANGE_BINDING, key);
+        }
+        bindings.put(key, value);
+    }
+
+    @Override
+    @TruffleBoundary
+    public void rm(String key) throws PutException {
+        assert key != null;
+        if (lockedBindings != null) {
+            lockedBindings.remove(key);
+        }
+        if (bindings.remove(key) == null) {
+            throw new PutException(RError.Message.UNKNOWN_OBJECT, key);
+        }
+    }
+
+    @Override
+    @TruffleBoundary
+    public RStringVector ls(boolean allNames, Pattern pattern, boolean sorted) {
+        String[] data = new String[bindings.size()];
+        int count = 0;
+        for (String name : bindings.keySet()) {
+            if (REnvironment.includeName(name, allNames, pattern)) {
+                data[count++] = name;
+            }
+        }
+        if (count != data.length) {
+            data = Arrays.copyOf(data, count);
+        }
+        if (sorted) {
+            Arrays.sort(data);
+        }
+        return RDataFactory.createStringVector(data, RDataFactory.COMPLETE_VECTOR);
+    }
+
+    @Override
+    public boolean bindingIsLocked(String key) {
+        return lockedBindings != null && lockedBindings.contains(key);
+    }
+
+    @Override
+    @TruffleBoundary
+    public void lockBindings() {
+        for (String key : bindings.keySet()) {
+            lockBinding(key);
+        }
+    }
+
+    @Override
+    @TruffleBoundary
+    public void lockBinding(String key) {
+        if (lockedBindings == null) {
+            lockedBindings = new HashSet<>();
+        }
+        lockedBindings.add(key);
+    }
+
+    @Override
+    @TruffleBoundary
+    public void unlockBinding(String key) {
+        if (lockedBindings != null) {
+            lockedBindings.remove(key);
+        }
+    }
+
+    /**
+     * Copies the bindings (and their locked state) into the slots of the frame, and returns an
+     * {@link REnvTruffleFrameAccess} for the frame. This instance must not be used afterwards.
+     */
+    @TruffleBoundary
+    public REnvTruffleFrameAccess toTruffleFrameAccess() {
+        CompilerAsserts.neverPartOfCompilation();
+        REnvTruffleFrameAccess result = new REnvTruffleFrameAccess(frame);
+        try {
+            for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        } catch (PutException ex) {
+            throw RInternalError.shouldNotReachHere(ex);
+        }
+        if (lockedBindings != null) {
+            for (String key : lockedBindings) {
+                result.lockBinding(key);
+            }
+        }
+        return result;
+    }
+}
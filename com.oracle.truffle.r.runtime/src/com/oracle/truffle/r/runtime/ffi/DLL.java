@@ -16,7 +16,9 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
 
+import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CompilerAsserts;
+import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.r.runtime.*;
 import com.oracle.truffle.r.runtime.RError.RErrorException;
 import com.oracle.truffle.r.runtime.context.*;
@@ -47,6 +49,24 @@ public class DLL {
      */
     private static Deque<DLLInfo> list = new ConcurrentLinkedDeque<>();
 
+    /**
+     * Valid as long as no DLL has been loaded or unloaded, which allows the result of a symbol
+     * lookup to be cached, e.g. at a {@code .Call} site.
+     */
+    private static final AtomicReference<Assumption> dllsUnchanged = new AtomicReference<>(Truffle.getRuntime().createAssumption("DLLs unchanged"));
+
+    public static Assumption getDLLsUnchangedAssumption() {
+        return dllsUnchanged.get();
+    }
+
+    /**
+     * Replaces the assumption and invalidates the old one, atomically, so that concurrent changes
+     * cannot lose an assumption that has already been handed out without invalidating it.
+     */
+    private static void invalidateSymbolCaches() {
+        dllsUnchanged.getAndSet(Truffle.getRuntime().createAssumption("DLLs unchanged")).invalidate();
+    }
+
     /**
      * Uniquely identifies the DLL (for use in an {@code externalptr}).
      */
@@ -114,6 +134,8 @@ public class DLL {
 
         public void setNativeSymbols(int nstOrd, DotSymbol[] symbols) {
             nativeSymbols[nstOrd] = symbols;
+            // registered routines take precedence over dynamic lookup
+            invalidateSymbolCaches();
         }
 
         public DotSymbol[] getNativeSymbols(NativeSymbolType nst) {
@@ -257,6 +279,7 @@ public class DLL {
             }
             DLLInfo result = new DLLInfo(name, absPath, true, handle);
             list.add(result);
+            invalidateSymbolCaches();
             return result;
         } catch (InterruptedException ex) {
             throw RInternalError.shouldNotReachHere();
@@ -307,6 +330,8 @@ public class DLL {
                     if (rc != 0) {
                         throw new DLLException(RError.Message.DLL_LOAD_ERROR, path, "");
                     }
+                    list.remove(info);
+                    invalidateSymbolCaches();
                     return;
                 }
             }
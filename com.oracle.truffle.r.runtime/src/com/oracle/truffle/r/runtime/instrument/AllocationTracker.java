@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.instrument;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.source.SourceSection;
+import com.oracle.truffle.r.runtime.RCaller;
+import com.oracle.truffle.r.runtime.RPerfStats;
+import com.oracle.truffle.r.runtime.StableValue;
+import com.oracle.truffle.r.runtime.context.RContext;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RLanguage;
+import com.oracle.truffle.r.runtime.data.RVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractComplexVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractDoubleVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractIntVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractLogicalVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractRawVector;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxNode;
+
+/**
+ * Tracks the allocation of vectors, which are all created by {@link RDataFactory}, for the
+ * "allocations" perf-stats handler and for {@code Rprofmem}. The size of an allocation is the size
+ * of the vector's data in bytes. Tracking is off unless one of the two is active, in which case
+ * the only cost is a (compiled away) assumption check per allocation.
+ *
+ * The handler counts the allocations and bytes by vector type exactly, and by call site (the
+ * innermost R function and the location of its call) by sampling, as determining the call site
+ * requires a stack walk. By default, one call site is determined for every 512KB allocated, to which
+ * all the bytes since the previous sample are attributed; this can be changed with
+ * {@code allocations:sample=<bytes>}.
+ */
+public final class AllocationTracker {
+
+    /**
+     * Whether the handler or any {@code Rprofmem} is active. The value is replaced (and the old one
+     * invalidated) on every change, so that compiled code never keeps a stale value.
+     */
+    @CompilationFinal private static StableValue<Boolean> tracking = new StableValue<>(false, "allocation tracking");
+    private static int trackers;
+    private static int memoryProfilingContexts;
+
+    private AllocationTracker() {
+        // no instances
+    }
+
+    static synchronized void enable() {
+        memoryProfilingContexts++;
+        enableTracking();
+    }
+
+    static synchronized void disable() {
+        memoryProfilingContexts--;
+        disableTracking();
+    }
+
+    private static synchronized void enableTracking() {
+        if (trackers++ == 0) {
+            setTracking(true);
+        }
+    }
+
+    private static synchronized void disableTracking() {
+        if (--trackers == 0) {
+            setTracking(false);
+        }
+    }
+
+    private static void setTracking(boolean value) {
+        StableValue<Boolean> old = tracking;
+        tracking = new StableValue<>(value, "allocation tracking");
+        old.getAssumption().invalidate();
+    }
+
+    /**
+     * Called by {@link RDataFactory} for every object it creates.
+     */
+    public static void checkAllocation(Object data) {
+        StableValue<Boolean> current = tracking;
+        if (!current.getAssumption().isValid()) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            current = tracking;
+        }
+        if (current.getValue()) {
+            record(data);
+        }
+    }
+
+    @TruffleBoundary
+    private static void record(Object data) {
+        if (!(data instanceof RVector)) {
+            return;
+        }
+        RVector vector = (RVector) data;
+        long bytes = (long) vector.getLength() * elementSize(vector);
+        if (stats != null) {
+            stats.record(vector, bytes);
+        }
+        if (memoryProfilingContexts > 0) {
+            RContext context = RContext.getInstance();
+            if (context != null && context.stateRprof != null) {
+                context.stateRprof.reportAllocation(bytes);
+            }
+        }
+    }
+
+    private static int elementSize(RVector vector) {
+        if (vector instanceof RAbstractLogicalVector || vector instanceof RAbstractRawVector) {
+            return 1;
+        } else if (vector instanceof RAbstractIntVector) {
+            return 4;
+        } else if (vector instanceof RAbstractComplexVector) {
+            return 16;
+        } else {
+            // doubles, and references for strings and lists
+            return 8;
+        }
+    }
+
+    /**
+     * Returns a description of the call site of the current allocation.
+     */
+    private static String callSite() {
+        ArrayList<RCaller> calls = RprofState.getCallStack();
+        if (calls.isEmpty()) {
+            return "<top level>";
+        }
+        RLanguage syntaxCall = RContext.getRRuntimeASTAccess().getSyntaxCaller(calls.get(0));
+        String name = RprofState.getFunctionName(syntaxCall);
+        SourceSection section = syntaxCall.getRep() instanceof RSyntaxNode ? ((RSyntaxNode) syntaxCall.getRep()).getSourceSection() : null;
+        return section == null ? name : name + " (" + section.getShortDescription() + ")";
+    }
+
+    // Performance analysis
+
+    @CompilationFinal private static PerfHandler stats;
+
+    static {
+        RPerfStats.register(new PerfHandler());
+    }
+
+    private static class PerfHandler implements RPerfStats.Handler {
+        private static final long DEFAULT_SAMPLE_BYTES = 512 * 1024;
+
+        /**
+         * Number of allocations and bytes, by vector type and by (sampled) call site.
+         */
+        private Map<String, long[]> types;
+        private Map<String, long[]> callSites;
+        private long sampleBytes = DEFAULT_SAMPLE_BYTES;
+        private long unsampledCount;
+        private long unsampledBytes;
+
+        synchronized void record(RVector vector, long bytes) {
+            add(types, vector.getClass().getSimpleName(), 1, bytes);
+            unsampledCount++;
+            unsampledBytes += bytes;
+            if (unsampledBytes >= sampleBytes) {
+                add(callSites, callSite(), unsampledCount, unsampledBytes);
+                unsampledCount = 0;
+                unsampledBytes = 0;
+            }
+        }
+
+        private static void add(Map<String, long[]> map, String key, long count, long bytes) {
+            long[] entry = map.get(key);
+            if (entry == null) {
+                entry = new long[2];
+                map.put(key, entry);
+            }
+            entry[0] += count;
+            entry[1] += bytes;
+        }
+
+        public void initialize(String optionText) {
+            if (optionText.length() > 0) {
+                for (String subOption : optionText.split(":")) {
+                    if (subOption.startsWith("sample")) {
+                        sampleBytes = parseSampleBytes(subOption.substring(subOption.indexOf('=') + 1));
+                    }
+                }
+            }
+            types = new HashMap<>();
+            callSites = new HashMap<>();
+            stats = this;
+            enableTracking();
+        }
+
+        /**
+         * Parses the {@code sample} sub-option, which must be positive, as a sample would otherwise
+         * be taken (and the stack walked) on every allocation.
+         */
+        private static long parseSampleBytes(String value) {
+            try {
+                long result = Long.parseLong(value);
+                if (result > 0) {
+                    return result;
+                }
+            } catch (NumberFormatException ex) {
+                // fall through
+            }
+            System.out.println("allocations:sample=" + value + ": positive integer expected, using " + DEFAULT_SAMPLE_BYTES);
+            return DEFAULT_SAMPLE_BYTES;
+        }
+
+        public String getName() {
+            return "allocations";
+        }
+
+        public void report() {
+            RPerfStats.out().println("Vector allocations by type (type, count, bytes)");
+            report(types);
+            RPerfStats.out().printf("Vector allocations by call site, sampled every %d bytes (call site, count, bytes)%n", sampleBytes);
+            report(callSites);
+        }
+
+        private static void report(Map<String, long[]> map) {
+            ArrayList<Map.Entry<String, long[]>> entries = new ArrayList<>(map.entrySet());
+            entries.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+            for (Map.Entry<String, long[]> entry : entries) {
+                RPerfStats.out().printf("%s: %d, %d%n", entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.instrument;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.RCaller;
+import com.oracle.truffle.r.runtime.RError;
+import com.oracle.truffle.r.runtime.RRuntimeASTAccess;
+import com.oracle.truffle.r.runtime.StableValue;
+import com.oracle.truffle.r.runtime.conn.StdConnections;
+import com.oracle.truffle.r.runtime.context.RContext;
+
+/**
+ * Support for {@code tracemem}, {@code untracemem} and {@code retracemem}. A copy of a traced
+ * object (see {@link #reportCopying}) is reported on the standard output together with the R call
+ * stack, in the same format as GnuR, and the copy is traced in turn. Objects are identified by
+ * their identity hash code, which takes the place of GnuR's memory addresses.
+ *
+ * The traced objects are held weakly and compared by identity, as equal vectors are still different
+ * objects. As long as no object is traced, the check for a copy of a traced object is compiled away.
+ */
+public final class MemoryCopyTracer {
+
+    /**
+     * Whether there are any traced objects. The value is replaced (and the old one invalidated) on
+     * every change, so that compiled code never keeps a stale value.
+     */
+    @CompilationFinal private static StableValue<Boolean> tracing = new StableValue<>(false, "tracemem");
+
+    /**
+     * A weak reference that is equal to another one if they refer to the same object.
+     */
+    private static final class IdentityKey extends WeakReference<Object> {
+        private final int hash;
+
+        IdentityKey(Object obj, ReferenceQueue<Object> queue) {
+            super(obj, queue);
+            this.hash = System.identityHashCode(obj);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            }
+            if (!(other instanceof IdentityKey)) {
+                return false;
+            }
+            Object obj = get();
+            return obj != null && obj == ((IdentityKey) other).get();
+        }
+    }
+
+    private static final HashMap<IdentityKey, String> traced = new HashMap<>();
+    private static final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    private MemoryCopyTracer() {
+        // no instances
+    }
+
+    private static String address(Object obj) {
+        return "0x" + Integer.toHexString(System.identityHashCode(obj));
+    }
+
+    private static String lookup(Object obj) {
+        return traced.get(new IdentityKey(obj, null));
+    }
+
+    private static void add(Object obj, String address) {
+        expungeCollected();
+        if (traced.isEmpty()) {
+            setTracing(true);
+        }
+        traced.put(new IdentityKey(obj, collected), address);
+    }
+
+    private static void remove(Object obj) {
+        traced.remove(new IdentityKey(obj, null));
+        checkEmpty();
+    }
+
+    /**
+     * Turns off the check for copies once no traced object is left, including because they have
+     * all been garbage collected.
+     */
+    private static void checkEmpty() {
+        expungeCollected();
+        if (traced.isEmpty() && tracing.getValue()) {
+            setTracing(false);
+        }
+    }
+
+    /**
+     * Removes the entries of the objects that have been garbage collected.
+     */
+    private static void expungeCollected() {
+        Object key;
+        while ((key = collected.poll()) != null) {
+            traced.remove(key);
+        }
+    }
+
+    private static void setTracing(boolean value) {
+        StableValue<Boolean> old = tracing;
+        tracing = new StableValue<>(value, "tracemem");
+        old.getAssumption().invalidate();
+    }
+
+    /**
+     * Starts tracing {@code obj}.
+     *
+     * @return the "address" of {@code obj}, as returned by {@code tracemem}
+     */
+    @TruffleBoundary
+    public static synchronized String trace(Object obj) {
+        String address = lookup(obj);
+        if (address == null) {
+            address = address(obj);
+            add(obj, address);
+        }
+        return "<" + address + ">";
+    }
+
+    /**
+     * Returns what {@code tracemem} would return for {@code obj}, without tracing it.
+     */
+    @TruffleBoundary
+    public static String getAddress(Object obj) {
+        return "<" + address(obj) + ">";
+    }
+
+    @TruffleBoundary
+    public static synchronized void untrace(Object obj) {
+        remove(obj);
+    }
+
+    /**
+     * Returns the value of {@code tracemem} for {@code obj} if it is traced, else {@code null}.
+     */
+    @TruffleBoundary
+    public static synchronized String getTrace(Object obj) {
+        String address = lookup(obj);
+        return address == null ? null : "<" + address + ">";
+    }
+
+    /**
+     * Traces {@code obj} and reports it as a copy of the object with trace {@code previous}, as
+     * {@code retracemem} does.
+     */
+    @TruffleBoundary
+    public static void retrace(Object obj, String previous) {
+        String address = trace(obj);
+        report(previous, address.substring(1, address.length() - 1));
+    }
+
+    /**
+     * Called whenever {@code dest} is created as a copy of {@code source}.
+     */
+    public static void reportCopying(Object source, Object dest) {
+        StableValue<Boolean> current = tracing;
+        if (!current.getAssumption().isValid()) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            current = tracing;
+        }
+        if (current.getValue()) {
+            reportTracedCopying(source, dest);
+        }
+    }
+
+    @TruffleBoundary
+    private static void reportTracedCopying(Object source, Object dest) {
+        String sourceAddress;
+        String destAddress;
+        synchronized (MemoryCopyTracer.class) {
+            sourceAddress = lookup(source);
+            if (sourceAddress == null) {
+                checkEmpty();
+                return;
+            }
+            destAddress = address(dest);
+            add(dest, destAddress);
+        }
+        report(sourceAddress, destAddress);
+    }
+
+    private static void report(String sourceAddress, String destAddress) {
+        StringBuilder str = new StringBuilder("tracemem[").append(sourceAddress).append(" -> ").append(destAddress).append("]: ");
+        RRuntimeASTAccess astAccess = RContext.getRRuntimeASTAccess();
+        for (RCaller call : RprofState.getCallStack()) {
+            str.append(RprofState.getFunctionName(astAccess.getSyntaxCaller(call))).append(' ');
+        }
+        try {
+            StdConnections.getStdout().writeString(str.toString(), true);
+        } catch (IOException ex) {
+            throw RError.error(RError.NO_NODE, RError.Message.GENERIC, ex.getMessage());
+        }
+    }
+}
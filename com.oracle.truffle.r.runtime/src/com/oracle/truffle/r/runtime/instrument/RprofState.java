@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.instrument;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.Truffle;
+import com.oracle.truffle.api.frame.Frame;
+import com.oracle.truffle.api.frame.FrameInstance;
+import com.oracle.truffle.api.frame.FrameInstance.FrameAccess;
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.api.source.SourceSection;
+import com.oracle.truffle.r.runtime.RArguments;
+import com.oracle.truffle.r.runtime.RCaller;
+import com.oracle.truffle.r.runtime.RPerfStats;
+import com.oracle.truffle.r.runtime.RRuntimeASTAccess;
+import com.oracle.truffle.r.runtime.StableValue;
+import com.oracle.truffle.r.runtime.context.RContext;
+import com.oracle.truffle.r.runtime.data.RLanguage;
+import com.oracle.truffle.r.runtime.data.RPromise;
+import com.oracle.truffle.r.runtime.data.RSymbol;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxNode;
+
+/**
+ * Support for the sampling profiler started by {@code Rprof}. A timer thread counts the sampling
+ * intervals of CPU time used by the evaluating thread (as GnuR's {@code ITIMER_PROF} does), so that
+ * time spent idle, e.g., at the prompt, in {@code Sys.sleep} or blocked on I/O, is not counted. The
+ * evaluating thread records its R call stack on the next entry to or exit from an R function (see
+ * {@link #checkSample()} and {@link #checkSampleOnExit()}), once for every interval that has elapsed
+ * since the last sample. The stack cannot be inspected from the timer thread itself, as Truffle
+ * only provides access to the frames of the current thread. The intervals elapsed before a function
+ * was entered are attributed to the stack of its caller, i.e., without the new frame, and those
+ * elapsed before a function returns to the stack including that function.
+ *
+ * The output has the same format as GnuR's, i.e., a header line giving the interval in
+ * microseconds and then one line per sample listing the names of the active functions, innermost
+ * first, so it can be analyzed by {@code summaryRprof} and similar tools. Unlike instrumentation
+ * based timing (e.g. {@code RNodeTimer}), which adds work to every node execution, the only cost
+ * when profiling is off is a (compiled away) assumption check on function entry and exit.
+ */
+public class RprofState {
+
+    /**
+     * Whether any context is profiling. The value is replaced (and the old one invalidated) on every
+     * change, so that compiled code never keeps a stale value.
+     */
+    @CompilationFinal private static StableValue<Boolean> sampling = new StableValue<>(false, "Rprof");
+    private static int profilingContexts;
+
+    public static class ContextStateImpl implements RContext.ContextState {
+        private BufferedWriter out;
+        private Thread timer;
+        private boolean lineProfiling;
+        /**
+         * The number of intervals that have elapsed since the last sample was recorded.
+         */
+        private final AtomicInteger pendingTicks = new AtomicInteger();
+        /**
+         * The indices (as used in the output) of the source files, for line profiling.
+         */
+        private HashMap<String, Integer> fileIndices;
+        /**
+         * The output of {@code Rprofmem}, and the size (in bytes) above which allocations are
+         * reported.
+         */
+        private BufferedWriter memOut;
+        private long memThreshold;
+
+        /**
+         * Starts profiling to {@code filename}, stopping any active profiling first.
+         *
+         * @param interval the sampling interval in microseconds
+         */
+        @TruffleBoundary
+        public void start(String filename, boolean append, int interval, boolean lineProfiling) throws IOException {
+            stop();
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename, append)));
+            this.lineProfiling = lineProfiling;
+            this.fileIndices = lineProfiling ? new HashMap<>() : null;
+            if (lineProfiling) {
+                out.write("line profiling: ");
+            }
+            out.write("sample.interval=" + interval + "\n");
+            pendingTicks.set(0);
+            long millis = interval / 1000;
+            int nanos = (interval % 1000) * 1000;
+            long intervalNanos = interval * 1000L;
+            long evalThreadId = Thread.currentThread().getId();
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            boolean cpuTime = threadBean.isThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled();
+            timer = new Thread(() -> {
+                try {
+                    long counted = cpuTime ? threadBean.getThreadCpuTime(evalThreadId) : 0;
+                    while (true) {
+                        Thread.sleep(millis, nanos);
+                        if (cpuTime) {
+                            long used = threadBean.getThreadCpuTime(evalThreadId);
+                            if (used == -1) {
+                                // the evaluating thread has terminated
+                                return;
+                            }
+                            long ticks = (used - counted) / intervalNanos;
+                            if (ticks > 0) {
+                                pendingTicks.addAndGet((int) ticks);
+                                counted += ticks * intervalNanos;
+                            }
+                        } else {
+                            // no CPU time available, fall back to elapsed time
+                            pendingTicks.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // profiling stopped
+                }
+            }, "Rprof timer");
+            timer.setDaemon(true);
+            timer.start();
+            enableSampling();
+        }
+
+        /**
+         * Stops profiling (if active) and closes the output file.
+         */
+        @TruffleBoundary
+        public void stop() throws IOException {
+            if (timer != null) {
+                timer.interrupt();
+                timer = null;
+                disableSampling();
+                try {
+                    out.close();
+                } finally {
+                    out = null;
+                    fileIndices = null;
+                }
+            }
+        }
+
+        /**
+         * Starts reporting the allocation of vectors larger than {@code threshold} bytes to
+         * {@code filename}, as {@code Rprofmem} does, stopping any active reporting first.
+         */
+        @TruffleBoundary
+        public void startMemoryProfiling(String filename, boolean append, long threshold) throws IOException {
+            stopMemoryProfiling();
+            memOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename, append)));
+            memThreshold = threshold;
+            AllocationTracker.enable();
+        }
+
+        @TruffleBoundary
+        public void stopMemoryProfiling() throws IOException {
+            if (memOut != null) {
+                AllocationTracker.disable();
+                try {
+                    memOut.close();
+                } finally {
+                    memOut = null;
+                }
+            }
+        }
+
+        /**
+         * Called by {@link AllocationTracker} for every vector allocated in this context.
+         */
+        void reportAllocation(long bytes) {
+            if (memOut == null || bytes <= memThreshold) {
+                return;
+            }
+            StringBuilder line = new StringBuilder().append(bytes).append(" :");
+            RRuntimeASTAccess astAccess = RContext.getRRuntimeASTAccess();
+            for (RCaller call : getCallStack()) {
+                line.append('"').append(getFunctionName(astAccess.getSyntaxCaller(call))).append("\" ");
+            }
+            try {
+                memOut.write(line.append('\n').toString());
+            } catch (IOException e) {
+                // as for Rprof, write errors are ignored
+            }
+        }
+
+        @Override
+        public void beforeDestroy(RContext context) {
+            try {
+                stop();
+                stopMemoryProfiling();
+            } catch (IOException e) {
+                // nothing to be done at this stage
+            }
+        }
+
+        /**
+         * Records the pending ticks, attributing them to the current stack without the innermost
+         * function if {@code entry}, i.e., if that function has just been entered.
+         */
+        private void sample(boolean entry) {
+            int ticks = pendingTicks.getAndSet(0);
+            if (ticks == 0 || out == null) {
+                return;
+            }
+            long start = stats != null ? System.nanoTime() : 0;
+            String line = stackLine(entry);
+            try {
+                for (int i = 0; i < ticks; i++) {
+                    out.write(line);
+                }
+            } catch (IOException e) {
+                // GnuR also silently ignores write errors on the profile file
+            }
+            if (stats != null) {
+                stats.record(ticks, System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Creates the output line for the current R call stack, without the innermost function if
+         * {@code skipInnermost} is set. For line profiling, each function name is preceded by the
+         * location of the call that is currently active in the function.
+         */
+        private String stackLine(boolean skipInnermost) {
+            RRuntimeASTAccess astAccess = RContext.getRRuntimeASTAccess();
+            StringBuilder header = new StringBuilder();
+            StringBuilder line = new StringBuilder();
+            RSyntaxNode activeCall = null;
+            boolean skip = skipInnermost;
+            for (RCaller call : getCallStack()) {
+                RLanguage syntaxCall = astAccess.getSyntaxCaller(call);
+                if (lineProfiling && activeCall != null) {
+                    appendLocation(header, line, activeCall.getSourceSection());
+                }
+                if (skip) {
+                    skip = false;
+                } else {
+                    line.append('"').append(getFunctionName(syntaxCall)).append("\" ");
+                }
+                activeCall = syntaxCall.getRep() instanceof RSyntaxNode ? (RSyntaxNode) syntaxCall.getRep() : null;
+            }
+            return header.append(line).append('\n').toString();
+        }
+
+        private void appendLocation(StringBuilder header, StringBuilder line, SourceSection section) {
+            if (section == null || section.getSource() == null) {
+                return;
+            }
+            Source source = section.getSource();
+            String path = source.getPath() != null ? source.getPath() : source.getName();
+            if (path == null) {
+                return;
+            }
+            Integer index = fileIndices.get(path);
+            if (index == null) {
+                index = fileIndices.size() + 1;
+                fileIndices.put(path, index);
+                header.append("#File ").append(index).append(": ").append(path).append('\n');
+            }
+            line.append(index).append('#').append(section.getStartLine()).append(' ');
+        }
+    }
+
+    public static ContextStateImpl newContext(@SuppressWarnings("unused") RContext context) {
+        return new ContextStateImpl();
+    }
+
+    /**
+     * Returns the calls of the active R functions of the current thread, innermost first.
+     */
+    @TruffleBoundary
+    public static ArrayList<RCaller> getCallStack() {
+        ArrayList<RCaller> calls = new ArrayList<>();
+        FrameInstance current = Truffle.getRuntime().getCurrentFrame();
+        if (current != null) {
+            addCall(calls, current);
+            Truffle.getRuntime().iterateFrames(frameInstance -> {
+                addCall(calls, frameInstance);
+                return null;
+            });
+        }
+        return calls;
+    }
+
+    private static void addCall(ArrayList<RCaller> calls, FrameInstance frameInstance) {
+        if (RPromise.CLOSURE_WRAPPER_NAME.equals(frameInstance.getCallTarget().toString())) {
+            return;
+        }
+        Frame frame = RArguments.unwrap(frameInstance.getFrame(FrameAccess.READ_ONLY, true));
+        if (RArguments.isRFrame(frame)) {
+            RCaller call = RArguments.getCall(frame);
+            if (call != null) {
+                calls.add(call);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the function called by {@code syntaxCall} as it appears in profiler
+     * output, i.e., {@code "<Anonymous>"} if the function is not given by a symbol.
+     */
+    public static String getFunctionName(RLanguage syntaxCall) {
+        RRuntimeASTAccess astAccess = RContext.getRRuntimeASTAccess();
+        Object function = astAccess.getLength(syntaxCall) > 0 ? astAccess.getDataAtAsObject(syntaxCall, 0) : null;
+        return function instanceof RSymbol ? ((RSymbol) function).getName() : "<Anonymous>";
+    }
+
+    private static synchronized void enableSampling() {
+        if (profilingContexts++ == 0) {
+            setSampling(true);
+        }
+    }
+
+    private static synchronized void disableSampling() {
+        if (--profilingContexts == 0) {
+            setSampling(false);
+        }
+    }
+
+    private static void setSampling(boolean value) {
+        StableValue<Boolean> old = sampling;
+        sampling = new StableValue<>(value, "Rprof");
+        old.getAssumption().invalidate();
+    }
+
+    /**
+     * Called on entry to every R function; records a sample of the call stack if profiling is
+     * active and a sampling interval has elapsed.
+     */
+    public static void checkSample() {
+        if (isSampling()) {
+            sample(true);
+        }
+    }
+
+    /**
+     * Called on exit from every R function, while its frame is still on the stack, so that the
+     * time spent in the function since the last sample is attributed to it and not to whatever
+     * function is entered next.
+     */
+    public static void checkSampleOnExit() {
+        if (isSampling()) {
+            sample(false);
+        }
+    }
+
+    private static boolean isSampling() {
+        StableValue<Boolean> current = sampling;
+        if (!current.getAssumption().isValid()) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            current = sampling;
+        }
+        return current.getValue();
+    }
+
+    @TruffleBoundary
+    private static void sample(boolean entry) {
+        RContext context = RContext.getInstance();
+        if (context != null && context.stateRprof != null) {
+            context.stateRprof.sample(entry);
+        }
+    }
+
+    // Performance analysis
+
+    @CompilationFinal private static PerfHandler stats;
+
+    static {
+        RPerfStats.register(new PerfHandler());
+    }
+
+    /**
+     * Reports the cost of sampling, for comparison with the instrumentation based timers.
+     */
+    private static class PerfHandler implements RPerfStats.Handler {
+        private long samples;
+        private long records;
+        private long time;
+
+        synchronized void record(int ticks, long nanos) {
+            samples += ticks;
+            records++;
+            time += nanos;
+        }
+
+        public void initialize(String optionText) {
+            stats = this;
+        }
+
+        public String getName() {
+            return "rprof";
+        }
+
+        public void report() {
+            RPerfStats.out().printf("Rprof: %d samples, %d stack walks, %.3f ms total, %.3f us per stack walk%n", samples, records, time / 1e6, records == 0 ? 0.0 : time / 1e3 / records);
+        }
+    }
+}
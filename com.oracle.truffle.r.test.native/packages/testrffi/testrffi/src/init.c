@@ -25,8 +25,16 @@
 
 #include <R_ext/Rdynload.h>
 
+extern SEXP addInt(SEXP a, SEXP b);
+
+/* addInt, under a name that can only be found through the registration */
+static const R_CallMethodDef CallEntries[] = {
+    {"registeredAddInt", (DL_FUNC) &addInt, 2},
+    {NULL, NULL, 0}
+};
+
 void
 R_init_testrffi(DllInfo *dll)
 {
-    R_registerRoutines(dll, NULL, NULL, NULL, NULL);
+    R_registerRoutines(dll, NULL, CallEntries, NULL, NULL);
 }
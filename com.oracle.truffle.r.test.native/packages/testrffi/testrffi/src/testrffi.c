@@ -63,6 +63,21 @@ SEXP populateIntVector(SEXP n) {
     return v;
 }
 
+SEXP negateLogical(SEXP x) {
+    SEXP v;
+    PROTECT(v = duplicate(x));
+    int n = LENGTH(v);
+    int *data = LOGICAL(v);
+    int i;
+    for (i = 0; i < n; i++) {
+    	if (data[i] != NA_LOGICAL) {
+    	    data[i] = !data[i];
+    	}
+    }
+    UNPROTECT(1);
+    return v;
+}
+
 SEXP createExternalPtr(SEXP addr, SEXP tag, SEXP prot) {
 	return R_MakeExternalPtr((void *) (long) INTEGER_VALUE(addr), tag, prot);
 }
@@ -4,7 +4,7 @@
  * http://www.gnu.org/licenses/gpl-2.0.html
  *
  * Copyright (c) 2012-2014, Purdue University
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates
  *
  * All rights reserved.
  */
@@ -180,5 +180,7 @@ public class TestBuiltin_gsub extends TestBase {
         assertEval("{ gsub(\"h\",\"\", c(\"hello\", \"hi\", \"bye\")) }");
         assertEval("{ gsub(\"h\",\"\", c(\"hello\", \"hi\", \"bye\"), fixed=TRUE) }");
         assertEval(Ignored.Unknown, "{ gsub(\"a\",\"aa\", \"prAgue alley\", ignore.case=TRUE) }");
+        assertEval(Output.ContainsError, "{ gsub(\"(a\",\"b\", \"prague alley\", perl=TRUE) }");
+        assertEval("{ x <- c(\"prague\", \"alley\"); for (i in 1:3) x <- gsub(\"(a|e)\", \"\\\\1\\\\1\", x, perl=TRUE); x }");
     }
 }
@@ -4,7 +4,7 @@
  * http://www.gnu.org/licenses/gpl-2.0.html
  *
  * Copyright (c) 2014, Purdue University
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates
  *
  * All rights reserved.
  */
@@ -30,4 +30,17 @@ public class TestBuiltin_lazyLoadDBflush extends TestBase {
         // assertEval(Ignored.Unknown,
         // "argv <- list('/home/lzhao/hg/r-instrumented/library/stats4/R/stats4.rdb'); .Internal(lazyLoadDBflush(argv[[1]]))");
     }
+
+    /**
+     * The database mappings and the fetched values are cached, which must not survive a rewrite of
+     * the database, be it by inserting values or by other means followed by a flush.
+     */
+    @Test
+    public void testlazyLoadDBrewrite() {
+        assertEval("{ f <- tempfile(); h <- function(x) x; ins <- function(v) .Internal(lazyLoadDBinsertValue(v, f, FALSE, 1L, NULL)); " +
+                        "k1 <- ins(c(1, 2, 3)); v1 <- lazyLoadDBfetch(k1, f, 1L, h); unlink(f); k2 <- ins(c(4, 5, 6)); v2 <- lazyLoadDBfetch(k2, f, 1L, h); " +
+                        "k3 <- ins(letters); v3 <- lazyLoadDBfetch(k3, f, 1L, h); unlink(f); list(identical(k1, k2), v1, v2, v3) }");
+        assertEval("{ f <- tempfile(); g <- tempfile(); h <- function(x) x; k1 <- .Internal(lazyLoadDBinsertValue(1:10, f, FALSE, 1L, NULL)); k2 <- .Internal(lazyLoadDBinsertValue(11:20, g, FALSE, 1L, NULL)); " +
+                        "v1 <- lazyLoadDBfetch(k1, f, 1L, h); file.copy(g, f, overwrite = TRUE); .Internal(lazyLoadDBflush(f)); v2 <- lazyLoadDBfetch(k1, f, 1L, h); unlink(c(f, g)); list(identical(k1, k2), v1, v2) }");
+    }
 }
@@ -4,7 +4,7 @@
  * http://www.gnu.org/licenses/gpl-2.0.html
  *
  * Copyright (c) 2012-2014, Purdue University
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates
  *
  * All rights reserved.
  */
@@ -133,6 +133,8 @@ public class TestBuiltin_order extends TestBase {
         assertEval("{ order(c(3i,1i,2i)) }");
         assertEval("{ order(c(3+1i,2+2i,1+3i)) }");
         assertEval("{ order(c(3+1i,2+3i,2+2i,1+3i)) }");
+        assertEval("{ order(c(3+1i,NA,2+3i,2+2i,1+3i,2+2i), decreasing=TRUE) }");
+        assertEval("{ order(c(3+1i,NA,2+3i,2+2i,1+3i,2+2i), na.last=FALSE) }");
 
         assertEval("{ order(7) }");
         assertEval("{ order(FALSE) }");
@@ -161,4 +163,23 @@ public class TestBuiltin_order extends TestBase {
 
         assertEval("{ order(c(0/0, -1/0, 2), na.last=NA) }");
     }
+
+    /**
+     * With {@code ParallelSortThreshold} lowered (as in the gate), these vectors are sorted in
+     * parallel, which must give the same (stable) result as the sequential sort.
+     */
+    @Test
+    public void testOrderParallel() {
+        assertEval("{ x <- (1:1000 * 7919L) %% 101L; o <- order(x); c(sum(o * seq_along(o)), head(o, 20), tail(o, 20)) }");
+        assertEval("{ x <- (1:1000 * 7919L) %% 101L; o <- order(x, decreasing=TRUE); c(sum(o * seq_along(o)), head(o, 20), tail(o, 20)) }");
+        assertEval("{ x <- ((1:1000 * 7919) %% 101) / 4; x[seq(1, 1000, 37)] <- NA; o <- order(x); c(sum(o * seq_along(o)), head(o, 20), tail(o, 30)) }");
+        assertEval("{ x <- ((1:1000 * 7919) %% 101) / 4; x[seq(1, 1000, 37)] <- NA; o <- order(x, na.last=FALSE, decreasing=TRUE); c(sum(o * seq_along(o)), head(o, 30), tail(o, 20)) }");
+        assertEval("{ x <- ((1:1000 * 7919) %% 101) / 4; x[seq(1, 1000, 37)] <- NaN; o <- order(x, na.last=NA); c(length(o), sum(o * seq_along(o)), head(o, 20)) }");
+        assertEval("{ x <- as.character((1:1000 * 7919L) %% 101L); x[seq(5, 1000, 41)] <- NA; o <- order(x); c(sum(o * seq_along(o)), head(o, 20), tail(o, 30)) }");
+        assertEval("{ a <- (1:1000) %% 7L; b <- (1:1000 * 13) %% 11; o <- order(a, b); c(sum(o * seq_along(o)), head(o, 20), tail(o, 20)) }");
+        assertEval("{ a <- (1:1000) %% 7L; b <- (1:1000 * 13) %% 11; b[seq(3, 1000, 29)] <- NA; o <- order(a, b, decreasing=TRUE); c(sum(o * seq_along(o)), head(o, 20), tail(o, 20)) }");
+        assertEval("{ a <- as.character((1:1000) %% 7L); b <- (1:1000 * 13) %% 11 > 5; o <- order(a, -xtfrm(b), 1000:1); c(sum(o * seq_along(o)), head(o, 20)) }");
+        assertEval("{ x <- ((1:1000 * 7919) %% 101) / 4; x[seq(1, 1000, 37)] <- NA; s <- sort(x, decreasing=TRUE, na.last=TRUE); c(sum(s, na.rm=TRUE), head(s, 20), tail(s, 30)) }");
+        assertEval("{ x <- as.character((1:1000 * 7919L) %% 101L); s <- sort(x); c(head(s, 20), tail(s, 20)) }");
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.test.builtins;
+
+import org.junit.*;
+
+import com.oracle.truffle.r.test.*;
+
+// Checkstyle: stop line length check
+public class TestBuiltin_serialize extends TestBase {
+
+    /**
+     * References to the same object are serialized once, followed by back-references, whereas
+     * distinct objects must stay distinct even if they are equal.
+     */
+    @Test
+    public void testserializeReferences() {
+        assertEval("{ e1 <- new.env(); e2 <- new.env(); r <- unserialize(serialize(list(e1, e2, e1), NULL)); assign('x', 1, envir = r[[1]]); " +
+                        "list(identical(r[[1]], r[[3]]), identical(r[[1]], r[[2]]), exists('x', envir = r[[2]], inherits = FALSE), r[[3]]$x) }");
+        assertEval("{ e1 <- new.env(); e2 <- new.env(); e1$v <- 1; e2$v <- 1; f <- function() v; environment(f) <- e1; g <- function() v; environment(g) <- e2; " +
+                        "r <- unserialize(serialize(list(f, g, e1, e2), NULL)); r[[3]]$v <- 2; list(r[[1]](), r[[2]](), identical(environment(r[[1]]), r[[3]]), identical(environment(r[[2]]), r[[4]])) }");
+        assertEval("{ e <- new.env(); l <- list(a = e, b = list(e, new.env())); r <- unserialize(serialize(l, NULL, ascii = TRUE)); list(identical(r$a, r$b[[1]]), identical(r$a, r$b[[2]])) }");
+    }
+
+    /**
+     * Numeric vectors are encoded and decoded in bulk, in pieces that fit the stream buffers, so
+     * these lengths straddle the buffer sizes.
+     */
+    @Test
+    public void testserializeNumeric() {
+        String vectors = "n <- c(0, 1, 4095, 4096, 4097, 8191, 8192, 8193, 16383, 16384, 16385, 100001); " +
+                        "d <- lapply(n, function(k) { x <- seq_len(k) / 3; x[seq_len(k) %% 7 == 1] <- NA; x[seq_len(k) %% 11 == 2] <- NaN; x[seq_len(k) %% 13 == 3] <- -Inf; x }); ";
+        assertEval("{ " + vectors + "rt <- function(x, ...) identical(unserialize(serialize(x, NULL, ...)), x); " +
+                        "list(sapply(d, rt, xdr = TRUE), sapply(d, rt, xdr = FALSE), sapply(d, rt, ascii = TRUE), sapply(d, function(x) sum(is.nan(unserialize(serialize(x, NULL)))))) }");
+        assertEval("{ " + vectors + "rt <- function(x) identical(unserialize(serialize(x, NULL)), x); " +
+                        "list(sapply(lapply(d, function(x) suppressWarnings(as.integer(x * 3))), rt), sapply(lapply(d, function(x) x > 100), rt), sapply(lapply(d, function(x) complex(real = x, imaginary = -x)), rt)) }");
+        assertEval("{ " + vectors + "f <- tempfile(); con <- file(f, 'wb'); for (x in d) serialize(x, con, xdr = FALSE); close(con); " +
+                        "con <- file(f, 'rb'); r <- lapply(d, function(x) identical(unserialize(con), x)); close(con); unlink(f); unlist(r) }");
+        assertEval("{ x <- c(1.5, NA, NaN, Inf, -0, 2^-1074, .Machine$double.xmax); r <- unserialize(serialize(x, NULL, ascii = TRUE)); list(identical(r, x), is.na(r), is.nan(r), 1 / r[5]) }");
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This material is distributed under the GNU General Public License
+ * Version 2. You may review the terms of this license at
+ * http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Copyright (c) 2014, Purdue University
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates
+ *
+ * All rights reserved.
+ */
+package com.oracle.truffle.r.test.builtins;
+
+import org.junit.*;
+
+import com.oracle.truffle.r.test.*;
+
+// Checkstyle: stop line length check
+public class TestBuiltin_tracemem extends TestBase {
+
+    @Test
+    public void testtracemem() {
+        // the addresses differ from GnuR's, so only the presence of the reports is compared
+        assertEval("{ x <- c(1, 2, 3); invisible(tracemem(x)); y <- x; out <- capture.output(y[1] <- 10); untracemem(x); list(length(out), grepl('^tracemem\\\\[', out), y) }");
+        assertEval("{ x <- c(1, 2, 3); invisible(tracemem(x)); untracemem(x); y <- x; length(capture.output(y[1] <- 10)) }");
+        assertEval("{ x <- c(1, 2, 3); invisible(tracemem(x)); y <- x; invisible(capture.output(y[1] <- 10)); z <- y; out <- capture.output(z[2] <- 20); untracemem(x); untracemem(y); length(out) }");
+        // equal vectors are still different objects
+        assertEval("{ x <- c(1, 2); y <- c(1, 2); r <- identical(tracemem(x), tracemem(y)); untracemem(x); untracemem(y); r }");
+        assertEval("{ x <- c(1, 2); y <- c(1, 2); invisible(tracemem(x)); r <- is.null(retracemem(y)); untracemem(x); r }");
+        assertEval("{ x <- 1:10; r <- identical(tracemem(x), tracemem(x)); untracemem(x); r }");
+
+        assertEval(Output.ContainsError, "{ tracemem(NULL) }");
+        assertEval(Output.ContainsError, "{ tracemem(function() 42) }");
+        assertEval(Output.ContainsError, "{ tracemem(new.env()) }");
+        assertEval("{ grepl('^<0x[0-9a-f]+>$', tracemem(42)) }");
+        assertEval("{ x <- 1L; r <- grepl('^<0x[0-9a-f]+>$', tracemem(x)); untracemem(x); r }");
+        assertEval("{ x <- c(1, 2); capture.output(retracemem(x)) }");
+        // copies to a different length are reported as well
+        assertEvalFastR("{ x <- c(1, 2, 3); invisible(tracemem(x)); out <- capture.output(x[5] <- 4); untracemem(x); list(length(out) > 0, x) }", "list(TRUE, c(1, 2, 3, NA, 4))");
+    }
+}
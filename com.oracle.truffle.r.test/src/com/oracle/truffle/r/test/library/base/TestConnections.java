@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -68,6 +68,47 @@ public class TestConnections extends TestBase {
         assertEval(TestBase.template("{ con <- file(\"%0\"); readLines(con, 2) }", testDir.subDir("wl2")));
     }
 
+    @Test
+    public void testReadLinesIncompleteFinalLine() {
+        assertEval("{ f <- tempfile(); writeChar(\"a\\nb\", f, eos=NULL); r <- tryCatch(readLines(f), warning=function(w) conditionMessage(w) == paste0(\"incomplete final line found on '\", f, \"'\")); unlink(f); r }");
+        assertEval("{ f <- tempfile(); con <- gzfile(f, \"w\"); cat(\"a\\nb\", file=con); close(con); " +
+                        "r <- tryCatch(readLines(gzfile(f)), warning=function(w) conditionMessage(w) == paste0(\"incomplete final line found on '\", f, \"'\")); unlink(f); r }");
+    }
+
+    @Test
+    public void testEncoding() {
+        // lines are split before decoding, so FastR does not support encodings that are not ASCII compatible
+        assertEvalFastR("{ f <- tempfile(); msg <- NULL; con <- withCallingHandlers(file(f, encoding=\"UTF-16LE\"), warning=function(w) { msg <<- conditionMessage(w); invokeRestart(\"muffleWarning\") }); close(con); msg }",
+                        "\"unsupported conversion from 'UTF-16LE' to 'UTF-8'\"");
+        assertEval("{ f <- tempfile(); writeLines(c(\"a\", \"b\"), f); con <- file(f, encoding=\"latin1\"); r <- readLines(con); close(con); unlink(f); r }");
+    }
+
+    /**
+     * With option {@code fastr.gzip.threads}, which GnuR ignores, gzfile output is compressed in
+     * blocks, each a gzip member of its own; the gate lowers {@code ParallelGZIPBlockSize} so that
+     * these files consist of many members and lines and objects straddle member boundaries.
+     */
+    @Test
+    public void testParallelGZIP() {
+        assertEval("{ op <- options(fastr.gzip.threads = 4); f <- tempfile(); x <- paste0('line ', 1:2000, substring(paste(rep('x', 50), collapse = ''), 1, 1:2000 %% 50)); con <- gzfile(f, 'w'); writeLines(x, con); close(con); options(op); " +
+                        "r <- list(identical(readLines(gzfile(f)), x), identical(readLines(f), x)); unlink(f); r }");
+        assertEval("{ op <- options(fastr.gzip.threads = 2); f <- tempfile(); x <- list(a = 1:5000, b = as.character(1:500), c = list(pi, NA)); saveRDS(x, f); options(op); r <- identical(readRDS(f), x); unlink(f); r }");
+        assertEval("{ op <- options(fastr.gzip.threads = 2); f <- tempfile(); con <- gzfile(f, 'w'); close(con); options(op); r <- readLines(f); unlink(f); r }");
+    }
+
+    /**
+     * gzfile also reads xz and bzip2 compressed files, which are decompressed as a stream; these
+     * files are larger than the buffers of the connection and of unserialize.
+     */
+    @Test
+    public void testXzBzip2Files() {
+        assertEval("{ f <- tempfile(); x <- paste('line', 1:50000); writeLines(x, f); system2('xz', c('-z', '-k', f)); system2('bzip2', c('-z', '-k', f)); " +
+                        "r <- lapply(paste0(f, c('.xz', '.bz2')), function(g) { con <- gzfile(g); l <- readLines(con); close(con); con <- gzfile(g, 'r'); h <- readLines(con, 3); close(con); list(identical(l, x), h) }); " +
+                        "unlink(paste0(f, c('', '.xz', '.bz2'))); r }");
+        assertEval("{ f <- tempfile(); g <- tempfile(); x <- list(a = seq(0, 1, length.out = 100000), b = as.character(1:20000), c = c(NA, NaN, 1)); saveRDS(x, f, compress = FALSE); saveRDS(x, g, compress = FALSE); " +
+                        "system2('xz', c('-z', f)); system2('bzip2', c('-z', g)); r <- list(identical(readRDS(paste0(f, '.xz')), x), identical(readRDS(paste0(g, '.bz2')), x)); unlink(c(paste0(f, '.xz'), paste0(g, '.bz2'))); r }");
+    }
+
     @Test
     public void testFileWriteReadChar() {
         assertEval(TestBase.template("{ writeChar(\"abc\", file(\"%0\")) }", testDir.subDir("wc1")));
@@ -124,4 +165,14 @@ public class TestConnections extends TestBase {
         assertEval("{ con <- textConnection(\"tcval\", open=\"w\"); writeLines(\"a\\nb\", con); tcval; close(con) }");
         assertEval(Ignored.Unimplemented, "c <- textConnection('out', 'w'); cat('testtext', file=c); isIncomplete(c); cat('testtext2\\n', file=c); isIncomplete(c); close(c); out");
     }
+
+    @Test
+    public void testMappedFileConnection() {
+        // mmap is a FastR extension
+        assertEvalFastR("{ f <- tempfile(); writeBin(c(1.5, NA, 3), f); con <- file(f, \"rb\", mmap=TRUE); r <- list(readBin(con, \"double\", 2), readBin(con, \"double\", 5)); close(con); unlink(f); r }",
+                        "list(c(1.5, NA), 3)");
+        assertEvalFastR("{ f <- tempfile(); writeBin(1:3, f, endian=\"big\"); con <- file(f, \"rb\", mmap=TRUE); r <- readBin(con, \"integer\", 3, endian=\"big\"); close(con); unlink(f); r }", "1:3");
+        // compressed files are not mapped but decompressed, as without mmap
+        assertEvalFastR("{ f <- tempfile(); con <- gzfile(f, \"w\"); writeLines(c(\"a\", \"b\"), con); close(con); con <- file(f, mmap=TRUE); r <- readLines(con); close(con); unlink(f); r }", "c(\"a\", \"b\")");
+    }
 }
@@ -4,7 +4,7 @@
  * http://www.gnu.org/licenses/gpl-2.0.html
  *
  * Copyright (c) 2012-2014, Purdue University
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates
  *
  * All rights reserved.
  */
@@ -287,4 +287,27 @@ public class TestEnvironments extends TestBase {
         assertEval(Output.ContainsError, "{ e <- new.env(); assign(\"x\", 1, e); attach(e, 2); x; detach(2); x }");
         assertEval(Output.ContainsError, "{ detach(\"missing\"); x }");
     }
+
+    /**
+     * Environments created with {@code new.env(hash = TRUE)} keep their bindings in a map until
+     * the frame is needed for evaluation, at which point the bindings are copied into the frame.
+     */
+    @Test
+    public void testHashedEnvironment() {
+        assertEval("{ e <- new.env(hash = TRUE); for (i in 1:1000) assign(paste0(\"k\", i), i, envir = e); c(length(ls(e)), get(\"k500\", envir = e), exists(\"k1000\", envir = e), exists(\"k1001\", envir = e)) }");
+        assertEval("{ e <- new.env(hash = TRUE, size = 5L); assign(\"b\", 2, e); assign(\"a\", 1, e); assign(\".c\", 3, e); list(ls(e), ls(e, all.names = TRUE), ls(e, pattern = \"^a\"), mget(c(\"a\", \"b\"), envir = e)) }");
+        assertEval("{ e <- new.env(hash = TRUE); assign(\"x\", 1, e); rm(\"x\", envir = e); c(exists(\"x\", envir = e, inherits = FALSE), length(ls(e))) }");
+        assertEval(Output.ContainsWarning, "{ e <- new.env(hash = TRUE); rm(\"x\", envir = e) }");
+        assertEval("{ e <- new.env(hash = TRUE); e$x <- 1; e[[\"y\"]] <- 2; e$x <- e$x + 10; sort(unlist(as.list(e))) }");
+        assertEval("{ x <- \"global\"; e <- new.env(hash = TRUE); exists(\"x\", envir = e) && !exists(\"x\", envir = e, inherits = FALSE) }");
+        assertEval(Output.ContainsError, "{ e <- new.env(hash = TRUE); assign(\"x\", 1, e); lockBinding(\"x\", e); assign(\"x\", 2, e) }");
+        assertEval("{ e <- new.env(hash = TRUE); assign(\"x\", 1, e); lockBinding(\"x\", e); r <- bindingIsLocked(\"x\", e); unlockBinding(\"x\", e); assign(\"x\", 2, e); c(r, bindingIsLocked(\"x\", e), get(\"x\", envir = e)) }");
+        assertEval(Output.ContainsError, "{ e <- new.env(hash = TRUE); assign(\"x\", 1, e); lockEnvironment(e, bindings = TRUE); assign(\"x\", 2, e) }");
+        // the bindings are moved to the frame by evaluation in the environment
+        assertEval("{ e <- new.env(hash = TRUE); assign(\"x\", 1, e); assign(\"y\", 2, e); r <- eval(quote(x + y), e); assign(\"z\", 3, e); c(r, evalq(z, e), sort(ls(e))) }");
+        assertEval("{ e <- new.env(hash = TRUE); assign(\"x\", 1, e); lockBinding(\"x\", e); local(y <- x + 1, envir = e); c(get(\"y\", envir = e), bindingIsLocked(\"x\", e)) }");
+        assertEval("{ e <- new.env(hash = TRUE); assign(\"x\", 42, e); f <- function() x; environment(f) <- e; f() }");
+        assertEval("{ e <- new.env(hash = TRUE); assign(\"x\", 42, e); e2 <- new.env(hash = TRUE, parent = e); c(get(\"x\", envir = e2), identical(parent.env(e2), e)) }");
+        assertEval("{ e <- list2env(list(a = 1, b = \"two\"), envir = new.env(hash = TRUE)); with(e, paste(a, b)) }");
+    }
 }
@@ -4,7 +4,7 @@
  * http://www.gnu.org/licenses/gpl-2.0.html
  *
  * Copyright (c) 2012-2014, Purdue University
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates
  *
  * All rights reserved.
  */
@@ -742,6 +742,45 @@ public class TestSimpleArithmetic extends TestBase {
         assertEval("{ x <- 3 ; f <- function(z) { if (z) { x <- 1 } ; x <- x - 1L ; x } ; f(FALSE) }");
     }
 
+    @Test
+    public void testFusedArithmetic() {
+        // chains of double arithmetic are fused when run with a low FusedArithmeticThreshold
+        assertEval("{ a <- as.double(1:10); b <- a / 4; a * b + a - b / 2 }");
+        assertEval("{ a <- as.double(1:10); -a * a + c(1, NA) }");
+        assertEval("{ a <- as.double(1:10); a * a + 1:10 * 2L }");
+        assertEval("{ a <- c(1, NaN, 3:10); a * a + c(NA, 2) }");
+        assertEval("{ a <- as.double(1:10); b <- a; for (i in 1:3) { x <- a * b + c(TRUE, FALSE); a[i] <- 0 }; list(a, b, x) }");
+        // operands that cannot be fused
+        assertEval("{ a <- as.double(1:10); m <- matrix(1:10, 2); a * a + m }");
+        assertEval("{ a <- as.double(1:10); m <- matrix(1:10, 2); a * a + m %*% diag(5) }");
+        assertEval("{ a <- as.double(1:10); x <- a; names(x) <- letters[1:10]; a * a + x }");
+        assertEval("{ a <- as.double(1:10); a * a + c(TRUE, FALSE) }");
+        assertEval("{ a <- as.double(1:10); a * a + 1i }");
+        assertEval("{ a <- as.double(1:10); a * a + NULL }");
+        assertEval("{ a <- as.double(1:10); a * a + numeric(0) }");
+        assertEval("{ a <- as.double(1:10); -a + structure(1:10, class = \"foo\") }");
+        assertEval(Output.ContainsWarning, "{ a <- as.double(1:10); a * a + factor(1:10) }");
+        assertEval(Output.ContainsWarning, "{ a <- as.double(1:10); a * a + a[1:3] }");
+        assertEval(Output.ContainsError, "{ a <- as.double(1:10); a * a + \"x\" }");
+        // failing consumers
+        assertEval("{ a <- as.double(1:10); tryCatch(a * a + stop(\"boom\"), error = function(e) conditionMessage(e)) }");
+        assertEval("{ a <- as.double(1:10); r <- tryCatch(a * a + \"x\", error = function(e) \"error\"); a[1] <- 0; list(r, a) }");
+        assertEval("{ a <- as.double(1:10); options(warn = 2); r <- tryCatch(a * a + a[1:3] + a, error = function(e) \"error\"); options(warn = 0); a[1] <- 0; list(r, a) }");
+    }
+
+    @Test
+    public void testParallelMap() {
+        // long vectors are split across threads when run with a low ParallelMapThreshold
+        assertEval("{ x <- as.double(1:100000); y <- x / 2; c(sum(y), y[c(1, 50000, 100000)]) }");
+        assertEval("{ x <- as.double(1:100000); x[c(10, 70000)] <- NA; y <- x * 2; c(sum(is.na(y)), sum(y, na.rm = TRUE)) }");
+        assertEval("{ x <- as.double(1:100000); y <- x + rev(1:100000); c(sum(y), range(y)) }");
+        assertEval("{ x <- as.double(1:100000); y <- x - c(1, 2); c(sum(y), y[99999:100000]) }");
+        assertEval("{ m <- matrix(as.double(1:100000), 100); y <- m %% 7; list(dim(y), sum(y)) }");
+        assertEval("{ x <- rev(1:100000); y <- -x; c(class(y), sum(y), y[1]) }");
+        assertEval("{ x <- as.double(1:100000); x[50000] <- NA; y <- -x; c(sum(is.na(y)), sum(y, na.rm = TRUE)) }");
+        assertEval(Output.ContainsWarning, "{ x <- as.double(1:100000); sum(x * c(1, 2, 3)) }");
+    }
+
     @Test
     public void testXor() {
         assertEval(" xor(TRUE, TRUE) ");
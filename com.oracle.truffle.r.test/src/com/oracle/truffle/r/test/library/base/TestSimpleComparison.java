@@ -4,7 +4,7 @@
  * http://www.gnu.org/licenses/gpl-2.0.html
  *
  * Copyright (c) 2012-2014, Purdue University
- * Copyright (c) 2013, 2015, Oracle and/or its affiliates
+ * Copyright (c) 2013, 2016, Oracle and/or its affiliates
  *
  * All rights reserved.
  */
@@ -268,4 +268,13 @@ public class TestSimpleComparison extends TestBase {
     public void testOther() {
         assertEval("{ stdin() == 0L }");
     }
+
+    @Test
+    public void testParallelComparison() {
+        // long vectors are split across threads when run with a low ParallelMapThreshold
+        assertEval("{ x <- as.double(1:100000); y <- x > 50000; c(sum(y), which(y)[1]) }");
+        assertEval("{ x <- as.double(1:100000); x[c(10, 70000)] <- NA; y <- x <= rev(x); c(sum(is.na(y)), sum(y, na.rm = TRUE)) }");
+        assertEval("{ x <- rev(1:100000); y <- x == c(1L, 2L, 3L, 4L); sum(y) }");
+        assertEval(Output.ContainsWarning, "{ x <- as.double(1:100000); sum(x < c(1, 50000, 99999)) }");
+    }
 }
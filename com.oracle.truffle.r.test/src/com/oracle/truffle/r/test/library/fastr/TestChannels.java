@@ -53,6 +53,12 @@ public class TestChannels extends TestBase {
         // locally)
         assertEvalFastR("{ ch <- fastr.channel.create(1L); cx <- fastr.context.create(\"SHARED_NOTHING\"); fastr.context.spawn(cx, \"ch <- fastr.channel.get(1L); msg<-fastr.channel.receive(ch); env<-attr(attr(msg, 'LIST'), 'GLOBAL'); assign('y', 7, pos=env); fastr.channel.send(ch, y)\"); l2<-list(c(42)); l<-list(c(7)); attr(l, 'GLOBAL')<-.GlobalEnv; attr(l2, 'LIST')<-l; fastr.channel.send(ch, l2); x<-fastr.channel.receive(ch); fastr.context.join(cx); fastr.channel.close(ch); list(x, exists('y')) }",
                         "list(7, FALSE)");
-
+        // test remote update of an atomic vector with attributes, and of the attributes (must stay
+        // private)
+        assertEvalFastR("{ ch <- fastr.channel.create(1L); cx <- fastr.context.create(\"SHARED_NOTHING\"); fastr.context.spawn(cx, \"ch <- fastr.channel.get(1L); x<-fastr.channel.receive(ch); x[1]<-7; attr(x, 'a')[1]<-'z'; names(x)[2]<-'q'; fastr.channel.send(ch, x)\"); y<-c(u=1, v=2); attr(y, 'a')<-c('b', 'c'); fastr.channel.send(ch, y); x<-fastr.channel.receive(ch); fastr.context.join(cx); fastr.channel.close(ch); list(x, y) }",
+                        "list(structure(c(u=7, q=2), a=c('z', 'c')), structure(c(u=1, v=2), a=c('b', 'c')))");
+        // test remote update of a list with attributes and a nested vector (must stay private)
+        assertEvalFastR("{ ch <- fastr.channel.create(1L); cx <- fastr.context.create(\"SHARED_NOTHING\"); fastr.context.spawn(cx, \"ch <- fastr.channel.get(1L); x<-fastr.channel.receive(ch); x$a[2]<-7; x$b<-NULL; attr(x, 'v')[1]<-0; fastr.channel.send(ch, x)\"); y<-list(a=c(1, 2), b='s'); attr(y, 'v')<-c(3, 4); fastr.channel.send(ch, y); x<-fastr.channel.receive(ch); fastr.context.join(cx); fastr.channel.close(ch); list(x, y) }",
+                        "list(structure(list(a=c(1, 7)), v=c(0, 4)), structure(list(a=c(1, 2), b='s'), v=c(3, 4)))");
     }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.test.library.fastr;
+
+import org.junit.*;
+
+import com.oracle.truffle.r.test.*;
+
+// Checkstyle: stop line length check
+public class TestContextPool extends TestBase {
+
+    @Test
+    public void testContextPool() {
+        // the global environment is cleared after each task
+        assertEvalFastR("{ p <- fastr.context.pool.create(2L); r <- fastr.context.pool.eval(p, c(\"1+1\", \"x <- 3; x*2\", \"exists('x')\")); fastr.context.pool.close(p); unlist(r) }", "c(2, 6, 0)");
+        assertEvalFastR("{ p <- fastr.context.pool.create(1L); r1 <- fastr.context.pool.eval(p, \"y <- 7\"); r2 <- fastr.context.pool.eval(p, \"exists('y')\"); fastr.context.pool.close(p); r2[[1]][[1]] }", "FALSE");
+        assertEvalFastR("{ p <- fastr.context.pool.create(2L); fastr.context.pool.eval(p, c(\"1\", \"2\", \"3\")); s <- fastr.context.pool.stats(p); fastr.context.pool.close(p); s[c(\"size\", \"queued\", \"completed\")] }",
+                        "c(size = 2, queued = 0, completed = 3)");
+        // a SHARE_PARENT_RW child would share (and clear) our global environment
+        assertEvalFastR("{ tryCatch(fastr.context.pool.create(1L, kind=\"SHARE_PARENT_RW\"), error=function(e) conditionMessage(e)) }", "\"SHARE_PARENT_RW contexts cannot be pooled\"");
+        assertEvalFastR("{ tryCatch(fastr.context.pool.create(2L, kind=\"SHARE_PARENT_RW\"), error=function(e) conditionMessage(e)) }", "\"SHARE_PARENT_RW contexts cannot be pooled\"");
+    }
+
+    @Test
+    public void testShareParentRO() {
+        // an update in a SHARE_PARENT_RO child must not be visible in the parent
+        assertEvalFastR("{ cx <- fastr.context.create(kind=\"SHARE_PARENT_RO\"); fastr.context.eval(cx, \"unlockBinding('letters', baseenv()); evalq(letters[1] <- 'z', baseenv())\"); letters[1:2] }", "c(\"a\", \"b\")");
+        // including values only reachable through list elements and attributes
+        assertEvalFastR("{ assign('sharedTestList', list(list(c(1, 2))), envir = baseenv()); cx <- fastr.context.create(kind=\"SHARE_PARENT_RO\"); fastr.context.eval(cx, \"evalq(sharedTestList[[1]][[1]][1] <- 9, baseenv())\"); r <- sharedTestList[[1]][[1]]; rm('sharedTestList', envir = baseenv()); r }",
+                        "c(1, 2)");
+        assertEvalFastR("{ assign('sharedTestAttr', structure(1, extra = c(1, 2)), envir = baseenv()); cx <- fastr.context.create(kind=\"SHARE_PARENT_RO\"); fastr.context.eval(cx, \"evalq(attr(sharedTestAttr, 'extra')[1] <- 9, baseenv())\"); r <- attr(sharedTestAttr, 'extra'); rm('sharedTestAttr', envir = baseenv()); r }",
+                        "c(1, 2)");
+        // and the child sees its own update
+        assertEvalFastR("{ cx <- fastr.context.create(kind=\"SHARE_PARENT_RO\"); r <- fastr.context.eval(cx, \"unlockBinding('LETTERS', baseenv()); evalq(LETTERS[1] <- 'z', baseenv()); LETTERS[1:2]\"); list(r[[1]], LETTERS[1:2]) }",
+                        "list(c(\"z\", \"B\"), c(\"A\", \"B\"))");
+    }
+}
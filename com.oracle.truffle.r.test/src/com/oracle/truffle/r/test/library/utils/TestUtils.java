@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2014, 2015, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -43,4 +43,82 @@ public class TestUtils extends TestBase {
     public void testMethods() {
         assertEval("methods(plot)");
     }
+
+    /**
+     * With {@code MappedScanThreshold} lowered (as in the gate), these files are read by the
+     * mapped, parallel {@code scan} path.
+     */
+    @Test
+    public void testReadTableMapped() {
+        assertEval("{ f <- tempfile(); writeLines(c('a,b,c', '1,2.5,x', '3,4.5,y', '5,NA,z'), f); r <- read.csv(f); unlink(f); list(r, sapply(r, class)) }");
+        assertEval("{ f <- tempfile(); writeLines(c('a,b', '1,\"x,y\"', '2,\"say \"\"hi\"\"\"', '3,\"two\\nlines\"'), f); r <- read.csv(f, stringsAsFactors = FALSE); unlink(f); r }");
+        assertEval("{ f <- tempfile(); writeLines(c('a;b', '1;2', '3;4', '5;6'), f); r <- read.table(f, header = TRUE, sep = ';', nrows = 2); unlink(f); r }");
+        assertEval("{ f <- tempfile(); writeLines(c('# comment', 'a b', '1 2 # trailing', '-', '3 4'), f); r <- read.table(f, header = TRUE, na.strings = '-', fill = TRUE); unlink(f); r }");
+        assertEval("{ f <- tempfile(); writeLines(c('1,2,TRUE,x', '3,4,FALSE,y'), f); r <- read.csv(f, header = FALSE, colClasses = c('integer', 'numeric', 'logical', 'character')); unlink(f); list(r, sapply(r, class)) }");
+        assertEval("{ f <- tempfile(); writeLines(c('a,b', '1,x', '2,y'), f); r <- read.csv(f, fileEncoding = 'latin1'); unlink(f); r }");
+        // the gate also lowers MappedScanChunkSize, so these records straddle chunk boundaries
+        assertEval("{ f <- tempfile(); writeLines(c('id,text', '1,\"a long, quoted field\nwith \"\"embedded\"\" quotes\nand lines\"', '2,short', '3,\"\n\n\"', '4,\"x,y\"'), f); " +
+                        "r <- read.csv(f, stringsAsFactors = FALSE); unlink(f); r }");
+        assertEval("{ f <- tempfile(); writeLines(c('a;b', '# a comment line with \"quotes; separators and more\"', '1;\"p q\"# another \"long\" comment', '# \"', '2;\"r\ns\"'), f); " +
+                        "r <- read.table(f, header = TRUE, sep = ';', stringsAsFactors = FALSE); unlink(f); r }");
+        assertEval("{ f <- tempfile(); n <- 500; x <- paste0('\"v', 1:n, ',\n', substring(paste(rep('w', 40), collapse = ''), 1, 1:n %% 40), '\"'); writeLines(c('a,b', paste(1:n, x, sep = ','), '# end'), f); " +
+                        "r <- read.csv(f, comment.char = '#', stringsAsFactors = FALSE); unlink(f); c(nrow(r), sum(r$a), identical(r$b, gsub('\"', '', x))) }");
+        assertEval("{ f <- tempfile(); writeLines(c('a,b', paste(1:100, '\"q,\nr\"', sep = ','), '101,\"unterminated'), f); r <- read.csv(f, nrows = 3, stringsAsFactors = FALSE); unlink(f); r }");
+        assertEval("{ f <- tempfile(); writeLines(c('a b', '# skip \"me\"', paste(1:50, 50:1)), f); con <- file(f, 'r'); h <- readLines(con, 1); r <- scan(con, list(0, 0), nmax = 5, comment.char = '#', quiet = TRUE); " +
+                        "rest <- readLines(con); close(con); unlink(f); list(h, r, length(rest), rest[1]) }");
+    }
+
+    @Test
+    public void testTypeConvert() {
+        assertEval("{ type.convert(c(\"TRUE\", \"F\", \"true\", NA, \"False\")) }");
+        assertEval("{ type.convert(c(\"1\", \"-2\", NA, \"30\")) }");
+        assertEval("{ type.convert(c(\"1\", \"2.5\", \"1e3\", NA)) }");
+        assertEval("{ type.convert(c(\"1\", \"T\")) }");
+        assertEval("{ type.convert(c(\"1+2i\", \"3\", NA, \"-1-1i\")) }");
+        assertEval("{ type.convert(c(NA, NA)) }");
+        assertEval("{ type.convert(c(\"b\", \"a\", \"c\", \"a\", NA, \"b\")) }");
+        assertEval("{ type.convert(c(\"b\", \"a\", \"c\", \"a\", NA, \"b\"), as.is = TRUE) }");
+        assertEval("{ type.convert(c(\"1\", \"-\", \"3\", \"?\"), na.strings = c(\"-\", \"?\")) }");
+        assertEval("{ type.convert(c(\"x\", \"-\", \"1\"), na.strings = \"-\") }");
+        assertEval("{ x <- rep(c(\"1\", \"2\", \"3.5\"), 1000); r <- type.convert(x); c(class(r), sum(r)) }");
+        assertEval("{ x <- as.character(c(1:999, 1.5)); r <- type.convert(x); c(class(r), sum(r)) }");
+        assertEval("{ x <- c(as.character(1:999), \"z\"); r <- type.convert(x); c(class(r), nlevels(r), levels(r)[1:3]) }");
+    }
+
+    /**
+     * With {@code ParallelWriteTableThreshold} lowered (as in the gate), the larger tables are
+     * encoded in blocks on multiple threads.
+     */
+    @Test
+    public void testWriteTable() {
+        assertEval("{ write.table(data.frame(a = 1:3, b = c(0.3, 1e-5, 1e5), c = c(\"x\", \"y\", NA), d = factor(c(\"u\", \"v\", \"u\")), e = c(TRUE, NA, FALSE))) }");
+        assertEval("{ write.csv(data.frame(x = c(pi, 1/3, -0.5, 123456789012, 1e15, 1e16, 2^-1074), y = c(NaN, Inf, -Inf, NA, 0, -0, 100)), row.names = FALSE) }");
+        assertEval("{ write.table(data.frame(x = c(1.5, -2.25), y = c(\"a b\", \"c\\\"d\")), sep = \";\", dec = \",\", na = \"-\", quote = FALSE) }");
+        assertEval("{ write.table(data.frame(x = c(1.5, NA), y = c(\"a\", \"c\\\"d\")), qmethod = \"double\", col.names = NA) }");
+        assertEval("{ write.table(matrix(1:6, 2, dimnames = list(c(\"r1\", \"r2\"), c(\"A\", \"B\", \"C\")))) }");
+        assertEval("{ n <- 20000; d <- data.frame(i = 1:n, x = (1:n) / 7, s = paste0(\"s\", n:1), f = factor(rep(c(\"lo\", \"hi\"), n / 2))); " +
+                        "f <- tempfile(); write.csv(d, f, row.names = FALSE); l <- readLines(f); r <- read.csv(f, stringsAsFactors = FALSE); unlink(f); " +
+                        "list(length(l), l[c(1, 2, 8193, 20001)], identical(r$i, d$i), all.equal(r$x, d$x), identical(r$s, d$s), identical(r$f, as.character(d$f))) }");
+    }
+
+    /**
+     * The profile is written in GnuR's format, a header line and then one line per sample with the
+     * quoted names of the active functions, innermost first, which {@code summaryRprof} reads.
+     * {@code g} calls no R function in its loop, so its samples are only recorded on exit.
+     */
+    @Test
+    public void testRprof() {
+        assertEval("{ f <- tempfile(); Rprof(f, interval = 0.001); g <- function(n) { s <- 0; for (i in 1:n) s <- s + sqrt(i); s }; for (k in 1:50) g(100000); Rprof(NULL); l <- readLines(f); " +
+                        "s <- summaryRprof(f); unlink(f); list(l[1], length(l) > 1, all(grepl('^(\"[^\"]+\" )+$', l[-1])), names(s), s$sample.interval, \"g\" %in% rownames(s$by.total)) }");
+        assertEval("{ f <- tempfile(); Rprof(f, interval = 0.002, line.profiling = TRUE); Rprof(NULL); l <- readLines(f); unlink(f); l }");
+        assertEval("{ f <- tempfile(); Rprof(f); Sys.sleep(0.2); Rprof(NULL); l <- readLines(f); unlink(f); l }");
+    }
+
+    @Test
+    public void testRprofmem() {
+        assertEval("{ f <- tempfile(); g <- function(n) numeric(n); Rprofmem(f, threshold = 100000); x <- g(50000); y <- g(10); Rprofmem(NULL); l <- readLines(f); unlink(f); " +
+                        "list(length(l) > 0, all(grepl('^[0-9]+ :(\"[^\"]+\" )*$', l)), all(as.numeric(sub(' :.*', '', l)) > 100000), any(grepl('^400[0-9]* :.*\"g\" $', l))) }");
+        assertEval("{ f <- tempfile(); Rprofmem(f, threshold = 100000); x <- numeric(50000); Rprofmem(NULL); Rprofmem(f, append = TRUE, threshold = 100000); y <- numeric(60000); Rprofmem(NULL); " +
+                        "l <- readLines(f); unlink(f); list(length(l) >= 2, grepl('^400[0-9]* :', l[1]), grepl('^480[0-9]* :', l[length(l)])) }");
+    }
 }
@@ -54,6 +54,25 @@ public class TestRFFIPackage extends TestRPackages {
                                         + "detach(\"package:testrffi\"); list(r1, r2, v, v2) }", new String[]{packagePaths.rpackagesLibs.toString()}));
     }
 
+    @Test
+    public void testLoadTestRFFILogical() {
+        assertEval(TestBase.template(
+                        "{ library(\"testrffi\", lib.loc = \"%0\"); x <- c(TRUE, FALSE, NA, TRUE); r1 <- rffi.negateLogical(x); r2 <- rffi.negateLogical(rep(c(NA, FALSE, TRUE), 100)); "
+                                        + "r3 <- rffi.negateLogical(logical()); detach(\"package:testrffi\"); list(r1, x, r2[1:6], table(r2, useNA = \"ifany\"), r3) }", new String[]{packagePaths.rpackagesLibs.toString()}));
+    }
+
+    /**
+     * The symbol of a {@code .Call} is cached at the call site, which must look it up again once
+     * the library has been unloaded and loaded again (registering its routines anew).
+     */
+    @Test
+    public void testSymbolCacheInvalidation() {
+        assertEval(TestBase.template(
+                        "{ library(\"testrffi\", lib.loc = \"%0\"); f <- function() rffi.addInt(2L, 3L); g <- function() rffi.registeredAddInt(4L, 5L); r1 <- list(f(), f(), g(), g()); "
+                                        + "path <- getLoadedDLLs()[[\"testrffi\"]][[\"path\"]]; dyn.unload(path); r2 <- list(tryCatch(f(), error = function(e) \"error\"), tryCatch(g(), error = function(e) \"error\")); "
+                                        + "dyn.load(path); r3 <- list(f(), f(), g(), g()); detach(\"package:testrffi\"); list(r1, r2, r3) }", new String[]{packagePaths.rpackagesLibs.toString()}));
+    }
+
     @Test
     public void testLoadTestRFFIExternal() {
         assertEval(TestBase.template(
@@ -228,6 +228,10 @@ def eclipseformat(args):
     mx.log("Note: eclipseformat is currently not supported for FastR")
     return 0
 
+# Optimizations that only apply to large inputs, with their thresholds lowered so that the unit
+# tests exercise them
+_low_threshold_options = ['-DR:FusedArithmeticThreshold=8', '-DR:MappedScanChunkSize=16', '-DR:MappedScanThreshold=1', '-DR:ParallelGZIPBlockSize=64', '-DR:ParallelMapThreshold=8', '-DR:ParallelSortThreshold=8', '-DR:ParallelWriteTableThreshold=8']
+
 def _fastr_gate_runner(args, tasks):
     # Until fixed, we call Checkstyle here and limit to primary
     with mx_gate.Task('Checkstyle check', tasks) as t:
@@ -261,6 +265,11 @@ def _fastr_gate_runner(args, tasks):
             if junit(['--J', '@-DR:-NewStateTransition', '--tests', _gate_unit_tests()]) != 0:
                 t.abort('unit tests failed')
 
+    with mx_gate.Task('UnitTests: low thresholds', tasks) as t:
+        if t:
+            if junit(['--J', '@' + ' '.join(_low_threshold_options), '--tests', _gate_unit_tests()]) != 0:
+                t.abort('unit tests failed')
+
 mx_gate.add_gate_runner(_fastr_suite, _fastr_gate_runner)
 
 def gate(args):